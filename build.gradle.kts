@@ -1,6 +1,7 @@
 plugins {
     id("org.springframework.boot") version "3.3.4"
     id("io.spring.dependency-management") version "1.1.6"
+    id("me.champeau.jmh") version "0.7.2"
     java
 }
 
@@ -53,6 +54,13 @@ dependencies {
     // BCrypt для хеширования паролей
     implementation("org.springframework.security:spring-security-crypto")
 
+    // BPE-токенизатор cl100k (словарь встроен в jar) для бюджетов промптов
+    implementation("com.knuddels:jtokkit:1.1.0")
+
+    // Метрики: Actuator + Micrometer, экспорт в Prometheus (/actuator/prometheus)
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    implementation("io.micrometer:micrometer-registry-prometheus")
+
     compileOnly("org.projectlombok:lombok:1.18.34")
     annotationProcessor("org.projectlombok:lombok:1.18.34")
 
@@ -69,6 +77,49 @@ tasks.withType<Test> {
     useJUnitPlatform()
 }
 
+// JMH-бенчмарки горячих участков (src/jmh/java).
+// Запуск: ./gradlew jmh, только часть бенчмарков: ./gradlew jmh -PjmhIncludes=PlantUmlFilter
+// Результаты в JSON (build/reports/jmh/results.json) — для сравнения между прогонами.
+jmh {
+    jmhVersion = "1.37"
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("reports/jmh/results.json")
+    profilers = listOf("gc")
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes = listOf(it) }
+}
+
+// Fat-jar с зависимостями Spring AI/JGit превышает 65535 записей
+tasks.named<Jar>("jmhJar") {
+    isZip64 = true
+}
+
+// Нагрузочный прогон (src/loadTest/java): приложение поднимается в том же процессе
+// с заглушкой LLM и встроенным PostgreSQL, нагрузка идёт по HTTP.
+// Запуск: ./gradlew loadTest -PloadTestScenarios=chat,workflow -PloadTestConcurrency=1,8,32
+// Все свойства -PloadTest* передаются в LoadTestSettings. Отчёт: build/reports/loadtest/results.json
+val loadTest: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[loadTest.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[loadTest.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
+dependencies {
+    "loadTestImplementation"("io.zonky.test:embedded-postgres:2.1.0")
+    "loadTestImplementation"("org.hdrhistogram:HdrHistogram:2.2.2")
+    "loadTestRuntimeOnly"(platform("io.zonky.test.postgres:embedded-postgres-binaries-bom:16.6.0"))
+}
+
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Runs the in-process load test against /workflow/run, /api/chat and /api/usecase/decomposition"
+    classpath = loadTest.runtimeClasspath
+    mainClass.set("com.example.loadtest.LoadTestRunner")
+    workingDir = projectDir
+    systemProperties(project.properties.filterKeys { it.startsWith("loadTest") }.mapValues { it.value.toString() })
+}
+
 // Явно указываем главный класс приложения
 springBoot {
     mainClass.set("com.example.portal.Application")
@@ -0,0 +1,233 @@
+package com.example.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Генераторы реалистичных входных данных для JMH-бенчмарков.
+ * <p>
+ * Структура моделей повторяет то, что реально выдают агенты (см. logs/*.puml):
+ * кириллические названия, алиасы, стереотипы, блоки с полями в двойных скобках.
+ * Генерация детерминирована (фиксированный seed), чтобы прогоны были сравнимы.
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {}
+
+    /**
+     * Диаграмма прецедентов: акторы, один rectangle со всеми прецедентами, связи актор → прецедент
+     * и invoke/include между прецедентами.
+     */
+    public static String useCaseModel(int useCases, int actors) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(useCases * 160);
+        sb.append("@startuml usecase_model\n");
+        sb.append("left to right direction\n");
+        sb.append("skinparam packageStyle rectangle\n\n");
+        for (int a = 0; a < actors; a++) {
+            sb.append("actor \"Пользователь ").append(a).append("\" as actor").append(a).append(" << user >>\n");
+        }
+        sb.append("\nrectangle \"Обратная связь AlfaBook\" as box {\n");
+        for (int u = 0; u < useCases; u++) {
+            sb.append("    usecase \"Отправить вопрос по статье ").append(u).append("\" as useCase").append(u)
+                    .append(u % 3 == 0 ? " << base >>\n" : "\n");
+        }
+        sb.append("}\n\n");
+        for (int u = 0; u < useCases; u++) {
+            sb.append("actor").append(random.nextInt(actors)).append(" --> useCase").append(u).append('\n');
+            if (u > 0 && u % 3 != 0) {
+                sb.append("useCase").append(u - (u % 3)).append(" ..> useCase").append(u).append(" : << include >>\n");
+            }
+        }
+        sb.append("\nnote right of box\n  Сгенерировано для бенчмарка\nend note\n");
+        sb.append("@enduml\n");
+        return sb.toString();
+    }
+
+    /**
+     * MVC (robustness) диаграммы: на каждый прецедент — пакет с boundary/control/entity и связями.
+     */
+    public static String mvcModel(int useCases, int elementsPerUseCase) {
+        StringBuilder sb = new StringBuilder(useCases * elementsPerUseCase * 120);
+        sb.append("@startuml mvc_model\n");
+        sb.append("skinparam linetype ortho\n\n");
+        for (int u = 0; u < useCases; u++) {
+            sb.append("package \"useCase").append(u).append("\" {\n");
+            for (int e = 0; e < elementsPerUseCase; e++) {
+                String id = "u" + u + "e" + e;
+                sb.append("    boundary \"Экран ").append(id).append("\" as b_").append(id).append('\n');
+                sb.append("    control \"Обработать ").append(id).append("\" as c_").append(id).append('\n');
+                sb.append("    entity \"Вопрос ").append(id).append("\" as en_").append(id).append('\n');
+                sb.append("    b_").append(id).append(" --> c_").append(id).append('\n');
+                sb.append("    c_").append(id).append(" --> en_").append(id).append('\n');
+            }
+            sb.append("}\n");
+        }
+        sb.append("@enduml\n");
+        return sb.toString();
+    }
+
+    /**
+     * Доменная модель: сущности с полями и связями, в формате, который отдаёт DomainModellerService.
+     */
+    public static String domainModel(int classes) {
+        Random random = new Random(7);
+        StringBuilder sb = new StringBuilder(classes * 260);
+        sb.append("@startuml domain_model\n");
+        sb.append("Title Обратная связь AlfaBook\n");
+        sb.append("skinparam WrapWidth 150\n\n");
+        for (int c = 0; c < classes; c++) {
+            sb.append("entity \"Сущность ").append(c).append("\" as entity").append(c).append(" {\n");
+            sb.append("    + {field} id: UUID\n");
+            sb.append("    + {field} название: String\n");
+            sb.append("    + {field} статус: String\n");
+            sb.append("    + {field} датаСоздания: DateTime\n");
+            sb.append("    + {method} сохранить()\n");
+            sb.append("}\n");
+        }
+        for (int c = 1; c < classes; c++) {
+            sb.append("entity").append(random.nextInt(c)).append(" \"1\" -- \"0..*\" entity").append(c)
+                    .append(" : содержит\n");
+        }
+        sb.append("@enduml\n");
+        return sb.toString();
+    }
+
+    /**
+     * Нарратив заданной длины (кириллица + ASCII), как в реальных сессиях.
+     */
+    public static String narrative(int approxChars) {
+        String paragraph = "Пользователь открывает страницу статьи AlfaBook и нажимает кнопку «Обратная связь». "
+                + "В модальном окне он вводит текст вопроса (до 5000 символов, форматирование bold/italic), "
+                + "прикрепляет до 10 файлов PDF/DOC/DOCX размером не более 10 МБ и отправляет вопрос. "
+                + "Редактор получает уведомление, рассматривает вопрос и публикует ответ; статус меняется на «Отвечен».\n";
+        StringBuilder sb = new StringBuilder(approxChars + paragraph.length());
+        while (sb.length() < approxChars) {
+            sb.append(paragraph);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Синтетический репозиторий: Java-пакеты, JS-модули и Python-пакеты со ссылками друг на друга,
+     * плюс небольшая доля «мёртвых» файлов и циклов.
+     */
+    public static Map<String, String> syntheticRepository(int files) {
+        Random random = new Random(11);
+        Map<String, String> repo = new LinkedHashMap<>();
+        int javaFiles = files / 2;
+        int jsFiles = files / 4;
+        int pyFiles = files - javaFiles - jsFiles;
+
+        for (int i = 0; i < javaFiles; i++) {
+            int pkg = i / 20;
+            StringBuilder sb = new StringBuilder(600);
+            sb.append("package com.acme.module").append(pkg).append(";\n\n");
+            sb.append("import java.util.List;\n");
+            for (int r = 0; r < 4; r++) {
+                int target = random.nextInt(javaFiles);
+                sb.append("import com.acme.module").append(target / 20).append(".Type").append(target).append(";\n");
+            }
+            sb.append(i % 50 == 0 ? "\n@Service\n" : "\n");
+            sb.append("public class Type").append(i).append(" {\n");
+            sb.append("    private final List<String> items = List.of();\n");
+            sb.append("    Type").append(i - (i % 20)).append(" sibling;\n");
+            sb.append("}\n");
+            repo.put("src/main/java/com/acme/module" + pkg + "/Type" + i + ".java", sb.toString());
+        }
+
+        for (int i = 0; i < jsFiles; i++) {
+            int dir = i / 30;
+            StringBuilder sb = new StringBuilder(300);
+            sb.append("import React from 'react';\n");
+            for (int r = 0; r < 3; r++) {
+                int target = random.nextInt(jsFiles);
+                sb.append("import { c").append(target).append(" } from '../dir").append(target / 30)
+                        .append("/component").append(target).append("';\n");
+            }
+            sb.append("export const c").append(i).append(" = () => null;\n");
+            String name = i % 30 == 0 ? "index" : "component" + i;
+            repo.put("web/src/dir" + dir + "/" + name + ".tsx", sb.toString());
+        }
+
+        for (int i = 0; i < pyFiles; i++) {
+            int pkg = i / 25;
+            StringBuilder sb = new StringBuilder(300);
+            sb.append("import os\n");
+            int target = random.nextInt(pyFiles);
+            sb.append("from app.pkg").append(target / 25).append(" import mod").append(target).append('\n');
+            sb.append("from . import mod").append(pkg * 25).append('\n');
+            if (i % 100 == 0) {
+                sb.append("if __name__ == \"__main__\":\n    pass\n");
+            }
+            repo.put("py/app/pkg" + pkg + "/mod" + i + ".py", sb.toString());
+            if (i % 25 == 0) {
+                repo.put("py/app/pkg" + pkg + "/__init__.py", "");
+            }
+        }
+        repo.put("py/app/__init__.py", "");
+        return repo;
+    }
+
+    /**
+     * Состояние контекста workflow после полного прогона: все модели, замечания, сценарий.
+     */
+    public static Map<String, Object> sessionState(int useCases) {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("narrativeOverride", narrative(6000));
+        state.put("plantuml", domainModel(useCases));
+        state.put("issues", issuesAsMaps(25));
+        state.put("issuesRaw", issuesAsMaps(25));
+        state.put("useCaseModel", useCaseModel(useCases, 6));
+        state.put("mvcDiagram", mvcModel(useCases, 3));
+        state.put("scenario", narrative(8000));
+        return state;
+    }
+
+    /**
+     * Строки журнала выполнения, как их пишут Worker'ы.
+     */
+    public static List<String> sessionLogs(int steps) {
+        List<String> logs = new ArrayList<>();
+        logs.add("plan.default: narrative→model→review→refine→userReview→usecase→mvc");
+        for (int i = 0; i < steps; i++) {
+            logs.add("rag.model: fragments=4, vs=true");
+            logs.add("model.generate: " + (12000 + i * 37) + " chars");
+        }
+        return logs;
+    }
+
+    /**
+     * Ответ LLM со списком замечаний: обёрнут в markdown, опционально с пропущенными запятыми
+     * (типичные ошибки, которые исправляет EvaluatorService).
+     */
+    public static String issuesResponse(int issues, boolean broken) {
+        StringBuilder sb = new StringBuilder(issues * 220);
+        sb.append("Вот результат ревью:\n```json\n[\n");
+        for (int i = 0; i < issues; i++) {
+            if (i > 0) sb.append(broken ? "\n" : ",\n");
+            sb.append("  {\"id\": \"I-").append(i).append('"').append(broken ? " " : ", ")
+                    .append("\"title\": \"Отсутствует связь владения Вопросов пользователем ").append(i).append("\", ")
+                    .append("\"severity\": \"").append(i % 3 == 0 ? "major" : "minor").append("\", ")
+                    .append("\"suggestion\": \"добавить связь Пользователь - Вопрос 1 - 0..* (автор)\"}");
+        }
+        sb.append("\n]\n```\n");
+        return sb.toString();
+    }
+
+    private static List<Map<String, Object>> issuesAsMaps(int count) {
+        List<Map<String, Object>> issues = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            issues.add(Map.of(
+                    "id", "I-" + i,
+                    "title", "Статус вопроса моделируется строкой без ограничений " + i,
+                    "severity", i % 3 == 0 ? "major" : "minor",
+                    "suggestion", "заменить Вопрос.статус: String на перечисление СтатусВопроса"
+            ));
+        }
+        return issues;
+    }
+}
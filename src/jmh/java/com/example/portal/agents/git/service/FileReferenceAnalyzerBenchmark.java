@@ -0,0 +1,57 @@
+package com.example.portal.agents.git.service;
+
+import com.example.benchmark.BenchmarkFixtures;
+import com.example.portal.agents.git.model.GitAnalysisResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полный анализ синтетического репозитория: извлечение ссылок, разрешение, граф, достижимость.
+ * Содержимое файлов отдаётся из памяти, чтобы измерять анализ, а не диск.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class FileReferenceAnalyzerBenchmark {
+
+    @Param({"2000", "20000"})
+    public int files;
+
+    private final FileReferenceAnalyzer analyzer = new FileReferenceAnalyzer(List.of());
+    private InMemoryRepository repository;
+    private List<String> allFiles;
+
+    @Setup
+    public void setUp() {
+        Map<String, String> content = BenchmarkFixtures.syntheticRepository(files);
+        repository = new InMemoryRepository(content);
+        allFiles = new ArrayList<>(content.keySet());
+    }
+
+    @Benchmark
+    public GitAnalysisResponse.AnalysisResult analyzeRepository() throws IOException {
+        return analyzer.analyzeRepository(Path.of("."), allFiles, repository);
+    }
+
+    private static final class InMemoryRepository extends GitRepositoryService {
+        private final Map<String, String> content;
+
+        InMemoryRepository(Map<String, String> content) {
+            this.content = content;
+        }
+
+        @Override
+        public String readFile(Path repoPath, String filePath) {
+            return content.get(filePath);
+        }
+    }
+}
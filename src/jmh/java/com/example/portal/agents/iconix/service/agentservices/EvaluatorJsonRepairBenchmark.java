@@ -0,0 +1,42 @@
+package com.example.portal.agents.iconix.service.agentservices;
+
+import com.example.benchmark.BenchmarkFixtures;
+import com.example.portal.agents.iconix.model.Issue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор ответа оценщика ({@link IssueStreamParser}): корректный JSON и JSON с пропущенными запятыми.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class EvaluatorJsonRepairBenchmark {
+
+    @Param({"10", "100"})
+    public int issues;
+
+    private String validResponse;
+    private String brokenResponse;
+
+    @Setup
+    public void setUp() {
+        validResponse = BenchmarkFixtures.issuesResponse(issues, false);
+        brokenResponse = BenchmarkFixtures.issuesResponse(issues, true);
+    }
+
+    @Benchmark
+    public List<Issue> parseValidJson() {
+        return IssueStreamParser.parse(validResponse);
+    }
+
+    @Benchmark
+    public List<Issue> parseBrokenJson() {
+        return IssueStreamParser.parse(brokenResponse);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.portal.prompt.service;
+
+import com.example.benchmark.BenchmarkFixtures;
+import com.example.portal.shared.utils.PromptUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сборка пользовательского промпта: String.format с экранированием параметров (прежний путь)
+ * против подстановки в заранее разобранный шаблон.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CompiledPromptBenchmark {
+
+    private static final String TEMPLATE = """
+            Нарратив:
+            %s
+
+            Доменная модель:
+            %s
+
+            Модель прецедентов:
+            %s
+
+            Контекст базы знаний:
+            %s
+            """;
+
+    @Param({"50", "400"})
+    public int classes;
+
+    private String narrative;
+    private String domainModel;
+    private String useCaseModel;
+    private CompiledPrompt compiled;
+
+    @Setup
+    public void setUp() {
+        narrative = "Пользователь оформляет заказ, менеджер подтверждает оплату. ".repeat(classes);
+        domainModel = BenchmarkFixtures.domainModel(classes);
+        useCaseModel = BenchmarkFixtures.domainModel(classes / 2);
+        compiled = CompiledPrompt.compile("mvc_modeller", TEMPLATE);
+    }
+
+    @Benchmark
+    public String formatAndEscape() {
+        String prompt = String.format(TEMPLATE,
+                PromptUtils.fullEscape(narrative), PromptUtils.fullEscape(domainModel),
+                PromptUtils.fullEscape(useCaseModel), PromptUtils.fullEscape("нет"));
+        return PromptUtils.stEscape(prompt);
+    }
+
+    @Benchmark
+    public String compiledRender() {
+        return compiled.render(narrative, domainModel, useCaseModel, "нет");
+    }
+}
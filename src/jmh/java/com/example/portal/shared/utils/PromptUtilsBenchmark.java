@@ -0,0 +1,38 @@
+package com.example.portal.shared.utils;
+
+import com.example.benchmark.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Экранирование параметров промптов (ST4 и String.format) на моделях реального размера.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PromptUtilsBenchmark {
+
+    @Param({"50", "400"})
+    public int classes;
+
+    private String domainModel;
+
+    @Setup
+    public void setUp() {
+        domainModel = BenchmarkFixtures.domainModel(classes);
+    }
+
+    @Benchmark
+    public String stEscape() {
+        return PromptUtils.stEscape(domainModel);
+    }
+
+    @Benchmark
+    public String fullEscape() {
+        return PromptUtils.fullEscape(domainModel);
+    }
+}
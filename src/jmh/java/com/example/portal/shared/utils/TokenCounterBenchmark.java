@@ -0,0 +1,39 @@
+package com.example.portal.shared.utils;
+
+import com.example.benchmark.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подсчёт токенов и обрезка по бюджету (cl100k) на моделях реального размера.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class TokenCounterBenchmark {
+
+    @Param({"50", "400"})
+    public int classes;
+
+    private String domainModel;
+
+    @Setup
+    public void setUp() {
+        domainModel = BenchmarkFixtures.domainModel(classes);
+        TokenCounter.count("warm up");
+    }
+
+    @Benchmark
+    public int count() {
+        return TokenCounter.count(domainModel);
+    }
+
+    @Benchmark
+    public String truncate() {
+        return TokenCounter.truncate(domainModel, 3000, "\n... (truncated) ...\n");
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.workflow;
+
+import com.example.benchmark.BenchmarkFixtures;
+import com.example.portal.shared.plantuml.PlantUmlModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фильтрация и усечение PlantUML-моделей при декомпозиции Use Case.
+ * Алиас берётся из середины модели — худший случай для построчного сканирования.
+ * Разобранные модели кэшируются фильтром, поэтому разбор измеряется отдельно ({@link #parseMvcModel}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PlantUmlFilterBenchmark {
+
+    @Param({"50", "400"})
+    public int useCases;
+
+    private final PlantUmlFilter filter = new PlantUmlFilter();
+    private String useCaseModel;
+    private String mvcModel;
+    private String domainModel;
+    private String alias;
+    private String name;
+
+    @Setup
+    public void setUp() {
+        useCaseModel = BenchmarkFixtures.useCaseModel(useCases, 8);
+        mvcModel = BenchmarkFixtures.mvcModel(useCases, 4);
+        domainModel = BenchmarkFixtures.domainModel(useCases);
+        int middle = useCases / 2;
+        alias = "useCase" + middle;
+        name = "Отправить вопрос по статье " + middle;
+    }
+
+    @Benchmark
+    public String filterUseCaseModel() {
+        return filter.filterUseCaseModel(useCaseModel, alias, name);
+    }
+
+    @Benchmark
+    public String filterMvcModel() {
+        return filter.filterMvcModel(mvcModel, alias);
+    }
+
+    @Benchmark
+    public String truncateDomainModel() {
+        return filter.truncatePlantUml(domainModel, 3000);
+    }
+
+    @Benchmark
+    public PlantUmlModel parseMvcModel() {
+        return PlantUmlModel.parse(mvcModel);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.workflow;
+
+import com.example.benchmark.BenchmarkFixtures;
+import com.example.portal.agents.iconix.entity.WorkflowArtifact;
+import com.example.portal.agents.iconix.entity.WorkflowSession;
+import com.example.portal.agents.iconix.model.OrchestratorPlan;
+import com.example.portal.agents.iconix.model.PlanStep;
+import com.example.portal.agents.iconix.model.WorkflowResponse;
+import com.example.portal.agents.iconix.model.WorkflowStatus;
+import com.example.portal.agents.iconix.repository.WorkflowArtifactRepository;
+import com.example.portal.agents.iconix.repository.WorkflowSessionCheckpointRepository;
+import com.example.portal.agents.iconix.repository.WorkflowSessionRepository;
+import com.example.portal.agents.iconix.service.TokenLedgerService;
+import com.example.portal.agents.iconix.worker.Worker;
+import com.example.portal.shared.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация и восстановление сессии workflow (без БД): то, что происходит
+ * перед каждым шагом оркестратора и при каждом открытии сессии в UI.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class WorkflowSessionSerializationBenchmark {
+
+    private static final String REQUEST_ID = "00000000-0000-0000-0000-000000000001";
+
+    @Param({"20", "200"})
+    public int useCases;
+
+    private WorkflowSessionService service;
+    private Worker.Context ctx;
+    private OrchestratorPlan plan;
+    private WorkflowSession stored;
+    private Worker.Context stepCtx;
+    private int step;
+
+    @Setup
+    public void setUp() {
+        WorkflowSessionRepository repository = (WorkflowSessionRepository) Proxy.newProxyInstance(
+                WorkflowSessionRepository.class.getClassLoader(),
+                new Class<?>[]{WorkflowSessionRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findByRequestId", "findById" -> Optional.ofNullable(stored);
+                    case "save" -> stored = (WorkflowSession) args[0];
+                    case "updateProgress" -> 1;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        WorkflowSessionCheckpointRepository checkpoints = (WorkflowSessionCheckpointRepository) Proxy.newProxyInstance(
+                WorkflowSessionCheckpointRepository.class.getClassLoader(),
+                new Class<?>[]{WorkflowSessionCheckpointRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findByRequestIdOrderBySeqAsc" -> List.of();
+                    case "save" -> args[0];
+                    case "deleteByRequestId", "findLastSeq" -> 0;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        // Артефакты — в памяти: в замер входят хэширование, сжатие и распаковка, но не запросы к БД
+        Map<String, WorkflowArtifact> artifacts = new ConcurrentHashMap<>();
+        WorkflowArtifactRepository artifactRepository = (WorkflowArtifactRepository) Proxy.newProxyInstance(
+                WorkflowArtifactRepository.class.getClassLoader(),
+                new Class<?>[]{WorkflowArtifactRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findExistingHashes" -> ((Collection<?>) args[0]).stream().filter(artifacts::containsKey).toList();
+                    case "insertIfAbsent" -> {
+                        artifacts.putIfAbsent((String) args[0], WorkflowArtifact.builder()
+                                .hash((String) args[0]).content((byte[]) args[1]).build());
+                        yield 1;
+                    }
+                    case "findAllById" -> ((Collection<?>) args[0]).stream().map(artifacts::get).toList();
+                    case "touch", "link", "unlinkExcept", "unlinkAll", "deleteUnreferencedBefore" -> 0;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry(), "OPENAI");
+        service = new WorkflowSessionService(repository, checkpoints,
+                new WorkflowArtifactService(artifactRepository, metrics, true, 512, Set.of("issues", "narrativeIssues"), 24),
+                // Без кэша: замеряется чтение сессии, а не попадание в кэш
+                new WorkflowSessionCache(null, null, metrics, false, false, 0),
+                metrics, new TokenLedgerService(null), Integer.MAX_VALUE);
+
+        ctx = new Worker.Context(REQUEST_ID, BenchmarkFixtures.narrative(3000), "Построить модель", "");
+        ctx.state.putAll(BenchmarkFixtures.sessionState(useCases));
+        ctx.logs.addAll(BenchmarkFixtures.sessionLogs(16));
+        plan = new OrchestratorPlan("benchmark", List.of(
+                new PlanStep("narrative", Map.of()),
+                new PlanStep("model", Map.of("mode", "generate")),
+                new PlanStep("review", Map.of("target", "model")),
+                new PlanStep("model", Map.of("mode", "refine")),
+                new PlanStep("userReview", Map.of()),
+                new PlanStep("usecase", Map.of()),
+                new PlanStep("mvc", Map.of()),
+                new PlanStep("scenario", Map.of())
+        ));
+
+        stored = null;
+        service.saveSession(ctx, plan, 7, WorkflowStatus.COMPLETED, null, null);
+        stepCtx = service.restoreContext(stored);
+    }
+
+    /**
+     * Полный снимок: первое сохранение запуска и завершение workflow.
+     */
+    @Benchmark
+    public WorkflowSession saveSession() {
+        service.saveSession(ctx, plan, 7, WorkflowStatus.COMPLETED, null, null);
+        return stored;
+    }
+
+    /**
+     * Сохранение перед шагом: предыдущий шаг изменил один артефакт.
+     */
+    @Benchmark
+    public Worker.Context saveStepCheckpoint() {
+        stepCtx.state.put("scenario", ++step % 2 == 0 ? "Сценарий A" : "Сценарий B");
+        service.saveSession(stepCtx, plan, 7, WorkflowStatus.RUNNING, null, null);
+        return stepCtx;
+    }
+
+    @Benchmark
+    public Worker.Context restoreContext() {
+        return service.restoreContext(stored);
+    }
+
+    @Benchmark
+    public WorkflowResponse getSessionData() {
+        return service.getSessionData(REQUEST_ID);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.loadtest;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодически снимает состояние пула Hikari во время замера:
+ * сколько соединений занято и сколько потоков ждут соединение.
+ */
+class ConnectionPoolSampler implements AutoCloseable {
+
+    private static final long PERIOD_MS = 50;
+
+    private final HikariPoolMXBean pool;
+    private final int maxPoolSize;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "pool-sampler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private ScheduledFuture<?> task;
+    private long samples;
+    private long activeSum;
+    private long saturatedSamples;
+    private int maxActive;
+    private int maxPending;
+
+    ConnectionPoolSampler(HikariPoolMXBean pool, int maxPoolSize) {
+        this.pool = pool;
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    synchronized void start() {
+        samples = activeSum = saturatedSamples = 0;
+        maxActive = maxPending = 0;
+        task = scheduler.scheduleAtFixedRate(this::sample, 0, PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized PoolStats stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        return new PoolStats(
+                maxPoolSize,
+                maxActive,
+                samples == 0 ? 0 : (double) activeSum / samples,
+                maxPending,
+                samples == 0 ? 0 : (double) saturatedSamples / samples);
+    }
+
+    private synchronized void sample() {
+        int active = pool.getActiveConnections();
+        int pending = pool.getThreadsAwaitingConnection();
+        samples++;
+        activeSum += active;
+        maxActive = Math.max(maxActive, active);
+        maxPending = Math.max(maxPending, pending);
+        if (active >= maxPoolSize || pending > 0) {
+            saturatedSamples++;
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * @param saturation доля замеров, когда все соединения заняты или есть ожидающие потоки
+     */
+    record PoolStats(int poolSize, int maxActive, double meanActive, int maxPending, double saturation) {}
+}
@@ -0,0 +1,285 @@
+package com.example.loadtest;
+
+import com.example.portal.Application;
+import com.example.portal.auth.config.JwtTokenProvider;
+import com.example.portal.auth.entity.User;
+import com.example.portal.auth.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Нагрузочный прогон эндпоинтов {@code /workflow/run}, {@code /api/chat} и {@code /api/usecase/decomposition}.
+ * <p>
+ * Приложение поднимается в этом же процессе на случайном порту, с заглушкой LLM ({@link StubChatModel})
+ * и встроенным PostgreSQL (или внешней БД из {@code loadTestJdbcUrl}). Для каждого сценария и уровня
+ * параллелизма печатается пропускная способность, p50/p95/p99 и загрузка пула соединений;
+ * полный отчёт пишется в JSON.
+ * <p>
+ * Запуск: {@code ./gradlew loadTest -PloadTestScenarios=chat,workflow -PloadTestConcurrency=1,8,32}.
+ * Внешняя БД вместо встроенной: {@code -PloadTestJdbcUrl=... -PloadTestJdbcUser=... -PloadTestJdbcPassword=...}.
+ */
+public final class LoadTestRunner {
+
+    private static final String NARRATIVE = """
+            Пользователь открывает статью AlfaBook и нажимает «Обратная связь». Он вводит вопрос \
+            (до 5000 символов), прикрепляет до 10 файлов и отправляет его. Редактор получает уведомление, \
+            отвечает на вопрос, статус вопроса меняется на «Отвечен», пользователь видит ответ в своём кабинете.""";
+
+    private final ObjectMapper json = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        new LoadTestRunner().run(LoadTestSettings.fromSystemProperties());
+        System.exit(0);
+    }
+
+    void run(LoadTestSettings settings) throws Exception {
+        EmbeddedPostgres embedded = null;
+        String jdbcUrl = settings.jdbcUrl();
+        String user = settings.jdbcUser();
+        String password = settings.jdbcPassword();
+        if (jdbcUrl.isEmpty()) {
+            embedded = EmbeddedPostgres.builder().start();
+            jdbcUrl = embedded.getJdbcUrl("postgres", "postgres");
+            user = "postgres";
+            password = "postgres";
+        }
+
+        StubChatModel llm = new StubChatModel(settings.llmLatency(), settings.responseChars());
+        try (ConfigurableApplicationContext app = startApplication(settings, llm, jdbcUrl, user, password)) {
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            String token = issueToken(app);
+            HikariDataSource dataSource = app.getBean(DataSource.class).unwrap(HikariDataSource.class);
+
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build();
+            Requests requests = new Requests(URI.create("http://localhost:" + port), token);
+
+            List<String> seeded = settings.scenarios().contains("decomposition")
+                    || settings.scenarios().contains("sessions")
+                    ? seedCompletedSessions(http, requests, settings.seedSessions())
+                    : List.of();
+
+            List<ScenarioDriver.ScenarioResult> results = new ArrayList<>();
+            try (ConnectionPoolSampler sampler = new ConnectionPoolSampler(
+                    dataSource.getHikariPoolMXBean(), dataSource.getMaximumPoolSize())) {
+                ScenarioDriver driver = new ScenarioDriver(http, sampler);
+                for (String name : settings.scenarios()) {
+                    ScenarioDriver.Scenario scenario = scenario(name, requests, seeded, settings.useCasesPerCall());
+                    for (int concurrency : settings.concurrency()) {
+                        ScenarioDriver.ScenarioResult result =
+                                driver.run(scenario, concurrency, settings.warmup(), settings.duration());
+                        results.add(result);
+                        System.out.println(format(result));
+                    }
+                }
+            }
+
+            writeReport(settings, results, llm.calls());
+        } finally {
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(LoadTestSettings settings, ChatModel llm,
+                                                                   String jdbcUrl, String user, String password) {
+        Map<String, Object> props = new LinkedHashMap<>();
+        props.put("server.port", 0);
+        props.put("spring.main.banner-mode", "off");
+        props.put("spring.datasource.url", jdbcUrl);
+        props.put("spring.datasource.username", user);
+        props.put("spring.datasource.password", password);
+        props.put("spring.datasource.hikari.maximum-pool-size", settings.poolSize());
+        // Ключ нужен только автоконфигурации OpenAI; все вызовы уходят в заглушку
+        props.put("spring.ai.openai.api-key", "loadtest");
+        props.put("app.llm-provider", "OPENAI");
+        props.put("app.vector-store-provider", "OPENAI");
+        props.put("app.openai.vector-store-id", "");
+        props.put("app.llm-limiter.enabled", settings.llmLimiter());
+        // Сценарий workflow шлёт один и тот же narrative: с мемо шагов LLM вызывалась бы только в первом запросе
+        props.put("app.step-memo.enabled", false);
+        props.put("logging.level.root", "WARN");
+
+        // Аргументами командной строки, а не default properties: иначе их перекроет application.yml
+        String[] args = props.entrySet().stream()
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(Application.class)
+                .initializers(ctx -> ((GenericApplicationContext) ctx).registerBean(
+                        "loadTestChatModel", ChatModel.class, () -> llm, bd -> bd.setPrimary(true)))
+                .run(args);
+    }
+
+    private static String issueToken(ConfigurableApplicationContext app) {
+        User admin = app.getBean(UserRepository.class).findByUsernameAndDeletedAtIsNull("admin")
+                .orElseThrow(() -> new IllegalStateException("Default user 'admin' not found"));
+        return app.getBean(JwtTokenProvider.class).generateToken(admin.getUsername(), admin.getId());
+    }
+
+    /**
+     * Декомпозиции нужна завершённая сессия с моделями прецедентов и MVC:
+     * запускаем workflow до паузы на ревью и возобновляем до конца.
+     */
+    private List<String> seedCompletedSessions(HttpClient http, Requests requests, int count) throws Exception {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            JsonNode paused = send(http, requests.workflowRun());
+            String requestId = paused.path("requestId").asText();
+            send(http, requests.post("/workflow/resume", Map.of("requestId", requestId)));
+            ids.add(requestId);
+        }
+        return ids;
+    }
+
+    private JsonNode send(HttpClient http, HttpRequest request) throws Exception {
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException(request.uri() + " -> " + response.statusCode() + ": " + response.body());
+        }
+        return json.readTree(response.body());
+    }
+
+    private static ScenarioDriver.Scenario scenario(String name, Requests requests, List<String> sessions,
+                                                    int useCasesPerCall) {
+        return switch (name) {
+            case "chat" -> new ScenarioDriver.Scenario(name,
+                    () -> requests.post("/api/chat", Map.of(
+                            "message", "Какие сущности нужны для обратной связи по статье?",
+                            "history", List.of())),
+                    body -> true);
+            case "workflow" -> new ScenarioDriver.Scenario(name, requests::workflowRun, body -> true);
+            case "decomposition" -> {
+                if (sessions.isEmpty()) {
+                    throw new IllegalStateException("No seeded sessions for decomposition");
+                }
+                yield new ScenarioDriver.Scenario(name,
+                        () -> {
+                            ThreadLocalRandom random = ThreadLocalRandom.current();
+                            List<Map<String, String>> useCases = new ArrayList<>();
+                            for (int u = 0; u < useCasesPerCall; u++) {
+                                useCases.add(Map.of("alias", "useCase" + u, "name", "Отправить вопрос " + u));
+                            }
+                            return requests.post("/api/usecase/decomposition", Map.of(
+                                    "requestId", sessions.get(random.nextInt(sessions.size())),
+                                    "useCases", useCases));
+                        },
+                        body -> !body.contains("\"success\":false"));
+            }
+            // Список сессий: первая страница или страница по курсору из предыдущего ответа
+            case "sessions" -> {
+                AtomicReference<String> cursor = new AtomicReference<>();
+                yield new ScenarioDriver.Scenario(name,
+                        () -> {
+                            String next = cursor.get();
+                            return requests.get("/workflow/sessions?limit=20"
+                                    + (next == null ? "" : "&cursor=" + next));
+                        },
+                        body -> {
+                            String marker = "\"nextCursor\":\"";
+                            int start = body.indexOf(marker);
+                            cursor.set(start < 0 ? null : body.substring(start + marker.length(),
+                                    body.indexOf('"', start + marker.length())));
+                            return body.contains("\"items\"");
+                        });
+            }
+            default -> throw new IllegalArgumentException("Unknown scenario: " + name
+                    + " (expected chat, workflow, decomposition, sessions)");
+        };
+    }
+
+    private static String format(ScenarioDriver.ScenarioResult r) {
+        return String.format(Locale.ROOT,
+                "%-14s c=%-4d req=%-7d err=%-5d %8.1f req/s  p50=%8.1f ms  p95=%8.1f ms  p99=%8.1f ms  max=%8.1f ms"
+                        + "  pool: active max=%d/%d mean=%.1f, waiting max=%d, saturated=%.0f%%",
+                r.scenario(), r.concurrency(), r.requests(), r.errors(), r.throughput(),
+                r.p50Ms(), r.p95Ms(), r.p99Ms(), r.maxMs(),
+                r.pool().maxActive(), r.pool().poolSize(), r.pool().meanActive(), r.pool().maxPending(),
+                r.pool().saturation() * 100);
+    }
+
+    private void writeReport(LoadTestSettings settings, List<ScenarioDriver.ScenarioResult> results,
+                             long llmCalls) throws Exception {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().toString());
+        report.put("durationSec", settings.duration().toSeconds());
+        report.put("warmupSec", settings.warmup().toSeconds());
+        report.put("llmLatency", settings.llmLatency());
+        report.put("poolSize", settings.poolSize());
+        report.put("llmCalls", llmCalls);
+        report.put("results", results);
+
+        Files.createDirectories(settings.reportFile().toAbsolutePath().getParent());
+        json.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValue(settings.reportFile().toFile(), report);
+        System.out.println("Report: " + settings.reportFile().toAbsolutePath());
+    }
+
+    /**
+     * Построение HTTP-запросов с JWT администратора.
+     */
+    private final class Requests {
+        private final URI base;
+        private final String token;
+
+        Requests(URI base, String token) {
+            this.base = base;
+            this.token = token;
+        }
+
+        HttpRequest workflowRun() {
+            return post("/workflow/run", Map.of(
+                    "narrative", NARRATIVE,
+                    "goal", "Построить доменную модель обратной связи",
+                    "task", "Обратная связь по статьям AlfaBook"));
+        }
+
+        HttpRequest get(String path) {
+            return HttpRequest.newBuilder(base.resolve(path))
+                    .timeout(Duration.ofMinutes(5))
+                    .header("Authorization", "Bearer " + token)
+                    .GET()
+                    .build();
+        }
+
+        HttpRequest post(String path, Object body) {
+            try {
+                return HttpRequest.newBuilder(base.resolve(path))
+                        .timeout(Duration.ofMinutes(5))
+                        .header("Content-Type", "application/json")
+                        .header("Authorization", "Bearer " + token)
+                        .POST(HttpRequest.BodyPublishers.ofString(json.writeValueAsString(body)))
+                        .build();
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Failed to serialize request body", e);
+            }
+        }
+    }
+}
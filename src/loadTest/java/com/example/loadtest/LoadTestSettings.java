@@ -0,0 +1,81 @@
+package com.example.loadtest;
+
+import com.example.portal.shared.llm.SyntheticLatency;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Параметры прогона. Читаются из системных свойств {@code loadTest*}, которые задача
+ * {@code ./gradlew loadTest} пробрасывает из одноимённых свойств проекта ({@code -PloadTestScenarios=chat}).
+ *
+ * @param scenarios        сценарии: chat, workflow, decomposition, sessions
+ * @param concurrency      уровни параллелизма (число одновременных клиентов), прогоняются по очереди
+ * @param duration         длительность замера на каждом уровне
+ * @param warmup           прогрев перед замером (результаты не учитываются)
+ * @param llmLatency       задержка заглушки LLM
+ * @param responseChars    размер ответа заглушки LLM (символов)
+ * @param poolSize         размер пула соединений Hikari
+ * @param llmLimiter       включить ограничитель вызовов LLM (по умолчанию выключен: заглушка не ограничена
+ *                         провайдером, и лимиты в минуту исказили бы пропускную способность приложения)
+ * @param seedSessions     сколько завершённых workflow-сессий подготовить для декомпозиции
+ * @param useCasesPerCall  сколько Use Case декомпозируется в одном запросе
+ * @param jdbcUrl          внешняя БД; пусто — встроенный PostgreSQL
+ * @param reportFile       куда записать JSON-отчёт
+ */
+public record LoadTestSettings(
+        List<String> scenarios,
+        List<Integer> concurrency,
+        Duration duration,
+        Duration warmup,
+        SyntheticLatency llmLatency,
+        int responseChars,
+        int poolSize,
+        boolean llmLimiter,
+        int seedSessions,
+        int useCasesPerCall,
+        String jdbcUrl,
+        String jdbcUser,
+        String jdbcPassword,
+        Path reportFile
+) {
+
+    public static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                list("loadTestScenarios", "chat,workflow,decomposition"),
+                list("loadTestConcurrency", "1,4,16").stream().map(Integer::parseInt).toList(),
+                Duration.ofSeconds(Long.parseLong(prop("loadTestDurationSec", "20"))),
+                Duration.ofSeconds(Long.parseLong(prop("loadTestWarmupSec", "5"))),
+                SyntheticLatency.parse(
+                        prop("loadTestLlmLatency", "LOGNORMAL"),
+                        Long.parseLong(prop("loadTestLlmFixedMs", "500")),
+                        Long.parseLong(prop("loadTestLlmMinMs", "200")),
+                        Long.parseLong(prop("loadTestLlmMaxMs", "1500")),
+                        Long.parseLong(prop("loadTestLlmMedianMs", "600")),
+                        Double.parseDouble(prop("loadTestLlmSigma", "0.6")),
+                        Double.parseDouble(prop("loadTestLlmScale", "1.0"))),
+                Integer.parseInt(prop("loadTestResponseChars", "4000")),
+                Integer.parseInt(prop("loadTestPoolSize", "10")),
+                Boolean.parseBoolean(prop("loadTestLlmLimiter", "false")),
+                Integer.parseInt(prop("loadTestSeedSessions", "4")),
+                Integer.parseInt(prop("loadTestUseCasesPerCall", "3")),
+                prop("loadTestJdbcUrl", ""),
+                prop("loadTestJdbcUser", "postgres"),
+                prop("loadTestJdbcPassword", "postgres"),
+                Path.of(prop("loadTestReport", "build/reports/loadtest/results.json")));
+    }
+
+    private static String prop(String name, String defaultValue) {
+        String value = System.getProperty(name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    private static List<String> list(String name, String defaultValue) {
+        return Arrays.stream(prop(name, defaultValue).split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toList();
+    }
+}
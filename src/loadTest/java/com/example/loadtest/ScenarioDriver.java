@@ -0,0 +1,112 @@
+package com.example.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Закрытая модель нагрузки: {@code concurrency} клиентов на виртуальных потоках
+ * шлют запросы друг за другом, пока не истечёт время. Задержки пишутся в HdrHistogram.
+ */
+class ScenarioDriver {
+
+    private static final long MAX_TRACKABLE_MICROS = Duration.ofMinutes(10).toNanos() / 1000;
+
+    private final HttpClient http;
+    private final ConnectionPoolSampler poolSampler;
+
+    ScenarioDriver(HttpClient http, ConnectionPoolSampler poolSampler) {
+        this.http = http;
+        this.poolSampler = poolSampler;
+    }
+
+    /**
+     * Сценарий: фабрика запросов и проверка ответа (помимо статуса 2xx).
+     */
+    record Scenario(String name, Supplier<HttpRequest> requests, Predicate<String> bodyOk) {}
+
+    ScenarioResult run(Scenario scenario, int concurrency, Duration warmup, Duration duration) throws Exception {
+        if (!warmup.isZero()) {
+            drive(scenario, concurrency, warmup);
+        }
+        poolSampler.start();
+        Measurement measurement = drive(scenario, concurrency, duration);
+        ConnectionPoolSampler.PoolStats pool = poolSampler.stop();
+
+        Histogram h = measurement.histogram;
+        double seconds = measurement.elapsedNanos / 1e9;
+        return new ScenarioResult(
+                scenario.name(),
+                concurrency,
+                h.getTotalCount(),
+                measurement.errors,
+                seconds == 0 ? 0 : h.getTotalCount() / seconds,
+                millis(h.getValueAtPercentile(50)),
+                millis(h.getValueAtPercentile(95)),
+                millis(h.getValueAtPercentile(99)),
+                millis(h.getMaxValue()),
+                pool);
+    }
+
+    private Measurement drive(Scenario scenario, int concurrency, Duration duration) throws Exception {
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+
+        List<Future<Histogram>> clients = new ArrayList<>(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrency; c++) {
+                clients.add(executor.submit(() -> client(scenario, deadline, errors)));
+            }
+            Histogram total = newHistogram();
+            for (Future<Histogram> client : clients) {
+                total.add(client.get());
+            }
+            return new Measurement(total, errors.get(), System.nanoTime() - start);
+        }
+    }
+
+    private Histogram client(Scenario scenario, long deadline, AtomicLong errors) {
+        Histogram histogram = newHistogram();
+        while (System.nanoTime() < deadline) {
+            long begin = System.nanoTime();
+            boolean ok;
+            try {
+                HttpResponse<String> response = http.send(scenario.requests().get(), HttpResponse.BodyHandlers.ofString());
+                ok = response.statusCode() / 100 == 2 && scenario.bodyOk().test(response.body());
+            } catch (Exception e) {
+                ok = false;
+            }
+            histogram.recordValue(Math.min((System.nanoTime() - begin) / 1000, MAX_TRACKABLE_MICROS));
+            if (!ok) {
+                errors.incrementAndGet();
+            }
+        }
+        return histogram;
+    }
+
+    private static Histogram newHistogram() {
+        return new Histogram(MAX_TRACKABLE_MICROS, 3);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private record Measurement(Histogram histogram, long errors, long elapsedNanos) {}
+
+    record ScenarioResult(String scenario, int concurrency, long requests, long errors, double throughput,
+                          double p50Ms, double p95Ms, double p99Ms, double maxMs,
+                          ConnectionPoolSampler.PoolStats pool) {}
+}
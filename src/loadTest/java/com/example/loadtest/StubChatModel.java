@@ -0,0 +1,103 @@
+package com.example.loadtest;
+
+import com.example.portal.shared.llm.SyntheticLatency;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Заглушка LLM для нагрузочных прогонов: без сети, с задержкой по {@link SyntheticLatency}.
+ * <p>
+ * Промпты ревьюера требуют JSON-массив замечаний — на них возвращается корректный JSON,
+ * на уточнение модели правкой — пустая правка, на все остальные — PlantUML с прецедентами и MVC-пакетами, чтобы конвейер (фильтрация моделей,
+ * декомпозиция) работал с данными реалистичного размера.
+ */
+class StubChatModel implements ChatModel {
+
+    static final String MODEL_NAME = "loadtest-stub";
+
+    private final SyntheticLatency latency;
+    private final String modelResponse;
+    private final String issuesResponse;
+    private final String patchResponse = """
+            {"removeElements": [], "addElements": [], "changeElements": [], "removeRelations": [], "addRelations": []}""";
+    private final AtomicLong calls = new AtomicLong();
+
+    StubChatModel(SyntheticLatency latency, int responseChars) {
+        this.latency = latency;
+        this.modelResponse = plantUml(responseChars);
+        this.issuesResponse = """
+                [{"id": "I-1", "title": "Нет связи владения", "severity": "minor", "suggestion": "добавить связь"}]""";
+    }
+
+    long calls() {
+        return calls.get();
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        calls.incrementAndGet();
+        String text = promptText(prompt);
+        String answer = text.contains("removeElements") ? patchResponse
+                : text.contains("JSON") ? issuesResponse : modelResponse;
+
+        long delay = latency.nextDelayMs(0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while simulating LLM latency", e);
+            }
+        }
+        return new ChatResponse(
+                List.of(new Generation(new AssistantMessage(answer))),
+                ChatResponseMetadata.builder()
+                        .model(MODEL_NAME)
+                        .usage(new DefaultUsage(text.length() / 4, answer.length() / 4))
+                        .build());
+    }
+
+    private static String promptText(Prompt prompt) {
+        StringBuilder sb = new StringBuilder();
+        for (Message message : prompt.getInstructions()) {
+            if (message.getText() != null) {
+                sb.append(message.getText()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Модель, пригодная и как доменная, и как модель прецедентов, и как MVC:
+     * алиасы useCase0..N совпадают с теми, что запрашивает сценарий декомпозиции.
+     */
+    static String plantUml(int approxChars) {
+        StringBuilder sb = new StringBuilder(approxChars + 512);
+        sb.append("@startuml\nleft to right direction\nactor \"Пользователь\" as user\n");
+        int useCases = Math.max(4, approxChars / 400);
+        for (int u = 0; u < useCases; u++) {
+            sb.append("usecase \"Отправить вопрос ").append(u).append("\" as useCase").append(u).append('\n');
+            sb.append("user --> useCase").append(u).append('\n');
+        }
+        for (int u = 0; u < useCases; u++) {
+            sb.append("package \"useCase").append(u).append("\" {\n")
+                    .append("    boundary \"Экран вопроса ").append(u).append("\" as b").append(u).append('\n')
+                    .append("    control \"Отправить ").append(u).append("\" as c").append(u).append('\n')
+                    .append("    entity \"Вопрос ").append(u).append("\" as e").append(u).append('\n')
+                    .append("    b").append(u).append(" --> c").append(u).append('\n')
+                    .append("    c").append(u).append(" --> e").append(u).append('\n')
+                    .append("}\n");
+        }
+        sb.append("@enduml\n");
+        return sb.toString();
+    }
+}
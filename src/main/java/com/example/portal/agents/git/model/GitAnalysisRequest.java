@@ -1,8 +1,10 @@
 package com.example.portal.agents.git.model;
 
+import java.util.List;
+
 public record GitAnalysisRequest(
         String repositoryUrl,
         String branch,
-        String accessToken  // Опционально, для приватных репозиториев
+        String accessToken,  // Опционально, для приватных репозиториев
+        List<String> entryPoints  // Опционально, дополнительные точки входа (glob-шаблоны путей)
 ) {}
-
@@ -0,0 +1,153 @@
+package com.example.portal.agents.git.service;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Компактный граф зависимостей между файлами репозитория.
+ * <p>
+ * Каждый файл получает целочисленный индекс (позиция в исходном списке файлов),
+ * рёбра хранятся в CSR-формате (offsets + targets), поэтому граф на 100k файлов
+ * занимает несколько мегабайт и обходится без создания объектов на каждую вершину.
+ */
+public final class FileDependencyGraph {
+
+    private final int size;
+    private final int[] offsets;  // offsets[i]..offsets[i+1] — исходящие рёбра вершины i
+    private final int[] targets;
+    private final int[] inDegree;
+
+    private FileDependencyGraph(int size, int[] offsets, int[] targets, int[] inDegree) {
+        this.size = size;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.inDegree = inDegree;
+    }
+
+    public static Builder builder(int size) {
+        return new Builder(size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Количество входящих рёбер (сколько файлов ссылаются на данный).
+     */
+    public int inDegree(int node) {
+        return inDegree[node];
+    }
+
+    /**
+     * Возвращает прямых потомков вершины (файлы, на которые она ссылается).
+     */
+    public int[] successors(int node) {
+        return Arrays.copyOfRange(targets, offsets[node], offsets[node + 1]);
+    }
+
+    /**
+     * Вычисляет множество вершин, достижимых из корней (включая сами корни).
+     * Обход в глубину на int-стеке, посещённые вершины отмечаются в BitSet.
+     */
+    public BitSet reachableFrom(BitSet roots) {
+        BitSet visited = new BitSet(size);
+        int[] stack = new int[Math.max(16, roots.cardinality())];
+        int top = 0;
+
+        for (int root = roots.nextSetBit(0); root >= 0 && root < size; root = roots.nextSetBit(root + 1)) {
+            visited.set(root);
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = root;
+        }
+
+        while (top > 0) {
+            int node = stack[--top];
+            for (int e = offsets[node], end = offsets[node + 1]; e < end; e++) {
+                int next = targets[e];
+                if (!visited.get(next)) {
+                    visited.set(next);
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top++] = next;
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Накопитель рёбер. Рёбра складываются в два растущих int-массива,
+     * при сборке раскладываются по вершинам подсчётом (counting sort) без дубликатов.
+     */
+    public static final class Builder {
+        private final int size;
+        private int[] from = new int[64];
+        private int[] to = new int[64];
+        private int count;
+
+        private Builder(int size) {
+            this.size = size;
+        }
+
+        public Builder addEdge(int source, int target) {
+            if (source < 0 || target < 0 || source >= size || target >= size || source == target) {
+                return this;
+            }
+            if (count == from.length) {
+                from = Arrays.copyOf(from, count * 2);
+                to = Arrays.copyOf(to, count * 2);
+            }
+            from[count] = source;
+            to[count] = target;
+            count++;
+            return this;
+        }
+
+        public FileDependencyGraph build() {
+            int[] offsets = new int[size + 1];
+            for (int i = 0; i < count; i++) {
+                offsets[from[i] + 1]++;
+            }
+            for (int i = 0; i < size; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+
+            int[] cursor = Arrays.copyOf(offsets, size);
+            int[] targets = new int[count];
+            for (int i = 0; i < count; i++) {
+                targets[cursor[from[i]]++] = to[i];
+            }
+
+            // Сортируем и убираем дубликаты внутри каждой вершины, сжимая массив на месте
+            int[] compactOffsets = new int[size + 1];
+            int write = 0;
+            for (int node = 0; node < size; node++) {
+                int start = offsets[node];
+                int end = offsets[node + 1];
+                Arrays.sort(targets, start, end);
+                compactOffsets[node] = write;
+                for (int e = start; e < end; e++) {
+                    if (e == start || targets[e] != targets[e - 1]) {
+                        targets[write++] = targets[e];
+                    }
+                }
+            }
+            compactOffsets[size] = write;
+
+            int[] compactTargets = Arrays.copyOf(targets, write);
+            int[] inDegree = new int[size];
+            for (int target : compactTargets) {
+                inDegree[target]++;
+            }
+            return new FileDependencyGraph(size, compactOffsets, compactTargets, inDegree);
+        }
+    }
+}
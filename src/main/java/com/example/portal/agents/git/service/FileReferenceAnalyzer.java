@@ -2,19 +2,26 @@ package com.example.portal.agents.git.service;
 
 import com.example.portal.agents.git.model.GitAnalysisResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Анализатор ссылок на файлы в коде.
  * Находит импорты, require, include и другие ссылки на файлы.
+ * <p>
+ * По найденным ссылкам строится граф зависимостей ({@link FileDependencyGraph}),
+ * ссылки разрешаются с учётом языка ({@link ModuleResolver}). Неиспользуемыми считаются
+ * файлы, недостижимые из точек входа — так находятся и циклы «мёртвых» файлов,
+ * которые ссылаются только друг на друга.
  */
 @Slf4j
 @Service
@@ -22,16 +29,16 @@ public class FileReferenceAnalyzer {
     
     // Паттерны для различных типов ссылок на файлы
     private static final List<ReferencePattern> REFERENCE_PATTERNS = List.of(
-        // Java imports
-        new ReferencePattern("import", Pattern.compile("^\\s*import\\s+([\\w.]+)\\s*;", Pattern.MULTILINE), "java"),
-        // JavaScript/TypeScript imports
-        new ReferencePattern("import", Pattern.compile("import\\s+.*?from\\s+['\"]([^'\"]+)['\"]", Pattern.MULTILINE), "js", "ts", "jsx", "tsx"),
+        // Java imports (включая static и wildcard)
+        new ReferencePattern("import", Pattern.compile("^\\s*import\\s+(?:static\\s+)?([\\w.]+(?:\\.\\*)?)\\s*;", Pattern.MULTILINE), "java"),
+        // JavaScript/TypeScript imports и re-export
+        new ReferencePattern("import", Pattern.compile("(?:import|export)\\s+(?:[^'\";]*?\\s+from\\s+)?['\"]([^'\"]+)['\"]", Pattern.MULTILINE), "js", "ts", "jsx", "tsx", "mjs", "cjs", "vue"),
+        // Динамический import()
+        new ReferencePattern("import", Pattern.compile("import\\(\\s*['\"]([^'\"]+)['\"]\\s*\\)", Pattern.MULTILINE), "js", "ts", "jsx", "tsx", "mjs", "cjs", "vue"),
         // JavaScript require
-        new ReferencePattern("require", Pattern.compile("require\\(['\"]([^'\"]+)['\"]\\)", Pattern.MULTILINE), "js", "ts"),
+        new ReferencePattern("require", Pattern.compile("require\\(['\"]([^'\"]+)['\"]\\)", Pattern.MULTILINE), "js", "ts", "jsx", "tsx", "mjs", "cjs"),
         // PHP include/require
         new ReferencePattern("include", Pattern.compile("(?:include|require)(?:_once)?\\s*['\"]([^'\"]+)['\"]", Pattern.MULTILINE), "php"),
-        // Python imports
-        new ReferencePattern("import", Pattern.compile("^\\s*(?:from\\s+)?import\\s+([\\w.]+)", Pattern.MULTILINE), "py"),
         // C/C++ includes
         new ReferencePattern("include", Pattern.compile("#include\\s+[<\"]([^>\"]+)[>\"]", Pattern.MULTILINE), "c", "cpp", "h", "hpp"),
         // HTML/CSS links
@@ -41,6 +48,56 @@ public class FileReferenceAnalyzer {
         // JSON references (в некоторых конфигах)
         new ReferencePattern("path", Pattern.compile("['\"]([^'\"]+\\.(?:json|yaml|yml|properties|conf|config))['\"]", Pattern.MULTILINE), "json", "yaml", "yml")
     );
+
+    // Python: import a.b, c.d as e — каждый модуль списка
+    private static final Pattern PYTHON_IMPORT = Pattern.compile(
+            "^[ \\t]*import[ \\t]+([\\w.]+(?:[ \\t]+as[ \\t]+\\w+)?(?:[ \\t]*,[ \\t]*[\\w.]+(?:[ \\t]+as[ \\t]+\\w+)?)*)",
+            Pattern.MULTILINE);
+
+    // Python: from a.b import c, d — модуль обязателен, c/d могут быть как подмодулями, так и символами
+    private static final Pattern PYTHON_FROM_IMPORT = Pattern.compile(
+            "^\\s*from\\s+(\\.*[\\w.]*)\\s+import\\s+\\(?[ \\t]*([\\w \\t,*]+)", Pattern.MULTILINE);
+
+    // Java: пакет файла, полные имена классов прямо в коде и простые имена типов
+    private static final Pattern JAVA_PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+    private static final Pattern JAVA_QUALIFIED_NAME = Pattern.compile("\\b((?:[a-z_]\\w*\\.){2,}[A-Z]\\w*)");
+    private static final Pattern JAVA_TYPE_NAME = Pattern.compile("\\b([A-Z]\\w*)\\b");
+
+    // Признаки точки входа в содержимом файла
+    private static final Pattern JAVA_ENTRY_POINT = Pattern.compile(
+            "static\\s+void\\s+main\\s*\\(|@(?:SpringBootApplication|Component|Service|Repository|Controller|RestController|Configuration|Entity|Test)\\b");
+    private static final Pattern PYTHON_ENTRY_POINT = Pattern.compile("__name__\\s*==\\s*['\"]__main__['\"]");
+
+    /**
+     * Точки входа по умолчанию: страницы, типовые main/index-модули, тесты, конфигурация сборки.
+     * Переопределяются через app.git-analyser.entry-points.
+     */
+    static final List<String> DEFAULT_ENTRY_POINTS = List.of(
+            "**/*.{html,htm}",
+            "**/index.{js,jsx,ts,tsx,mjs,cjs}",
+            "**/main.{js,jsx,ts,tsx,mjs,py,c,cpp,go,rs}",
+            "**/{app,server}.{js,jsx,ts,tsx,py}",
+            "**/{__main__,setup,manage,conftest,wsgi,asgi}.py",
+            "**/{test,tests,__tests__}/**",
+            "**/src/test/**",
+            "**/{test_*,*_test}.py",
+            "**/*.{test,spec}.{js,jsx,ts,tsx}",
+            "**/*{Test,Tests}.java",
+            "**/*.{json,yml,yaml,xml,properties,toml,ini,cfg,conf,gradle,kts,sql,sh,bat,cmd}",
+            "**/{Dockerfile,Makefile}"
+    );
+
+    private final List<String> configuredEntryPoints;
+
+    public FileReferenceAnalyzer(
+            @Value("${app.git-analyser.entry-points:}") List<String> configuredEntryPoints
+    ) {
+        List<String> patterns = configuredEntryPoints == null ? List.of() : configuredEntryPoints.stream()
+                .filter(s -> s != null && !s.isBlank())
+                .map(String::trim)
+                .toList();
+        this.configuredEntryPoints = patterns.isEmpty() ? DEFAULT_ENTRY_POINTS : patterns;
+    }
     
     /**
      * Анализирует репозиторий и находит неиспользуемые файлы и битые ссылки.
@@ -49,46 +106,100 @@ public class FileReferenceAnalyzer {
             Path repoPath, 
             List<String> allFiles,
             GitRepositoryService gitService) throws IOException {
+        return analyzeRepository(repoPath, allFiles, gitService, List.of());
+    }
+
+    /**
+     * Анализирует репозиторий с дополнительными точками входа (glob-шаблоны путей).
+     */
+    public GitAnalysisResponse.AnalysisResult analyzeRepository(
+            Path repoPath,
+            List<String> allFiles,
+            GitRepositoryService gitService,
+            List<String> extraEntryPoints) throws IOException {
         
         log.info("Starting file reference analysis for {} files", allFiles.size());
         
-        // Строим карту всех файлов (нормализованные пути)
-        Map<String, String> fileMap = buildFileMap(allFiles);
-        
-        // Находим все ссылки на файлы
-        Map<String, Set<String>> fileReferences = new HashMap<>();
-        List<GitAnalysisResponse.BrokenReference> brokenReferences = new ArrayList<>();
+        int fileCount = allFiles.size();
+        String[] javaPackages = new String[fileCount];
+        List<List<RawReference>> referencesByFile = new ArrayList<>(Collections.nCopies(fileCount, null));
+        Map<Integer, Set<String>> javaTypeNames = new HashMap<>();
+        BitSet contentEntryPoints = new BitSet(fileCount);
         
         int analyzedFiles = 0;
         
-        for (String filePath : allFiles) {
-            if (shouldAnalyzeFile(filePath)) {
-                analyzedFiles++;
-                String content = gitService.readFile(repoPath, filePath);
-                if (content != null) {
-                    Set<String> references = extractReferences(filePath, content);
-                    fileReferences.put(filePath, references);
-                    
-                    // Проверяем, существуют ли ссылаемые файлы
-                    for (String ref : references) {
-                        if (!fileExists(ref, fileMap)) {
-                            brokenReferences.add(new GitAnalysisResponse.BrokenReference(
-                                    filePath,
-                                    ref,
-                                    findLineNumber(content, ref),
-                                    detectReferenceType(filePath, ref)
-                            ));
-                        }
-                    }
+        // 1) Один проход по содержимому: сырые ссылки, пакеты Java, признаки точек входа
+        for (int i = 0; i < fileCount; i++) {
+            String filePath = allFiles.get(i);
+            if (!shouldAnalyzeFile(filePath)) {
+                continue;
+            }
+            analyzedFiles++;
+            String content = gitService.readFile(repoPath, filePath);
+            if (content == null) {
+                continue;
+            }
+            
+            String extension = getFileExtension(filePath).toLowerCase();
+            referencesByFile.set(i, extractReferences(extension, content));
+            
+            if (extension.equals("java")) {
+                Matcher pkg = JAVA_PACKAGE.matcher(content);
+                javaPackages[i] = pkg.find() ? pkg.group(1) : null;
+                javaTypeNames.put(i, extractJavaTypeNames(content));
+                if (JAVA_ENTRY_POINT.matcher(content).find()) {
+                    contentEntryPoints.set(i);
+                }
+            } else if (extension.equals("py") && PYTHON_ENTRY_POINT.matcher(content).find()) {
+                contentEntryPoints.set(i);
+            }
+        }
+        
+        // 2) Разрешаем ссылки в рёбра графа
+        ModuleResolver resolver = new ModuleResolver(allFiles, javaPackages);
+        FileDependencyGraph.Builder graphBuilder = FileDependencyGraph.builder(fileCount);
+        List<GitAnalysisResponse.BrokenReference> brokenReferences = new ArrayList<>();
+        
+        for (int i = 0; i < fileCount; i++) {
+            List<RawReference> references = referencesByFile.get(i);
+            if (references == null) {
+                continue;
+            }
+            String filePath = allFiles.get(i);
+            int source = i;
+            for (RawReference ref : references) {
+                ModuleResolver.Outcome outcome = resolver.resolve(filePath, ref.specifier(),
+                        target -> graphBuilder.addEdge(source, target));
+                if (outcome == ModuleResolver.Outcome.UNRESOLVED && !ref.optional()) {
+                    brokenReferences.add(new GitAnalysisResponse.BrokenReference(
+                            filePath,
+                            ref.specifier(),
+                            ref.lineNumber(),
+                            ref.type()
+                    ));
                 }
             }
+            Set<String> typeNames = javaTypeNames.get(i);
+            if (typeNames != null) {
+                resolver.resolveSamePackage(i, javaPackages[i], typeNames,
+                        target -> graphBuilder.addEdge(source, target));
+            }
         }
+        FileDependencyGraph graph = graphBuilder.build();
+        
+        // 3) Достижимость от точек входа
+        BitSet entryPoints = matchEntryPoints(allFiles, extraEntryPoints);
+        entryPoints.or(contentEntryPoints);
+        BitSet reachable = graph.reachableFrom(entryPoints);
+        
+        log.info("Dependency graph: {} files, {} edges, {} entry points, {} reachable",
+                graph.size(), graph.edgeCount(), entryPoints.cardinality(), reachable.cardinality());
         
         // Находим неиспользуемые файлы
         List<GitAnalysisResponse.UnusedFile> unusedFiles = findUnusedFiles(
                 allFiles, 
-                fileReferences, 
-                fileMap,
+                graph,
+                reachable,
                 repoPath
         );
         
@@ -104,134 +215,120 @@ public class FileReferenceAnalyzer {
     }
     
     /**
-     * Строит карту файлов с нормализованными путями.
+     * Извлекает все ссылки на файлы из содержимого файла (без разрешения).
      */
-    private Map<String, String> buildFileMap(List<String> allFiles) {
-        Map<String, String> fileMap = new HashMap<>();
-        for (String file : allFiles) {
-            // Добавляем файл как есть
-            fileMap.put(normalizePath(file), file);
-            // Добавляем без расширения
-            String withoutExt = removeExtension(file);
-            if (!withoutExt.equals(file)) {
-                fileMap.put(normalizePath(withoutExt), file);
-            }
-            // Добавляем только имя файла
-            String fileName = getFileName(file);
-            fileMap.put(normalizePath(fileName), file);
-        }
-        return fileMap;
-    }
-    
-    /**
-     * Извлекает все ссылки на файлы из содержимого файла.
-     */
-    private Set<String> extractReferences(String filePath, String content) {
-        Set<String> references = new HashSet<>();
-        String extension = getFileExtension(filePath);
+    private List<RawReference> extractReferences(String extension, String content) {
+        Map<String, RawReference> references = new LinkedHashMap<>();
+        LineIndex lines = new LineIndex(content);
         
         for (ReferencePattern pattern : REFERENCE_PATTERNS) {
             if (pattern.matchesExtension(extension)) {
                 Matcher matcher = pattern.pattern.matcher(content);
                 while (matcher.find()) {
                     String ref = matcher.group(1);
-                    // Нормализуем ссылку относительно текущего файла
-                    String normalizedRef = resolveReference(filePath, ref);
-                    if (normalizedRef != null) {
-                        references.add(normalizedRef);
-                    }
+                    references.putIfAbsent(ref, new RawReference(
+                            ref, pattern.type(), lines.lineAt(matcher.start(1)), false));
                 }
             }
         }
         
-        return references;
-    }
-    
-    /**
-     * Разрешает относительную ссылку в абсолютный путь относительно корня репозитория.
-     */
-    private String resolveReference(String sourceFile, String reference) {
-        // Убираем параметры запроса и якоря из URL
-        reference = reference.split("[?#]")[0];
-        
-        // Если ссылка начинается с /, это абсолютный путь
-        if (reference.startsWith("/")) {
-            return reference.substring(1);
+        if (extension.equals("py")) {
+            Matcher imports = PYTHON_IMPORT.matcher(content);
+            while (imports.find()) {
+                int line = lines.lineAt(imports.start(1));
+                for (String item : imports.group(1).split(",")) {
+                    // «a.b as c» — модуль a.b
+                    String module = item.trim().split("[ \\t]+")[0];
+                    references.putIfAbsent(module, new RawReference(module, "import", line, false));
+                }
+            }
+            Matcher matcher = PYTHON_FROM_IMPORT.matcher(content);
+            while (matcher.find()) {
+                String module = matcher.group(1);
+                int line = lines.lineAt(matcher.start(1));
+                references.putIfAbsent(module, new RawReference(module, "import", line, false));
+                // Импортируемые имена могут оказаться подмодулями пакета
+                for (String name : matcher.group(2).split("[\\s,]+")) {
+                    if (name.isEmpty() || name.equals("*") || name.equals("as")) continue;
+                    String member = module.endsWith(".") ? module + name : module + "." + name;
+                    references.putIfAbsent(member, new RawReference(member, "import", line, true));
+                }
+            }
+        } else if (extension.equals("java")) {
+            // Полные имена классов прямо в коде (com.example.Foo.BAR) — без импорта
+            Matcher matcher = JAVA_QUALIFIED_NAME.matcher(content);
+            while (matcher.find()) {
+                String name = matcher.group(1);
+                references.putIfAbsent(name, new RawReference(name, "import", lines.lineAt(matcher.start(1)), true));
+            }
         }
         
-        // Если ссылка начинается с ./, ../ или просто имя файла
-        String sourceDir = getDirectory(sourceFile);
-        Path sourcePath = Path.of(sourceDir);
-        Path refPath = sourcePath.resolve(reference).normalize();
-        
-        // Преобразуем в строку относительно корня
-        String result = refPath.toString().replace("\\", "/");
-        
-        // Убираем ведущие точки
-        while (result.startsWith("../")) {
-            result = result.substring(3);
+        return new ArrayList<>(references.values());
+    }
+
+    private Set<String> extractJavaTypeNames(String content) {
+        Set<String> names = new HashSet<>();
+        Matcher matcher = JAVA_TYPE_NAME.matcher(content);
+        while (matcher.find()) {
+            names.add(matcher.group(1));
         }
-        
-        return result;
+        return names;
     }
     
     /**
-     * Проверяет, существует ли файл по указанному пути.
+     * Отмечает файлы, совпадающие с glob-шаблонами точек входа.
      */
-    private boolean fileExists(String reference, Map<String, String> fileMap) {
-        // Пробуем разные варианты нормализации
-        String normalized = normalizePath(reference);
-        if (fileMap.containsKey(normalized)) {
-            return true;
+    private BitSet matchEntryPoints(List<String> allFiles, List<String> extraEntryPoints) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        List<String> patterns = new ArrayList<>(configuredEntryPoints);
+        if (extraEntryPoints != null) {
+            extraEntryPoints.stream().filter(s -> s != null && !s.isBlank()).map(String::trim).forEach(patterns::add);
         }
-        
-        // Пробуем без расширения
-        String withoutExt = removeExtension(normalized);
-        if (fileMap.containsKey(withoutExt)) {
-            return true;
+        for (String pattern : patterns) {
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+            // "**/x" в glob не совпадает с файлом в корне репозитория — добавляем вариант без префикса
+            if (pattern.startsWith("**/")) {
+                matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern.substring(3)));
+            }
         }
         
-        // Пробуем только имя файла
-        String fileName = getFileName(reference);
-        if (fileMap.containsKey(normalizePath(fileName))) {
-            return true;
+        BitSet entryPoints = new BitSet(allFiles.size());
+        for (int i = 0; i < allFiles.size(); i++) {
+            Path path = Path.of(allFiles.get(i));
+            for (PathMatcher matcher : matchers) {
+                if (matcher.matches(path)) {
+                    entryPoints.set(i);
+                    break;
+                }
+            }
         }
-        
-        return false;
+        return entryPoints;
     }
     
     /**
-     * Находит неиспользуемые файлы.
+     * Находит неиспользуемые файлы — недостижимые из точек входа.
      */
     private List<GitAnalysisResponse.UnusedFile> findUnusedFiles(
             List<String> allFiles,
-            Map<String, Set<String>> fileReferences,
-            Map<String, String> fileMap,
+            FileDependencyGraph graph,
+            BitSet reachable,
             Path repoPath) throws IOException {
         
         List<GitAnalysisResponse.UnusedFile> unusedFiles = new ArrayList<>();
         
-        // Собираем все файлы, на которые есть ссылки
-        Set<String> referencedFiles = new HashSet<>();
-        for (Set<String> refs : fileReferences.values()) {
-            for (String ref : refs) {
-                String actualFile = fileMap.get(normalizePath(ref));
-                if (actualFile != null) {
-                    referencedFiles.add(actualFile);
-                }
-            }
-        }
-        
-        // Находим файлы, на которые нет ссылок
-        for (String file : allFiles) {
-            if (shouldCheckForUnused(file) && !referencedFiles.contains(file)) {
-                long fileSize = getFileSize(repoPath, file);
-                unusedFiles.add(new GitAnalysisResponse.UnusedFile(
-                        file,
-                        "No references found in codebase",
-                        fileSize
-                ));
+        for (int i = reachable.nextClearBit(0); i < allFiles.size(); i = reachable.nextClearBit(i + 1)) {
+            String file = allFiles.get(i);
+            if (!shouldCheckForUnused(file)) {
+                continue;
             }
+            long fileSize = getFileSize(repoPath, file);
+            unusedFiles.add(new GitAnalysisResponse.UnusedFile(
+                    file,
+                    graph.inDegree(i) == 0
+                            ? "No references found in codebase"
+                            : "Referenced only from unreachable files",
+                    fileSize
+            ));
         }
         
         return unusedFiles;
@@ -252,51 +349,11 @@ public class FileReferenceAnalyzer {
                !filePath.contains(".git") && !filePath.contains("node_modules");
     }
     
-    private String normalizePath(String path) {
-        return path.replace("\\", "/").toLowerCase();
-    }
-    
     private String getFileExtension(String filePath) {
         int lastDot = filePath.lastIndexOf('.');
         return lastDot > 0 ? filePath.substring(lastDot + 1) : "";
     }
     
-    private String removeExtension(String filePath) {
-        int lastDot = filePath.lastIndexOf('.');
-        return lastDot > 0 ? filePath.substring(0, lastDot) : filePath;
-    }
-    
-    private String getFileName(String filePath) {
-        int lastSlash = Math.max(filePath.lastIndexOf('/'), filePath.lastIndexOf('\\'));
-        return lastSlash >= 0 ? filePath.substring(lastSlash + 1) : filePath;
-    }
-    
-    private String getDirectory(String filePath) {
-        int lastSlash = Math.max(filePath.lastIndexOf('/'), filePath.lastIndexOf('\\'));
-        return lastSlash >= 0 ? filePath.substring(0, lastSlash) : "";
-    }
-    
-    private int findLineNumber(String content, String searchText) {
-        String[] lines = content.split("\n");
-        for (int i = 0; i < lines.length; i++) {
-            if (lines[i].contains(searchText)) {
-                return i + 1;
-            }
-        }
-        return 0;
-    }
-    
-    private String detectReferenceType(String filePath, String reference) {
-        String ext = getFileExtension(filePath).toLowerCase();
-        if (ext.equals("java")) return "import";
-        if (ext.equals("js") || ext.equals("ts")) return reference.contains("require") ? "require" : "import";
-        if (ext.equals("php")) return "include";
-        if (ext.equals("py")) return "import";
-        if (ext.equals("c") || ext.equals("cpp") || ext.equals("h")) return "include";
-        if (ext.equals("html") || ext.equals("css")) return "link";
-        return "path";
-    }
-    
     private long getFileSize(Path repoPath, String filePath) {
         try {
             Path fullPath = repoPath.resolve(filePath);
@@ -306,6 +363,40 @@ public class FileReferenceAnalyzer {
         }
     }
     
+    /**
+     * Ссылка в том виде, в каком она записана в файле. optional — ссылка может указывать
+     * не на файл (символ модуля, имя класса в коде), поэтому при неудаче не считается битой.
+     */
+    private record RawReference(String specifier, String type, int lineNumber, boolean optional) {}
+    
+    /**
+     * Номер строки по смещению в тексте (бинарный поиск по началам строк).
+     */
+    private static final class LineIndex {
+        private final String content;
+        private int[] lineStarts;
+        
+        LineIndex(String content) {
+            this.content = content;
+        }
+        
+        int lineAt(int offset) {
+            if (lineStarts == null) {
+                int count = 1;
+                for (int i = 0; i < content.length(); i++) {
+                    if (content.charAt(i) == '\n') count++;
+                }
+                lineStarts = new int[count];
+                int line = 1;
+                for (int i = 0; i < content.length(); i++) {
+                    if (content.charAt(i) == '\n') lineStarts[line++] = i + 1;
+                }
+            }
+            int pos = Arrays.binarySearch(lineStarts, offset);
+            return pos >= 0 ? pos + 1 : -pos - 1;
+        }
+    }
+    
     private record ReferencePattern(
             String type,
             Pattern pattern,
@@ -0,0 +1,393 @@
+package com.example.portal.agents.git.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Языкозависимое разрешение ссылок (импортов) в индексы файлов репозитория.
+ * <p>
+ * Поддерживаются:
+ * - Java: полные имена классов, wildcard-импорты пакетов, static-импорты, вложенные классы
+ * - JavaScript/TypeScript: относительные пути с подбором расширения и index-файлов
+ * - Python: абсолютные и относительные модули, пакеты с __init__.py
+ * - Остальные форматы: путь относительно файла с нестрогим сопоставлением (как раньше)
+ * <p>
+ * Экземпляр строится один раз на анализ репозитория и хранит только индексы путей.
+ */
+public final class ModuleResolver {
+
+    public enum Outcome {
+        /** Ссылка указывает на файл репозитория */
+        RESOLVED,
+        /** Ссылка на внешнюю библиотеку / стандартный модуль — не проверяется */
+        EXTERNAL,
+        /** Ссылка на внутренний модуль, который не найден — битая ссылка */
+        UNRESOLVED
+    }
+
+    private static final String[] JS_EXTENSIONS = {".ts", ".tsx", ".js", ".jsx", ".mjs", ".cjs", ".json", ".vue"};
+
+    private final List<String> files;
+    private final Map<String, Integer> byPath = new HashMap<>();
+    private final Map<String, Integer> byLoosePath = new HashMap<>();
+    // Один класс может лежать в нескольких корнях исходников — хранятся все кандидаты
+    private final Map<String, List<Integer>> javaByFqn = new HashMap<>();
+    private final Map<String, List<Integer>> javaByPackage = new HashMap<>();
+    private final Set<String> javaNamespaces = new HashSet<>();
+    private final Set<String> pythonRoots = new LinkedHashSet<>();
+    private final Set<String> pythonTopLevel = new HashSet<>();
+
+    /**
+     * @param files        все файлы репозитория (индекс файла = позиция в списке)
+     * @param javaPackages пакет каждого Java-файла (null для прочих файлов и файлов без package)
+     */
+    public ModuleResolver(List<String> files, String[] javaPackages) {
+        this.files = files;
+
+        Set<String> pythonPackageDirs = new HashSet<>();
+        for (int i = 0; i < files.size(); i++) {
+            String file = files.get(i);
+            byPath.put(file, i);
+            indexLoosely(file, i);
+            if (file.endsWith("/__init__.py") || file.equals("__init__.py")) {
+                pythonPackageDirs.add(directoryOf(file));
+            }
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            String file = files.get(i);
+            if (file.endsWith(".java")) {
+                indexJava(i, file, javaPackages != null ? javaPackages[i] : null);
+            } else if (file.endsWith(".py")) {
+                indexPython(file, pythonPackageDirs);
+            }
+        }
+    }
+
+    /**
+     * Разрешает ссылку из файла-источника.
+     *
+     * @param sourceFile путь файла, в котором найдена ссылка
+     * @param specifier  текст ссылки (имя класса, модуля или путь)
+     * @param targets    получатель индексов найденных файлов
+     */
+    public Outcome resolve(String sourceFile, String specifier, IntConsumer targets) {
+        return switch (extensionOf(sourceFile)) {
+            case "java" -> resolveJava(specifier, targets);
+            case "js", "jsx", "ts", "tsx", "mjs", "cjs", "vue" -> resolveScript(sourceFile, specifier, targets);
+            case "py" -> resolvePython(sourceFile, specifier, targets);
+            default -> resolvePath(sourceFile, specifier, targets);
+        };
+    }
+
+    /**
+     * Java-классы одного пакета видят друг друга без импортов.
+     * Добавляет рёбра к классам пакета, простые имена которых встречаются в файле.
+     */
+    public void resolveSamePackage(int source, String javaPackage, Set<String> typeNames, IntConsumer targets) {
+        List<Integer> members = javaByPackage.get(javaPackage == null ? "" : javaPackage);
+        if (members == null) {
+            return;
+        }
+        for (int member : members) {
+            if (member != source && typeNames.contains(simpleName(files.get(member)))) {
+                targets.accept(member);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Java
+    // ------------------------------------------------------------------
+
+    private void indexJava(int index, String file, String javaPackage) {
+        String pkg = javaPackage == null ? "" : javaPackage;
+        String simple = simpleName(file);
+        javaByFqn.computeIfAbsent(pkg.isEmpty() ? simple : pkg + "." + simple, k -> new ArrayList<>()).add(index);
+        javaByPackage.computeIfAbsent(pkg, k -> new ArrayList<>()).add(index);
+        if (!pkg.isEmpty()) {
+            // Пространство имён проекта — первые два сегмента пакета (com.example, org.acme)
+            String[] parts = pkg.split("\\.");
+            javaNamespaces.add(parts.length >= 2 ? parts[0] + "." + parts[1] : parts[0]);
+        }
+    }
+
+    private Outcome resolveJava(String specifier, IntConsumer targets) {
+        String name = specifier.endsWith(".*") ? specifier.substring(0, specifier.length() - 2) : specifier;
+        boolean wildcard = name.length() != specifier.length();
+
+        if (wildcard) {
+            List<Integer> members = javaByPackage.get(name);
+            if (members != null) {
+                members.forEach(targets::accept);
+                return Outcome.RESOLVED;
+            }
+        }
+
+        // Полное имя класса; если нет — отрезаем хвост (вложенный класс или static-член)
+        String candidate = name;
+        while (true) {
+            List<Integer> classes = javaByFqn.get(candidate);
+            if (classes != null) {
+                classes.forEach(targets::accept);
+                return Outcome.RESOLVED;
+            }
+            int dot = candidate.lastIndexOf('.');
+            if (dot <= 0) {
+                break;
+            }
+            candidate = candidate.substring(0, dot);
+        }
+
+        return isInternalJavaName(name) ? Outcome.UNRESOLVED : Outcome.EXTERNAL;
+    }
+
+    private boolean isInternalJavaName(String name) {
+        String[] parts = name.split("\\.");
+        if (parts.length >= 2 && javaNamespaces.contains(parts[0] + "." + parts[1])) {
+            return true;
+        }
+        return javaNamespaces.contains(parts[0]);
+    }
+
+    // ------------------------------------------------------------------
+    // JavaScript / TypeScript
+    // ------------------------------------------------------------------
+
+    private Outcome resolveScript(String sourceFile, String specifier, IntConsumer targets) {
+        String spec = stripQuery(specifier);
+        if (!spec.startsWith(".") && !spec.startsWith("/")) {
+            // Пакет из node_modules или alias сборщика
+            return Outcome.EXTERNAL;
+        }
+
+        String base = spec.startsWith("/")
+                ? normalize(spec.substring(1))
+                : normalize(join(directoryOf(sourceFile), spec));
+        if (base == null) {
+            return Outcome.UNRESOLVED;
+        }
+
+        Integer index = byPath.get(base);
+        if (index == null) {
+            for (String ext : JS_EXTENSIONS) {
+                index = byPath.get(base + ext);
+                if (index != null) break;
+            }
+        }
+        if (index == null) {
+            String prefix = base.isEmpty() ? "index" : base + "/index";
+            for (String ext : JS_EXTENSIONS) {
+                index = byPath.get(prefix + ext);
+                if (index != null) break;
+            }
+        }
+
+        if (index == null) {
+            return Outcome.UNRESOLVED;
+        }
+        targets.accept(index);
+        return Outcome.RESOLVED;
+    }
+
+    // ------------------------------------------------------------------
+    // Python
+    // ------------------------------------------------------------------
+
+    private void indexPython(String file, Set<String> packageDirs) {
+        // Корень исходников — родитель самого верхнего пакета, содержащего файл
+        String dir = directoryOf(file);
+        while (packageDirs.contains(dir) && !dir.isEmpty()) {
+            dir = directoryOf(dir);
+        }
+        pythonRoots.add(dir);
+
+        String relative = dir.isEmpty() ? file : file.substring(dir.length() + 1);
+        int slash = relative.indexOf('/');
+        pythonTopLevel.add(slash >= 0 ? relative.substring(0, slash) : removeExtension(relative));
+    }
+
+    private Outcome resolvePython(String sourceFile, String specifier, IntConsumer targets) {
+        int dots = 0;
+        while (dots < specifier.length() && specifier.charAt(dots) == '.') {
+            dots++;
+        }
+
+        if (dots > 0) {
+            String base = directoryOf(sourceFile);
+            for (int i = 1; i < dots; i++) {
+                if (base.isEmpty()) return Outcome.UNRESOLVED;
+                base = directoryOf(base);
+            }
+            String module = specifier.substring(dots).replace('.', '/');
+            if (module.isEmpty()) {
+                // "from . import x" — сам пакет
+                Integer init = byPath.get(base.isEmpty() ? "__init__.py" : base + "/__init__.py");
+                if (init == null) return Outcome.UNRESOLVED;
+                targets.accept(init);
+                return Outcome.RESOLVED;
+            }
+            return resolvePythonPath(join(base, module), base, targets) ? Outcome.RESOLVED : Outcome.UNRESOLVED;
+        }
+
+        String module = specifier.replace('.', '/');
+        // Сначала каталог самого файла (скрипты), затем корни исходников
+        String sourceDir = directoryOf(sourceFile);
+        if (resolvePythonPath(join(sourceDir, module), sourceDir, targets)) {
+            return Outcome.RESOLVED;
+        }
+        for (String root : pythonRoots) {
+            if (resolvePythonPath(join(root, module), root, targets)) {
+                return Outcome.RESOLVED;
+            }
+        }
+
+        int dot = specifier.indexOf('.');
+        String topLevel = dot >= 0 ? specifier.substring(0, dot) : specifier;
+        return pythonTopLevel.contains(topLevel) ? Outcome.UNRESOLVED : Outcome.EXTERNAL;
+    }
+
+    /**
+     * Ищет модуль (module.py) или пакет (module/__init__.py). При успехе добавляет
+     * также __init__.py всех родительских пакетов до корня — Python исполняет их при импорте.
+     */
+    private boolean resolvePythonPath(String modulePath, String root, IntConsumer targets) {
+        Integer index = byPath.get(modulePath + ".py");
+        if (index == null) {
+            index = byPath.get(modulePath.isEmpty() ? "__init__.py" : modulePath + "/__init__.py");
+        }
+        if (index == null) {
+            return false;
+        }
+        targets.accept(index);
+
+        String dir = directoryOf(modulePath);
+        while (dir.length() > root.length()) {
+            Integer init = byPath.get(dir + "/__init__.py");
+            if (init == null) break;
+            targets.accept(init);
+            dir = directoryOf(dir);
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------
+    // Прочие форматы (HTML, CSS, PHP, C/C++, XML, конфиги)
+    // ------------------------------------------------------------------
+
+    private Outcome resolvePath(String sourceFile, String reference, IntConsumer targets) {
+        String ref = stripQuery(reference);
+        if (ref.isEmpty() || ref.startsWith("#") || ref.startsWith("//") || ref.contains(":")) {
+            // Якоря, внешние URL (http:, mailto:, data:) и т.п.
+            return Outcome.EXTERNAL;
+        }
+
+        String path = ref.startsWith("/") ? normalize(ref.substring(1)) : normalize(join(directoryOf(sourceFile), ref));
+        Integer index = path != null ? byPath.get(path) : null;
+        if (index == null && path != null) {
+            index = lookupLoosely(path);
+        }
+        if (index == null) {
+            index = lookupLoosely(ref);
+        }
+
+        if (index == null) {
+            return Outcome.UNRESOLVED;
+        }
+        targets.accept(index);
+        return Outcome.RESOLVED;
+    }
+
+    /**
+     * Нестрогий индекс: путь без учёта регистра, путь без расширения, имя файла.
+     */
+    private void indexLoosely(String file, int index) {
+        byLoosePath.putIfAbsent(file.toLowerCase(), index);
+        String withoutExt = removeExtension(file);
+        if (!withoutExt.equals(file)) {
+            byLoosePath.putIfAbsent(withoutExt.toLowerCase(), index);
+        }
+        byLoosePath.putIfAbsent(fileNameOf(file).toLowerCase(), index);
+    }
+
+    private Integer lookupLoosely(String path) {
+        String lower = path.toLowerCase();
+        Integer index = byLoosePath.get(lower);
+        if (index == null) {
+            index = byLoosePath.get(removeExtension(lower));
+        }
+        if (index == null) {
+            index = byLoosePath.get(fileNameOf(lower));
+        }
+        return index;
+    }
+
+    // ------------------------------------------------------------------
+    // Работа с путями (всегда через '/', независимо от ОС)
+    // ------------------------------------------------------------------
+
+    /**
+     * Нормализует путь: убирает "." и "..". Возвращает null, если путь выходит за корень.
+     */
+    static String normalize(String path) {
+        String[] parts = path.replace('\\', '/').split("/");
+        List<String> stack = new ArrayList<>(parts.length);
+        for (String part : parts) {
+            if (part.isEmpty() || part.equals(".")) {
+                continue;
+            }
+            if (part.equals("..")) {
+                if (stack.isEmpty()) return null;
+                stack.remove(stack.size() - 1);
+            } else {
+                stack.add(part);
+            }
+        }
+        return String.join("/", stack);
+    }
+
+    private static String join(String dir, String path) {
+        return dir.isEmpty() ? path : dir + "/" + path;
+    }
+
+    private static String stripQuery(String reference) {
+        int cut = reference.length();
+        int q = reference.indexOf('?');
+        int h = reference.indexOf('#');
+        if (q >= 0) cut = Math.min(cut, q);
+        if (h > 0) cut = Math.min(cut, h);
+        return reference.substring(0, cut).trim();
+    }
+
+    static String directoryOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash >= 0 ? path.substring(0, slash) : "";
+    }
+
+    private static String fileNameOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash >= 0 ? path.substring(slash + 1) : path;
+    }
+
+    private static String simpleName(String path) {
+        return removeExtension(fileNameOf(path));
+    }
+
+    static String extensionOf(String path) {
+        String name = fileNameOf(path);
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot + 1).toLowerCase() : "";
+    }
+
+    private static String removeExtension(String path) {
+        int dot = path.lastIndexOf('.');
+        int slash = path.lastIndexOf('/');
+        return dot > slash + 1 ? path.substring(0, dot) : path;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.portal.agents.iconix.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Один вызов LLM в рамках сессии workflow: токены, задержка, модель.
+ */
+@Entity
+@Table(name = "llm_usage")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LlmUsageRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "id")
+    private UUID id;
+
+    @Column(name = "request_id", length = 36, nullable = false)
+    private String requestId;
+
+    @Column(name = "worker", length = 100)
+    private String worker; // Шаг плана: narrative, model, review, ...
+
+    @Column(name = "agent", length = 100, nullable = false)
+    private String agent; // Агентный сервис: domain_modeller, evaluator, ...
+
+    @Column(name = "prompt_code", length = 100)
+    private String promptCode;
+
+    @Column(name = "model", length = 255)
+    private String model;
+
+    @Column(name = "prompt_tokens", nullable = false)
+    private int promptTokens;
+
+    @Column(name = "completion_tokens", nullable = false)
+    private int completionTokens;
+
+    @Column(name = "latency_ms", nullable = false)
+    private long latencyMs;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = Instant.now();
+    }
+}
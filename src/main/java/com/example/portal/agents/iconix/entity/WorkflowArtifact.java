@@ -0,0 +1,44 @@
+package com.example.portal.agents.iconix.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Артефакт workflow, адресуемый по SHA-256 своего JSON: содержимое сжато deflate,
+ * сессии ссылаются на него из состояния, журнала и данных ревью.
+ */
+@Entity
+@Table(name = "workflow_artifacts")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowArtifact {
+
+    @Id
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    @Column(name = "content", nullable = false)
+    private byte[] content;
+
+    @Column(name = "original_size", nullable = false)
+    private int originalSize;
+
+    @Column(name = "compressed_size", nullable = false)
+    private int compressedSize;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount; // ведётся триггером на workflow_session_artifacts
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "last_used_at", nullable = false)
+    private Instant lastUsedAt;
+}
@@ -6,6 +6,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.Instant;
 
@@ -30,13 +32,16 @@ public class WorkflowSession {
     @Column(name = "task", columnDefinition = "TEXT")
     private String task;
     
-    @Column(name = "context_state", columnDefinition = "TEXT")
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "context_state", columnDefinition = "jsonb")
     private String contextStateJson; // JSON сериализация ctx.state
     
-    @Column(name = "logs", columnDefinition = "TEXT")
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "logs", columnDefinition = "jsonb")
     private String logsJson; // JSON сериализация ctx.logs
     
-    @Column(name = "plan_json", columnDefinition = "TEXT")
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "plan_json", columnDefinition = "jsonb")
     private String planJson; // JSON сериализация OrchestratorPlan
     
     @Column(name = "current_step_index")
@@ -46,7 +51,8 @@ public class WorkflowSession {
     @Column(name = "status", length = 50)
     private WorkflowStatus status;
     
-    @Column(name = "user_review_data", columnDefinition = "TEXT")
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "user_review_data", columnDefinition = "jsonb")
     private String userReviewData; // JSON с данными для ревью (issues, artifacts и т.д.)
     
     @Column(name = "created_at")
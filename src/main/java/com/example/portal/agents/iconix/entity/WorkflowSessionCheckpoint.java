@@ -0,0 +1,51 @@
+package com.example.portal.agents.iconix.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Чекпоинт сессии workflow: изменения состояния и новые записи журнала поверх снимка в {@link WorkflowSession}.
+ */
+@Entity
+@Table(name = "workflow_session_checkpoints")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowSessionCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "id")
+    private UUID id;
+
+    @Column(name = "request_id", length = 36, nullable = false)
+    private String requestId;
+
+    @Column(name = "seq", nullable = false)
+    private int seq;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "state_delta", columnDefinition = "jsonb", nullable = false)
+    private String stateDeltaJson; // JSON изменённых ключей ctx.state, null — ключ удалён
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "logs", columnDefinition = "jsonb", nullable = false)
+    private String logsJson; // JSON новых записей ctx.logs
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = Instant.now();
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.portal.agents.iconix.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Результат шага workflow, сохранённый по хэшу входа шага.
+ */
+@Entity
+@Table(name = "workflow_step_memo")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowStepMemo {
+
+    @Id
+    @Column(name = "input_hash", length = 64)
+    private String inputHash;
+
+    @Column(name = "worker", length = 100, nullable = false)
+    private String worker;
+
+    @Column(name = "state_delta", columnDefinition = "TEXT", nullable = false)
+    private String stateDeltaJson; // JSON ключей ctx.state, изменённых шагом
+
+    @Column(name = "logs", columnDefinition = "TEXT", nullable = false)
+    private String logsJson; // JSON записей ctx.logs, добавленных шагом
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,35 @@
+package com.example.portal.agents.iconix.model;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Журнал расхода токенов LLM по сессии workflow: итог, разбивка по шагам плана
+ * и по кодам промптов, список вызовов в порядке выполнения.
+ */
+public record TokenLedger(
+        String requestId,
+        Totals total,
+        Map<String, Totals> byWorker,
+        Map<String, Totals> byPromptCode,
+        List<Call> calls
+) {
+
+    public record Totals(long calls, long promptTokens, long completionTokens, long latencyMs) {
+
+        public static final Totals EMPTY = new Totals(0, 0, 0, 0);
+
+        public long totalTokens() {
+            return promptTokens + completionTokens;
+        }
+
+        public Totals plus(Totals other) {
+            return new Totals(calls + other.calls, promptTokens + other.promptTokens,
+                    completionTokens + other.completionTokens, latencyMs + other.latencyMs);
+        }
+    }
+
+    public record Call(String worker, String agent, String promptCode, String model,
+                       int promptTokens, int completionTokens, long latencyMs, Instant createdAt) {}
+}
@@ -0,0 +1,40 @@
+package com.example.portal.agents.iconix.repository;
+
+import com.example.portal.agents.iconix.entity.LlmUsageRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface LlmUsageRecordRepository extends JpaRepository<LlmUsageRecord, UUID> {
+
+    /**
+     * Найти все вызовы LLM сессии в порядке выполнения.
+     */
+    List<LlmUsageRecord> findByRequestIdOrderByCreatedAtAsc(String requestId);
+
+    /**
+     * Итоги по сессиям одним запросом — для списка сессий.
+     */
+    @Query("""
+            select r.requestId as requestId, count(r) as calls,
+                   sum(r.promptTokens) as promptTokens, sum(r.completionTokens) as completionTokens,
+                   sum(r.latencyMs) as latencyMs
+            from LlmUsageRecord r
+            where r.requestId in :requestIds
+            group by r.requestId""")
+    List<SessionTotals> sumByRequestIds(@Param("requestIds") Collection<String> requestIds);
+
+    interface SessionTotals {
+        String getRequestId();
+        long getCalls();
+        long getPromptTokens();
+        long getCompletionTokens();
+        long getLatencyMs();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.portal.agents.iconix.repository;
+
+import com.example.portal.agents.iconix.entity.WorkflowArtifact;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface WorkflowArtifactRepository extends JpaRepository<WorkflowArtifact, String> {
+
+    /**
+     * Отметить использование артефактов: отмеченные не удаляются очисткой, пока идёт запись ссылок.
+     */
+    @Modifying
+    @Query("update WorkflowArtifact a set a.lastUsedAt = :now where a.hash in :hashes")
+    int touch(@Param("hashes") Collection<String> hashes, @Param("now") Instant now);
+
+    @Query("select a.hash from WorkflowArtifact a where a.hash in :hashes")
+    List<String> findExistingHashes(@Param("hashes") Collection<String> hashes);
+
+    /**
+     * Записать артефакт; если такой уже записан параллельно — только отметить использование.
+     */
+    @Modifying
+    @Query(value = """
+            insert into workflow_artifacts (hash, content, original_size, compressed_size, ref_count,
+                                            created_at, last_used_at)
+            values (:hash, :content, :originalSize, :compressedSize, 0, :now, :now)
+            on conflict (hash) do update set last_used_at = excluded.last_used_at""", nativeQuery = true)
+    int insertIfAbsent(@Param("hash") String hash,
+                       @Param("content") byte[] content,
+                       @Param("originalSize") int originalSize,
+                       @Param("compressedSize") int compressedSize,
+                       @Param("now") Instant now);
+
+    /**
+     * Добавить ссылки сессии на артефакты (уже существующие ссылки не меняются).
+     * Строка сессии должна быть записана в БД — она сохраняется перед этим запросом.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = """
+            insert into workflow_session_artifacts (request_id, hash)
+            select :requestId, a.hash from workflow_artifacts a where a.hash in (:hashes)
+            on conflict do nothing""", nativeQuery = true)
+    int link(@Param("requestId") String requestId, @Param("hashes") Collection<String> hashes);
+
+    /**
+     * Удалить ссылки сессии на артефакты, кроме {@code hashes}.
+     */
+    @Modifying
+    @Query(value = """
+            delete from workflow_session_artifacts
+            where request_id = :requestId and hash not in (:hashes)""", nativeQuery = true)
+    int unlinkExcept(@Param("requestId") String requestId, @Param("hashes") Collection<String> hashes);
+
+    /**
+     * Удалить все ссылки сессии на артефакты.
+     */
+    @Modifying
+    @Query(value = "delete from workflow_session_artifacts where request_id = :requestId", nativeQuery = true)
+    int unlinkAll(@Param("requestId") String requestId);
+
+    /**
+     * Удалить артефакты без ссылок, не использовавшиеся с {@code threshold}.
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from WorkflowArtifact a where a.refCount <= 0 and a.lastUsedAt < :threshold")
+    int deleteUnreferencedBefore(@Param("threshold") Instant threshold);
+}
@@ -0,0 +1,33 @@
+package com.example.portal.agents.iconix.repository;
+
+import com.example.portal.agents.iconix.entity.WorkflowSessionCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface WorkflowSessionCheckpointRepository extends JpaRepository<WorkflowSessionCheckpoint, UUID> {
+
+    /**
+     * Чекпоинты сессии в порядке записи — для сборки контекста поверх снимка.
+     */
+    List<WorkflowSessionCheckpoint> findByRequestIdOrderBySeqAsc(String requestId);
+
+    /**
+     * Номер последнего чекпоинта сессии (0 — чекпоинтов нет).
+     */
+    @Query("select coalesce(max(c.seq), 0) from WorkflowSessionCheckpoint c where c.requestId = :requestId")
+    int findLastSeq(@Param("requestId") String requestId);
+
+    /**
+     * Удалить чекпоинты сессии после записи нового снимка.
+     */
+    @Modifying
+    @Query("delete from WorkflowSessionCheckpoint c where c.requestId = :requestId")
+    int deleteByRequestId(@Param("requestId") String requestId);
+}
@@ -1,13 +1,123 @@
 package com.example.portal.agents.iconix.repository;
 
 import com.example.portal.agents.iconix.entity.WorkflowSession;
+import com.example.portal.agents.iconix.model.WorkflowStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface WorkflowSessionRepository extends JpaRepository<WorkflowSession, String> {
     Optional<WorkflowSession> findByRequestId(String requestId);
-}
 
+    /**
+     * Обновить ход выполнения сессии без чтения и перезаписи состояния, журнала и плана.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            update WorkflowSession s
+            set s.narrative = :narrative, s.currentStepIndex = :currentStepIndex, s.status = :status,
+                s.userReviewData = :userReviewData, s.updatedAt = :updatedAt
+            where s.requestId = :requestId""")
+    int updateProgress(@Param("requestId") String requestId,
+                       @Param("narrative") String narrative,
+                       @Param("currentStepIndex") int currentStepIndex,
+                       @Param("status") WorkflowStatus status,
+                       @Param("userReviewData") String userReviewData,
+                       @Param("updatedAt") Instant updatedAt);
+
+    /**
+     * Первая страница списка сессий: только колонки сводки, новые сверху (индекс по created_at).
+     */
+    @Query(value = """
+            select request_id as "requestId", status as "status",
+                   created_at as "createdAt", updated_at as "updatedAt"
+            from workflow_sessions
+            where status in (:statuses)
+            order by created_at desc, request_id desc
+            limit :limit""", nativeQuery = true)
+    List<SessionSummaryView> findSummaries(@Param("statuses") Collection<String> statuses,
+                                           @Param("limit") int limit);
+
+    /**
+     * Следующая страница списка сессий: строго после (createdAt, requestId) последней строки предыдущей.
+     */
+    @Query(value = """
+            select request_id as "requestId", status as "status",
+                   created_at as "createdAt", updated_at as "updatedAt"
+            from workflow_sessions
+            where status in (:statuses)
+              and (created_at, request_id) < (:createdAt, :requestId)
+            order by created_at desc, request_id desc
+            limit :limit""", nativeQuery = true)
+    List<SessionSummaryView> findSummariesBefore(@Param("statuses") Collection<String> statuses,
+                                                 @Param("createdAt") Instant createdAt,
+                                                 @Param("requestId") String requestId,
+                                                 @Param("limit") int limit);
+
+    /**
+     * Текущие значения ключей состояния сессии: снимок context_state и чекпоинты поверх него
+     * свёртываются в БД, возвращаются только запрошенные ключи (value — JSON, 'null' — ключ удалён).
+     */
+    @Query(value = """
+            select distinct on (e.key) e.key as "key", cast(e.value as text) as "value"
+            from (
+                select s.context_state as state, 0 as seq
+                from workflow_sessions s
+                where s.request_id = :requestId
+                union all
+                select c.state_delta, c.seq
+                from workflow_session_checkpoints c
+                where c.request_id = :requestId
+            ) src
+            cross join lateral jsonb_each(src.state) e
+            where e.key in (:keys)
+            order by e.key, src.seq desc""", nativeQuery = true)
+    List<StateEntryView> findStateEntries(@Param("requestId") String requestId,
+                                          @Param("keys") Collection<String> keys);
+
+    /**
+     * Колонки сессии без состояния, журнала и плана.
+     */
+    @Query("""
+            select s.requestId as requestId, s.narrative as narrative, s.status as status,
+                   s.updatedAt as updatedAt
+            from WorkflowSession s
+            where s.requestId = :requestId""")
+    Optional<SessionHeaderView> findHeader(@Param("requestId") String requestId);
+
+    /**
+     * Версия сессии — время последней записи; по ней сверяются прочитанные ранее данные.
+     */
+    @Query("select s.updatedAt from WorkflowSession s where s.requestId = :requestId")
+    Optional<Instant> findVersion(@Param("requestId") String requestId);
+
+    @Query("select s.userReviewData from WorkflowSession s where s.requestId = :requestId")
+    Optional<String> findUserReviewData(@Param("requestId") String requestId);
+
+    interface StateEntryView {
+        String getKey();
+        String getValue();
+    }
+
+    interface SessionHeaderView {
+        String getRequestId();
+        String getNarrative();
+        WorkflowStatus getStatus();
+        Instant getUpdatedAt();
+    }
+
+    interface SessionSummaryView {
+        String getRequestId();
+        WorkflowStatus getStatus();
+        Instant getCreatedAt();
+        Instant getUpdatedAt();
+    }
+}
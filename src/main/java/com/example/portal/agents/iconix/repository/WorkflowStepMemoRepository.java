@@ -0,0 +1,23 @@
+package com.example.portal.agents.iconix.repository;
+
+import com.example.portal.agents.iconix.entity.WorkflowStepMemo;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface WorkflowStepMemoRepository extends JpaRepository<WorkflowStepMemo, String> {
+
+    /**
+     * Удалить результаты шагов, выполненных раньше {@code threshold}.
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from WorkflowStepMemo m where m.createdAt < :threshold")
+    int deleteOlderThan(@Param("threshold") Instant threshold);
+}
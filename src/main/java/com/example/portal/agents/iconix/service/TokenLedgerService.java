@@ -0,0 +1,174 @@
+package com.example.portal.agents.iconix.service;
+
+import com.example.portal.agents.iconix.entity.LlmUsageRecord;
+import com.example.portal.agents.iconix.model.TokenLedger;
+import com.example.portal.agents.iconix.repository.LlmUsageRecordRepository;
+import com.example.portal.shared.llm.LlmCallScope;
+import com.example.portal.shared.llm.LlmSingleFlight;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Журнал расхода токенов LLM по сессиям workflow.
+ * <p>
+ * Каждый вызов LLM из агентных сервисов, выполненный внутри {@link LlmCallScope},
+ * записывается в таблицу {@code llm_usage}: шаг плана, агент, код промпта, модель,
+ * токены запроса и ответа, задержка. Код промпта передаётся в advisor параметром
+ * {@link #PROMPT_CODE}:
+ * <pre>{@code
+ * chat.prompt().advisors(a -> a.param(TokenLedgerService.PROMPT_CODE, "mvc_modeller"))...
+ * }</pre>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TokenLedgerService {
+
+    /** Ключ контекста advisor с кодом промпта из справочника. */
+    public static final String PROMPT_CODE = "ledger.promptCode";
+
+    private static final String UNKNOWN = "unknown";
+
+    private final LlmUsageRecordRepository repository;
+
+    /**
+     * Advisor для ChatClient агентного сервиса.
+     *
+     * @param agent имя агента, например "domain_modeller"
+     */
+    public CallAroundAdvisor advisor(String agent) {
+        return new LedgerAdvisor(agent);
+    }
+
+    /**
+     * Записывает один вызов LLM. Вызывается из advisor внутри этого же бина, мимо прокси, поэтому
+     * без {@code @Transactional}: одна вставка выполняется в собственной транзакции репозитория.
+     */
+    public void record(LlmCallScope scope, String agent, String promptCode, ChatResponseMetadata metadata,
+                       long latencyMs) {
+        Usage usage = metadata != null ? metadata.getUsage() : null;
+        String model = metadata != null && metadata.getModel() != null && !metadata.getModel().isBlank()
+                ? metadata.getModel() : UNKNOWN;
+        int promptTokens = tokens(usage != null ? usage.getPromptTokens() : null);
+        int completionTokens = tokens(usage != null ? usage.getCompletionTokens() : null);
+        if (scope.usage() != null) {
+            scope.usage().add(promptTokens, completionTokens);
+        }
+        repository.save(LlmUsageRecord.builder()
+                .requestId(scope.requestId())
+                .worker(scope.worker())
+                .agent(agent)
+                .promptCode(promptCode)
+                .model(model)
+                .promptTokens(promptTokens)
+                .completionTokens(completionTokens)
+                .latencyMs(latencyMs)
+                .build());
+    }
+
+    /**
+     * Журнал сессии: итог, разбивка по шагам плана и по кодам промптов.
+     */
+    @Transactional(readOnly = true)
+    public TokenLedger getLedger(String requestId) {
+        List<LlmUsageRecord> records = repository.findByRequestIdOrderByCreatedAtAsc(requestId);
+        return new TokenLedger(
+                requestId,
+                records.stream().map(TokenLedgerService::totalsOf).reduce(TokenLedger.Totals.EMPTY, TokenLedger.Totals::plus),
+                groupBy(records, r -> r.getWorker() != null ? r.getWorker() : UNKNOWN),
+                groupBy(records, r -> r.getPromptCode() != null ? r.getPromptCode() : UNKNOWN),
+                records.stream()
+                        .map(r -> new TokenLedger.Call(r.getWorker(), r.getAgent(), r.getPromptCode(), r.getModel(),
+                                r.getPromptTokens(), r.getCompletionTokens(), r.getLatencyMs(), r.getCreatedAt()))
+                        .toList());
+    }
+
+    /**
+     * Итоги по нескольким сессиям одним запросом; сессии без вызовов LLM в результат не попадают.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, TokenLedger.Totals> getTotals(Collection<String> requestIds) {
+        if (requestIds.isEmpty()) {
+            return Map.of();
+        }
+        return repository.sumByRequestIds(requestIds).stream()
+                .collect(Collectors.toMap(
+                        LlmUsageRecordRepository.SessionTotals::getRequestId,
+                        t -> new TokenLedger.Totals(t.getCalls(), t.getPromptTokens(),
+                                t.getCompletionTokens(), t.getLatencyMs())));
+    }
+
+    private static Map<String, TokenLedger.Totals> groupBy(List<LlmUsageRecord> records,
+                                                          Function<LlmUsageRecord, String> key) {
+        Map<String, TokenLedger.Totals> result = new LinkedHashMap<>();
+        for (LlmUsageRecord r : records) {
+            result.merge(key.apply(r), totalsOf(r), TokenLedger.Totals::plus);
+        }
+        return result;
+    }
+
+    private static TokenLedger.Totals totalsOf(LlmUsageRecord r) {
+        return new TokenLedger.Totals(1, r.getPromptTokens(), r.getCompletionTokens(), r.getLatencyMs());
+    }
+
+    private static int tokens(Integer value) {
+        return value != null && value > 0 ? value : 0;
+    }
+
+    private final class LedgerAdvisor implements CallAroundAdvisor {
+
+        private final String agent;
+
+        private LedgerAdvisor(String agent) {
+            this.agent = agent;
+        }
+
+        @Override
+        public AdvisedResponse aroundCall(AdvisedRequest request, CallAroundAdvisorChain chain) {
+            long start = System.nanoTime();
+            AdvisedResponse response = chain.nextAroundCall(request);
+            LlmCallScope scope = LlmCallScope.current();
+            // Вне сессии или ответ чужого вызова (single-flight) — оплачен не этой сессией
+            if (scope == null || LlmSingleFlight.isJoined(response)) {
+                return response;
+            }
+            long latencyMs = (System.nanoTime() - start) / 1_000_000;
+            Object promptCode = request.adviseContext().get(PROMPT_CODE);
+            try {
+                record(scope, agent, promptCode != null ? promptCode.toString() : null,
+                        response.response() != null ? response.response().getMetadata() : null, latencyMs);
+            } catch (RuntimeException e) {
+                // Журнал не должен ломать шаг workflow
+                log.warn("Failed to record LLM usage for requestId: {}, agent: {}", scope.requestId(), agent, e);
+            }
+            return response;
+        }
+
+        @Override
+        public String getName() {
+            return "token-ledger-" + agent;
+        }
+
+        @Override
+        public int getOrder() {
+            // Сразу после advisor метрик: задержка включает остальные advisors
+            return Ordered.HIGHEST_PRECEDENCE + 1;
+        }
+    }
+}
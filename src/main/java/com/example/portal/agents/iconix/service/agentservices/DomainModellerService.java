@@ -1,15 +1,30 @@
 package com.example.portal.agents.iconix.service.agentservices;
 
 import com.example.portal.agents.iconix.model.Issue;
+import com.example.portal.agents.iconix.service.TokenLedgerService;
+import com.example.portal.prompt.service.CompiledPrompt;
 import com.example.portal.prompt.service.PromptService;
-import com.example.portal.shared.utils.PromptUtils;
+import com.example.portal.shared.llm.LlmExecutor;
+import com.example.portal.shared.llm.LlmLimiters;
+import com.example.portal.shared.llm.LlmSingleFlight;
+import com.example.portal.shared.llm.StructuredOutput;
+import com.example.portal.shared.metrics.PipelineMetrics;
+import com.example.portal.shared.plantuml.PlantUmlModel;
+import com.example.portal.shared.plantuml.PlantUmlPatch;
+import com.example.portal.shared.service.PromptContextPacker;
+import com.example.portal.shared.service.PromptContextPacker.Section;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.ResponseFormat;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Сервис для построения доменной модели ICONIX (PlantUML).
@@ -18,6 +33,10 @@ import java.util.List;
  * - "domain_modeller_system"   — системный промпт (роль ИИ + правила)
  * - "domain_modeller_generate" — пользовательский промпт для генерации (содержит %s)
  * - "domain_modeller_refine"   — пользовательский промпт для уточнения (содержит %s)
+ * - "domain_modeller_patch"    — уточнение правкой: LLM возвращает только изменения модели (содержит %s)
+ * <p>
+ * Уточнение по умолчанию — правкой ({@code app.domain-modeller.refine-mode=PATCH}): объём ответа
+ * пропорционален изменениям, а не размеру модели. Если правка некорректна, модель перегенерируется целиком.
  */
 @Slf4j
 @Service
@@ -25,26 +44,112 @@ public class DomainModellerService {
 
     private final ChatClient chat;
     private final PromptService promptService;
+    private final LlmExecutor executor;
+    private final PromptContextPacker contextPacker;
+    private final PipelineMetrics metrics;
+    private final boolean patchRefine;
+    private final ResponseFormat patchFormat;
 
     @Autowired
-    public DomainModellerService(ChatClient.Builder builder, PromptService promptService) {
-        this.chat = builder.build();
+    public DomainModellerService(ChatClient.Builder builder, PromptService promptService, PipelineMetrics metrics,
+                                 TokenLedgerService ledger, LlmSingleFlight singleFlight, LlmLimiters limiters,
+                                 PromptContextPacker contextPacker, LlmExecutor executor,
+                                 @Value("${app.domain-modeller.refine-mode:PATCH}") String refineMode) {
+        this.chat = builder.defaultAdvisors(metrics.llmAdvisor("domain_modeller"), ledger.advisor("domain_modeller"),
+                singleFlight.advisor("domain_modeller"), limiters.advisor()).build();
         this.promptService = promptService;
+        this.executor = executor;
+        this.contextPacker = contextPacker;
+        this.metrics = metrics;
+        this.patchRefine = "PATCH".equalsIgnoreCase(refineMode);
+        this.patchFormat = StructuredOutput.responseFormat(null, metrics.provider(), "model_patch", PlantUmlPatch.SCHEMA);
     }
 
     /**
      * Генерирует PlantUML доменной модели на основе нарратива и RAG-контекста.
      */
     public String generateIconixPlantUml(String narrative, String ragContext) {
+        return LlmExecutor.await(generateIconixPlantUmlAsync(narrative, ragContext));
+    }
+
+    /**
+     * Асинхронный вариант {@link #generateIconixPlantUml}.
+     */
+    public CompletableFuture<String> generateIconixPlantUmlAsync(String narrative, String ragContext) {
+        return executor.submit(() -> {
+            // Загружаем промпты из БД (или кэша)
+            CompiledPrompt systemPrompt = promptService.getTemplate("domain_modeller_system");
+            CompiledPrompt userPromptTemplate = promptService.getTemplate("domain_modeller_generate");
+
+            PromptContextPacker.Packed context = contextPacker.packAfter(systemPrompt.tokens() + userPromptTemplate.tokens(),
+                    Section.text("narrative", narrative, 0),
+                    Section.fragments("rag", ragContext, 2));
+
+            String userPrompt = userPromptTemplate.render(context.get("narrative"), normalizeContext(context.get("rag")));
+
+            return chat.prompt()
+                    .advisors(a -> a.param(TokenLedgerService.PROMPT_CODE, "domain_modeller_generate"))
+                    .messages(new SystemMessage(systemPrompt.render()), new UserMessage(userPrompt))
+                    .options(OpenAiChatOptions.builder()
+                            .temperature(1.0)
+                            .build())
+                    .call()
+                    .content();
+        });
+    }
+
+    /**
+     * Уточняет существующую доменную модель с учётом замечаний от EvaluatorService.
+     */
+    public String refineModelWithIssues(String narrative, String currentPlantUml, List<Issue> issues, String ragContext) {
+        return LlmExecutor.await(refineModelWithIssuesAsync(narrative, currentPlantUml, issues, ragContext));
+    }
+
+    /**
+     * Асинхронный вариант {@link #refineModelWithIssues}.
+     */
+    public CompletableFuture<String> refineModelWithIssuesAsync(String narrative, String currentPlantUml, List<Issue> issues, String ragContext) {
+        return executor.submit(() -> {
+            StringBuilder sb = new StringBuilder();
+            if (issues == null || issues.isEmpty()) {
+                sb.append("нет");
+            } else {
+                for (Issue i : issues) {
+                    sb.append("- ").append(i.title()).append(" ⇒ ").append(i.suggestion())
+                            .append(" (severity=").append(i.severity()).append(")").append("\n");
+                }
+            }
+
+            if (patchRefine) {
+                String patched = refineWithPatch(narrative, currentPlantUml, sb.toString(), ragContext);
+                if (patched != null) {
+                    return patched;
+                }
+            }
+            return refineFull(narrative, currentPlantUml, sb.toString(), ragContext);
+        });
+    }
+
+    /**
+     * Полная перегенерация: модель целиком уходит в LLM и возвращается целиком.
+     */
+    private String refineFull(String narrative, String currentPlantUml, String issues, String ragContext) {
         // Загружаем промпты из БД (или кэша)
-        String systemPrompt = promptService.getByCode("domain_modeller_system");
-        String userPromptTemplate = promptService.getByCode("domain_modeller_generate");
+        CompiledPrompt systemPrompt = promptService.getTemplate("domain_modeller_system");
+        CompiledPrompt userPromptTemplate = promptService.getTemplate("domain_modeller_refine");
+
+        PromptContextPacker.Packed context = contextPacker.packAfter(systemPrompt.tokens() + userPromptTemplate.tokens(),
+                Section.plantUml("model", currentPlantUml, 0),
+                Section.text("narrative", narrative, 1),
+                Section.lines("issues", issues, 1),
+                Section.fragments("rag", ragContext, 2));
 
-        String userPromptRaw = String.format(userPromptTemplate, narrative, normalizeContext(ragContext));
+        String userPrompt = userPromptTemplate.render(context.get("narrative"), context.get("model"),
+                context.get("issues"), normalizeContext(context.get("rag")));
 
         return chat.prompt()
-                .system(PromptUtils.stEscape(systemPrompt))
-                .user(PromptUtils.stEscape(userPromptRaw))
+                .advisors(a -> a.param(TokenLedgerService.PROMPT_CODE, "domain_modeller_refine"))
+                .messages(new SystemMessage(systemPrompt.render()), new UserMessage(userPrompt))
                 .options(OpenAiChatOptions.builder()
                         .temperature(1.0)
                         .build())
@@ -53,34 +158,51 @@ public class DomainModellerService {
     }
 
     /**
-     * Уточняет существующую доменную модель с учётом замечаний от EvaluatorService.
+     * Уточнение правкой: LLM возвращает только изменения ({@link PlantUmlPatch}), они применяются
+     * к разобранной модели локально. {@code null}, если правка не получена или не применима —
+     * тогда модель перегенерируется целиком.
      */
-    public String refineModelWithIssues(String narrative, String currentPlantUml, List<Issue> issues, String ragContext) {
-        StringBuilder sb = new StringBuilder();
-        if (issues == null || issues.isEmpty()) {
-            sb.append("нет");
-        } else {
-            for (Issue i : issues) {
-                sb.append("- ").append(i.title()).append(" ⇒ ").append(i.suggestion())
-                        .append(" (severity=").append(i.severity()).append(")").append("\n");
-            }
+    private String refineWithPatch(String narrative, String currentPlantUml, String issues, String ragContext) {
+        PlantUmlModel model = PlantUmlModel.parse(currentPlantUml);
+        if (model.elements().isEmpty()) {
+            metrics.increment("iconix.refine.patch", "outcome", "skipped");
+            return null;
         }
 
-        // Загружаем промпты из БД (или кэша)
-        String systemPrompt = promptService.getByCode("domain_modeller_system");
-        String userPromptTemplate = promptService.getByCode("domain_modeller_refine");
+        CompiledPrompt systemPrompt = promptService.getTemplate("domain_modeller_system");
+        CompiledPrompt userPromptTemplate = promptService.getTemplate("domain_modeller_patch");
 
-        String userPromptRaw = String.format(userPromptTemplate,
-                narrative, currentPlantUml, sb.toString(), normalizeContext(ragContext));
+        PromptContextPacker.Packed context = contextPacker.packAfter(systemPrompt.tokens() + userPromptTemplate.tokens(),
+                Section.plantUml("model", currentPlantUml, 0),
+                Section.text("narrative", narrative, 1),
+                Section.lines("issues", issues, 1),
+                Section.fragments("rag", ragContext, 2));
 
-        return chat.prompt()
-                .system(PromptUtils.stEscape(systemPrompt))
-                .user(PromptUtils.stEscape(userPromptRaw))
+        String userPrompt = userPromptTemplate.render(context.get("narrative"), context.get("model"),
+                context.get("issues"), normalizeContext(context.get("rag")));
+
+        String response = chat.prompt()
+                .advisors(a -> a.param(TokenLedgerService.PROMPT_CODE, "domain_modeller_patch"))
+                .messages(new SystemMessage(systemPrompt.render()), new UserMessage(userPrompt))
                 .options(OpenAiChatOptions.builder()
                         .temperature(1.0)
+                        .responseFormat(patchFormat)
                         .build())
                 .call()
                 .content();
+
+        try {
+            PlantUmlPatch patch = PlantUmlPatch.parse(response);
+            String refined = patch.isEmpty() ? currentPlantUml : patch.applyTo(model).render();
+            metrics.increment("iconix.refine.patch", "outcome", "applied");
+            log.info("Domain model refined by patch: {} changes, {} -> {} chars",
+                    patch.size(), currentPlantUml.length(), refined.length());
+            return refined;
+        } catch (IllegalArgumentException e) {
+            metrics.increment("iconix.refine.patch", "outcome", "fallback");
+            log.warn("Domain model patch rejected, regenerating the whole model: {}", e.getMessage());
+            return null;
+        }
     }
 
     private static String normalizeContext(String ragContext) {
@@ -1,18 +1,28 @@
 package com.example.portal.agents.iconix.service.agentservices;
 
 import com.example.portal.agents.iconix.model.Issue;
+import com.example.portal.agents.iconix.service.TokenLedgerService;
+import com.example.portal.prompt.service.CompiledPrompt;
 import com.example.portal.prompt.service.PromptService;
-import com.example.portal.shared.utils.PromptUtils;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.portal.shared.llm.LlmExecutor;
+import com.example.portal.shared.llm.LlmLimiters;
+import com.example.portal.shared.llm.LlmSingleFlight;
+import com.example.portal.shared.llm.StructuredOutput;
+import com.example.portal.shared.metrics.PipelineMetrics;
+import com.example.portal.shared.service.PromptContextPacker;
+import com.example.portal.shared.service.PromptContextPacker.Section;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.ResponseFormat;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Сервис-оценщик: проводит ревью PlantUML-модели или нарратива.
@@ -20,19 +30,56 @@ import java.util.regex.Pattern;
  * Промпты загружаются из справочника (PromptService) по кодам:
  * - "evaluator_plantuml"  — промпт для оценки PlantUML (содержит %s)
  * - "evaluator_narrative" — промпт для оценки нарратива (содержит %s)
+ * <p>
+ * Ответ запрашивается в режиме structured output ({@code app.evaluator.response-format}):
+ * JSON Schema списка замечаний для OpenAI, {@code json_object} для DeepSeek.
  */
 @Slf4j
 @Service
 public class EvaluatorService {
 
+    /** JSON Schema ответа со списком замечаний (structured output, strict). */
+    private static final String ISSUES_SCHEMA = """
+            {
+              "type": "object",
+              "properties": {
+                "issues": {
+                  "type": "array",
+                  "items": {
+                    "type": "object",
+                    "properties": {
+                      "id": {"type": "string"},
+                      "title": {"type": "string"},
+                      "severity": {"type": "string", "enum": ["LOW", "MEDIUM", "HIGH"]},
+                      "suggestion": {"type": "string"}
+                    },
+                    "required": ["id", "title", "severity", "suggestion"],
+                    "additionalProperties": false
+                  }
+                }
+              },
+              "required": ["issues"],
+              "additionalProperties": false
+            }
+            """;
+
     private final ChatClient chat;
     private final PromptService promptService;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LlmExecutor executor;
+    private final PromptContextPacker contextPacker;
+    private final ResponseFormat responseFormat;
 
     @Autowired
-    public EvaluatorService(ChatClient.Builder builder, PromptService promptService) {
-        this.chat = builder.build();
+    public EvaluatorService(ChatClient.Builder builder, PromptService promptService, PipelineMetrics metrics,
+                            TokenLedgerService ledger, LlmSingleFlight singleFlight, LlmLimiters limiters,
+                            PromptContextPacker contextPacker, LlmExecutor executor,
+                            @Value("${app.evaluator.response-format:}") String responseFormat) {
+        this.chat = builder.defaultAdvisors(metrics.llmAdvisor("evaluator"), ledger.advisor("evaluator"),
+                singleFlight.advisor("evaluator"), limiters.advisor()).build();
         this.promptService = promptService;
+        this.executor = executor;
+        this.contextPacker = contextPacker;
+        this.responseFormat = responseFormat(responseFormat, metrics.provider());
     }
 
     /**
@@ -40,17 +87,27 @@ public class EvaluatorService {
      * Возвращает список замечаний (Issue).
      */
     public List<Issue> evaluatePlantUml(String narrative, String ragContext, String plantUml) {
-        // Экранируем все параметры перед вставкой в String.format
-        String safeNarrative = PromptUtils.fullEscape(narrative);
-        String safeRagContext = PromptUtils.fullEscape(normalizeContext(ragContext));
-        String safePlantUml = PromptUtils.fullEscape(truncateIfNeeded(plantUml, 50000));
+        return LlmExecutor.await(evaluatePlantUmlAsync(narrative, ragContext, plantUml));
+    }
 
-        // Загружаем промпт из БД (или кэша)
-        String promptTemplate = promptService.getByCode("evaluator_plantuml");
+    /**
+     * Асинхронный вариант {@link #evaluatePlantUml}.
+     */
+    public CompletableFuture<List<Issue>> evaluatePlantUmlAsync(String narrative, String ragContext, String plantUml) {
+        return executor.submit(() -> {
+            // Загружаем промпт из БД (или кэша)
+            CompiledPrompt template = promptService.getTemplate("evaluator_plantuml");
 
-        String prompt = String.format(promptTemplate, safeNarrative, safeRagContext, safePlantUml);
+            PromptContextPacker.Packed context = contextPacker.packAfter(template.tokens(),
+                    Section.plantUml("model", plantUml, 0),
+                    Section.text("narrative", narrative, 1),
+                    Section.fragments("rag", ragContext, 2));
 
-        return parseIssuesFromResponse(prompt);
+            String prompt = template.render(context.get("narrative"), normalizeContext(context.get("rag")),
+                    context.get("model"));
+
+            return parseIssuesFromResponse(prompt, "evaluator_plantuml");
+        });
     }
 
     /**
@@ -58,109 +115,76 @@ public class EvaluatorService {
      * Возвращает список замечаний (Issue).
      */
     public List<Issue> evaluateNarrative(String narrative, String ragContext) {
-        String safeNarrative = PromptUtils.fullEscape(narrative);
-        String safeRagContext = PromptUtils.fullEscape(normalizeContext(ragContext));
+        return LlmExecutor.await(evaluateNarrativeAsync(narrative, ragContext));
+    }
+
+    /**
+     * Асинхронный вариант {@link #evaluateNarrative}.
+     */
+    public CompletableFuture<List<Issue>> evaluateNarrativeAsync(String narrative, String ragContext) {
+        return executor.submit(() -> {
+            // Загружаем промпт из БД (или кэша)
+            CompiledPrompt template = promptService.getTemplate("evaluator_narrative");
 
-        // Загружаем промпт из БД (или кэша)
-        String promptTemplate = promptService.getByCode("evaluator_narrative");
+            PromptContextPacker.Packed context = contextPacker.packAfter(template.tokens(),
+                    Section.text("narrative", narrative, 0),
+                    Section.fragments("rag", ragContext, 1));
 
-        String prompt = String.format(promptTemplate, safeNarrative, safeRagContext);
+            String prompt = template.render(context.get("narrative"), normalizeContext(context.get("rag")));
 
-        return parseIssuesFromResponse(prompt);
+            return parseIssuesFromResponse(prompt, "evaluator_narrative");
+        });
     }
     
     /**
-     * Парсит ответ от LLM в список Issue с обработкой ошибок и попыткой исправления JSON.
+     * Вызывает LLM и разбирает ответ в список Issue. Оборванный или частично некорректный
+     * ответ не отбрасывается: возвращаются замечания, разобранные до ошибки.
      */
-    private List<Issue> parseIssuesFromResponse(String prompt) {
+    private List<Issue> parseIssuesFromResponse(String prompt, String promptCode) {
         try {
             String response = chat.prompt()
-                    .user(PromptUtils.stEscape(prompt))
+                    .advisors(a -> a.param(TokenLedgerService.PROMPT_CODE, promptCode))
+                    .messages(new UserMessage(prompt))
                     .options(OpenAiChatOptions.builder()
                             .temperature(1.0)
+                            .responseFormat(responseFormat)
                             .build())
                     .call()
                     .content();
             
             log.debug("Raw LLM response: {}", response);
-            
-            // Очищаем ответ от markdown форматирования, если есть
-            String cleanedJson = cleanJsonResponse(response);
-            log.debug("Cleaned JSON: {}", cleanedJson);
-            
-            // Пытаемся исправить распространенные ошибки JSON
-            String fixedJson = fixCommonJsonErrors(cleanedJson);
-            if (!cleanedJson.equals(fixedJson)) {
-                log.debug("Fixed JSON (was: {}): {}", cleanedJson, fixedJson);
-            }
-            
-            // Парсим JSON
-            Issue[] issues = objectMapper.readValue(fixedJson, Issue[].class);
-            log.info("Successfully parsed {} issues from LLM response", issues != null ? issues.length : 0);
-            return issues == null ? List.of() : Arrays.asList(issues);
+            return parseIssues(response);
             
         } catch (Exception e) {
-            log.error("Failed to parse issues from LLM response. Error: {}", e.getMessage(), e);
+            log.error("Failed to get issues from LLM. Error: {}", e.getMessage(), e);
             return List.of();
         }
     }
     
     /**
-     * Очищает ответ от markdown форматирования и лишнего текста.
+     * Разбирает текст ответа LLM в список Issue ({@link IssueStreamParser}).
+     * Пакетная видимость — для JMH-бенчмарка.
      */
-    private String cleanJsonResponse(String response) {
-        if (response == null || response.isBlank()) {
-            return "[]";
-        }
-        
-        String cleaned = response.replaceAll("```json\\s*", "")
-                                 .replaceAll("```\\s*", "")
-                                 .trim();
-        
-        int startIdx = cleaned.indexOf('[');
-        int endIdx = cleaned.lastIndexOf(']');
-        
-        if (startIdx >= 0 && endIdx > startIdx) {
-            cleaned = cleaned.substring(startIdx, endIdx + 1);
+    List<Issue> parseIssues(String response) {
+        List<Issue> issues = new ArrayList<>();
+        IssueStreamParser parser = new IssueStreamParser(issues::add);
+        parser.feed(response == null ? "" : response);
+        if (!parser.complete()) {
+            log.warn("Issue list in LLM response is incomplete or malformed, recovered {} issues", issues.size());
+        } else {
+            log.info("Successfully parsed {} issues from LLM response", issues.size());
         }
-        
-        return cleaned;
+        return issues;
     }
-    
+
     /**
-     * Исправляет распространенные ошибки в JSON, такие как отсутствующие запятые.
+     * Формат ответа со схемой списка замечаний ({@link StructuredOutput}).
      */
-    private String fixCommonJsonErrors(String json) {
-        if (json == null || json.isBlank()) {
-            return "[]";
-        }
-        
-        json = Pattern.compile("}\\s*\\{")
-                .matcher(json)
-                .replaceAll("}, {");
-        
-        json = Pattern.compile("(\"[^\"]+\")\\s*(\"[a-z]+)\":", Pattern.CASE_INSENSITIVE)
-                .matcher(json)
-                .replaceAll("$1, $2:");
-        
-        json = Pattern.compile("(\\d+)\\s*(\"[a-z]+)\":", Pattern.CASE_INSENSITIVE)
-                .matcher(json)
-                .replaceAll("$1, $2:");
-        
-        json = Pattern.compile("(true|false|null)\\s*(\"[a-z]+)\":", Pattern.CASE_INSENSITIVE)
-                .matcher(json)
-                .replaceAll("$1, $2:");
-        
-        return json;
+    static ResponseFormat responseFormat(String configured, String provider) {
+        return StructuredOutput.responseFormat(configured, provider, "issues", ISSUES_SCHEMA);
     }
 
     private static String normalizeContext(String ragContext) {
         return (ragContext == null || ragContext.isBlank()) ? "нет" : ragContext;
     }
-
-    private static String truncateIfNeeded(String text, int maxLength) {
-        if (text == null) return null;
-        if (text.length() <= maxLength) return text;
-        return text.substring(0, maxLength) + "\n\n[... текст обрезан для экономии токенов ...]";
-    }
 }
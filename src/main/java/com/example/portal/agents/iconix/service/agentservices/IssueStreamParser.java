@@ -0,0 +1,249 @@
+package com.example.portal.agents.iconix.service.agentservices;
+
+import com.example.portal.agents.iconix.model.Issue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Инкрементальный разбор списка замечаний из ответа LLM.
+ * <p>
+ * Текст подаётся фрагментами ({@link #feed}) — целиком или по мере прихода из потока;
+ * каждое замечание передаётся получателю, как только закрывается его объект.
+ * Поддерживаются корневой массив ({@code [ {...}, ... ]}), объект structured output
+ * ({@code {"issues": [ ... ]}}) — берётся первый массив его полей — и одиночный объект замечания
+ * без обёртки, который модель возвращает в режиме {@code json_object}.
+ * <p>
+ * Разбор терпим к типовым ошибкам модели без отдельных проходов исправления:
+ * текст и markdown до массива пропускаются, запятые между полями и объектами
+ * не обязательны, вложенные значения пропускаются. Если ответ оборван (лимит токенов),
+ * замечания, закрытые до обрыва, уже отданы получателю.
+ */
+public final class IssueStreamParser {
+
+    private enum State { SEEK, ARRAY, ELEMENT, DONE }
+
+    private final Consumer<Issue> sink;
+
+    private State state = State.SEEK;
+    private int issues;
+
+    // Лексер строк: общий для всех состояний, переживает границу фрагментов
+    private boolean inString;
+    private boolean escape;
+    private int unicodeDigits = -1;
+    private int unicodeValue;
+    private final StringBuilder token = new StringBuilder();
+
+    // Объект замечания
+    private final Map<String, String> fields = new HashMap<>();
+    private String key;
+    private boolean afterColon;
+    private int nested;
+    private boolean inLiteral;
+    // Корневой объект: обёртка {"issues": [...]} или одиночное замечание
+    private boolean root;
+
+    public IssueStreamParser(Consumer<Issue> sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Разбирает ответ целиком.
+     */
+    public static List<Issue> parse(String response) {
+        List<Issue> result = new ArrayList<>();
+        if (response != null) {
+            new IssueStreamParser(result::add).feed(response);
+        }
+        return result;
+    }
+
+    /**
+     * Подаёт очередной фрагмент ответа.
+     */
+    public void feed(CharSequence chunk) {
+        for (int i = 0; i < chunk.length() && state != State.DONE; i++) {
+            accept(chunk.charAt(i));
+        }
+    }
+
+    /**
+     * {@code true}, если массив замечаний закрыт — ответ разобран полностью.
+     */
+    public boolean complete() {
+        return state == State.DONE;
+    }
+
+    /**
+     * Сколько замечаний отдано получателю.
+     */
+    public int issues() {
+        return issues;
+    }
+
+    private void accept(char c) {
+        if (inString) {
+            string(c);
+            return;
+        }
+        switch (state) {
+            case SEEK -> {
+                if (c == '"') {
+                    inString = true;
+                } else if (c == '[') {
+                    state = State.ARRAY;
+                } else if (c == '{') {
+                    state = State.ELEMENT;
+                    root = true;
+                }
+            }
+            case ARRAY -> {
+                if (c == '{') {
+                    state = State.ELEMENT;
+                } else if (c == ']') {
+                    state = State.DONE;
+                } else if (c != ',' && !Character.isWhitespace(c) && issues == 0) {
+                    // Скобка в тексте до ответа («[Ревью]»), а не массив объектов
+                    state = State.SEEK;
+                }
+            }
+            case ELEMENT -> element(c);
+            case DONE -> { }
+        }
+    }
+
+    private void element(char c) {
+        if (inLiteral) {
+            if (Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '+') {
+                token.append(c);
+                return;
+            }
+            inLiteral = false;
+            String literal = token.toString();
+            token.setLength(0);
+            value("null".equals(literal) ? null : literal);
+        }
+        if (nested > 0) {
+            // Вложенный объект или массив: только отслеживаем глубину
+            if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                nested++;
+            } else if (c == '}' || c == ']') {
+                nested--;
+                if (nested == 0) {
+                    value(null);
+                }
+            }
+            return;
+        }
+        switch (c) {
+            case '"' -> inString = true;
+            case ':' -> afterColon = key != null;
+            case '{' -> {
+                if (root) {
+                    // Обёртка вложена глубже ({"result": {"issues": [...]}}) — корнем становится она
+                    clearElement();
+                } else {
+                    nested = 1;
+                }
+            }
+            case '[' -> {
+                if (root) {
+                    // Массив в корневом объекте — список замечаний
+                    clearElement();
+                    root = false;
+                    state = State.ARRAY;
+                } else {
+                    nested = 1;
+                }
+            }
+            case '}' -> emit();
+            case ',' -> { }
+            default -> {
+                if (!Character.isWhitespace(c)) {
+                    inLiteral = true;
+                    token.append(c);
+                }
+            }
+        }
+    }
+
+    private void string(char c) {
+        if (unicodeDigits >= 0) {
+            unicodeValue = unicodeValue * 16 + Character.digit(c, 16);
+            if (++unicodeDigits == 4) {
+                token.append((char) unicodeValue);
+                unicodeDigits = -1;
+            }
+            return;
+        }
+        if (escape) {
+            escape = false;
+            switch (c) {
+                case 'n' -> token.append('\n');
+                case 't' -> token.append('\t');
+                case 'r' -> token.append('\r');
+                case 'b' -> token.append('\b');
+                case 'f' -> token.append('\f');
+                case 'u' -> {
+                    unicodeDigits = 0;
+                    unicodeValue = 0;
+                }
+                default -> token.append(c);
+            }
+            return;
+        }
+        if (c == '\\') {
+            escape = true;
+        } else if (c == '"') {
+            inString = false;
+            if (state == State.ELEMENT && nested == 0) {
+                String text = token.toString();
+                if (afterColon) {
+                    value(text);
+                } else {
+                    key = text;
+                }
+            }
+            token.setLength(0);
+        } else if (state == State.ELEMENT && nested == 0) {
+            token.append(c);
+        }
+    }
+
+    private void value(String value) {
+        if (key != null) {
+            fields.put(key, value);
+        }
+        key = null;
+        afterColon = false;
+    }
+
+    private void emit() {
+        boolean emitted = !fields.isEmpty();
+        if (emitted) {
+            sink.accept(new Issue(fields.get("id"), fields.get("title"), fields.get("severity"),
+                    fields.get("suggestion")));
+            issues++;
+        }
+        clearElement();
+        if (root) {
+            // Одиночное замечание — весь ответ; пустые скобки в тексте до ответа пропускаются
+            root = false;
+            state = emitted ? State.DONE : State.SEEK;
+        } else {
+            state = State.ARRAY;
+        }
+    }
+
+    private void clearElement() {
+        fields.clear();
+        key = null;
+        afterColon = false;
+    }
+}
@@ -1,12 +1,20 @@
 package com.example.portal.agents.iconix.service.agentservices;
 
+import com.example.portal.agents.iconix.service.TokenLedgerService;
+import com.example.portal.prompt.service.CompiledPrompt;
 import com.example.portal.prompt.service.PromptService;
-import com.example.portal.shared.utils.PromptUtils;
+import com.example.portal.shared.llm.LlmExecutor;
+import com.example.portal.shared.llm.LlmLimiters;
+import com.example.portal.shared.llm.LlmSingleFlight;
+import com.example.portal.shared.metrics.PipelineMetrics;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Сервис для генерации пользовательского нарратива для ICONIX-моделирования.
  * <p>
@@ -18,11 +26,15 @@ public class NarrativeWriterService {
 
     private final ChatClient chat;
     private final PromptService promptService;
+    private final LlmExecutor executor;
 
     @Autowired
-    public NarrativeWriterService(ChatClient.Builder builder, PromptService promptService) {
-        this.chat = builder.build();
+    public NarrativeWriterService(ChatClient.Builder builder, PromptService promptService, PipelineMetrics metrics,
+                                  TokenLedgerService ledger, LlmSingleFlight singleFlight, LlmLimiters limiters, LlmExecutor executor) {
+        this.chat = builder.defaultAdvisors(metrics.llmAdvisor("narrative_writer"), ledger.advisor("narrative_writer"),
+                singleFlight.advisor("narrative_writer"), limiters.advisor()).build();
         this.promptService = promptService;
+        this.executor = executor;
     }
 
     /**
@@ -30,19 +42,28 @@ public class NarrativeWriterService {
      * бизнес-цели и RAG-контекста.
      */
     public String composeNarrative(String taskDescription, String goal, String ragContext) {
-        // Загружаем промпт из БД (или кэша)
-        String promptTemplate = promptService.getByCode("narrative_writer");
-
-        String prompt = String.format(promptTemplate,
-                safe(taskDescription), safe(goal), normalizeContext(ragContext));
-
-        return chat.prompt()
-                .user(PromptUtils.stEscape(prompt))
-                .options(OpenAiChatOptions.builder()
-                        .temperature(1.0)
-                        .build())
-                .call()
-                .content();
+        return LlmExecutor.await(composeNarrativeAsync(taskDescription, goal, ragContext));
+    }
+
+    /**
+     * Асинхронный вариант {@link #composeNarrative}.
+     */
+    public CompletableFuture<String> composeNarrativeAsync(String taskDescription, String goal, String ragContext) {
+        return executor.submit(() -> {
+            // Загружаем промпт из БД (или кэша)
+            CompiledPrompt template = promptService.getTemplate("narrative_writer");
+
+            String prompt = template.render(safe(taskDescription), safe(goal), normalizeContext(ragContext));
+
+            return chat.prompt()
+                    .advisors(a -> a.param(TokenLedgerService.PROMPT_CODE, "narrative_writer"))
+                    .messages(new UserMessage(prompt))
+                    .options(OpenAiChatOptions.builder()
+                            .temperature(1.0)
+                            .build())
+                    .call()
+                    .content();
+        });
     }
 
     private static String safe(String value) {
@@ -1,13 +1,23 @@
 package com.example.portal.agents.iconix.service.agentservices;
 
+import com.example.portal.agents.iconix.service.TokenLedgerService;
+import com.example.portal.prompt.service.CompiledPrompt;
 import com.example.portal.prompt.service.PromptService;
-import com.example.portal.shared.utils.PromptUtils;
+import com.example.portal.shared.llm.LlmExecutor;
+import com.example.portal.shared.llm.LlmLimiters;
+import com.example.portal.shared.llm.LlmSingleFlight;
+import com.example.portal.shared.metrics.PipelineMetrics;
+import com.example.portal.shared.service.PromptContextPacker;
+import com.example.portal.shared.service.PromptContextPacker.Section;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Сервис для построения диаграммы прецедентов (Use Case diagram).
  * <p>
@@ -20,33 +30,51 @@ public class UseCaseModellerService {
 
     private final ChatClient chat;
     private final PromptService promptService;
+    private final LlmExecutor executor;
+    private final PromptContextPacker contextPacker;
 
     @Autowired
-    public UseCaseModellerService(ChatClient.Builder builder, PromptService promptService) {
-        this.chat = builder.build();
+    public UseCaseModellerService(ChatClient.Builder builder, PromptService promptService, PipelineMetrics metrics,
+                                  TokenLedgerService ledger, LlmSingleFlight singleFlight, LlmLimiters limiters,
+                                  PromptContextPacker contextPacker, LlmExecutor executor) {
+        this.chat = builder.defaultAdvisors(metrics.llmAdvisor("usecase_modeller"), ledger.advisor("usecase_modeller"),
+                singleFlight.advisor("usecase_modeller"), limiters.advisor()).build();
         this.promptService = promptService;
+        this.executor = executor;
+        this.contextPacker = contextPacker;
     }
 
     /**
      * Генерирует PlantUML-диаграмму прецедентов на основе нарратива и доменной модели.
      */
     public String generateUseCasePlantUml(String narrative, String domainModelPlantUml, String ragContext) {
-        // Загружаем промпт из БД (или кэша)
-        String promptTemplate = promptService.getByCode("usecase_modeller");
-
-        // Экранируем все параметры перед вставкой
-        String safeNarrative = PromptUtils.fullEscape(narrative);
-        String safeDomainModel = PromptUtils.fullEscape(domainModelPlantUml);
-        String safeRagContext = PromptUtils.fullEscape(ragContext.isBlank() ? "нет" : ragContext);
-
-        String userPrompt = String.format(promptTemplate, safeNarrative, safeDomainModel, safeRagContext);
-
-        return chat.prompt()
-                .user(PromptUtils.stEscape(userPrompt))
-                .options(OpenAiChatOptions.builder()
-                        .temperature(1.0)
-                        .build())
-                .call()
-                .content();
+        return LlmExecutor.await(generateUseCasePlantUmlAsync(narrative, domainModelPlantUml, ragContext));
+    }
+
+    /**
+     * Асинхронный вариант {@link #generateUseCasePlantUml}.
+     */
+    public CompletableFuture<String> generateUseCasePlantUmlAsync(String narrative, String domainModelPlantUml, String ragContext) {
+        return executor.submit(() -> {
+            // Загружаем промпт из БД (или кэша)
+            CompiledPrompt template = promptService.getTemplate("usecase_modeller");
+
+            PromptContextPacker.Packed context = contextPacker.packAfter(template.tokens(),
+                    Section.text("narrative", narrative, 0),
+                    Section.plantUml("domain", domainModelPlantUml, 1),
+                    Section.fragments("rag", ragContext, 2));
+
+            String userPrompt = template.render(context.get("narrative"), context.get("domain"),
+                    context.get("rag").isBlank() ? "нет" : context.get("rag"));
+
+            return chat.prompt()
+                    .advisors(a -> a.param(TokenLedgerService.PROMPT_CODE, "usecase_modeller"))
+                    .messages(new UserMessage(userPrompt))
+                    .options(OpenAiChatOptions.builder()
+                            .temperature(1.0)
+                            .build())
+                    .call()
+                    .content();
+        });
     }
 }
@@ -6,6 +6,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
+import java.util.Set;
 
 @Component
 @RequiredArgsConstructor
@@ -19,6 +20,16 @@ public class MVCWorker implements Worker {
         return "mvc";
     }
 
+    @Override
+    public Set<String> inputKeys() {
+        return Set.of("plantuml", "useCaseModel");
+    }
+
+    @Override
+    public Set<String> promptCodes() {
+        return Set.of("mvc_modeller");
+    }
+
     @Override
     public void execute(Context ctx, Map<String, Object> args) {
         String narrative = ctx.narrativeEffective();
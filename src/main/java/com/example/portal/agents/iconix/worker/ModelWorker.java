@@ -18,6 +18,14 @@ public class ModelWorker implements Worker {
 
     @Override public String name() { return "model"; }
 
+    @Override public Set<String> inputKeys() { return Set.of("plantuml", "issues", "issuesRaw"); }
+
+    @Override
+    public Set<String> promptCodes() {
+        return Set.of("domain_modeller_system", "domain_modeller_generate",
+                "domain_modeller_refine", "domain_modeller_patch");
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public void execute(Context ctx, Map<String, Object> args) {
@@ -36,7 +44,11 @@ public class ModelWorker implements Worker {
             ctx.log("model.generate: " + plant.length() + " chars");
         } else {
             // 1) пробуем взять уже готовый List<Issue> из контекста
-            List<Issue> issues = (List<Issue>) ctx.state.get("issues");
+            // (после восстановления из JSON — сессии или мемо шага — там List<Map>)
+            Object stored = ctx.state.get("issues");
+            List<Issue> issues = stored instanceof List<?> list && list.stream().allMatch(Issue.class::isInstance)
+                    ? (List<Issue>) stored
+                    : null;
 
             // 2) иначе маппим из «сырого» вида (List<Map>)
             if (issues == null) {
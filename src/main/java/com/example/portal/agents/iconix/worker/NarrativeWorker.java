@@ -6,6 +6,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
+import java.util.Set;
 
 @Component
 @RequiredArgsConstructor
@@ -19,6 +20,16 @@ public class NarrativeWorker implements Worker {
         return "narrative";
     }
 
+    @Override
+    public Set<String> inputKeys() {
+        return Set.of();
+    }
+
+    @Override
+    public Set<String> promptCodes() {
+        return Set.of("narrative_writer");
+    }
+
     @Override
     public void execute(Context ctx, Map<String, Object> args) {
         String description = args != null && args.containsKey("description")
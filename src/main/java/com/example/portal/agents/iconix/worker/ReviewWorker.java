@@ -8,6 +8,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Component
@@ -19,6 +20,10 @@ public class ReviewWorker implements Worker {
 
     @Override public String name() { return "review"; }
 
+    @Override public Set<String> inputKeys() { return Set.of("plantuml"); }
+
+    @Override public Set<String> promptCodes() { return Set.of("evaluator_plantuml", "evaluator_narrative"); }
+
     @Override
     public void execute(Context ctx, Map<String, Object> args) {
         String target = String.valueOf(args.getOrDefault("target", "model"));
@@ -7,6 +7,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
+import java.util.Set;
 
 @Component
 @RequiredArgsConstructor
@@ -21,6 +22,16 @@ public class ScenarioWorker implements Worker {
         return "scenario";
     }
 
+    @Override
+    public Set<String> inputKeys() {
+        return Set.of("plantuml", "useCaseModel", "mvcDiagram");
+    }
+
+    @Override
+    public Set<String> promptCodes() {
+        return Set.of("scenario_writer");
+    }
+
     @Override
     public void execute(Context ctx, Map<String, Object> args) {
         String narrative = ctx.narrativeEffective();
@@ -13,6 +13,11 @@ public class UserReviewWorker implements Worker {
     public String name() {
         return "userReview";
     }
+
+    @Override
+    public boolean memoizable() {
+        return false; // Шаг — пауза для пользователя, а не вычисление
+    }
     
     @Override
     public void execute(Context ctx, Map<String, Object> args) throws Exception {
@@ -4,11 +4,34 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public interface Worker {
     String name(); // "model" | "review"
     void execute(Context ctx, Map<String, Object> args) throws Exception;
 
+    /**
+     * Ключи {@code ctx.state}, которые читает шаг (narrative, goal и task учитываются всегда).
+     * По ним считается хэш входа для мемоизации шага; {@code null} — всё состояние.
+     */
+    default Set<String> inputKeys() {
+        return null;
+    }
+
+    /**
+     * Коды промптов из справочника, которыми пользуется шаг: правка промпта меняет хэш входа.
+     */
+    default Set<String> promptCodes() {
+        return Set.of();
+    }
+
+    /**
+     * Можно ли повторно использовать результат шага при том же входе.
+     */
+    default boolean memoizable() {
+        return true;
+    }
+
     // Общий контекст пайплайна
     final class Context {
         public final String requestId;
@@ -1,10 +1,18 @@
 package com.example.portal.config;
 
+import com.example.portal.shared.llm.CircuitBreaker;
+import com.example.portal.shared.llm.HedgedChatModel;
+import com.example.portal.shared.llm.LlmLimiters;
+import com.example.portal.shared.llm.LlmRecordingStore;
+import com.example.portal.shared.llm.ReplayChatModel;
+import com.example.portal.shared.llm.SyntheticLatency;
+import com.example.portal.shared.metrics.PipelineMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -13,6 +21,11 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.web.client.RestClient;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
 /**
  * Конфигурация для создания ChatClient для различных LLM провайдеров.
  * Выбор провайдера осуществляется через app.llm-provider в application.yml
@@ -28,9 +41,9 @@ public class AiConfig {
     @Bean(name = "chatClient")
     @Primary
     @ConditionalOnProperty(name = "app.llm-provider", havingValue = "OPENAI", matchIfMissing = true)
-    public ChatClient openAiChatClient(ChatClient.Builder builder) {
+    public ChatClient openAiChatClient(ChatClient.Builder builder, PipelineMetrics metrics, LlmLimiters limiters) {
         log.info("Configuring ChatClient for OpenAI");
-        return builder.build();
+        return builder.defaultAdvisors(metrics.llmAdvisor("chat"), limiters.advisor()).build();
     }
     
     /**
@@ -46,6 +59,10 @@ public class AiConfig {
             @Value("${app.deepseek.base-url:https://api.deepseek.com}") String baseUrl,
             @Value("${app.deepseek.model:deepseek-chat}") String model
     ) {
+        return createDeepSeekChatModel(apiKey, baseUrl, model);
+    }
+
+    private static OpenAiChatModel createDeepSeekChatModel(String apiKey, String baseUrl, String model) {
         log.info("Configuring DeepSeek ChatModel with baseUrl: {}, model: {}", baseUrl, model);
         
         if (apiKey == null || apiKey.isBlank()) {
@@ -70,10 +87,103 @@ public class AiConfig {
     @Primary
     @ConditionalOnProperty(name = "app.llm-provider", havingValue = "DEEPSEEK")
     public ChatClient deepSeekChatClient(
-            @Qualifier("deepSeekChatModel") OpenAiChatModel chatModel
+            @Qualifier("deepSeekChatModel") OpenAiChatModel chatModel,
+            PipelineMetrics metrics,
+            LlmLimiters limiters
     ) {
         log.info("Configuring ChatClient for DeepSeek");
-        return ChatClient.builder(chatModel).build();
+        return ChatClient.builder(chatModel).defaultAdvisors(metrics.llmAdvisor("chat"), limiters.advisor()).build();
     }
-}
 
+    /**
+     * ChatModel записи/воспроизведения (используется когда app.llm-provider=REPLAY).
+     * Помечен @Primary, поэтому автоконфигурируемый ChatClient.Builder, через который работают
+     * агентные сервисы, тоже идёт через него. В режиме RECORD запросы проксируются
+     * в автоконфигурируемый OpenAiChatModel (spring.ai.openai.*), в режиме REPLAY сеть не используется.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "app.llm-provider", havingValue = "REPLAY")
+    public ReplayChatModel replayChatModel(
+            ObjectProvider<OpenAiChatModel> openAiChatModel,
+            @Value("${app.llm-replay.mode:REPLAY}") String mode,
+            @Value("${app.llm-replay.dir:llm-recordings}") String dir,
+            @Value("${app.llm-replay.latency.distribution:NONE}") String distribution,
+            @Value("${app.llm-replay.latency.fixed-ms:0}") long fixedMs,
+            @Value("${app.llm-replay.latency.min-ms:0}") long minMs,
+            @Value("${app.llm-replay.latency.max-ms:0}") long maxMs,
+            @Value("${app.llm-replay.latency.median-ms:0}") long medianMs,
+            @Value("${app.llm-replay.latency.sigma:0.5}") double sigma,
+            @Value("${app.llm-replay.latency.scale:1.0}") double scale
+    ) {
+        ReplayChatModel.Mode replayMode = ReplayChatModel.Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        SyntheticLatency latency = SyntheticLatency.parse(distribution, fixedMs, minMs, maxMs, medianMs, sigma, scale);
+        log.info("Configuring Replay ChatModel: mode={}, dir={}, latency={}", replayMode, dir, latency.distribution());
+
+        OpenAiChatModel delegate = replayMode == ReplayChatModel.Mode.RECORD ? openAiChatModel.getIfAvailable() : null;
+        return new ReplayChatModel(replayMode, new LlmRecordingStore(Path.of(dir)), delegate, latency);
+    }
+
+    /**
+     * ChatClient для записи/воспроизведения (используется когда app.llm-provider=REPLAY).
+     */
+    @Bean(name = "chatClient")
+    @Primary
+    @ConditionalOnProperty(name = "app.llm-provider", havingValue = "REPLAY")
+    public ChatClient replayChatClient(ReplayChatModel chatModel, PipelineMetrics metrics,
+                                       LlmLimiters limiters) {
+        log.info("Configuring ChatClient for Replay");
+        return ChatClient.builder(chatModel).defaultAdvisors(metrics.llmAdvisor("chat"), limiters.advisor()).build();
+    }
+
+    /**
+     * ChatModel с hedged-запросами и failover между OpenAI и DeepSeek (используется когда
+     * app.llm-provider=FAILOVER). Помечен @Primary, поэтому агентные сервисы тоже идут через него.
+     * OpenAI — автоконфигурируемый OpenAiChatModel (spring.ai.openai.*), DeepSeek — из app.deepseek.*;
+     * порядок задаёт app.llm-failover.primary. У каждого провайдера свой ограничитель ({@link LlmLimiters}).
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "app.llm-provider", havingValue = "FAILOVER")
+    public HedgedChatModel hedgedChatModel(
+            OpenAiChatModel openAiChatModel,
+            PipelineMetrics metrics,
+            LlmLimiters limiters,
+            @Value("${app.deepseek.api-key:}") String deepSeekApiKey,
+            @Value("${app.deepseek.base-url:https://api.deepseek.com}") String deepSeekBaseUrl,
+            @Value("${app.deepseek.model:deepseek-chat}") String deepSeekModel,
+            @Value("${app.llm-failover.primary:OPENAI}") String primary,
+            @Value("${app.llm-failover.hedge-quantile:0.95}") double hedgeQuantile,
+            @Value("${app.llm-failover.hedge-min-delay-ms:2000}") long hedgeMinDelayMs,
+            @Value("${app.llm-failover.hedge-max-delay-ms:30000}") long hedgeMaxDelayMs,
+            @Value("${app.llm-failover.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${app.llm-failover.circuit.open-ms:30000}") long openMs
+    ) {
+        Duration openDuration = Duration.ofMillis(openMs);
+        HedgedChatModel.Backend openAi = new HedgedChatModel.Backend("openai", openAiChatModel,
+                new CircuitBreaker(failureThreshold, openDuration), limiters.forProvider("openai"));
+        HedgedChatModel.Backend deepSeek = new HedgedChatModel.Backend("deepseek",
+                createDeepSeekChatModel(deepSeekApiKey, deepSeekBaseUrl, deepSeekModel),
+                new CircuitBreaker(failureThreshold, openDuration), limiters.forProvider("deepseek"));
+        List<HedgedChatModel.Backend> backends = "DEEPSEEK".equalsIgnoreCase(primary.trim())
+                ? List.of(deepSeek, openAi) : List.of(openAi, deepSeek);
+
+        HedgedChatModel model = new HedgedChatModel(backends, new HedgedChatModel.Settings(hedgeQuantile,
+                Duration.ofMillis(hedgeMinDelayMs), Duration.ofMillis(hedgeMaxDelayMs)), metrics);
+        log.info("Configuring {} (hedge p{}, {}..{} ms)", model, Math.round(hedgeQuantile * 100),
+                hedgeMinDelayMs, hedgeMaxDelayMs);
+        return model;
+    }
+
+    /**
+     * ChatClient для hedged/failover-режима (используется когда app.llm-provider=FAILOVER).
+     * Ограничитель не добавляется: вызовы ограничиваются по провайдерам внутри HedgedChatModel.
+     */
+    @Bean(name = "chatClient")
+    @Primary
+    @ConditionalOnProperty(name = "app.llm-provider", havingValue = "FAILOVER")
+    public ChatClient failoverChatClient(HedgedChatModel chatModel, PipelineMetrics metrics) {
+        log.info("Configuring ChatClient for OpenAI + DeepSeek failover");
+        return ChatClient.builder(chatModel).defaultAdvisors(metrics.llmAdvisor("chat")).build();
+    }
+}
@@ -93,6 +93,12 @@ public class PromptDataInitializer implements ApplicationRunner {
                 "prompts/orchestrator_plan.st",
                 "Промпт для OrchestratorService. Составление плана из 2-3 шагов для агентов.");
 
+        // 11. Пользовательский промпт для уточнения доменной модели правкой
+        seedPrompt("domain_modeller_patch",
+                "Domain Modeller — уточнение модели правкой",
+                DOMAIN_MODELLER_PATCH_PROMPT,
+                "Пользовательский промпт для refineModelWithIssues в режиме PATCH: LLM возвращает JSON с изменениями модели. Плейсхолдеры: нарратив, текущий PlantUML, замечания, RAG-контекст.");
+
         log.info("=== Инициализация промптов завершена ===");
     }
 
@@ -295,28 +301,64 @@ public class PromptDataInitializer implements ApplicationRunner {
             Максимум 12 элементов на диаграмме.
             """;
 
+    /** Пользовательский промпт для уточнения модели правкой (метод refineModelWithIssues, режим PATCH) */
+    private static final String DOMAIN_MODELLER_PATCH_PROMPT = """
+            НАРРАТИВ:
+            %s
+
+            ТЕКУЩАЯ МОДЕЛЬ (PlantUML):
+            %s
+
+            ЗАМЕЧАНИЯ ДЛЯ ПРАВКИ:
+            %s
+
+            ДОПОЛНИТЕЛЬНЫЙ КОНТЕКСТ (из RAG):
+            %s
+
+            Исправь модель по замечаниям, строго следуя ранее указанным правилам, но НЕ выводи модель целиком.
+            Верни ТОЛЬКО JSON-объект с изменениями относительно текущей модели:
+            {
+              "removeElements": ["алиас или имя удаляемого класса"],
+              "addElements": ["полное объявление нового класса в PlantUML вместе с телом в фигурных скобках"],
+              "changeElements": ["новое полное объявление изменённого класса с тем же алиасом"],
+              "removeRelations": ["удаляемая связь одной строкой PlantUML, как в текущей модели"],
+              "addRelations": ["новая связь одной строкой PlantUML"]
+            }
+
+            Правила:
+            - Связи удалённого класса удаляются автоматически, перечислять их не нужно.
+            - В связях используй алиасы классов из текущей модели.
+            - Если изменений какого-то вида нет — оставь пустой список.
+            - Если какое-то замечание неуместно — игнорируй его молча.
+            - Максимум 12 элементов на итоговой диаграмме.
+            """;
+
     /** Промпт для EvaluatorService.evaluatePlantUml */
     private static final String EVALUATOR_PLANTUML_PROMPT = """
 Ты — аналитик требований. Проведи ревью пользовательского нарратива и оцени его качество.
-Верни ТОЛЬКО валидный JSON-массив объектов без дополнительного текста, комментариев или форматирования.
+Верни ТОЛЬКО валидный JSON-объект с полем "issues" — массивом замечаний, без дополнительного текста, комментариев или форматирования.
 
 Формат ответа (строго соблюдай синтаксис JSON):
-[
-  {
-    "id": "1",
-    "title": "Название проблемы",
-    "severity": "LOW",
-    "suggestion": "Конкретное предложение по улучшению"
-  },
-  {
-    "id": "2",
-    "title": "Другая проблема",
-    "severity": "MEDIUM",
-    "suggestion": "Другое предложение"
-  }
-]
+{
+  "issues": [
+    {
+      "id": "1",
+      "title": "Название проблемы",
+      "severity": "LOW",
+      "suggestion": "Конкретное предложение по улучшению"
+    },
+    {
+      "id": "2",
+      "title": "Другая проблема",
+      "severity": "MEDIUM",
+      "suggestion": "Другое предложение"
+    }
+  ]
+}
 
 ВАЖНО:
+- Корень ответа — объект {"issues": [...]}, даже если замечание одно
+- Если замечаний нет, верни {"issues": []}
 - Каждое поле должно быть в кавычках
 - После каждого поля (кроме последнего в объекте) должна быть запятая
 - severity может быть только: LOW, MEDIUM, HIGH
@@ -340,25 +382,29 @@ PlantUML для оценки:
     /** Промпт для EvaluatorService.evaluateNarrative */
     private static final String EVALUATOR_NARRATIVE_PROMPT = """
 Ты — аналитик требований. Проведи ревью пользовательского нарратива и оцени его качество.
-Верни ТОЛЬКО валидный JSON-массив объектов без дополнительного текста, комментариев или форматирования.
+Верни ТОЛЬКО валидный JSON-объект с полем "issues" — массивом замечаний, без дополнительного текста, комментариев или форматирования.
 
 Формат ответа (строго соблюдай синтаксис JSON):
-[
-  {
-    "id": "1",
-    "title": "Название проблемы",
-    "severity": "LOW",
-    "suggestion": "Конкретное предложение по улучшению"
-  },
-  {
-    "id": "2",
-    "title": "Другая проблема",
-    "severity": "MEDIUM",
-    "suggestion": "Другое предложение"
-  }
-]
+{
+  "issues": [
+    {
+      "id": "1",
+      "title": "Название проблемы",
+      "severity": "LOW",
+      "suggestion": "Конкретное предложение по улучшению"
+    },
+    {
+      "id": "2",
+      "title": "Другая проблема",
+      "severity": "MEDIUM",
+      "suggestion": "Другое предложение"
+    }
+  ]
+}
 
 ВАЖНО:
+- Корень ответа — объект {"issues": [...]}, даже если замечание одно
+- Если замечаний нет, верни {"issues": []}
 - Каждое поле должно быть в кавычках
 - После каждого поля (кроме последнего в объекте) должна быть запятая
 - severity может быть только: LOW, MEDIUM, HIGH
@@ -0,0 +1,152 @@
+package com.example.portal.prompt.service;
+
+import com.example.portal.shared.utils.TokenCounter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Шаблон промпта, разобранный один раз на литеральные сегменты и слоты.
+ * <p>
+ * Синтаксис совместим с тем, что хранится в справочнике для {@code String.format}:
+ * <ul>
+ *   <li>{@code %s} — следующий по порядку слот;</li>
+ *   <li>{@code %2$s} — слот с явным номером (с 1);</li>
+ *   <li>{@code %%} — символ {@code %}, {@code %n} — перевод строки;</li>
+ *   <li>любой другой {@code %} — обычный символ (в отличие от {@code String.format}, не ошибка).</li>
+ * </ul>
+ * Значения подставляются как есть, за один проход, без экранирования {@code %} и фигурных скобок:
+ * результат уходит в модель готовым сообщением, минуя шаблонизатор ChatClient.
+ */
+public final class CompiledPrompt {
+
+    private final String code;
+    private final String[] literals;
+    private final int[] slots;
+    private final int slotCount;
+    private final int literalLength;
+    private final int literalTokens;
+
+    private CompiledPrompt(String code, String[] literals, int[] slots, int slotCount) {
+        this.code = code;
+        this.literals = literals;
+        this.slots = slots;
+        this.slotCount = slotCount;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+        this.literalTokens = TokenCounter.count(String.join("", literals));
+    }
+
+    /**
+     * Разбирает шаблон.
+     *
+     * @param code код промпта — для сообщений об ошибках
+     */
+    public static CompiledPrompt compile(String code, String template) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int nextSlot = 0;
+        int slotCount = 0;
+        int i = 0;
+        int n = template.length();
+        while (i < n) {
+            char c = template.charAt(i);
+            if (c != '%' || i + 1 >= n) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            char next = template.charAt(i + 1);
+            if (next == 's') {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                slots.add(nextSlot++);
+                slotCount = Math.max(slotCount, nextSlot);
+                i += 2;
+            } else if (next == '%') {
+                literal.append('%');
+                i += 2;
+            } else if (next == 'n') {
+                literal.append(System.lineSeparator());
+                i += 2;
+            } else {
+                int end = indexedSlotEnd(template, i + 1);
+                if (end > 0) {
+                    int slot = Integer.parseInt(template, i + 1, end - 2, 10) - 1;
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    slots.add(slot);
+                    slotCount = Math.max(slotCount, slot + 1);
+                    i = end;
+                } else {
+                    literal.append(c);
+                    i++;
+                }
+            }
+        }
+        literals.add(literal.toString());
+        return new CompiledPrompt(code, literals.toArray(String[]::new),
+                slots.stream().mapToInt(Integer::intValue).toArray(), slotCount);
+    }
+
+    /**
+     * Конец конструкции {@code N$s} (индекс после {@code s}) или -1.
+     */
+    private static int indexedSlotEnd(String template, int from) {
+        int i = from;
+        while (i < template.length() && Character.isDigit(template.charAt(i))) {
+            i++;
+        }
+        if (i == from || i > from + 3 || i + 1 >= template.length()
+                || template.charAt(i) != '$' || template.charAt(i + 1) != 's'
+                || template.charAt(from) == '0') {
+            return -1;
+        }
+        return i + 2;
+    }
+
+    /**
+     * Подставляет значения в слоты; {@code null} подставляется как пустая строка.
+     *
+     * @throws IllegalArgumentException если значений меньше, чем слотов
+     */
+    public String render(String... values) {
+        if (values.length < slotCount) {
+            throw new IllegalArgumentException("Промпт '" + code + "' ожидает " + slotCount
+                    + " параметров, передано " + values.length);
+        }
+        int capacity = literalLength;
+        for (int slot : slots) {
+            String value = values[slot];
+            capacity += value == null ? 0 : value.length();
+        }
+        StringBuilder sb = new StringBuilder(capacity);
+        for (int i = 0; i < slots.length; i++) {
+            sb.append(literals[i]);
+            String value = values[slots[i]];
+            if (value != null) {
+                sb.append(value);
+            }
+        }
+        return sb.append(literals[literals.length - 1]).toString();
+    }
+
+    public String code() {
+        return code;
+    }
+
+    public int slotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Токены литеральной части шаблона — для расчёта бюджета контекста.
+     */
+    public int tokens() {
+        return literalTokens;
+    }
+}
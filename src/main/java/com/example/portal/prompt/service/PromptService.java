@@ -4,6 +4,7 @@ import com.example.portal.prompt.entity.Prompt;
 import com.example.portal.prompt.entity.PromptHistory;
 import com.example.portal.prompt.repository.PromptHistoryRepository;
 import com.example.portal.prompt.repository.PromptRepository;
+import com.example.portal.shared.metrics.PipelineMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -33,6 +34,7 @@ public class PromptService {
 
     private final PromptRepository promptRepository;
     private final PromptHistoryRepository promptHistoryRepository;
+    private final PipelineMetrics metrics;
 
     /**
      * Кэш промптов: code -> content.
@@ -41,6 +43,12 @@ public class PromptService {
      */
     private final ConcurrentHashMap<String, String> cache = new ConcurrentHashMap<>();
 
+    /**
+     * Разобранные шаблоны: code -> CompiledPrompt.
+     * Шаблон разбирается один раз на версию текста и сбрасывается вместе с кэшем текста.
+     */
+    private final ConcurrentHashMap<String, CompiledPrompt> templates = new ConcurrentHashMap<>();
+
     /**
      * Получить текст промпта по его уникальному коду.
      * Сначала ищет в кэше, если не нашёл — загружает из БД и кладёт в кэш.
@@ -52,6 +60,7 @@ public class PromptService {
     public String getByCode(String code) {
         // Сначала пробуем взять из кэша — это самый быстрый путь
         String cached = cache.get(code);
+        metrics.cacheAccess("prompt", cached != null);
         if (cached != null) {
             return cached;
         }
@@ -68,6 +77,23 @@ public class PromptService {
         return prompt.getContent();
     }
 
+    /**
+     * Получить разобранный шаблон промпта по коду: слоты {@code %s} подставляются
+     * через {@link CompiledPrompt#render(String...)} без {@code String.format} и экранирования.
+     *
+     * @param code уникальный код промпта
+     * @return шаблон, разобранный один раз для текущей версии текста
+     * @throws IllegalArgumentException если промпт с таким кодом не найден
+     */
+    public CompiledPrompt getTemplate(String code) {
+        CompiledPrompt compiled = templates.get(code);
+        metrics.cacheAccess("prompt_template", compiled != null);
+        if (compiled != null) {
+            return compiled;
+        }
+        return templates.computeIfAbsent(code, c -> CompiledPrompt.compile(c, getByCode(c)));
+    }
+
     /**
      * Получить промпт-сущность по коду (включая все метаданные).
      *
@@ -129,6 +155,7 @@ public class PromptService {
         // Инвалидируем кэш для этого кода, чтобы при следующем обращении
         // агент получил обновлённый текст
         cache.remove(code);
+        templates.remove(code);
         log.info("Промпт '{}' обновлён, кэш инвалидирован", code);
 
         return saved;
@@ -153,6 +180,7 @@ public class PromptService {
      */
     public void clearCache() {
         cache.clear();
+        templates.clear();
         log.info("Кэш промптов очищен");
     }
 }
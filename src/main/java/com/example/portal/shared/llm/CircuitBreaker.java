@@ -0,0 +1,87 @@
+package com.example.portal.shared.llm;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker провайдера LLM.
+ * <ul>
+ *   <li>{@link State#CLOSED} — вызовы идут; {@code failureThreshold} ошибок подряд размыкают цепь;</li>
+ *   <li>{@link State#OPEN} — вызовы не идут {@code openDuration}, затем цепь полуоткрыта;</li>
+ *   <li>{@link State#HALF_OPEN} — пропускается один пробный вызов: успех замыкает цепь, ошибка снова размыкает.</li>
+ * </ul>
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier clock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Можно ли отправить вызов. В полуоткрытом состоянии разрешение выдаётся одному вызову,
+     * и его исход нужно сообщить через {@link #onSuccess()}, {@link #onFailure()} или {@link #release()}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (trialInFlight) {
+                    yield false;
+                }
+                trialInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+        }
+        trialInFlight = false;
+    }
+
+    /**
+     * Вызов отменён до результата (проиграл hedged-гонку): исход неизвестен, состояние не меняется.
+     */
+    public synchronized void release() {
+        trialInFlight = false;
+    }
+
+    public synchronized State state() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+}
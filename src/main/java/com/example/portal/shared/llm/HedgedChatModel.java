@@ -0,0 +1,245 @@
+package com.example.portal.shared.llm;
+
+import com.example.portal.shared.metrics.PipelineMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ChatModel поверх нескольких провайдеров (OpenAI, DeepSeek) с hedged-запросами и failover.
+ * <p>
+ * Запрос уходит первому провайдеру с замкнутой цепью. Если ответа нет дольше перцентиля
+ * {@code hedgeQuantile} его недавних задержек (в пределах {@code minHedgeDelay}..{@code maxHedgeDelay};
+ * до набора {@link #MIN_SAMPLES} замеров — {@code maxHedgeDelay}), тот же запрос уходит следующему
+ * провайдеру. Берётся первый успешный ответ, остальные запросы отменяются (прерывание потока
+ * обрывает HTTP-вызов). Ошибка провайдера сразу передаёт запрос следующему (failover).
+ * <p>
+ * У каждого провайдера свой {@link CircuitBreaker}: провайдер с разомкнутой цепью пропускается.
+ * Отменённый проигравший вызов на состояние цепи не влияет.
+ * <p>
+ * У каждого провайдера свой {@link LlmLimiter}: слот занимает каждый вызов, включая hedged-запросы,
+ * с приоритетом {@link LlmCallScope} вызывающего потока. Ответ 429 снижает лимит параллельности
+ * провайдера до передачи запроса следующему. Вызов, не дождавшийся слота, передаётся следующему
+ * провайдеру, не размыкая цепь.
+ * <p>
+ * Метрики (тег backend): {@code iconix.llm.hedge.sent} — отправлен hedged-запрос,
+ * {@code iconix.llm.failover} — запрос передан после ошибки или пропуска провайдера,
+ * {@code iconix.llm.hedge.winner} — чей ответ принят, {@code iconix.llm.circuit.state} —
+ * состояние цепи (0 — замкнута, 1 — полуоткрыта, 2 — разомкнута).
+ */
+@Slf4j
+public class HedgedChatModel implements ChatModel {
+
+    /** Минимум замеров, после которого задержка hedged-запроса считается по перцентилю. */
+    static final int MIN_SAMPLES = 20;
+
+    private static final int WINDOW = 200;
+
+    /**
+     * Провайдер в составе модели.
+     */
+    public record Backend(String name, ChatModel model, CircuitBreaker breaker, LlmLimiter limiter) {
+    }
+
+    public record Settings(double hedgeQuantile, Duration minHedgeDelay, Duration maxHedgeDelay) {
+    }
+
+    private final List<Backend> backends;
+    private final Map<Backend, LatencyWindow> latencies = new IdentityHashMap<>();
+    private final Settings settings;
+    private final PipelineMetrics metrics;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public HedgedChatModel(List<Backend> backends, Settings settings, PipelineMetrics metrics) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("At least one LLM backend is required");
+        }
+        this.backends = List.copyOf(backends);
+        this.settings = settings;
+        this.metrics = metrics;
+        for (Backend backend : this.backends) {
+            latencies.put(backend, new LatencyWindow(WINDOW));
+            metrics.gauge("iconix.llm.circuit.state", backend.breaker(),
+                    HedgedChatModel::stateValue,
+                    "backend", backend.name());
+        }
+    }
+
+    private static double stateValue(CircuitBreaker breaker) {
+        return switch (breaker.state()) {
+            case CLOSED -> 0;
+            case HALF_OPEN -> 1;
+            case OPEN -> 2;
+        };
+    }
+
+    public List<Backend> backends() {
+        return backends;
+    }
+
+    /**
+     * Через сколько отправить hedged-запрос, если провайдер ещё не ответил.
+     */
+    Duration hedgeDelay(Backend backend) {
+        LatencyWindow window = latencies.get(backend);
+        if (window.size() < MIN_SAMPLES) {
+            return settings.maxHedgeDelay();
+        }
+        long nanos = window.percentile(settings.hedgeQuantile());
+        return Duration.ofNanos(Math.clamp(nanos,
+                settings.minHedgeDelay().toNanos(), settings.maxHedgeDelay().toNanos()));
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        ExecutorCompletionService<ChatResponse> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<ChatResponse>, Attempt> running = new IdentityHashMap<>();
+        int nextIndex = 0;
+        RuntimeException lastError = null;
+        Attempt leader = null;
+
+        try {
+            while (true) {
+                // Запускаем следующего провайдера, если ничего не выполняется (старт или failover)
+                if (running.isEmpty()) {
+                    Attempt attempt = null;
+                    while (attempt == null && nextIndex < backends.size()) {
+                        Backend backend = backends.get(nextIndex++);
+                        attempt = start(backend, prompt, completion, running);
+                        if (attempt == null) {
+                            metrics.increment("iconix.llm.failover", "backend", backend.name());
+                        }
+                    }
+                    if (attempt == null) {
+                        if (lastError != null) {
+                            throw lastError;
+                        }
+                        throw new IllegalStateException("All LLM providers are unavailable (circuit open): "
+                                + backends.stream().map(Backend::name).toList());
+                    }
+                    leader = attempt;
+                }
+
+                Future<ChatResponse> done;
+                if (nextIndex < backends.size()) {
+                    done = completion.poll(hedgeDelay(leader.backend()).toNanos(), TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        Backend hedge = backends.get(nextIndex++);
+                        if (start(hedge, prompt, completion, running) != null) {
+                            metrics.increment("iconix.llm.hedge.sent", "backend", hedge.name());
+                            log.debug("LLM backend '{}' slow, hedged request sent to '{}'",
+                                    leader.backend().name(), hedge.name());
+                        }
+                        continue;
+                    }
+                } else {
+                    done = completion.take();
+                }
+
+                Attempt attempt = running.remove(done);
+                try {
+                    ChatResponse response = done.get();
+                    metrics.increment("iconix.llm.hedge.winner", "backend", attempt.backend().name());
+                    return response;
+                } catch (ExecutionException e) {
+                    lastError = e.getCause() instanceof RuntimeException runtime
+                            ? runtime : new IllegalStateException(e.getCause());
+                    if (running.isEmpty() && nextIndex < backends.size()) {
+                        metrics.increment("iconix.llm.failover", "backend", attempt.backend().name());
+                        log.warn("LLM backend '{}' failed, failing over: {}",
+                                attempt.backend().name(), lastError.getMessage());
+                    } else if (running.isEmpty()) {
+                        throw lastError;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for LLM response");
+        } finally {
+            // Проигравшие и брошенные вызовы отменяются
+            running.values().forEach(Attempt::cancel);
+        }
+    }
+
+    /**
+     * Отправляет запрос провайдеру; {@code null}, если его цепь разомкнута.
+     */
+    private Attempt start(Backend backend, Prompt prompt, ExecutorCompletionService<ChatResponse> completion,
+                          Map<Future<ChatResponse>, Attempt> running) {
+        if (!backend.breaker().tryAcquire()) {
+            return null;
+        }
+        AtomicBoolean cancelled = new AtomicBoolean();
+        LlmCallScope scope = LlmCallScope.current();
+        Future<ChatResponse> future = completion.submit(() -> {
+            long start = System.nanoTime();
+            try (LlmCallScope ignored = scope != null ? LlmCallScope.reopen(scope) : null) {
+                ChatResponse response = backend.limiter().call(backend.model(), prompt);
+                latencies.get(backend).record(System.nanoTime() - start);
+                backend.breaker().onSuccess();
+                return response;
+            } catch (RuntimeException | Error e) {
+                if (cancelled.get() || e instanceof LlmThrottledException) {
+                    backend.breaker().release();
+                } else {
+                    backend.breaker().onFailure();
+                }
+                throw e;
+            }
+        });
+        Attempt attempt = new Attempt(backend, future, cancelled);
+        running.put(future, attempt);
+        return attempt;
+    }
+
+    /**
+     * Потоковая генерация без hedging: первый провайдер с замкнутой цепью.
+     */
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        for (Backend backend : backends) {
+            if (backend.breaker().tryAcquire()) {
+                return backend.model().stream(prompt)
+                        .doOnComplete(() -> backend.breaker().onSuccess())
+                        .doOnError(e -> backend.breaker().onFailure())
+                        .doOnCancel(() -> backend.breaker().release());
+            }
+        }
+        return Flux.error(new IllegalStateException("All LLM providers are unavailable (circuit open)"));
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return backends.get(0).model().getDefaultOptions();
+    }
+
+    private record Attempt(Backend backend, Future<ChatResponse> future, AtomicBoolean cancelled) {
+
+        void cancel() {
+            cancelled.set(true);
+            future.cancel(true);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HedgedChatModel" + backends.stream().map(Backend::name).toList();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.portal.shared.llm;
+
+import java.util.Arrays;
+
+/**
+ * Скользящее окно последних задержек провайдера для расчёта перцентиля.
+ */
+final class LatencyWindow {
+
+    private final long[] samples;
+    private int next;
+    private int size;
+
+    LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Перцентиль задержки (0..1) по окну; -1, если замеров нет.
+     */
+    synchronized long percentile(double quantile) {
+        if (size == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * size) - 1;
+        return sorted[Math.clamp(index, 0, size - 1)];
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.portal.shared.llm;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Привязка вызовов LLM текущего потока к сессии workflow и шагу плана.
+ * <p>
+ * Оркестратор открывает область вокруг {@code Worker.execute}; advisors ChatClient
+ * читают её, чтобы отнести вызов к сессии. Области вкладываются: закрытие
+ * восстанавливает предыдущую. Приоритет области определяет место вызова в очереди
+ * {@link LlmLimiter}; вызовы вне области (чат) — {@link LlmPriority#INTERACTIVE}.
+ * <p>
+ * Область, открытая {@link #metered}, дополнительно считает токены своих вызовов ({@link Usage}),
+ * включая вложенные области и задачи {@link LlmExecutor}, — например, для одного Use Case
+ * при параллельной декомпозиции.
+ * <pre>{@code
+ * try (var scope = LlmCallScope.open(requestId, "model")) {
+ *     worker.execute(ctx, args);
+ * }
+ * }</pre>
+ */
+public final class LlmCallScope implements AutoCloseable {
+
+    private static final ThreadLocal<LlmCallScope> CURRENT = new ThreadLocal<>();
+
+    private final String requestId;
+    private final String worker;
+    private final LlmPriority priority;
+    private final Usage usage;
+    private final LlmCallScope previous;
+
+    private LlmCallScope(String requestId, String worker, LlmPriority priority, Usage usage,
+                         LlmCallScope previous) {
+        this.requestId = requestId;
+        this.worker = worker;
+        this.priority = priority;
+        this.usage = usage;
+        this.previous = previous;
+    }
+
+    /**
+     * Счётчик вызовов и токенов области; учитывается и во внешнем счётчике.
+     */
+    public static final class Usage {
+
+        private final Usage parent;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+
+        private Usage(Usage parent) {
+            this.parent = parent;
+        }
+
+        public void add(long prompt, long completion) {
+            calls.increment();
+            promptTokens.add(prompt);
+            completionTokens.add(completion);
+            if (parent != null) {
+                parent.add(prompt, completion);
+            }
+        }
+
+        public long calls() {
+            return calls.sum();
+        }
+
+        public long promptTokens() {
+            return promptTokens.sum();
+        }
+
+        public long completionTokens() {
+            return completionTokens.sum();
+        }
+    }
+
+    public static LlmCallScope open(String requestId, String worker) {
+        return open(requestId, worker, LlmPriority.WORKFLOW);
+    }
+
+    public static LlmCallScope open(String requestId, String worker, LlmPriority priority) {
+        LlmCallScope previous = CURRENT.get();
+        return push(new LlmCallScope(requestId, worker, priority, previous != null ? previous.usage : null,
+                previous));
+    }
+
+    /**
+     * Открывает область со своим счётчиком токенов ({@link #usage()}).
+     */
+    public static LlmCallScope metered(String requestId, String worker, LlmPriority priority) {
+        LlmCallScope previous = CURRENT.get();
+        return push(new LlmCallScope(requestId, worker, priority,
+                new Usage(previous != null ? previous.usage : null), previous));
+    }
+
+    /**
+     * Открывает в текущем потоке копию области другого потока (с тем же счётчиком токенов).
+     */
+    static LlmCallScope reopen(LlmCallScope scope) {
+        return push(new LlmCallScope(scope.requestId, scope.worker, scope.priority, scope.usage, CURRENT.get()));
+    }
+
+    private static LlmCallScope push(LlmCallScope scope) {
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Текущая область или {@code null}, если вызов идёт вне сессии (например, чат).
+     */
+    public static LlmCallScope current() {
+        return CURRENT.get();
+    }
+
+    public String requestId() {
+        return requestId;
+    }
+
+    public String worker() {
+        return worker;
+    }
+
+    public LlmPriority priority() {
+        return priority;
+    }
+
+    /**
+     * Счётчик токенов ближайшей области {@link #metered} или {@code null}.
+     */
+    public Usage usage() {
+        return usage;
+    }
+
+    @Override
+    public void close() {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.portal.shared.llm;
+
+/**
+ * Вызов LLM не завершился до дедлайна ({@link LlmExecutor}); выполнявший его поток прерван.
+ */
+public class LlmDeadlineExceededException extends RuntimeException {
+
+    public LlmDeadlineExceededException(String message) {
+        super(message);
+    }
+}
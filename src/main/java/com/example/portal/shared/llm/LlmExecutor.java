@@ -0,0 +1,116 @@
+package com.example.portal.shared.llm;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Асинхронное выполнение вызовов LLM на виртуальных потоках.
+ * <p>
+ * Вызов ChatClient остаётся блокирующим и проходит ту же цепочку advisors, но в отдельном
+ * виртуальном потоке, поэтому вызывающий может запустить несколько вызовов и дождаться их вместе:
+ * <pre>{@code
+ * CompletableFuture<List<Issue>> review = evaluator.evaluatePlantUmlAsync(narrative, rag, model);
+ * CompletableFuture<String> useCases = useCaseModeller.generateUseCasePlantUmlAsync(narrative, model, rag);
+ * }</pre>
+ * <ul>
+ *   <li>{@link LlmCallScope} вызывающего потока переносится в задачу — журнал токенов и приоритет
+ *       в очереди {@link LlmLimiter} те же, что у синхронного вызова;</li>
+ *   <li>{@code future.cancel(true)} прерывает поток задачи: ожидание в очереди ограничителя,
+ *       single-flight или HTTP-вызов обрываются;</li>
+ *   <li>по дедлайну future завершается {@link LlmDeadlineExceededException}, поток задачи прерывается.</li>
+ * </ul>
+ * Синхронные методы сервисов — обёртки {@link #await} над асинхронными.
+ */
+@Component
+public class LlmExecutor {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Duration defaultDeadline;
+
+    public LlmExecutor(@Value("${app.llm-async.deadline-ms:300000}") long deadlineMs) {
+        this.defaultDeadline = deadlineMs > 0 ? Duration.ofMillis(deadlineMs) : null;
+    }
+
+    /**
+     * Запускает вызов с дедлайном по умолчанию ({@code app.llm-async.deadline-ms}).
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> call) {
+        return submit(call, defaultDeadline);
+    }
+
+    /**
+     * Запускает вызов; {@code deadline == null} — без дедлайна.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> call, Duration deadline) {
+        LlmCallScope scope = LlmCallScope.current();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try (LlmCallScope ignored = scope != null ? LlmCallScope.reopen(scope) : null) {
+                result.complete(call.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        if (deadline != null) {
+            result.orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        // Отмена или дедлайн прерывают поток задачи
+        result.whenComplete((value, error) -> {
+            if (error instanceof CancellationException || error instanceof TimeoutException) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Ждёт результат асинхронного вызова: ошибка задачи пробрасывается как есть,
+     * истёкший дедлайн — {@link LlmDeadlineExceededException}. Прерывание ожидающего
+     * потока отменяет задачу.
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for LLM response");
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof TimeoutException) {
+            return new LlmDeadlineExceededException("LLM call did not complete before the deadline");
+        }
+        if (error instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (error instanceof Error fatal) {
+            throw fatal;
+        }
+        return new IllegalStateException(error);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
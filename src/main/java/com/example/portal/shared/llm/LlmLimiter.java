@@ -0,0 +1,338 @@
+package com.example.portal.shared.llm;
+
+import com.example.portal.shared.metrics.PipelineMetrics;
+import com.example.portal.shared.utils.TokenCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.core.Ordered;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Ограничитель вызовов LLM-провайдера: лимиты запросов и токенов в минуту (token bucket)
+ * и адаптивный лимит параллельных вызовов (AIMD).
+ * <p>
+ * Лимит параллельности:
+ * <ul>
+ *   <li>ответ 429 — лимит делится пополам;</li>
+ *   <li>задержка растёт (короткое скользящее среднее больше длинного в {@code latency-tolerance} раз) —
+ *       лимит уменьшается на 10%;</li>
+ *   <li>иначе, если лимит используется хотя бы наполовину, — растёт на {@code 1/limit} за вызов
+ *       (примерно +1 за «окно» из limit вызовов).</li>
+ * </ul>
+ * Задержка нормируется на число токенов ответа: длинный ответ сам по себе не признак перегрузки.
+ * <p>
+ * Вызовы, не получившие слот, ждут в очереди по приоритету ({@link LlmPriority}, затем по времени
+ * прихода): чат обслуживается раньше шагов workflow, шаги — раньше декомпозиции. Токены запроса
+ * оцениваются заранее (промпт + {@code maxTokens} или {@code completion-tokens-estimate}) и
+ * уточняются по usage ответа. Вызов, не дождавшийся слота за {@code queue-timeout}, завершается
+ * {@link LlmThrottledException}.
+ * <p>
+ * Ограничитель у каждого провайдера свой (лимиты провайдеров независимы), экземпляры создаёт
+ * {@link LlmLimiters}. Метрики помечены тегом provider:
+ * <ul>
+ *   <li>{@code iconix.llm.queue} — время ожидания слота; теги priority, outcome (success / timeout / cancelled)</li>
+ *   <li>{@code iconix.llm.concurrency.limit}, {@code iconix.llm.inflight}, {@code iconix.llm.queued} — gauges</li>
+ *   <li>{@code iconix.llm.rate_limited} — ответы 429</li>
+ * </ul>
+ */
+@Slf4j
+public class LlmLimiter {
+
+    private static final Pattern STATUS_429 = Pattern.compile("(^|\\D)429(\\D|$)");
+
+    private static final double SHORT_ALPHA = 0.3;
+    private static final double LONG_ALPHA = 0.02;
+    private static final double LATENCY_BACKOFF = 0.9;
+    private static final double RATE_LIMIT_BACKOFF = 0.5;
+
+    /**
+     * Настройки ограничителя ({@code app.llm-limiter.*}, для провайдера —
+     * {@code app.llm-limiter.providers.<provider>.*}).
+     */
+    public record Settings(boolean enabled,
+                           long requestsPerMinute,
+                           long tokensPerMinute,
+                           int completionTokensEstimate,
+                           int initialConcurrency,
+                           int minConcurrency,
+                           int maxConcurrency,
+                           double latencyTolerance,
+                           Duration queueTimeout) {
+    }
+
+    private final PipelineMetrics metrics;
+    private final Settings settings;
+    private final String provider;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparing(Waiter::priority).thenComparingLong(Waiter::seq));
+    private final TokenBucket requests;
+    private final TokenBucket tokens;
+
+    private volatile double limit;
+    private volatile int inFlight;
+    private long seq;
+    private double shortLatency;
+    private double longLatency;
+
+    /**
+     * @param provider имя провайдера: тег метрик и сообщения об ошибках
+     */
+    public LlmLimiter(PipelineMetrics metrics, String provider, Settings settings) {
+        if (settings.minConcurrency() < 1 || settings.maxConcurrency() < settings.minConcurrency()) {
+            throw new IllegalArgumentException("app.llm-limiter.concurrency (" + provider
+                    + "): expected 1 <= min <= max, got min="
+                    + settings.minConcurrency() + ", max=" + settings.maxConcurrency());
+        }
+        this.metrics = metrics;
+        this.settings = settings;
+        this.provider = provider;
+        long now = System.nanoTime();
+        this.requests = new TokenBucket(settings.requestsPerMinute(), now);
+        this.tokens = new TokenBucket(settings.tokensPerMinute(), now);
+        this.limit = Math.clamp(settings.initialConcurrency(), settings.minConcurrency(), settings.maxConcurrency());
+
+        metrics.gauge("iconix.llm.concurrency.limit", this, LlmLimiter::limit, "provider", provider);
+        metrics.gauge("iconix.llm.inflight", this, LlmLimiter::inFlight, "provider", provider);
+        metrics.gauge("iconix.llm.queued", this, LlmLimiter::queued, "provider", provider);
+    }
+
+    /**
+     * Advisor для ChatClient: каждый вызов LLM проходит через ограничитель.
+     */
+    public CallAroundAdvisor advisor() {
+        return new LimiterAdvisor();
+    }
+
+    /**
+     * Вызов модели через ограничитель, без ChatClient: так {@link HedgedChatModel} ограничивает
+     * каждый вызов своих провайдеров, включая hedged-запросы.
+     */
+    public ChatResponse call(ChatModel model, Prompt prompt) {
+        return limited(prompt.getInstructions(), prompt.getOptions(), () -> model.call(prompt), Function.identity());
+    }
+
+    /**
+     * Текущий лимит параллельных вызовов.
+     */
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight;
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Занимает слот: ждёт своей очереди, свободного места в лимите параллельности и в лимитах в минуту.
+     *
+     * @param estimatedTokens оценка токенов запроса и ответа
+     * @throws LlmThrottledException слот не получен за {@code queue-timeout}
+     * @throws CancellationException поток прерван во время ожидания
+     */
+    Permit acquire(LlmPriority priority, int estimatedTokens) {
+        long start = System.nanoTime();
+        long deadline = start + settings.queueTimeout().toNanos();
+        String outcome = "timeout";
+        lock.lock();
+        Waiter waiter = new Waiter(priority, seq++);
+        queue.add(waiter);
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                long wait = Long.MAX_VALUE;
+                if (queue.peek() == waiter && inFlight < (int) limit) {
+                    wait = Math.max(requests.delayNanos(1, now), tokens.delayNanos(estimatedTokens, now));
+                    if (wait == 0) {
+                        queue.poll();
+                        requests.take(1);
+                        tokens.take(estimatedTokens);
+                        inFlight++;
+                        outcome = PipelineMetrics.SUCCESS;
+                        // Следующий в очереди может пройти, если место ещё есть
+                        changed.signalAll();
+                        return new Permit(estimatedTokens, inFlight);
+                    }
+                }
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    throw new LlmThrottledException("LLM provider '" + provider + "' slot not acquired within "
+                            + settings.queueTimeout().toMillis() + " ms (limit " + (int) limit
+                            + ", in flight " + inFlight + ", queued " + queue.size() + ")");
+                }
+                changed.awaitNanos(Math.min(wait, remaining));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome = "cancelled";
+            throw new CancellationException("Interrupted while waiting for LLM provider slot");
+        } finally {
+            if (!PipelineMetrics.SUCCESS.equals(outcome)) {
+                queue.remove(waiter);
+                changed.signalAll();
+            }
+            lock.unlock();
+            metrics.record("iconix.llm.queue", System.nanoTime() - start, outcome,
+                    "provider", provider, "priority", priority.name().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Освобождает слот и подстраивает лимит по результату вызова.
+     *
+     * @param usage usage ответа или {@code null}
+     * @param error исключение вызова или {@code null}
+     */
+    void release(Permit permit, long latencyNanos, Usage usage, Throwable error) {
+        boolean rateLimited = error != null && isRateLimited(error);
+        lock.lock();
+        try {
+            inFlight--;
+            if (usage != null && usage.getTotalTokens() != null && usage.getTotalTokens() > 0) {
+                tokens.adjust(usage.getTotalTokens() - permit.estimatedTokens());
+            }
+            if (rateLimited) {
+                limit = Math.max(settings.minConcurrency(), limit * RATE_LIMIT_BACKOFF);
+            } else if (error == null) {
+                Integer completion = usage != null ? usage.getCompletionTokens() : null;
+                onLatency(latencyNanos / (double) Math.max(1, completion != null ? completion : 1),
+                        permit.inFlightAtStart());
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (rateLimited) {
+            metrics.increment("iconix.llm.rate_limited", "provider", provider);
+            log.warn("LLM provider '{}' rate limited (429), concurrency limit reduced to {}", provider, (int) limit);
+        }
+    }
+
+    private void onLatency(double latency, int inFlightAtStart) {
+        shortLatency = shortLatency == 0 ? latency : shortLatency + SHORT_ALPHA * (latency - shortLatency);
+        longLatency = longLatency == 0 ? latency : longLatency + LONG_ALPHA * (latency - longLatency);
+        if (shortLatency > settings.latencyTolerance() * longLatency) {
+            limit = Math.max(settings.minConcurrency(), limit * LATENCY_BACKOFF);
+        } else if (inFlightAtStart * 2 >= (int) limit) {
+            limit = Math.min(settings.maxConcurrency(), limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Ответ провайдера 429: HTTP-исключение клиента или исключение Spring AI с кодом в сообщении
+     * ({@code "429 - {...}"}).
+     */
+    static boolean isRateLimited(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof RestClientResponseException e && e.getStatusCode().value() == 429) {
+                return true;
+            }
+            if (t instanceof WebClientResponseException e && e.getStatusCode().value() == 429) {
+                return true;
+            }
+            if ((t instanceof NonTransientAiException || t instanceof TransientAiException)
+                    && t.getMessage() != null && STATUS_429.matcher(t.getMessage()).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Выполняет вызов, заняв слот; приоритет — из {@link LlmCallScope} текущего потока.
+     *
+     * @param response ответ провайдера из результата вызова (для usage)
+     */
+    private <T> T limited(List<Message> messages, ChatOptions options, Supplier<T> call,
+                          Function<T, ChatResponse> response) {
+        if (!settings.enabled()) {
+            return call.get();
+        }
+        LlmCallScope scope = LlmCallScope.current();
+        Permit permit = acquire(scope != null ? scope.priority() : LlmPriority.INTERACTIVE,
+                estimateTokens(messages, options));
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException | Error e) {
+            release(permit, System.nanoTime() - start, null, e);
+            throw e;
+        }
+        ChatResponse chatResponse = response.apply(result);
+        Usage usage = chatResponse != null && chatResponse.getMetadata() != null
+                ? chatResponse.getMetadata().getUsage() : null;
+        release(permit, System.nanoTime() - start, usage, null);
+        return result;
+    }
+
+    private int estimateTokens(List<Message> messages, ChatOptions options) {
+        int promptTokens = 0;
+        for (Message message : messages) {
+            promptTokens += TokenCounter.count(message.getText());
+        }
+        Integer maxTokens = options != null ? options.getMaxTokens() : null;
+        return promptTokens + (maxTokens != null ? maxTokens : settings.completionTokensEstimate());
+    }
+
+    record Permit(int estimatedTokens, int inFlightAtStart) {
+    }
+
+    private record Waiter(LlmPriority priority, long seq) {
+    }
+
+    private final class LimiterAdvisor implements CallAroundAdvisor {
+
+        @Override
+        public AdvisedResponse aroundCall(AdvisedRequest request, CallAroundAdvisorChain chain) {
+            return limited(request.toPrompt().getInstructions(), request.chatOptions(),
+                    () -> chain.nextAroundCall(request), AdvisedResponse::response);
+        }
+
+        @Override
+        public String getName() {
+            return "llm-limiter";
+        }
+
+        @Override
+        public int getOrder() {
+            // Самый внутренний: присоединившиеся к single-flight вызовы слот не занимают
+            return Ordered.HIGHEST_PRECEDENCE + 3;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.portal.shared.llm;
+
+import com.example.portal.shared.metrics.PipelineMetrics;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ограничители вызовов LLM ({@link LlmLimiter}) по провайдерам: у каждого провайдера свои лимиты
+ * в минуту, адаптивный лимит параллельности и очередь.
+ * <p>
+ * Настройки — {@code app.llm-limiter.*}; значения {@code app.llm-limiter.providers.<provider>.*}
+ * (например, {@code providers.deepseek.requests-per-minute}) перекрывают общие для этого провайдера.
+ * Имя провайдера — {@code openai}, {@code deepseek}, {@code replay}.
+ * <p>
+ * В режиме {@code app.llm-provider=FAILOVER} ограничители стоят на каждом вызове провайдера внутри
+ * {@link HedgedChatModel}, а advisor ChatClient вызовы не ограничивает.
+ */
+@Component
+public class LlmLimiters {
+
+    private static final String PREFIX = "app.llm-limiter.";
+    private static final String FAILOVER = "failover";
+
+    private final PipelineMetrics metrics;
+    private final Environment environment;
+    private final ConcurrentHashMap<String, LlmLimiter> limiters = new ConcurrentHashMap<>();
+
+    public LlmLimiters(PipelineMetrics metrics, Environment environment) {
+        this.metrics = metrics;
+        this.environment = environment;
+    }
+
+    /**
+     * Ограничитель провайдера; создаётся при первом обращении.
+     */
+    public LlmLimiter forProvider(String provider) {
+        String name = provider.toLowerCase(Locale.ROOT);
+        return limiters.computeIfAbsent(name, key -> new LlmLimiter(metrics, key, settings(key)));
+    }
+
+    /**
+     * Advisor для ChatClient: вызовы проходят через ограничитель провайдера {@code app.llm-provider}.
+     */
+    public CallAroundAdvisor advisor() {
+        return FAILOVER.equals(metrics.provider())
+                ? new PassThroughAdvisor() : forProvider(metrics.provider()).advisor();
+    }
+
+    LlmLimiter.Settings settings(String provider) {
+        return new LlmLimiter.Settings(
+                property(provider, "enabled", Boolean.class, true),
+                property(provider, "requests-per-minute", Long.class, 500L),
+                property(provider, "tokens-per-minute", Long.class, 200_000L),
+                property(provider, "completion-tokens-estimate", Integer.class, 1000),
+                property(provider, "concurrency.initial", Integer.class, 8),
+                property(provider, "concurrency.min", Integer.class, 1),
+                property(provider, "concurrency.max", Integer.class, 32),
+                property(provider, "latency-tolerance", Double.class, 2.0),
+                Duration.ofMillis(property(provider, "queue-timeout-ms", Long.class, 120_000L)));
+    }
+
+    private <T> T property(String provider, String key, Class<T> type, T defaultValue) {
+        T common = environment.getProperty(PREFIX + key, type, defaultValue);
+        return environment.getProperty(PREFIX + "providers." + provider + "." + key, type, common);
+    }
+
+    private static final class PassThroughAdvisor implements CallAroundAdvisor {
+
+        @Override
+        public AdvisedResponse aroundCall(AdvisedRequest request, CallAroundAdvisorChain chain) {
+            return chain.nextAroundCall(request);
+        }
+
+        @Override
+        public String getName() {
+            return "llm-limiter";
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE + 3;
+        }
+    }
+}
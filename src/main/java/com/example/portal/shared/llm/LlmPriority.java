@@ -0,0 +1,14 @@
+package com.example.portal.shared.llm;
+
+/**
+ * Приоритет вызова LLM в очереди {@link LlmLimiter}: при нехватке слотов
+ * первым обслуживается интерактивный чат, последней — пакетная декомпозиция.
+ */
+public enum LlmPriority {
+    /** Чат: пользователь ждёт ответа. */
+    INTERACTIVE,
+    /** Шаг workflow. */
+    WORKFLOW,
+    /** Пакетная работа: декомпозиция прецедентов. */
+    BATCH
+}
@@ -0,0 +1,141 @@
+package com.example.portal.shared.llm;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Файловое хранилище записанных ответов LLM.
+ * <p>
+ * Ключ — SHA-256 от сообщений промпта (тип + текст), один файл {@code <hash>.json} на промпт.
+ * Для одного промпта может быть записано несколько ответов (температура 1.0 даёт разные),
+ * при воспроизведении они выдаются по кругу.
+ */
+@Slf4j
+public class LlmRecordingStore {
+
+    private static final Optional<Recording> MISSING = Optional.empty();
+
+    private final Path directory;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private final ConcurrentHashMap<String, Optional<Recording>> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicInteger> cursors = new ConcurrentHashMap<>();
+
+    public LlmRecordingStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Стабильный хэш промпта: не зависит от модели и опций, только от сообщений.
+     */
+    public static String hash(Prompt prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Message message : prompt.getInstructions()) {
+                digest.update(message.getMessageType().name().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+                String text = message.getText();
+                if (text != null) {
+                    digest.update(text.getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Следующий записанный ответ для промпта (по кругу) или пусто, если записи нет.
+     */
+    public Optional<RecordedResponse> next(String hash) {
+        Optional<Recording> recording = cache.computeIfAbsent(hash, this::load);
+        if (recording.isEmpty() || recording.get().responses().isEmpty()) {
+            return Optional.empty();
+        }
+        List<RecordedResponse> responses = recording.get().responses();
+        int index = cursors.computeIfAbsent(hash, h -> new AtomicInteger()).getAndIncrement();
+        return Optional.of(responses.get(Math.floorMod(index, responses.size())));
+    }
+
+    /**
+     * Дописывает ответ к записи промпта. Файл перезаписывается атомарно (через временный файл).
+     */
+    public synchronized void append(String hash, Prompt prompt, RecordedResponse response) {
+        Recording current = cache.computeIfAbsent(hash, this::load).orElse(null);
+        List<RecordedResponse> responses = new ArrayList<>();
+        if (current != null) {
+            responses.addAll(current.responses());
+        }
+        responses.add(response);
+
+        List<RecordedMessage> messages = prompt.getInstructions().stream()
+                .map(m -> new RecordedMessage(m.getMessageType().name(), m.getText()))
+                .toList();
+        Recording updated = new Recording(hash, messages, List.copyOf(responses));
+
+        try {
+            Files.createDirectories(directory);
+            Path target = file(hash);
+            Path tmp = Files.createTempFile(directory, hash, ".tmp");
+            objectMapper.writeValue(tmp.toFile(), updated);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write LLM recording " + hash, e);
+        }
+        cache.put(hash, Optional.of(updated));
+        log.debug("Recorded LLM response {} (variants: {})", hash, responses.size());
+    }
+
+    private Optional<Recording> load(String hash) {
+        Path path = file(hash);
+        if (!Files.isRegularFile(path)) {
+            return MISSING;
+        }
+        try {
+            return Optional.of(objectMapper.readValue(path.toFile(), Recording.class));
+        } catch (IOException e) {
+            log.warn("Failed to read LLM recording {}: {}", path, e.getMessage());
+            return MISSING;
+        }
+    }
+
+    private Path file(String hash) {
+        return directory.resolve(hash + ".json");
+    }
+
+    public record Recording(String hash, List<RecordedMessage> prompt, List<RecordedResponse> responses) {}
+
+    public record RecordedMessage(String type, String text) {}
+
+    /**
+     * Записанный ответ: текст, фактическая задержка и usage, если провайдер его вернул.
+     */
+    public record RecordedResponse(String text, long latencyMs, String model,
+                                   Integer promptTokens, Integer completionTokens, String recordedAt) {}
+}
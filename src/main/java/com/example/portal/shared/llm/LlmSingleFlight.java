@@ -0,0 +1,209 @@
+package com.example.portal.shared.llm;
+
+import com.example.portal.shared.metrics.PipelineMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Single-flight для вызовов LLM: одинаковые промпты, отправленные одновременно
+ * (двойной клик «запустить», декомпозиция одного прецедента двумя пользователями),
+ * уходят к провайдеру один раз.
+ * <p>
+ * Первый вызов с данным ключом становится ведущим и выполняет запрос; вызовы с тем же
+ * ключом, пришедшие до его завершения, ждут и получают тот же {@link ChatResponse}.
+ * Ключ — хэш сообщений промпта ({@link LlmRecordingStore#hash}), модель, опции и ChatModel.
+ * <ul>
+ *   <li>ошибка ведущего передаётся всем присоединившимся;</li>
+ *   <li>если ведущий прерван (отмена шага), присоединившиеся не наследуют отмену —
+ *       один из них становится новым ведущим и повторяет запрос;</li>
+ *   <li>прерванный во время ожидания вызов выходит сразу, не затрагивая ведущего.</li>
+ * </ul>
+ * Ответ присоединившемуся помечается в контексте advisor ключом {@link #JOINED}:
+ * журнал токенов и метрики токенов его не учитывают — оплачен только вызов ведущего.
+ */
+@Slf4j
+@Component
+public class LlmSingleFlight {
+
+    /** Ключ контекста ответа: {@code true}, если ответ получен от чужого вызова. */
+    public static final String JOINED = "singleFlight.joined";
+
+    private final PipelineMetrics metrics;
+    private final boolean enabled;
+    private final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    public LlmSingleFlight(PipelineMetrics metrics,
+                           @Value("${app.llm-single-flight.enabled:true}") boolean enabled) {
+        this.metrics = metrics;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Advisor для ChatClient агентного сервиса.
+     *
+     * @param agent имя агента (тег метрики), например "domain_modeller"
+     */
+    public CallAroundAdvisor advisor(String agent) {
+        return new SingleFlightAdvisor(agent);
+    }
+
+    /**
+     * Признак ответа, полученного от чужого вызова.
+     */
+    public static boolean isJoined(AdvisedResponse response) {
+        return response.adviseContext() != null && Boolean.TRUE.equals(response.adviseContext().get(JOINED));
+    }
+
+    /**
+     * Количество вызовов, выполняющихся сейчас (ведущих).
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    static String key(AdvisedRequest request) {
+        Prompt prompt = request.toPrompt();
+        ChatOptions options = request.chatOptions();
+        StringBuilder key = new StringBuilder(LlmRecordingStore.hash(prompt))
+                .append('|').append(System.identityHashCode(request.chatModel()));
+        if (options != null) {
+            key.append('|').append(options.getModel())
+                    .append('|').append(options.getTemperature())
+                    .append('|').append(options.getTopP())
+                    .append('|').append(options.getMaxTokens());
+        }
+        return key.toString();
+    }
+
+    private AdvisedResponse call(String agent, AdvisedRequest request, CallAroundAdvisorChain chain) {
+        String key = key(request);
+        while (true) {
+            Flight flight = new Flight();
+            Flight leader = inFlight.putIfAbsent(key, flight);
+            if (leader == null) {
+                return lead(key, flight, request, chain);
+            }
+            AdvisedResponse joined = join(agent, leader, request);
+            if (joined != null) {
+                return joined;
+            }
+            // Ведущий отменён — повторяем: этот вызов может стать новым ведущим
+        }
+    }
+
+    private AdvisedResponse lead(String key, Flight flight, AdvisedRequest request, CallAroundAdvisorChain chain) {
+        AdvisedResponse response;
+        try {
+            response = chain.nextAroundCall(request);
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, flight);
+            flight.result.completeExceptionally(isCancellation(e) ? new LeaderCancelled() : e);
+            throw e;
+        }
+        inFlight.remove(key, flight);
+        flight.result.complete(response.response());
+        return response;
+    }
+
+    /**
+     * Ожидание ответа ведущего; {@code null} — ведущий отменён, нужно повторить.
+     */
+    private AdvisedResponse join(String agent, Flight leader, AdvisedRequest request) {
+        ChatResponse response;
+        try {
+            response = leader.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for identical in-flight LLM request");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof LeaderCancelled) {
+                log.debug("In-flight LLM request was cancelled, retrying as leader candidate (agent: {})", agent);
+                return null;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+        metrics.llmCoalesced(agent);
+        log.debug("LLM request joined an identical in-flight call (agent: {})", agent);
+        Map<String, Object> context = new HashMap<>(request.adviseContext());
+        context.put(JOINED, true);
+        return new AdvisedResponse(response, context);
+    }
+
+    private static boolean isCancellation(Throwable e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof InterruptedIOException
+                    || t instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Flight {
+        private final CompletableFuture<ChatResponse> result = new CompletableFuture<>();
+    }
+
+    /**
+     * Маркер отмены ведущего: присоединившиеся повторяют запрос, а не получают отмену.
+     */
+    private static final class LeaderCancelled extends RuntimeException {
+        private LeaderCancelled() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final class SingleFlightAdvisor implements CallAroundAdvisor {
+
+        private final String agent;
+
+        private SingleFlightAdvisor(String agent) {
+            this.agent = agent;
+        }
+
+        @Override
+        public AdvisedResponse aroundCall(AdvisedRequest request, CallAroundAdvisorChain chain) {
+            if (!enabled) {
+                return chain.nextAroundCall(request);
+            }
+            return call(agent, request, chain);
+        }
+
+        @Override
+        public String getName() {
+            return "single-flight-" + agent;
+        }
+
+        @Override
+        public int getOrder() {
+            // После метрик и журнала: присоединившийся вызов видят оба, но без токенов
+            return Ordered.HIGHEST_PRECEDENCE + 2;
+        }
+    }
+}
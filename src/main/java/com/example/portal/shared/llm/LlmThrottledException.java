@@ -0,0 +1,11 @@
+package com.example.portal.shared.llm;
+
+/**
+ * Вызов LLM не дождался слота у ограничителя провайдера ({@link LlmLimiter}) за отведённое время.
+ */
+public class LlmThrottledException extends RuntimeException {
+
+    public LlmThrottledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.portal.shared.llm;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * ChatModel для офлайн-прогонов: записывает ответы реального провайдера или воспроизводит их.
+ * <p>
+ * RECORD — запрос уходит в делегат (реальный ChatModel), ответ и фактическая задержка
+ * сохраняются в {@link LlmRecordingStore} по хэшу промпта.
+ * REPLAY — ответ берётся из записи, сеть не нужна; задержка имитируется по {@link SyntheticLatency}.
+ * Если записи для промпта нет, бросается исключение — «тихий» ответ-заглушка
+ * сломал бы разбор моделей дальше по конвейеру и исказил бы результаты прогона.
+ */
+@Slf4j
+public class ReplayChatModel implements ChatModel {
+
+    public enum Mode { RECORD, REPLAY }
+
+    public static final String MODEL_NAME = "replay";
+
+    private final Mode mode;
+    private final LlmRecordingStore store;
+    private final ChatModel delegate;
+    private final SyntheticLatency latency;
+
+    public ReplayChatModel(Mode mode, LlmRecordingStore store, ChatModel delegate, SyntheticLatency latency) {
+        if (mode == Mode.RECORD && delegate == null) {
+            throw new IllegalArgumentException("Record mode requires a delegate ChatModel");
+        }
+        this.mode = mode;
+        this.store = store;
+        this.delegate = delegate;
+        this.latency = latency != null ? latency : SyntheticLatency.NONE;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        String hash = LlmRecordingStore.hash(prompt);
+        return mode == Mode.RECORD ? record(hash, prompt) : replay(hash);
+    }
+
+    private ChatResponse record(String hash, Prompt prompt) {
+        long start = System.nanoTime();
+        ChatResponse response = delegate.call(prompt);
+        long latencyMs = (System.nanoTime() - start) / 1_000_000;
+
+        String text = response.getResult() != null ? response.getResult().getOutput().getText() : null;
+        ChatResponseMetadata metadata = response.getMetadata();
+        Usage usage = metadata != null ? metadata.getUsage() : null;
+        store.append(hash, prompt, new LlmRecordingStore.RecordedResponse(
+                text,
+                latencyMs,
+                metadata != null ? metadata.getModel() : null,
+                usage != null ? usage.getPromptTokens() : null,
+                usage != null ? usage.getCompletionTokens() : null,
+                Instant.now().toString()));
+        return response;
+    }
+
+    private ChatResponse replay(String hash) {
+        LlmRecordingStore.RecordedResponse recorded = store.next(hash).orElseThrow(() ->
+                new IllegalStateException("No LLM recording for prompt " + hash + " in " + store.directory()
+                        + " — run once with app.llm-replay.mode=RECORD to capture it"));
+
+        sleep(latency.nextDelayMs(recorded.latencyMs()));
+
+        ChatResponseMetadata.Builder metadata = ChatResponseMetadata.builder()
+                .id(hash)
+                .model(recorded.model() != null ? recorded.model() : MODEL_NAME);
+        if (recorded.promptTokens() != null || recorded.completionTokens() != null) {
+            metadata.usage(new DefaultUsage(recorded.promptTokens(), recorded.completionTokens()));
+        }
+        return new ChatResponse(
+                List.of(new Generation(new AssistantMessage(recorded.text()))),
+                metadata.build());
+    }
+
+    private static void sleep(long delayMs) {
+        if (delayMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while simulating LLM latency", e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.portal.shared.llm;
+
+import org.springframework.ai.openai.api.ResponseFormat;
+
+import java.util.Locale;
+
+/**
+ * Формат ответа LLM для structured output ({@code response_format}).
+ * <p>
+ * OpenAI принимает {@code json_schema} — ответ строго по схеме; DeepSeek поддерживает только
+ * {@code json_object}, а в режиме FAILOVER запрос может уйти к нему, поэтому для обоих — {@code json_object}.
+ */
+public final class StructuredOutput {
+
+    private StructuredOutput() {
+    }
+
+    /**
+     * @param configured явно заданный формат ({@code JSON_SCHEMA}, {@code JSON_OBJECT}, {@code TEXT});
+     *                   пусто — по провайдеру
+     * @param provider   {@code app.llm-provider}
+     * @param name       имя схемы
+     * @param schema     JSON Schema ответа
+     * @return формат для {@code OpenAiChatOptions.responseFormat}; {@code null} — обычный текст
+     */
+    public static ResponseFormat responseFormat(String configured, String provider, String name, String schema) {
+        String type = configured == null || configured.isBlank()
+                ? ("deepseek".equalsIgnoreCase(provider) || "failover".equalsIgnoreCase(provider)
+                        ? "JSON_OBJECT" : "JSON_SCHEMA")
+                : configured.trim().toUpperCase(Locale.ROOT);
+        return switch (type) {
+            case "JSON_SCHEMA" -> ResponseFormat.builder()
+                    .type(ResponseFormat.Type.JSON_SCHEMA)
+                    .jsonSchema(ResponseFormat.JsonSchema.builder()
+                            .name(name)
+                            .schema(schema)
+                            .strict(true)
+                            .build())
+                    .build();
+            case "JSON_OBJECT" -> ResponseFormat.builder().type(ResponseFormat.Type.JSON_OBJECT).build();
+            case "TEXT" -> null;
+            default -> throw new IllegalArgumentException("Unknown response format: " + configured);
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.portal.shared.llm;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Модель искусственной задержки ответа LLM при воспроизведении записей.
+ * <ul>
+ *   <li>NONE — без задержки (бенчмарки, тесты)</li>
+ *   <li>RECORDED — задержка, измеренная при записи</li>
+ *   <li>FIXED — постоянная задержка {@code fixedMs}</li>
+ *   <li>UNIFORM — равномерно в [{@code minMs}, {@code maxMs}]</li>
+ *   <li>LOGNORMAL — логнормальное распределение с медианой {@code medianMs} и {@code sigma};
+ *       ближе всего к реальному распределению времени ответа LLM (длинный хвост)</li>
+ * </ul>
+ * Итоговая задержка умножается на {@code scale} — удобно «ускорять» прогоны.
+ */
+public record SyntheticLatency(Distribution distribution, long fixedMs, long minMs, long maxMs,
+                               long medianMs, double sigma, double scale) {
+
+    public enum Distribution { NONE, RECORDED, FIXED, UNIFORM, LOGNORMAL }
+
+    public static final SyntheticLatency NONE =
+            new SyntheticLatency(Distribution.NONE, 0, 0, 0, 0, 0, 1.0);
+
+    public static SyntheticLatency parse(String distribution, long fixedMs, long minMs, long maxMs,
+                                         long medianMs, double sigma, double scale) {
+        Distribution d = distribution == null || distribution.isBlank()
+                ? Distribution.NONE
+                : Distribution.valueOf(distribution.trim().toUpperCase(Locale.ROOT));
+        return new SyntheticLatency(d, fixedMs, minMs, Math.max(minMs, maxMs), medianMs, sigma, scale);
+    }
+
+    /**
+     * Задержка в миллисекундах для очередного ответа.
+     *
+     * @param recordedMs задержка, измеренная при записи ответа
+     */
+    public long nextDelayMs(long recordedMs) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double base = switch (distribution) {
+            case NONE -> 0;
+            case RECORDED -> recordedMs;
+            case FIXED -> fixedMs;
+            case UNIFORM -> minMs == maxMs ? minMs : random.nextLong(minMs, maxMs + 1);
+            case LOGNORMAL -> medianMs * Math.exp(sigma * random.nextGaussian());
+        };
+        return Math.max(0, Math.round(base * scale));
+    }
+}
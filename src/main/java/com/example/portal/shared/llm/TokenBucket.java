@@ -0,0 +1,62 @@
+package com.example.portal.shared.llm;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket с лимитом «единиц в минуту» (запросы или токены LLM).
+ * <p>
+ * Ёмкость — минутный лимит, пополнение равномерное. Остаток может уйти в минус:
+ * фактический расход токенов становится известен только после ответа, и перерасход
+ * оплачивается задержкой следующих вызовов. Не потокобезопасен — вызывается под
+ * блокировкой {@link LlmLimiter}.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final double perNano;
+    private double available;
+    private long refilledAt;
+
+    TokenBucket(long perMinute, long now) {
+        this.capacity = perMinute;
+        this.perNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.available = perMinute;
+        this.refilledAt = now;
+    }
+
+    /**
+     * Через сколько наносекунд можно взять {@code amount}; 0 — можно сейчас.
+     * Запрос больше ёмкости ждёт полного ведра, иначе он не прошёл бы никогда.
+     */
+    long delayNanos(double amount, long now) {
+        refill(now);
+        double need = Math.min(amount, capacity);
+        if (available >= need) {
+            return 0;
+        }
+        return (long) Math.ceil((need - available) / perNano);
+    }
+
+    void take(double amount) {
+        available -= amount;
+    }
+
+    /**
+     * Поправка после ответа: положительная — перерасход, отрицательная — возврат.
+     */
+    void adjust(double delta) {
+        available = Math.min(capacity, available - delta);
+    }
+
+    double available(long now) {
+        refill(now);
+        return available;
+    }
+
+    private void refill(long now) {
+        if (now > refilledAt) {
+            available = Math.min(capacity, available + (now - refilledAt) * perNano);
+            refilledAt = now;
+        }
+    }
+}
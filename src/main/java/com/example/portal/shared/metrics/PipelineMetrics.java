@@ -0,0 +1,201 @@
+package com.example.portal.shared.metrics;
+
+import com.example.portal.shared.llm.LlmSingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Метрики конвейера агентов (Micrometer, экспорт через /actuator/prometheus).
+ * <p>
+ * Все таймеры публикуют гистограмму (бакеты Prometheus) и тег {@code outcome}:
+ * <ul>
+ *   <li>{@code iconix.worker.execute} — шаг workflow; теги worker, outcome (success / paused / error)</li>
+ *   <li>{@code iconix.llm.request} — вызов LLM; теги agent, provider, model, outcome</li>
+ *   <li>{@code iconix.llm.tokens} — счётчик токенов; теги agent, provider, model, type (prompt / completion)</li>
+ *   <li>{@code iconix.rag.retrieve}, {@code iconix.embedding.request}, {@code iconix.render},
+ *       {@code iconix.session.save} — RAG, эмбеддинги, рендер PlantUML/AsciiDoc, сохранение сессии</li>
+ *   <li>{@code iconix.cache.access} — обращения к кэшам; теги cache, result (hit / miss)</li>
+ *   <li>{@code iconix.llm.coalesced} — вызовы LLM, присоединённые к идентичному вызову в полёте; тег agent</li>
+ * </ul>
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String SUCCESS = "success";
+    public static final String ERROR = "error";
+    public static final String PAUSED = "paused";
+
+    private static final String UNKNOWN = "unknown";
+
+    private final MeterRegistry registry;
+    private final String provider;
+
+    public PipelineMetrics(MeterRegistry registry, @Value("${app.llm-provider:OPENAI}") String provider) {
+        this.registry = registry;
+        this.provider = provider.toLowerCase(Locale.ROOT);
+    }
+
+    public String provider() {
+        return provider;
+    }
+
+    /**
+     * Действие, время которого измеряется. Тип исключения выводится из лямбды,
+     * поэтому обёртка не меняет сигнатуру вызывающего метода.
+     */
+    @FunctionalInterface
+    public interface Measured<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * Выполняет действие и записывает его длительность в таймер {@code name}
+     * с тегом outcome = success / error.
+     *
+     * @param tags пары ключ-значение дополнительных тегов
+     */
+    public <T, E extends Exception> T time(String name, Measured<T, E> action, String... tags) throws E {
+        long start = System.nanoTime();
+        String outcome = ERROR;
+        try {
+            T result = action.call();
+            outcome = SUCCESS;
+            return result;
+        } finally {
+            record(name, System.nanoTime() - start, outcome, tags);
+        }
+    }
+
+    /**
+     * Обращение к кэшу (hit / miss).
+     */
+    public void cacheAccess(String cache, boolean hit) {
+        Counter.builder("iconix.cache.access")
+                .tag("cache", cache)
+                .tag("result", hit ? "hit" : "miss")
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Вызов LLM не отправлен провайдеру, а присоединён к идентичному вызову в полёте.
+     */
+    public void llmCoalesced(String agent) {
+        Counter.builder("iconix.llm.coalesced")
+                .tag("agent", agent)
+                .tag("provider", provider)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Счётчик событий с тегами.
+     */
+    public void increment(String name, String... tags) {
+        Counter.builder(name).tags(tags).register(registry).increment();
+    }
+
+    /**
+     * Gauge, читающий значение из объекта при каждом снятии метрик.
+     */
+    public <T> void gauge(String name, T object, ToDoubleFunction<T> value, String... tags) {
+        Gauge.builder(name, object, value).tags(tags).register(registry);
+    }
+
+    /**
+     * Advisor для ChatClient: время каждого вызова LLM и расход токенов из usage ответа.
+     *
+     * @param agent имя агента (тег agent), например "domain_modeller"
+     */
+    public CallAroundAdvisor llmAdvisor(String agent) {
+        return new LlmMetricsAdvisor(agent);
+    }
+
+    /**
+     * Записывает уже измеренную длительность — для мест, где outcome определяется
+     * не только исключением (пауза workflow, ошибка, перехваченная внутри метода).
+     */
+    public void record(String name, long nanos, String outcome, String... tags) {
+        Timer.builder(name)
+                .tags(tags)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void countTokens(String agent, String model, String type, Integer tokens) {
+        if (tokens == null || tokens <= 0) {
+            return;
+        }
+        Counter.builder("iconix.llm.tokens")
+                .tag("agent", agent)
+                .tag("provider", provider)
+                .tag("model", model)
+                .tag("type", type)
+                .register(registry)
+                .increment(tokens);
+    }
+
+    private final class LlmMetricsAdvisor implements CallAroundAdvisor {
+
+        private final String agent;
+
+        private LlmMetricsAdvisor(String agent) {
+            this.agent = agent;
+        }
+
+        @Override
+        public AdvisedResponse aroundCall(AdvisedRequest request, CallAroundAdvisorChain chain) {
+            long start = System.nanoTime();
+            String outcome = ERROR;
+            String model = UNKNOWN;
+            try {
+                AdvisedResponse response = chain.nextAroundCall(request);
+                ChatResponseMetadata metadata = response.response() != null ? response.response().getMetadata() : null;
+                if (metadata != null) {
+                    if (metadata.getModel() != null && !metadata.getModel().isBlank()) {
+                        model = metadata.getModel();
+                    }
+                    Usage usage = metadata.getUsage();
+                    // Ответ чужого вызова: токены уже учтены у ведущего
+                    if (usage != null && !LlmSingleFlight.isJoined(response)) {
+                        countTokens(agent, model, "prompt", usage.getPromptTokens());
+                        countTokens(agent, model, "completion", usage.getCompletionTokens());
+                    }
+                }
+                outcome = SUCCESS;
+                return response;
+            } finally {
+                record("iconix.llm.request", System.nanoTime() - start, outcome,
+                        "agent", agent, "provider", provider, "model", model);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "llm-metrics-" + agent;
+        }
+
+        @Override
+        public int getOrder() {
+            // Самый внешний: время включает все остальные advisors
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,652 @@
+package com.example.portal.shared.plantuml;
+
+import com.example.portal.shared.utils.TokenCounter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Разобранная PlantUML-диаграмма (классов, прецедентов, пригодности): объявления элементов,
+ * контейнеры (package, rectangle, namespace…), связи, заметки и прочие строки в исходном порядке.
+ * <p>
+ * Неизменённые инструкции выводятся {@link #render()} байт в байт, поэтому правка модели
+ * ({@link PlantUmlPatch}) затрагивает только изменённые строки. Элемент адресуется
+ * алиасом или именем ({@link #element(String)}).
+ * <p>
+ * При разборе строится индекс: элементы и контейнеры по алиасу и имени, связи по концам.
+ * По нему считается окрестность элементов ({@link #neighbourhood}) и выводится подмодель
+ * ({@link #extract}) — без повторного сканирования текста.
+ */
+public final class PlantUmlModel {
+
+    private static final String NAME = "\"[^\"]+\"|\\([^)]+\\)|:[^:]+:|[\\p{L}\\d_][^\\s{<]*";
+
+    private static final Pattern ELEMENT = Pattern.compile(
+            "^(?<kind>abstract\\s+class|abstract|class|interface|enum|entity|object|annotation"
+                    + "|actor|usecase|participant|boundary|control|database|component|rectangle)"
+                    + "\\s+(?<first>" + NAME + ")"
+                    + "(?:\\s+as\\s+(?<second>\"[^\"]+\"|[^\\s{<]+))?"
+                    + "\\s*(?<stereotype><<.*?>>)?.*$",
+            Pattern.CASE_INSENSITIVE);
+
+    /** Краткая запись прецедента {@code (Имя)} и актора {@code :Имя:}. */
+    private static final Pattern SHORT_ELEMENT = Pattern.compile(
+            "^(?<first>\\([^)]+\\)|:[^:]+:)(?:\\s+as\\s+(?<second>[^\\s{<]+))?\\s*(?<stereotype><<.*?>>)?\\s*$");
+
+    private static final Pattern CONTAINER = Pattern.compile(
+            "^(?<kind>package|namespace|rectangle|node|folder|frame|cloud|together|component|database)"
+                    + "(?:\\s+(?<first>" + NAME + "))?"
+                    + "(?:\\s+as\\s+(?<second>\"[^\"]+\"|[^\\s{<]+))?"
+                    + "\\s*(?<stereotype><<.*?>>)?[^{]*\\{\\s*$",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final String ENDPOINT = "\"[^\"]+\"|\\([^)]+\\)|:[^:]+:|[\\p{L}\\d_$]+";
+
+    private static final Pattern RELATION = Pattern.compile(
+            "^(?<from>" + ENDPOINT + ")\\s*(?:\"[^\"]*\")?\\s*"
+                    + "(?<arrow>[<>|*o#x+^{}]*(?:-+|\\.+)(?:\\[[^\\]]*\\])?(?:up|down|left|right|u|d|l|r)?"
+                    + "[-.]*[<>|*o#x+^{}]*)"
+                    + "\\s*(?:\"[^\"]*\")?\\s*(?<to>" + ENDPOINT + ")\\s*(?::\\s*(?<label>.*))?$");
+
+    private static final Pattern NOTE_TARGET = Pattern.compile(
+            "^note\\s+(?:left|right|top|bottom)\\s+of\\s+(?<target>" + ENDPOINT + ")", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Объявление элемента; {@code source} — исходный текст вместе с телом в фигурных скобках,
+     * {@code container} — идентификатор ближайшего контейнера или {@code null}.
+     */
+    public record Element(String kind, String name, String alias, String stereotype, String container,
+                          String source) {
+
+        /** Идентификатор, по которому на элемент ссылаются связи: алиас, иначе имя. */
+        public String id() {
+            return alias != null ? alias : name;
+        }
+    }
+
+    /**
+     * Контейнер ({@code package "useCase1" {}, {@code rectangle "Система" as box {}); {@code source} —
+     * открывающая строка, закрывающая скобка — отдельная инструкция.
+     */
+    public record Container(String kind, String name, String alias, String stereotype, String parent,
+                            String source) {
+
+        public String id() {
+            return alias != null ? alias : name;
+        }
+    }
+
+    /**
+     * Связь между элементами; концы — алиасы или имена, как в исходной строке.
+     */
+    public record Relation(String from, String to, String arrow, String label, String source) {
+    }
+
+    /** Закрывающая скобка контейнера. */
+    private record ContainerEnd(String source) {
+    }
+
+    /** Заметка (одна строка или блок до {@code end note}); {@code target} — элемент, к которому она относится. */
+    private record Note(String target, String source) {
+    }
+
+    /**
+     * Инструкции диаграммы: {@link Element}, {@link Container}, {@link ContainerEnd}, {@link Relation},
+     * {@link Note} или прочая строка ({@link String}).
+     */
+    private final List<Object> statements;
+
+    // Индекс, перестраивается после каждой правки
+    private Map<String, Element> elementsByRef;
+    private Map<String, Container> containersByRef;
+    private Map<String, List<Relation>> relationsByNode;
+
+    private PlantUmlModel(List<Object> statements) {
+        this.statements = statements;
+        reindex();
+    }
+
+    /**
+     * Разбирает текст диаграммы. Нераспознанные строки сохраняются как есть.
+     */
+    public static PlantUmlModel parse(String text) {
+        List<Object> statements = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return new PlantUmlModel(statements);
+        }
+        String[] lines = text.split("\n", -1);
+        Deque<String> containers = new ArrayDeque<>();
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            String trimmed = line.trim();
+            String lower = trimmed.toLowerCase(Locale.ROOT);
+
+            // Многострочные заметки и легенды: текст внутри не разбирается
+            String blockEnd = blockEnd(lower);
+            if (blockEnd != null) {
+                int end = i;
+                while (end < lines.length && !lines[end].trim().toLowerCase(Locale.ROOT).replace(" ", "")
+                        .startsWith(blockEnd)) {
+                    end++;
+                }
+                // Незакрытый блок (оборванный ответ) — только первая строка
+                end = end < lines.length ? end : i;
+                String source = String.join("\n", Arrays.copyOfRange(lines, i, end + 1));
+                statements.add(lower.startsWith("note") ? new Note(noteTarget(trimmed), source) : source);
+                i = end;
+                continue;
+            }
+            if (lower.startsWith("note ")) {
+                statements.add(new Note(noteTarget(trimmed), line));
+                continue;
+            }
+
+            if (trimmed.equals("}") && !containers.isEmpty()) {
+                containers.pop();
+                statements.add(new ContainerEnd(line));
+                continue;
+            }
+
+            Container container = parseContainer(trimmed, containers.peek(), line);
+            if (container != null) {
+                statements.add(container);
+                // Безымянный контейнер (together) прозрачен: элементы относятся к внешнему
+                containers.push(container.id() != null ? container.id()
+                        : containers.isEmpty() ? "" : containers.peek());
+                continue;
+            }
+
+            Element element = parseElementHeader(trimmed, containers.peek());
+            if (element != null) {
+                int end = bodyEnd(lines, i);
+                String source = String.join("\n", Arrays.copyOfRange(lines, i, end + 1));
+                statements.add(new Element(element.kind(), element.name(), element.alias(),
+                        element.stereotype(), element.container(), source));
+                i = end;
+                continue;
+            }
+
+            Relation relation = parseRelation(line);
+            statements.add(relation != null ? relation : line);
+        }
+        return new PlantUmlModel(statements);
+    }
+
+    /**
+     * Разбирает одиночное объявление элемента (с телом); {@code null}, если это не объявление.
+     */
+    public static Element parseElement(String source) {
+        if (source == null) {
+            return null;
+        }
+        String text = source.strip();
+        int newline = text.indexOf('\n');
+        Element header = parseElementHeader(newline < 0 ? text : text.substring(0, newline).trim(), null);
+        return header == null ? null
+                : new Element(header.kind(), header.name(), header.alias(), header.stereotype(), null, text);
+    }
+
+    /**
+     * Разбирает строку связи; {@code null}, если строка не является связью.
+     */
+    public static Relation parseRelation(String line) {
+        if (line == null) {
+            return null;
+        }
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("'") || trimmed.startsWith("@")) {
+            return null;
+        }
+        Matcher m = RELATION.matcher(trimmed);
+        if (!m.matches()) {
+            return null;
+        }
+        String label = m.group("label");
+        return new Relation(unquote(m.group("from")), unquote(m.group("to")), m.group("arrow"),
+                label == null ? null : label.trim(), line);
+    }
+
+    private static Element parseElementHeader(String trimmed, String container) {
+        Matcher m = ELEMENT.matcher(trimmed);
+        if (m.matches()) {
+            String[] nameAlias = nameAndAlias(m.group("first"), m.group("second"));
+            String kind = m.group("kind").toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+            return new Element(kind, nameAlias[0], nameAlias[1], m.group("stereotype"), container, trimmed);
+        }
+        m = SHORT_ELEMENT.matcher(trimmed);
+        if (m.matches()) {
+            String first = m.group("first");
+            return new Element(first.startsWith("(") ? "usecase" : "actor", unquote(first), m.group("second"),
+                    m.group("stereotype"), container, trimmed);
+        }
+        return null;
+    }
+
+    private static Container parseContainer(String trimmed, String parent, String line) {
+        Matcher m = CONTAINER.matcher(trimmed);
+        if (!m.matches()) {
+            return null;
+        }
+        String[] nameAlias = m.group("first") == null ? new String[] {null, null}
+                : nameAndAlias(m.group("first"), m.group("second"));
+        return new Container(m.group("kind").toLowerCase(Locale.ROOT), nameAlias[0], nameAlias[1],
+                m.group("stereotype"), parent, line);
+    }
+
+    /**
+     * Имя и алиас: {@code "Имя" as alias}, {@code alias as "Имя"} или просто {@code Имя}.
+     */
+    private static String[] nameAndAlias(String first, String second) {
+        if (second == null) {
+            return new String[] {unquote(first), null};
+        }
+        if (!first.startsWith("\"") && second.startsWith("\"")) {
+            return new String[] {unquote(second), first};
+        }
+        return new String[] {unquote(first), unquote(second)};
+    }
+
+    /**
+     * Признак конца многострочного блока (без пробелов), если строка его открывает.
+     */
+    private static String blockEnd(String lower) {
+        if (lower.startsWith("note ") && !lower.contains(":") && !lower.startsWith("note \"")) {
+            return "endnote";
+        }
+        if (lower.equals("legend") || lower.startsWith("legend ")) {
+            return "endlegend";
+        }
+        return null;
+    }
+
+    private static String noteTarget(String trimmed) {
+        Matcher m = NOTE_TARGET.matcher(trimmed);
+        return m.find() ? unquote(m.group("target")) : null;
+    }
+
+    /**
+     * Индекс последней строки объявления, начатого в {@code start}: с телом — до закрывающей скобки.
+     */
+    private static int bodyEnd(String[] lines, int start) {
+        int depth = 0;
+        for (int i = start; i < lines.length; i++) {
+            for (char c : lines[i].toCharArray()) {
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}') {
+                    depth--;
+                }
+            }
+            if (depth <= 0) {
+                return i;
+            }
+        }
+        return lines.length - 1;
+    }
+
+    private static String unquote(String token) {
+        if (token.length() >= 2
+                && (token.startsWith("\"") && token.endsWith("\"")
+                || token.startsWith("(") && token.endsWith(")")
+                || token.startsWith(":") && token.endsWith(":"))) {
+            return token.substring(1, token.length() - 1).trim();
+        }
+        return token;
+    }
+
+    private void reindex() {
+        elementsByRef = new HashMap<>();
+        containersByRef = new HashMap<>();
+        relationsByNode = new HashMap<>();
+        // Алиас важнее имени: сначала имена (первое вхождение), затем алиасы
+        for (Object statement : statements) {
+            if (statement instanceof Element element) {
+                elementsByRef.putIfAbsent(element.name(), element);
+            } else if (statement instanceof Container container && container.name() != null) {
+                containersByRef.putIfAbsent(container.name(), container);
+            }
+        }
+        for (Object statement : statements) {
+            if (statement instanceof Element element && element.alias() != null) {
+                elementsByRef.put(element.alias(), element);
+            } else if (statement instanceof Container container && container.alias() != null) {
+                containersByRef.put(container.alias(), container);
+            }
+        }
+        for (Object statement : statements) {
+            if (statement instanceof Relation relation) {
+                relationsByNode.computeIfAbsent(node(relation.from()), k -> new ArrayList<>()).add(relation);
+                relationsByNode.computeIfAbsent(node(relation.to()), k -> new ArrayList<>()).add(relation);
+            }
+        }
+    }
+
+    /**
+     * Узел графа для конца связи: идентификатор объявленного элемента или сама ссылка
+     * (PlantUML создаёт необъявленные элементы неявно).
+     */
+    private String node(String endpoint) {
+        Element element = elementsByRef.get(endpoint);
+        return element != null ? element.id() : endpoint;
+    }
+
+    public List<Element> elements() {
+        List<Element> result = new ArrayList<>();
+        for (Object statement : statements) {
+            if (statement instanceof Element element) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+
+    public List<Relation> relations() {
+        List<Relation> result = new ArrayList<>();
+        for (Object statement : statements) {
+            if (statement instanceof Relation relation) {
+                result.add(relation);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Элемент по алиасу или имени.
+     */
+    public Optional<Element> element(String ref) {
+        return ref == null ? Optional.empty() : Optional.ofNullable(elementsByRef.get(unquote(ref.trim())));
+    }
+
+    /**
+     * Контейнер по алиасу или имени.
+     */
+    public Optional<Container> container(String ref) {
+        return ref == null ? Optional.empty() : Optional.ofNullable(containersByRef.get(unquote(ref.trim())));
+    }
+
+    /**
+     * Элементы контейнера, включая вложенные контейнеры.
+     */
+    public List<Element> elementsIn(Container container) {
+        List<Element> result = new ArrayList<>();
+        int depth = 0;
+        boolean inside = false;
+        for (Object statement : statements) {
+            if (statement == container) {
+                inside = true;
+                continue;
+            }
+            if (!inside) {
+                continue;
+            }
+            if (statement instanceof Container) {
+                depth++;
+            } else if (statement instanceof ContainerEnd) {
+                if (depth-- == 0) {
+                    break;
+                }
+            } else if (statement instanceof Element element) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Связи элемента (в обоих направлениях).
+     */
+    public List<Relation> relationsOf(String ref) {
+        return relationsByNode.getOrDefault(node(unquote(ref.trim())), List.of());
+    }
+
+    /**
+     * Узлы не дальше {@code hops} связей от исходных (направление связей не учитывается).
+     */
+    public Set<String> neighbourhood(Collection<String> seeds, int hops) {
+        Set<String> visited = new LinkedHashSet<>();
+        List<String> frontier = new ArrayList<>();
+        for (String seed : seeds) {
+            String node = node(unquote(seed.trim()));
+            if (visited.add(node)) {
+                frontier.add(node);
+            }
+        }
+        for (int hop = 0; hop < hops && !frontier.isEmpty(); hop++) {
+            List<String> next = new ArrayList<>();
+            for (String node : frontier) {
+                for (Relation relation : relationsByNode.getOrDefault(node, List.of())) {
+                    for (String neighbour : List.of(node(relation.from()), node(relation.to()))) {
+                        if (visited.add(neighbour)) {
+                            next.add(neighbour);
+                        }
+                    }
+                }
+            }
+            frontier = next;
+        }
+        return visited;
+    }
+
+    /**
+     * Подмодель: заданные узлы, связи между ними, их заметки и контейнеры, а также общие строки
+     * (заголовок, skinparam, комментарии верхнего уровня). Подряд идущие пустые строки схлопываются.
+     */
+    public String extract(Set<String> nodes) {
+        Set<String> keptContainers = new HashSet<>();
+        for (Object statement : statements) {
+            if (statement instanceof Element element && nodes.contains(element.id())) {
+                for (String c = element.container(); c != null && keptContainers.add(c); ) {
+                    Container container = containersByRef.get(c);
+                    c = container != null ? container.parent() : null;
+                }
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+        int skipDepth = 0;
+        for (Object statement : statements) {
+            if (skipDepth > 0) {
+                if (statement instanceof Container) {
+                    skipDepth++;
+                } else if (statement instanceof ContainerEnd) {
+                    skipDepth--;
+                }
+                continue;
+            }
+            String source = switch (statement) {
+                case Container container -> {
+                    if (container.id() != null && !keptContainers.contains(container.id())) {
+                        skipDepth = 1;
+                        yield null;
+                    }
+                    yield container.source();
+                }
+                case Element element -> nodes.contains(element.id()) ? element.source() : null;
+                case Relation relation -> nodes.contains(node(relation.from())) && nodes.contains(node(relation.to()))
+                        ? relation.source() : null;
+                case Note note -> note.target() != null && nodes.contains(node(note.target())) ? note.source() : null;
+                case ContainerEnd end -> end.source();
+                default -> (String) statement;
+            };
+            if (source != null && !(source.isBlank() && !lines.isEmpty() && lines.getLast().isBlank())) {
+                lines.add(source);
+            }
+        }
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Начало модели целыми инструкциями в пределах бюджета токенов: тело элемента не обрезается
+     * посередине, открытые контейнеры закрываются, в конце — {@code marker} и закрывающий тег.
+     * {@code null}, если у модели нет тега {@code @end...} или бюджет меньше обязательных строк.
+     */
+    public String truncate(int maxTokens, String marker) {
+        int end = endIndex();
+        if (end >= statements.size()) {
+            return null;
+        }
+        String tail = source(statements.get(end));
+        int budget = maxTokens - TokenCounter.count(marker + "\n" + tail);
+        List<String> lines = new ArrayList<>();
+        Deque<Object> open = new ArrayDeque<>();
+        int used = 0;
+        for (int i = 0; i < end; i++) {
+            Object statement = statements.get(i);
+            String source = source(statement);
+            // Для открытых контейнеров резервируется закрывающая строка
+            int cost = TokenCounter.count(source + "\n") + (statement instanceof Container ? 1 : 0);
+            if (used + cost + open.size() > budget) {
+                break;
+            }
+            used += cost;
+            lines.add(source);
+            if (statement instanceof Container) {
+                open.push(statement);
+            } else if (statement instanceof ContainerEnd && !open.isEmpty()) {
+                open.pop();
+                used--;
+            }
+        }
+        if (lines.isEmpty()) {
+            return null;
+        }
+        while (!open.isEmpty()) {
+            open.pop();
+            lines.add("}");
+        }
+        lines.add(marker);
+        lines.add(tail);
+        return String.join("\n", lines);
+    }
+
+    private static String source(Object statement) {
+        return switch (statement) {
+            case Element element -> element.source();
+            case Container container -> container.source();
+            case Relation relation -> relation.source();
+            case Note note -> note.source();
+            case ContainerEnd end -> end.source();
+            default -> (String) statement;
+        };
+    }
+
+    /**
+     * Связан ли конец связи с элементом (по алиасу или имени).
+     */
+    public static boolean refersTo(String endpoint, Element element) {
+        return endpoint.equals(element.alias()) || endpoint.equals(element.name());
+    }
+
+    /**
+     * Независимая копия для правки.
+     */
+    public PlantUmlModel copy() {
+        return new PlantUmlModel(new ArrayList<>(statements));
+    }
+
+    /**
+     * Добавляет элемент перед первой связью верхнего уровня (объявления остаются вместе),
+     * иначе перед {@code @enduml}.
+     */
+    void addElement(Element element) {
+        int depth = 0;
+        int index = endIndex();
+        for (int i = 0; i < statements.size(); i++) {
+            Object statement = statements.get(i);
+            if (statement instanceof Container) {
+                depth++;
+            } else if (statement instanceof ContainerEnd) {
+                depth--;
+            } else if (statement instanceof Relation && depth == 0) {
+                index = i;
+                break;
+            }
+        }
+        statements.add(index, element);
+        reindex();
+    }
+
+    void replaceElement(Element existing, Element replacement) {
+        statements.set(statements.indexOf(existing), new Element(replacement.kind(), replacement.name(),
+                replacement.alias(), replacement.stereotype(), existing.container(), replacement.source()));
+        reindex();
+    }
+
+    /**
+     * Удаляет элемент вместе со связями, в которых он участвует.
+     */
+    void removeElement(Element element) {
+        statements.remove(element);
+        statements.removeIf(s -> s instanceof Relation r && (refersTo(r.from(), element) || refersTo(r.to(), element)));
+        reindex();
+    }
+
+    /**
+     * Добавляет связь после последней связи верхнего уровня, иначе перед {@code @enduml}.
+     */
+    void addRelation(Relation relation) {
+        int depth = 0;
+        int last = -1;
+        for (int i = 0; i < statements.size(); i++) {
+            Object statement = statements.get(i);
+            if (statement instanceof Container) {
+                depth++;
+            } else if (statement instanceof ContainerEnd) {
+                depth--;
+            } else if (statement instanceof Relation && depth == 0) {
+                last = i;
+            }
+        }
+        statements.add(last >= 0 ? last + 1 : endIndex(), relation);
+        reindex();
+    }
+
+    void removeRelation(Relation relation) {
+        statements.remove(relation);
+        reindex();
+    }
+
+    private int endIndex() {
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            if (statements.get(i) instanceof String line && line.trim().startsWith("@end")) {
+                return i;
+            }
+        }
+        return statements.size();
+    }
+
+    /**
+     * Текст диаграммы: неизменённые инструкции — в исходном виде.
+     */
+    public String render() {
+        List<String> lines = new ArrayList<>(statements.size());
+        for (Object statement : statements) {
+            lines.add(source(statement));
+        }
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Сколько раз встречается каждый идентификатор элемента (для проверки дублей).
+     */
+    Map<String, Integer> idCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Element element : elements()) {
+            counts.merge(element.id(), 1, Integer::sum);
+        }
+        return counts;
+    }
+}
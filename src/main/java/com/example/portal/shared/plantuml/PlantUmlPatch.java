@@ -0,0 +1,182 @@
+package com.example.portal.shared.plantuml;
+
+import com.example.portal.shared.plantuml.PlantUmlModel.Element;
+import com.example.portal.shared.plantuml.PlantUmlModel.Relation;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Правка PlantUML-модели: удалённые, добавленные и изменённые элементы и связи.
+ * <p>
+ * Элементы и связи задаются фрагментами PlantUML (объявление с телом, строка связи) и разбираются
+ * тем же {@link PlantUmlModel}; удаляемый элемент — алиасом или именем. Связи удалённого элемента
+ * удаляются вместе с ним; изменённый элемент ищется по алиасу или имени нового объявления.
+ * <p>
+ * {@link #applyTo} применяет правку к копии модели и проверяет результат; при ошибке бросает
+ * {@link IllegalArgumentException} с причиной — вызывающий переходит к полной перегенерации.
+ */
+public record PlantUmlPatch(List<String> removeElements, List<String> addElements, List<String> changeElements,
+                            List<String> removeRelations, List<String> addRelations) {
+
+    /** JSON Schema правки для structured output (strict). */
+    public static final String SCHEMA = """
+            {
+              "type": "object",
+              "properties": {
+                "removeElements": {"type": "array", "items": {"type": "string"}},
+                "addElements": {"type": "array", "items": {"type": "string"}},
+                "changeElements": {"type": "array", "items": {"type": "string"}},
+                "removeRelations": {"type": "array", "items": {"type": "string"}},
+                "addRelations": {"type": "array", "items": {"type": "string"}}
+              },
+              "required": ["removeElements", "addElements", "changeElements", "removeRelations", "addRelations"],
+              "additionalProperties": false
+            }
+            """;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    public PlantUmlPatch {
+        removeElements = removeElements == null ? List.of() : removeElements;
+        addElements = addElements == null ? List.of() : addElements;
+        changeElements = changeElements == null ? List.of() : changeElements;
+        removeRelations = removeRelations == null ? List.of() : removeRelations;
+        addRelations = addRelations == null ? List.of() : addRelations;
+    }
+
+    /**
+     * Разбирает JSON правки; текст до первой и после последней фигурной скобки (markdown) отбрасывается.
+     */
+    public static PlantUmlPatch parse(String json) {
+        if (json == null) {
+            throw new IllegalArgumentException("Empty patch");
+        }
+        int start = json.indexOf('{');
+        int end = json.lastIndexOf('}');
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Patch is not a JSON object");
+        }
+        try {
+            return MAPPER.readValue(json.substring(start, end + 1), PlantUmlPatch.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed patch JSON: " + e.getMessage(), e);
+        }
+    }
+
+    public boolean isEmpty() {
+        return removeElements.isEmpty() && addElements.isEmpty() && changeElements.isEmpty()
+                && removeRelations.isEmpty() && addRelations.isEmpty();
+    }
+
+    /**
+     * Размер правки: число затронутых элементов и связей.
+     */
+    public int size() {
+        return removeElements.size() + addElements.size() + changeElements.size()
+                + removeRelations.size() + addRelations.size();
+    }
+
+    /**
+     * Применяет правку к копии модели. Исходная модель не меняется.
+     *
+     * @throws IllegalArgumentException правка не применима или результат некорректен
+     */
+    public PlantUmlModel applyTo(PlantUmlModel model) {
+        PlantUmlModel result = model.copy();
+
+        for (String ref : removeElements) {
+            Element element = result.element(ref)
+                    .orElseThrow(() -> new IllegalArgumentException("Removed element not found: " + ref));
+            result.removeElement(element);
+        }
+
+        for (String source : changeElements) {
+            Element replacement = element(source);
+            Element existing = result.element(replacement.id())
+                    .or(() -> result.element(replacement.name()))
+                    .orElseThrow(() -> new IllegalArgumentException("Changed element not found: " + replacement.id()));
+            result.replaceElement(existing, replacement);
+        }
+
+        for (String source : addElements) {
+            Element element = element(source);
+            if (result.element(element.id()).isPresent()) {
+                throw new IllegalArgumentException("Added element already exists: " + element.id());
+            }
+            result.addElement(element);
+        }
+
+        for (String line : removeRelations) {
+            Relation removed = relation(line);
+            Relation existing = result.relations().stream()
+                    .filter(r -> connects(result, r, removed))
+                    .filter(r -> removed.label() == null || removed.label().equals(r.label()))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Removed relation not found: " + line.trim()));
+            result.removeRelation(existing);
+        }
+
+        for (String line : addRelations) {
+            Relation relation = relation(line);
+            for (String endpoint : List.of(relation.from(), relation.to())) {
+                if (result.element(endpoint).isEmpty()) {
+                    throw new IllegalArgumentException("Relation refers to unknown element: " + endpoint);
+                }
+            }
+            result.addRelation(relation);
+        }
+
+        for (Map.Entry<String, Integer> entry : result.idCounts().entrySet()) {
+            if (entry.getValue() > 1) {
+                throw new IllegalArgumentException("Duplicate element after patch: " + entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    private static Element element(String source) {
+        Element element = PlantUmlModel.parseElement(source);
+        if (element == null) {
+            throw new IllegalArgumentException("Not an element declaration: " + source);
+        }
+        int depth = 0;
+        for (char c : element.source().toCharArray()) {
+            depth += c == '{' ? 1 : c == '}' ? -1 : 0;
+        }
+        if (depth != 0) {
+            throw new IllegalArgumentException("Unbalanced braces in element: " + element.id());
+        }
+        return element;
+    }
+
+    private static Relation relation(String line) {
+        if (line == null || line.contains("\n")) {
+            throw new IllegalArgumentException("Not a relation line: " + line);
+        }
+        Relation relation = PlantUmlModel.parseRelation(line.strip());
+        if (relation == null) {
+            throw new IllegalArgumentException("Not a relation line: " + line);
+        }
+        return relation;
+    }
+
+    /**
+     * Соединяет ли связь модели те же элементы, что и связь из правки (в любом направлении).
+     */
+    private static boolean connects(PlantUmlModel model, Relation existing, Relation removed) {
+        return sameElement(model, existing.from(), removed.from()) && sameElement(model, existing.to(), removed.to())
+                || sameElement(model, existing.from(), removed.to()) && sameElement(model, existing.to(), removed.from());
+    }
+
+    private static boolean sameElement(PlantUmlModel model, String endpoint, String ref) {
+        if (endpoint.equals(ref)) {
+            return true;
+        }
+        return model.element(ref).map(e -> PlantUmlModel.refersTo(endpoint, e)).orElse(false);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.portal.shared.service;
 
+import com.example.portal.shared.metrics.PipelineMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.asciidoctor.Asciidoctor;
 import org.asciidoctor.Options;
@@ -17,9 +18,11 @@ import java.util.Map;
 public class AsciiDocRenderService {
     
     private final Asciidoctor asciidoctor;
+    private final PipelineMetrics metrics;
     
-    public AsciiDocRenderService() {
+    public AsciiDocRenderService(PipelineMetrics metrics) {
         this.asciidoctor = Asciidoctor.Factory.create();
+        this.metrics = metrics;
     }
     
     /**
@@ -32,7 +35,10 @@ public class AsciiDocRenderService {
         if (asciiDocContent == null || asciiDocContent.isBlank()) {
             throw new IllegalArgumentException("AsciiDoc content cannot be empty");
         }
-        
+        return metrics.time("iconix.render", () -> convert(asciiDocContent), "format", "asciidoc-html");
+    }
+
+    private String convert(String asciiDocContent) {
         try {
             // Создаем опции для рендеринга
             // SafeMode.SAFE соответствует уровню 1
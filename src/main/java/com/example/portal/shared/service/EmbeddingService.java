@@ -1,5 +1,6 @@
 package com.example.portal.shared.service;
 
+import com.example.portal.shared.metrics.PipelineMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
@@ -19,10 +20,12 @@ import java.util.Map;
 public class EmbeddingService {
     
     private final WebClient client;
+    private final PipelineMetrics metrics;
     private static final String EMBEDDING_MODEL = "text-embedding-ada-002";
     private static final int EMBEDDING_DIMENSIONS = 1536;
     
-    public EmbeddingService(@Value("${spring.ai.openai.api-key}") String apiKey) {
+    public EmbeddingService(@Value("${spring.ai.openai.api-key}") String apiKey, PipelineMetrics metrics) {
+        this.metrics = metrics;
         this.client = WebClient.builder()
                 .baseUrl("https://api.openai.com/v1")
                 .defaultHeader("Authorization", "Bearer " + apiKey)
@@ -36,6 +39,10 @@ public class EmbeddingService {
      * @return векторное представление текста
      */
     public List<Double> createEmbedding(String text) {
+        return metrics.time("iconix.embedding.request", () -> requestEmbedding(text), "model", EMBEDDING_MODEL);
+    }
+
+    private List<Double> requestEmbedding(String text) {
         try {
             Map<?, ?> response = client.post()
                     .uri("/embeddings")
@@ -1,8 +1,16 @@
 package com.example.portal.shared.service;
 
+import com.example.portal.shared.llm.LlmExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Интерфейс для работы с LLM (Large Language Models).
  * Абстракция для работы с различными провайдерами LLM (OpenAI, DeepSeek и т.д.).
+ * <p>
+ * Основной метод — асинхронный {@link #generateAsync(String, Double, Duration)}; синхронные
+ * методы ждут его результат. {@code future.cancel(true)} прерывает вызов провайдера.
  */
 public interface LlmService {
     
@@ -12,7 +20,9 @@ public interface LlmService {
      * @param prompt текстовый промпт для LLM
      * @return ответ от LLM
      */
-    String generate(String prompt);
+    default String generate(String prompt) {
+        return generate(prompt, 1.0);
+    }
     
     /**
      * Выполнить запрос к LLM с промптом и опциями.
@@ -21,6 +31,27 @@ public interface LlmService {
      * @param temperature температура генерации (0.0 - 2.0)
      * @return ответ от LLM
      */
-    String generate(String prompt, Double temperature);
-}
+    default String generate(String prompt, Double temperature) {
+        return LlmExecutor.await(generateAsync(prompt, temperature, null));
+    }
+
+    /**
+     * Асинхронный запрос к LLM с дедлайном по умолчанию ({@code app.llm-async.deadline-ms}).
+     *
+     * @param prompt текстовый промпт для LLM
+     * @return future с ответом от LLM
+     */
+    default CompletableFuture<String> generateAsync(String prompt) {
+        return generateAsync(prompt, 1.0, null);
+    }
 
+    /**
+     * Асинхронный запрос к LLM.
+     *
+     * @param prompt текстовый промпт для LLM
+     * @param temperature температура генерации (0.0 - 2.0)
+     * @param deadline дедлайн вызова; {@code null} — дедлайн по умолчанию
+     * @return future с ответом от LLM; по дедлайну завершается LlmDeadlineExceededException
+     */
+    CompletableFuture<String> generateAsync(String prompt, Double temperature, Duration deadline);
+}
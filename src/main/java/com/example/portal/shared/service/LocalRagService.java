@@ -1,5 +1,6 @@
 package com.example.portal.shared.service;
 
+import com.example.portal.shared.metrics.PipelineMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
@@ -17,36 +18,41 @@ import java.util.stream.Collectors;
 public class LocalRagService implements RagService {
     
     private final LocalVectorStoreService vectorStoreService;
+    private final PipelineMetrics metrics;
     
-    public LocalRagService(LocalVectorStoreService vectorStoreService) {
+    public LocalRagService(LocalVectorStoreService vectorStoreService, PipelineMetrics metrics) {
         this.vectorStoreService = vectorStoreService;
+        this.metrics = metrics;
     }
     
     @Override
     public ContextResult retrieveContext(String query, int topK) {
         try {
-            List<LocalVectorStoreService.DocumentResult> results = vectorStoreService.findSimilar(query, topK);
-            
-            if (results.isEmpty()) {
-                log.debug("No similar documents found for query");
-                return new ContextResult("", 0, true);
-            }
-            
-            List<String> fragments = results.stream()
-                    .map(result -> result.content())
-                    .filter(s -> s != null && !s.isBlank())
-                    .collect(Collectors.toList());
-            
-            String combined = fragments.stream()
-                    .collect(Collectors.joining("\n---\n"));
-            
-            log.debug("Retrieved {} fragments from local vector store", fragments.size());
-            return new ContextResult(combined, fragments.size(), true);
-            
+            return metrics.time("iconix.rag.retrieve", () -> search(query, topK), "provider", "local");
         } catch (Exception e) {
             log.warn("Failed to retrieve RAG context from local vector store: {}", e.getMessage());
             return new ContextResult("", 0, true);
         }
     }
+
+    private ContextResult search(String query, int topK) {
+        List<LocalVectorStoreService.DocumentResult> results = vectorStoreService.findSimilar(query, topK);
+        
+        if (results.isEmpty()) {
+            log.debug("No similar documents found for query");
+            return new ContextResult("", 0, true);
+        }
+        
+        List<String> fragments = results.stream()
+                .map(result -> result.content())
+                .filter(s -> s != null && !s.isBlank())
+                .collect(Collectors.toList());
+        
+        String combined = fragments.stream()
+                .collect(Collectors.joining("\n---\n"));
+        
+        log.debug("Retrieved {} fragments from local vector store", fragments.size());
+        return new ContextResult(combined, fragments.size(), true);
+    }
 }
 
@@ -1,5 +1,6 @@
 package com.example.portal.shared.service;
 
+import com.example.portal.shared.llm.LlmExecutor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.openai.OpenAiChatOptions;
@@ -7,6 +8,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Реализация LLM сервиса для OpenAI ChatGPT.
  * Использует ChatClient, который автоматически настроен в AiConfig в зависимости от app.llm-provider.
@@ -17,27 +22,24 @@ import org.springframework.stereotype.Service;
 public class OpenAiLlmService implements LlmService {
     
     private final ChatClient chatClient;
+    private final LlmExecutor executor;
     
     @Autowired
-    public OpenAiLlmService(ChatClient chatClient) {
+    public OpenAiLlmService(ChatClient chatClient, LlmExecutor executor) {
         this.chatClient = chatClient;
+        this.executor = executor;
         log.info("Initialized OpenAI LLM Service");
     }
     
     @Override
-    public String generate(String prompt) {
-        return generate(prompt, 1.0);
-    }
-    
-    @Override
-    public String generate(String prompt, Double temperature) {
-        return chatClient.prompt()
+    public CompletableFuture<String> generateAsync(String prompt, Double temperature, Duration deadline) {
+        Callable<String> call = () -> chatClient.prompt()
                 .user(prompt)
                 .options(OpenAiChatOptions.builder()
                         .temperature(temperature != null ? temperature : 1.0)
                         .build())
                 .call()
                 .content();
+        return deadline != null ? executor.submit(call, deadline) : executor.submit(call);
     }
 }
-
@@ -1,5 +1,6 @@
 package com.example.portal.shared.service;
 
+import com.example.portal.shared.metrics.PipelineMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
@@ -20,11 +21,14 @@ public class OpenAiRagService implements RagService {
 
     private final WebClient client;
     private final String vectorStoreId;
+    private final PipelineMetrics metrics;
 
     public OpenAiRagService(
             @Value("${spring.ai.openai.api-key}") String apiKey,
-            @Value("${app.openai.vector-store-id:}") String vectorStoreId
+            @Value("${app.openai.vector-store-id:}") String vectorStoreId,
+            PipelineMetrics metrics
     ) {
+        this.metrics = metrics;
         this.client = WebClient.builder()
                 .baseUrl("https://api.openai.com/v1")
                 .defaultHeader("Authorization", "Bearer " + apiKey)
@@ -42,47 +46,50 @@ public class OpenAiRagService implements RagService {
             return new ContextResult("", 0, false);
         }
         try {
-            Map<?, ?> resp = client.post()
-                    .uri("/vector_stores/{id}/search", vectorStoreId)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(Map.of(
-                            "query", query
-                           // "top_k", topK,
-                           // "return_metadata", true
-                    ))
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .block();
+            return metrics.time("iconix.rag.retrieve", () -> search(query), "provider", "openai");
+        } catch (Exception e) {
+            log.warn("Failed to retrieve RAG context: {}", e.getMessage());
+            return new ContextResult("", 0, true);
+        }
+    }
 
-            if (resp == null) {
-                return new ContextResult("", 0, true);
-            }
+    private ContextResult search(String query) {
+        Map<?, ?> resp = client.post()
+                .uri("/vector_stores/{id}/search", vectorStoreId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of(
+                        "query", query
+                       // "top_k", topK,
+                       // "return_metadata", true
+                ))
+                .retrieve()
+                .bodyToMono(Map.class)
+                .block();
 
-            Object dataObj = resp.get("data");
-            if (!(dataObj instanceof List<?> dataList)) {
-                return new ContextResult("", 0, true);
-            }
+        if (resp == null) {
+            return new ContextResult("", 0, true);
+        }
 
-            List<String> fragments = new ArrayList<>();
-            for (Object item : dataList) {
-                if (item instanceof Map<?, ?> itemMap) {
-                    fragments.add(extractText(itemMap));
-                }
-            }
+        Object dataObj = resp.get("data");
+        if (!(dataObj instanceof List<?> dataList)) {
+            return new ContextResult("", 0, true);
+        }
 
-            List<String> cleaned = fragments.stream()
-                    .filter(s -> s != null && !s.isBlank())
-                    .collect(Collectors.toList());
+        List<String> fragments = new ArrayList<>();
+        for (Object item : dataList) {
+            if (item instanceof Map<?, ?> itemMap) {
+                fragments.add(extractText(itemMap));
+            }
+        }
 
-            String combined = cleaned.stream()
-                    .collect(Collectors.joining("\n---\n"));
+        List<String> cleaned = fragments.stream()
+                .filter(s -> s != null && !s.isBlank())
+                .collect(Collectors.toList());
 
-            return new ContextResult(combined, cleaned.size(), true);
+        String combined = cleaned.stream()
+                .collect(Collectors.joining("\n---\n"));
 
-        } catch (Exception e) {
-            log.warn("Failed to retrieve RAG context: {}", e.getMessage());
-            return new ContextResult("", 0, true);
-        }
+        return new ContextResult(combined, cleaned.size(), true);
     }
 
     private String extractText(Map<?, ?> itemMap) {
@@ -1,5 +1,7 @@
 package com.example.portal.shared.service;
 
+import com.example.portal.shared.metrics.PipelineMetrics;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
@@ -18,14 +20,21 @@ import net.sourceforge.plantuml.FileFormat;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class PlantUmlRenderService {
     
     private static final String RENDER_LOG_FILE = "render.log";
+
+    private final PipelineMetrics metrics;
     
     /**
      * Рендерит PlantUML диаграмму в PNG формат (base64)
      */
     public String renderToPngBase64(String plantUmlCode) {
+        return metrics.time("iconix.render", () -> renderPng(plantUmlCode), "format", "plantuml-png");
+    }
+
+    private String renderPng(String plantUmlCode) {
         try {
             SourceStringReader reader = new SourceStringReader(plantUmlCode);
             ByteArrayOutputStream os = new ByteArrayOutputStream();
@@ -56,6 +65,10 @@ public class PlantUmlRenderService {
      * Рендерит PlantUML диаграмму в SVG формат (строка)
      */
     public String renderToSvg(String plantUmlCode) {
+        return metrics.time("iconix.render", () -> renderSvg(plantUmlCode), "format", "plantuml-svg");
+    }
+
+    private String renderSvg(String plantUmlCode) {
         try {
             SourceStringReader reader = new SourceStringReader(plantUmlCode);
             ByteArrayOutputStream os = new ByteArrayOutputStream();
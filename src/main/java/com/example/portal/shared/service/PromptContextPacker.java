@@ -0,0 +1,228 @@
+package com.example.portal.shared.service;
+
+import com.example.portal.shared.utils.TokenCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Упаковка контекста промпта (нарратив, модели, замечания, RAG) в бюджет токенов.
+ * <p>
+ * Секции заполняют бюджет в порядке приоритета (0 — важнее всего). Если секции одного
+ * приоритета не помещаются целиком, остаток бюджета делится между ними поровну: короткие
+ * секции сохраняются полностью, длинные сокращаются. Сокращение учитывает тип секции:
+ * у PlantUML сохраняются {@code @start}/{@code @end} и начало тела, у RAG и списков —
+ * целые фрагменты и строки, текст обрезается по границе токена.
+ * <p>
+ * Бюджет — {@code app.prompt.context-budget-tokens} минус токены самого шаблона промпта.
+ */
+@Slf4j
+@Component
+public class PromptContextPacker {
+
+    /** Разделитель фрагментов RAG-контекста (см. {@link RagService}). */
+    public static final String FRAGMENT_SEPARATOR = "\n---\n";
+
+    private static final String TEXT_MARKER = "...";
+    private static final String BLOCK_MARKER = "\n... (сокращено) ...";
+
+    private final int budgetTokens;
+
+    public PromptContextPacker(@Value("${app.prompt.context-budget-tokens:12000}") int budgetTokens) {
+        this.budgetTokens = budgetTokens;
+    }
+
+    /**
+     * Способ сокращения секции.
+     */
+    public enum Trim {
+        /** Обрезка по границе токена. */
+        TEXT,
+        /** PlantUML: заголовок и {@code @start...}/{@code @end...} сохраняются, тело сокращается по строкам. */
+        PLANTUML,
+        /** Фрагменты через {@link #FRAGMENT_SEPARATOR}: сохраняются целые фрагменты с начала. */
+        FRAGMENTS,
+        /** Список построчно: сохраняются целые строки с начала. */
+        LINES
+    }
+
+    public record Section(String name, String text, int priority, Trim trim) {
+
+        public static Section text(String name, String text, int priority) {
+            return new Section(name, text, priority, Trim.TEXT);
+        }
+
+        public static Section plantUml(String name, String text, int priority) {
+            return new Section(name, text, priority, Trim.PLANTUML);
+        }
+
+        public static Section fragments(String name, String text, int priority) {
+            return new Section(name, text, priority, Trim.FRAGMENTS);
+        }
+
+        public static Section lines(String name, String text, int priority) {
+            return new Section(name, text, priority, Trim.LINES);
+        }
+    }
+
+    /**
+     * Результат упаковки: тексты секций по имени, итоговый размер и имена сокращённых секций.
+     */
+    public record Packed(Map<String, String> sections, int tokens, List<String> trimmed) {
+
+        /**
+         * Текст секции; пустая строка, если секции нет или на неё не хватило бюджета.
+         */
+        public String get(String name) {
+            return sections.getOrDefault(name, "");
+        }
+    }
+
+    /**
+     * Упаковывает секции в бюджет, оставшийся после шаблона промпта.
+     *
+     * @param templateTokens токены шаблона (и системного промпта), которые вычитаются из бюджета
+     */
+    public Packed packAfter(int templateTokens, Section... sections) {
+        return pack(budgetTokens - templateTokens, sections);
+    }
+
+    public Packed pack(int budget, Section... sections) {
+        int[] sizes = new int[sections.length];
+        int total = 0;
+        for (int i = 0; i < sections.length; i++) {
+            sizes[i] = TokenCounter.count(sections[i].text());
+            total += sizes[i];
+        }
+
+        Map<String, String> result = new LinkedHashMap<>();
+        if (total <= budget) {
+            for (Section s : sections) {
+                result.put(s.name(), s.text() == null ? "" : s.text());
+            }
+            return new Packed(result, total, List.of());
+        }
+
+        int[] allocation = allocate(sections, sizes, Math.max(0, budget));
+        List<String> trimmed = new ArrayList<>();
+        int used = 0;
+        for (int i = 0; i < sections.length; i++) {
+            Section s = sections[i];
+            String text = s.text() == null ? "" : s.text();
+            if (allocation[i] < sizes[i]) {
+                text = trim(s, allocation[i]);
+                trimmed.add(s.name());
+                used += TokenCounter.count(text);
+            } else {
+                used += sizes[i];
+            }
+            result.put(s.name(), text);
+        }
+        log.info("Prompt context packed: {} -> {} tokens (budget {}), trimmed: {}", total, used, budget, trimmed);
+        return new Packed(result, used, trimmed);
+    }
+
+    /**
+     * Распределение бюджета: группы приоритетов по порядку, внутри группы — поровну
+     * с перераспределением остатка от коротких секций длинным.
+     */
+    private static int[] allocate(Section[] sections, int[] sizes, int budget) {
+        Map<Integer, List<Integer>> groups = new TreeMap<>();
+        for (int i = 0; i < sections.length; i++) {
+            groups.computeIfAbsent(sections[i].priority(), p -> new ArrayList<>()).add(i);
+        }
+
+        int[] allocation = new int[sections.length];
+        int remaining = budget;
+        for (List<Integer> group : groups.values()) {
+            int need = group.stream().mapToInt(i -> sizes[i]).sum();
+            if (need <= remaining) {
+                group.forEach(i -> allocation[i] = sizes[i]);
+                remaining -= need;
+                continue;
+            }
+            Integer[] bySize = group.toArray(Integer[]::new);
+            Arrays.sort(bySize, Comparator.comparingInt(i -> sizes[i]));
+            for (int k = 0; k < bySize.length; k++) {
+                int share = remaining / (bySize.length - k);
+                int granted = Math.min(sizes[bySize[k]], share);
+                allocation[bySize[k]] = granted;
+                remaining -= granted;
+            }
+        }
+        return allocation;
+    }
+
+    private static String trim(Section section, int maxTokens) {
+        String text = section.text();
+        if (maxTokens <= 0 || text == null || text.isEmpty()) {
+            return "";
+        }
+        return switch (section.trim()) {
+            case TEXT -> TokenCounter.truncate(text, maxTokens, TEXT_MARKER);
+            case LINES -> keepWhole(text.split("\n", -1), "\n", maxTokens, BLOCK_MARKER);
+            case FRAGMENTS -> {
+                String[] fragments = text.split(FRAGMENT_SEPARATOR, -1);
+                String kept = keepWhole(fragments, FRAGMENT_SEPARATOR, maxTokens, "");
+                // Даже первый фрагмент не помещается — обрезаем его
+                yield kept.isEmpty() ? TokenCounter.truncate(fragments[0], maxTokens, TEXT_MARKER) : kept;
+            }
+            case PLANTUML -> trimPlantUml(text, maxTokens);
+        };
+    }
+
+    /**
+     * Целые части с начала, пока помещаются вместе с разделителями и маркером.
+     */
+    private static String keepWhole(String[] parts, String separator, int maxTokens, String marker) {
+        int separatorTokens = TokenCounter.count(separator);
+        int budget = maxTokens - TokenCounter.count(marker);
+        StringBuilder sb = new StringBuilder();
+        int used = 0;
+        int kept = 0;
+        for (String part : parts) {
+            int cost = TokenCounter.count(part) + (kept > 0 ? separatorTokens : 0);
+            if (used + cost > budget) {
+                break;
+            }
+            if (kept > 0) {
+                sb.append(separator);
+            }
+            sb.append(part);
+            used += cost;
+            kept++;
+        }
+        if (kept == 0) {
+            return "";
+        }
+        return kept < parts.length ? sb.append(marker).toString() : sb.toString();
+    }
+
+    /**
+     * PlantUML: тело сокращается построчно, пропуск помечается комментарием {@code '},
+     * чтобы диаграмма оставалась валидной.
+     */
+    private static String trimPlantUml(String model, int maxTokens) {
+        int startIndex = model.indexOf("@start");
+        int bodyIndex = startIndex < 0 ? -1 : model.indexOf('\n', startIndex) + 1;
+        int endIndex = model.lastIndexOf("@end");
+        if (startIndex < 0 || bodyIndex <= 0 || endIndex < bodyIndex) {
+            return keepWhole(model.split("\n", -1), "\n", maxTokens, BLOCK_MARKER);
+        }
+
+        String head = model.substring(0, bodyIndex);
+        String endTag = model.substring(endIndex);
+        String[] body = model.substring(bodyIndex, endIndex).split("\n", -1);
+        int bodyBudget = maxTokens - TokenCounter.count(head) - TokenCounter.count(endTag);
+        String kept = keepWhole(body, "\n", bodyBudget, "\n' ... (сокращено) ...\n");
+        return head + kept + endTag;
+    }
+}
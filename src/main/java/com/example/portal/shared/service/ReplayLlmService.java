@@ -0,0 +1,46 @@
+package com.example.portal.shared.service;
+
+import com.example.portal.shared.llm.LlmExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Реализация LLM сервиса для записи/воспроизведения ответов (app.llm-provider=REPLAY).
+ * Использует ChatClient поверх ReplayChatModel, настроенный в AiConfig.
+ */
+@Service
+@ConditionalOnProperty(name = "app.llm-provider", havingValue = "REPLAY")
+@Slf4j
+public class ReplayLlmService implements LlmService {
+
+    private final ChatClient chatClient;
+
+    private final LlmExecutor executor;
+
+    @Autowired
+    public ReplayLlmService(ChatClient chatClient, LlmExecutor executor) {
+        this.chatClient = chatClient;
+        this.executor = executor;
+        log.info("Initialized Replay LLM Service");
+    }
+
+    @Override
+    public CompletableFuture<String> generateAsync(String prompt, Double temperature, Duration deadline) {
+        Callable<String> call = () -> chatClient.prompt()
+                .user(prompt)
+                .options(OpenAiChatOptions.builder()
+                        .temperature(temperature != null ? temperature : 1.0)
+                        .build())
+                .call()
+                .content();
+        return deadline != null ? executor.submit(call, deadline) : executor.submit(call);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.portal.shared.utils;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingResult;
+import com.knuddels.jtokkit.api.EncodingType;
+
+/**
+ * Подсчёт токенов и обрезка текста по бюджету токенов (BPE cl100k_base — словарь
+ * моделей gpt-3.5/gpt-4, встроен ресурсом в jtokkit).
+ * <p>
+ * Заменяет оценки «N символов ≈ M токенов»: в cl100k на русский текст приходится
+ * около 2.5 символов на токен, на английский и PlantUML — около 4, поэтому лимиты
+ * в символах либо переполняют контекст, либо недоиспользуют его.
+ * <p>
+ * Специальные токены ({@code <|endoftext|>} и т.п.) во входном тексте считаются обычным текстом.
+ */
+public final class TokenCounter {
+
+    /**
+     * Верхняя граница токенов на символ UTF-16: токен покрывает не меньше байта UTF-8,
+     * а символ занимает не больше 3 байт (суррогатная пара — 4 байта на 2 символа).
+     */
+    private static final int MAX_TOKENS_PER_CHAR = 3;
+
+    private TokenCounter() {}
+
+    /**
+     * Количество токенов в тексте.
+     */
+    public static int count(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        return Holder.ENCODING.countTokensOrdinary(text);
+    }
+
+    /**
+     * Помещается ли текст в бюджет. Короткие тексты проверяются без токенизации.
+     */
+    public static boolean fits(String text, int maxTokens) {
+        if (text == null || text.isEmpty()) return maxTokens >= 0;
+        if ((long) text.length() * MAX_TOKENS_PER_CHAR <= maxTokens) return true;
+        return !Holder.ENCODING.encodeOrdinary(text, maxTokens).isTruncated();
+    }
+
+    /**
+     * Обрезает текст до {@code maxTokens} токенов по границе токена (без разрыва символов).
+     * Если текст помещается — возвращается как есть.
+     */
+    public static String truncate(String text, int maxTokens) {
+        return truncate(text, maxTokens, "");
+    }
+
+    /**
+     * Обрезает текст так, чтобы вместе с {@code marker} он занимал не больше {@code maxTokens} токенов.
+     * Маркер добавляется только если текст был обрезан.
+     */
+    public static String truncate(String text, int maxTokens, String marker) {
+        if (text == null || text.isEmpty()) return text;
+        if ((long) text.length() * MAX_TOKENS_PER_CHAR <= maxTokens) return text;
+
+        EncodingResult whole = Holder.ENCODING.encodeOrdinary(text, maxTokens);
+        if (!whole.isTruncated()) return text;
+
+        int budget = Math.max(0, maxTokens - count(marker));
+        return prefix(text, budget) + marker;
+    }
+
+    /**
+     * Самый длинный префикс текста, укладывающийся в {@code maxTokens} токенов.
+     */
+    private static String prefix(String text, int maxTokens) {
+        if (maxTokens == 0) return "";
+        EncodingResult result = Holder.ENCODING.encodeOrdinary(text, maxTokens);
+        if (!result.isTruncated()) return text;
+        int end = result.getLastProcessedCharacterIndex() + 1;
+        return text.substring(0, Math.max(0, Math.min(end, text.length())));
+    }
+
+    /**
+     * Ленивая загрузка словаря (~1.7 МБ) при первом обращении.
+     */
+    private static final class Holder {
+        private static final Encoding ENCODING =
+                Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    }
+}
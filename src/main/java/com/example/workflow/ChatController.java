@@ -4,12 +4,14 @@ import com.example.portal.chat.entity.ChatMessage;
 import com.example.portal.chat.repository.ChatMessageRepository;
 import com.example.portal.shared.service.LlmService;
 import com.example.portal.shared.service.RagService;
+import com.example.portal.shared.utils.TokenCounter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -25,6 +27,10 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ChatController {
     
+    /** Фрагменты моделей и нарратива сессий в контексте чата (раньше 500 и 200 символов). */
+    private static final int ARTIFACT_PREVIEW_TOKENS = 150;
+    private static final int NARRATIVE_PREVIEW_TOKENS = 80;
+    
     private final LlmService llmService;
     private final ChatMessageRepository chatMessageRepository;
     private final RagService ragService;
@@ -110,7 +116,8 @@ public class ChatController {
         try {
             // Если указана конкретная сессия, берем её
             if (workflowSessionId != null && !workflowSessionId.isBlank()) {
-                var sessionData = workflowSessionService.getSessionData(workflowSessionId);
+                var sessionData = workflowSessionService.getSessionData(workflowSessionId,
+                        Set.of("narrative", "plantuml", "useCaseModel"));
                 if (sessionData != null) {
                     contextBuilder.append("Текущая workflow сессия:\n");
                     contextBuilder.append("- Request ID: ").append(workflowSessionId).append("\n");
@@ -121,13 +128,13 @@ public class ChatController {
                         if (sessionData.artifacts().containsKey("plantuml")) {
                             String plantuml = (String) sessionData.artifacts().get("plantuml");
                             if (plantuml != null && plantuml.length() > 0) {
-                                contextBuilder.append("- Доменная модель (PlantUML): ").append(plantuml.substring(0, Math.min(500, plantuml.length()))).append("...\n");
+                                contextBuilder.append("- Доменная модель (PlantUML): ").append(TokenCounter.truncate(plantuml, ARTIFACT_PREVIEW_TOKENS, "...")).append("\n");
                             }
                         }
                         if (sessionData.artifacts().containsKey("useCaseModel")) {
                             String useCase = (String) sessionData.artifacts().get("useCaseModel");
                             if (useCase != null && useCase.length() > 0) {
-                                contextBuilder.append("- Use Case модель: ").append(useCase.substring(0, Math.min(500, useCase.length()))).append("...\n");
+                                contextBuilder.append("- Use Case модель: ").append(TokenCounter.truncate(useCase, ARTIFACT_PREVIEW_TOKENS, "...")).append("\n");
                             }
                         }
                     }
@@ -135,22 +142,21 @@ public class ChatController {
                 }
             } else {
                 // Берем последние 3 сессии для общего контекста
-                var recentSessions = workflowSessionService.getAllSessions();
-                if (recentSessions != null && !recentSessions.isEmpty()) {
+                var recentSessions = workflowSessionService.getSessions(Set.of(), null, 3).items();
+                if (!recentSessions.isEmpty()) {
                     contextBuilder.append("Последние workflow сессии:\n");
-                    recentSessions.stream()
-                            .limit(3)
-                            .forEach(sessionSummary -> {
+                    recentSessions.forEach(sessionSummary -> {
                                 try {
                                     // Получаем полные данные сессии для контекста
-                                    var sessionData = workflowSessionService.getSessionData(sessionSummary.requestId());
+                                    var sessionData = workflowSessionService.getSessionData(
+                                            sessionSummary.requestId(), Set.of("narrative"));
                                     if (sessionData != null && sessionData.artifacts() != null) {
                                         contextBuilder.append("- Сессия: ").append(sessionSummary.requestId()).append("\n");
                                         contextBuilder.append("  Статус: ").append(sessionSummary.status()).append("\n");
                                         if (sessionData.artifacts().containsKey("narrative")) {
                                             String narrative = (String) sessionData.artifacts().get("narrative");
                                             if (narrative != null && !narrative.isBlank()) {
-                                                contextBuilder.append("  Нарратив: ").append(narrative.substring(0, Math.min(200, narrative.length()))).append("...\n");
+                                                contextBuilder.append("  Нарратив: ").append(TokenCounter.truncate(narrative, NARRATIVE_PREVIEW_TOKENS, "...")).append("\n");
                                             }
                                         }
                                     }
@@ -47,7 +47,8 @@ public class GitAnalyserController {
             GitAnalysisResponse.AnalysisResult result = fileReferenceAnalyzer.analyzeRepository(
                     repoPath,
                     allFiles,
-                    gitRepositoryService
+                    gitRepositoryService,
+                    request.entryPoints()
             );
             
             GitAnalysisResponse response = new GitAnalysisResponse(
@@ -7,6 +7,8 @@ import com.example.portal.agents.iconix.model.WorkflowRequest;
 import com.example.portal.agents.iconix.model.WorkflowResponse;
 import com.example.portal.agents.iconix.model.WorkflowStatus;
 import com.example.portal.agents.iconix.worker.Worker;
+import com.example.portal.shared.llm.LlmCallScope;
+import com.example.portal.shared.metrics.PipelineMetrics;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -21,6 +23,9 @@ public class OrchestratorService {
 
     private final com.example.portal.agents.iconix.service.WorkersRegistry registry;
     private final WorkflowSessionService sessionService;
+    private final PipelineMetrics metrics;
+    private final SpeculativeStepService speculation;
+    private final StepMemoService stepMemo;
 
     @Transactional
     public WorkflowResponse run(WorkflowRequest req) throws Exception {
@@ -97,10 +102,12 @@ public class OrchestratorService {
         int currentStepIndex = session.getCurrentStepIndex();
         // int maxIter = session.getMaxIterations() != null ? session.getMaxIterations() : 6;
         
-        log.info("Возобновление с шага {}/{}", currentStepIndex + 1, plan.plan().size());
+        // Шаги, выполненные спекулятивно во время паузы на том же входе, не повторяются
+        int speculated = speculation.commit(ctx, currentStepIndex + 1);
+        log.info("Возобновление с шага {}/{}", currentStepIndex + 1 + speculated, plan.plan().size());
         
         // Продолжаем выполнение с текущего шага
-        return executeStepsFromIndex(ctx, plan, currentStepIndex + 1, requestId);
+        return executeStepsFromIndex(ctx, plan, currentStepIndex + 1 + speculated, requestId);
     }
     
     private WorkflowResponse executeSteps(Worker.Context ctx, OrchestratorPlan plan, 
@@ -127,16 +134,29 @@ public class OrchestratorService {
                 sessionService.saveSession(ctx, plan, i, com.example.portal.agents.iconix.model.WorkflowStatus.RUNNING, null, null);
                 
                 var worker = registry.get(step.tool());
+                // Шаг с тем же входом уже выполнялся — берём его результат
+                var memo = stepMemo.lookup(worker, step, ctx);
+                if (memo.hit()) {
+                    log.info("Шаг {} взят из мемо, worker не запускается.", i + 1);
+                    continue;
+                }
                 log.info("Запуск worker'а: {}", worker.getClass().getSimpleName());
                 
-                try {
+                long started = System.nanoTime();
+                String outcome = PipelineMetrics.ERROR;
+                try (var llmScope = LlmCallScope.open(requestId, step.tool())) {
                     worker.execute(ctx, step.args() == null ? Map.of() : step.args());
+                    outcome = PipelineMetrics.SUCCESS;
+                    stepMemo.store(memo, step, ctx);
                     log.info("Шаг {} успешно выполнен.", i + 1);
                 } catch (PauseForUserReviewException e) {
+                    outcome = PipelineMetrics.PAUSED;
                     // Пауза для пользовательского ревью
                     log.info("Workflow приостановлен для пользовательского ревью на шаге {}", i + 1);
                     sessionService.saveSession(ctx, plan, i, com.example.portal.agents.iconix.model.WorkflowStatus.PAUSED_FOR_REVIEW, 
                                              e.getReviewData(), null);
+                    // Пока пользователь смотрит модель, следующие шаги выполняются на текущей модели
+                    speculation.start(ctx, plan, i);
                     
                     // Формируем ответ с информацией о паузе
                     Map<String, Object> artifacts = buildArtifacts(ctx);
@@ -145,6 +165,8 @@ public class OrchestratorService {
                             .readValue(e.getReviewData(), Map.class));
                     
                     return new WorkflowResponse(requestId, plan, artifacts, ctx.logs);
+                } finally {
+                    metrics.record("iconix.worker.execute", System.nanoTime() - started, outcome, "worker", step.tool());
                 }
             }
             
@@ -1,27 +1,60 @@
 package com.example.workflow;
 
+import com.example.portal.shared.plantuml.PlantUmlModel;
+import com.example.portal.shared.plantuml.PlantUmlModel.Element;
+import com.example.portal.shared.utils.TokenCounter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
  * Утилита для фильтрации PlantUML моделей, чтобы оставить только релевантные части
  * для конкретного Use Case. Это помогает уменьшить размер контекста для LLM.
+ * <p>
+ * Модель разбирается один раз ({@link PlantUmlModel}: элементы, алиасы, стереотипы, контейнеры,
+ * связи) и кэшируется по SHA-256 текста — при декомпозиции одни и те же модели фильтруются
+ * для каждого Use Case. Фильтрация — выборка окрестности элементов Use Case в графе связей
+ * на {@link #HOPS} шаг, без повторного сканирования строк.
  */
 @Slf4j
 @Component
 public class PlantUmlFilter {
     
+    private static final String TRUNCATED_MARKER = "\n... (truncated) ...\n";
+
+    /** Комментарий PlantUML на месте отброшенных инструкций. */
+    private static final String TRUNCATED_COMMENT = "' ... (truncated) ...";
+
+    /** Глубина окрестности: сам элемент и непосредственно связанные с ним. */
+    static final int HOPS = 1;
+
+    private static final int CACHE_SIZE = 64;
+
+    private final Map<String, PlantUmlModel> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PlantUmlModel> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    
     /**
-     * Фильтрует Use Case модель, оставляя только указанный Use Case и связанные с ним элементы.
+     * Фильтрует Use Case модель, оставляя только указанный Use Case, связанные с ним
+     * акторы и Use Case, связи между ними и общие строки (заголовок, skinparam).
      * 
      * @param useCaseModel Полная Use Case модель
      * @param useCaseAlias Алиас Use Case для фильтрации (например, "loginToPersonalCabinet")
-     * @param useCaseName Название Use Case (для дополнительной проверки)
+     * @param useCaseName Название Use Case (если по алиасу не найден)
      * @return Отфильтрованная модель
      */
     public String filterUseCaseModel(String useCaseModel, String useCaseAlias, String useCaseName) {
@@ -35,106 +68,14 @@ public class PlantUmlFilter {
         }
         
         try {
-            // Ищем определение Use Case по алиасу
-            Pattern useCasePattern = Pattern.compile(
-                String.format("usecase\\s+\"([^\"]+)\"\\s+as\\s+%s", Pattern.quote(useCaseAlias)),
-                Pattern.CASE_INSENSITIVE | Pattern.MULTILINE
-            );
-            
-            Matcher useCaseMatcher = useCasePattern.matcher(useCaseModel);
-            if (!useCaseMatcher.find()) {
+            PlantUmlModel model = parse(useCaseModel);
+            Optional<Element> useCase = model.element(useCaseAlias).or(() -> model.element(useCaseName));
+            if (useCase.isEmpty()) {
                 log.warn("Use Case with alias '{}' not found, returning full model", useCaseAlias);
                 return useCaseModel;
             }
             
-            // Строим отфильтрованную модель
-            StringBuilder filtered = new StringBuilder();
-            String[] lines = useCaseModel.split("\n");
-            
-            // Добавляем заголовок
-            boolean foundUseCase = false;
-            List<String> relatedActors = new ArrayList<>();
-            List<String> relatedUseCases = new ArrayList<>();
-            
-            for (String line : lines) {
-                String trimmed = line.trim();
-                
-                // Сохраняем начало и конец
-                if (trimmed.startsWith("@startuml") || trimmed.startsWith("@start")) {
-                    filtered.append(line).append("\n");
-                    continue;
-                }
-                
-                if (trimmed.startsWith("@enduml") || trimmed.startsWith("@end")) {
-                    // Добавляем найденные связи перед концом
-                    for (String actor : relatedActors) {
-                        filtered.append(actor).append("\n");
-                    }
-                    for (String uc : relatedUseCases) {
-                        filtered.append(uc).append("\n");
-                    }
-                    filtered.append(line).append("\n");
-                    break;
-                }
-                
-                // Ищем наш Use Case
-                if (trimmed.contains("as " + useCaseAlias) || 
-                    (trimmed.contains("usecase") && trimmed.contains(useCaseName))) {
-                    filtered.append(line).append("\n");
-                    foundUseCase = true;
-                    continue;
-                }
-                
-                // Ищем связи с нашим Use Case (actor -> usecase, usecase -> usecase)
-                if (foundUseCase) {
-                    // Связи акторов с Use Case
-                    Pattern actorLinkPattern = Pattern.compile(
-                        String.format("(\\w+)\\s*[-.>]+\\s*%s", Pattern.quote(useCaseAlias)),
-                        Pattern.CASE_INSENSITIVE
-                    );
-                    Matcher actorLinkMatcher = actorLinkPattern.matcher(trimmed);
-                    if (actorLinkMatcher.find()) {
-                        String actor = actorLinkMatcher.group(1);
-                        // Добавляем определение актора, если его еще нет
-                        if (!relatedActors.contains(actor) && !filtered.toString().contains(actor + " as")) {
-                            // Ищем определение актора
-                            Pattern actorDefPattern = Pattern.compile(
-                                String.format("(actor|participant)\\s+\"([^\"]+)\"\\s+as\\s+%s", Pattern.quote(actor)),
-                                Pattern.CASE_INSENSITIVE
-                            );
-                            for (String prevLine : lines) {
-                                Matcher actorDefMatcher = actorDefPattern.matcher(prevLine);
-                                if (actorDefMatcher.find()) {
-                                    relatedActors.add(prevLine);
-                                    break;
-                                }
-                            }
-                        }
-                        filtered.append(line).append("\n");
-                        continue;
-                    }
-                    
-                    // Связи Use Case с другими Use Case
-                    Pattern ucLinkPattern = Pattern.compile(
-                        String.format("%s\\s*[-.>]+\\s*(\\w+)", Pattern.quote(useCaseAlias)),
-                        Pattern.CASE_INSENSITIVE
-                    );
-                    Matcher ucLinkMatcher = ucLinkPattern.matcher(trimmed);
-                    if (ucLinkMatcher.find()) {
-                        filtered.append(line).append("\n");
-                        continue;
-                    }
-                }
-                
-                // Сохраняем общие элементы (легенда, заметки и т.д.)
-                if (trimmed.startsWith("legend") || trimmed.startsWith("note") || 
-                    trimmed.startsWith("skinparam") || trimmed.startsWith("!") ||
-                    trimmed.isEmpty()) {
-                    filtered.append(line).append("\n");
-                }
-            }
-            
-            String result = filtered.toString();
+            String result = model.extract(model.neighbourhood(List.of(useCase.get().id()), HOPS));
             log.info("Filtered Use Case model: {} -> {} chars (alias: {})", 
                     useCaseModel.length(), result.length(), useCaseAlias);
             
@@ -147,7 +88,10 @@ public class PlantUmlFilter {
     }
     
     /**
-     * Фильтрует MVC модель, оставляя только части, связанные с указанным Use Case.
+     * Фильтрует MVC модель, оставляя только части, связанные с указанным Use Case:
+     * элементы контейнера Use Case ({@code package "useCase1" {...}}) и элементы, в имени,
+     * алиасе или стереотипе которых упомянут алиас, вместе с их окрестностью.
+     * Если таких элементов нет, возвращается полная модель.
      * 
      * @param mvcModel Полная MVC модель
      * @param useCaseAlias Алиас Use Case для фильтрации
@@ -164,61 +108,26 @@ public class PlantUmlFilter {
         }
         
         try {
-            // Ищем все упоминания Use Case в MVC модели
+            PlantUmlModel model = parse(mvcModel);
             Pattern ucPattern = Pattern.compile(
                 String.format("\\b%s\\b", Pattern.quote(useCaseAlias)),
                 Pattern.CASE_INSENSITIVE
             );
             
-            StringBuilder filtered = new StringBuilder();
-            String[] lines = mvcModel.split("\n");
-            boolean inRelevantBlock = false;
-            int braceDepth = 0;
-            
-            for (String line : lines) {
-                String trimmed = line.trim();
-                
-                // Сохраняем начало и конец
-                if (trimmed.startsWith("@startuml") || trimmed.startsWith("@start")) {
-                    filtered.append(line).append("\n");
-                    continue;
-                }
-                
-                if (trimmed.startsWith("@enduml") || trimmed.startsWith("@end")) {
-                    filtered.append(line).append("\n");
-                    break;
-                }
-                
-                // Проверяем, есть ли упоминание нашего Use Case
-                Matcher ucMatcher = ucPattern.matcher(line);
-                if (ucMatcher.find()) {
-                    inRelevantBlock = true;
-                    filtered.append(line).append("\n");
-                    continue;
-                }
-                
-                // Если мы в релевантном блоке, сохраняем его полностью
-                if (inRelevantBlock) {
-                    // Подсчитываем вложенность скобок для определения конца блока
-                    braceDepth += countChar(line, '{') - countChar(line, '}');
-                    filtered.append(line).append("\n");
-                    
-                    if (braceDepth <= 0 && trimmed.endsWith("}")) {
-                        inRelevantBlock = false;
-                        braceDepth = 0;
-                    }
-                } else {
-                    // Сохраняем общие элементы
-                    if (trimmed.startsWith("legend") || trimmed.startsWith("note") || 
-                        trimmed.startsWith("skinparam") || trimmed.startsWith("!") ||
-                        trimmed.startsWith("package") || trimmed.startsWith("namespace") ||
-                        trimmed.isEmpty()) {
-                        filtered.append(line).append("\n");
-                    }
+            Set<String> seeds = new LinkedHashSet<>();
+            model.container(useCaseAlias).ifPresent(container -> addAll(seeds, model.elementsIn(container)));
+            for (Element element : model.elements()) {
+                if (mentions(ucPattern, element.name()) || mentions(ucPattern, element.alias())
+                        || mentions(ucPattern, element.stereotype())) {
+                    seeds.add(element.id());
                 }
             }
+            if (seeds.isEmpty()) {
+                log.warn("Use Case '{}' not found in MVC model, returning full model", useCaseAlias);
+                return mvcModel;
+            }
             
-            String result = filtered.toString();
+            String result = model.extract(model.neighbourhood(seeds, HOPS));
             log.info("Filtered MVC model: {} -> {} chars (alias: {})", 
                     mvcModel.length(), result.length(), useCaseAlias);
             
@@ -229,21 +138,32 @@ public class PlantUmlFilter {
             return mvcModel;
         }
     }
+
+    private static void addAll(Set<String> seeds, List<Element> elements) {
+        for (Element element : elements) {
+            seeds.add(element.id());
+        }
+    }
+
+    private static boolean mentions(Pattern pattern, String text) {
+        return text != null && pattern.matcher(text).find();
+    }
     
     /**
-     * Сокращает narrative, оставляя только релевантные части, связанные с Use Case.
+     * Сокращает narrative до бюджета токенов, оставляя часть вокруг упоминания Use Case.
      * 
      * @param narrative Полный narrative
      * @param useCaseName Название Use Case
-     * @param maxLength Максимальная длина (по умолчанию 2000 символов)
+     * @param maxTokens Максимальный размер в токенах
      * @return Сокращенный narrative
      */
-    public String shortenNarrative(String narrative, String useCaseName, int maxLength) {
+    public String shortenNarrative(String narrative, String useCaseName, int maxTokens) {
         if (narrative == null || narrative.isBlank()) {
             return narrative;
         }
         
-        if (narrative.length() <= maxLength) {
+        int tokens = TokenCounter.count(narrative);
+        if (tokens <= maxTokens) {
             return narrative;
         }
         
@@ -251,78 +171,79 @@ public class PlantUmlFilter {
         if (useCaseName != null && !useCaseName.isBlank()) {
             int useCaseIndex = narrative.toLowerCase().indexOf(useCaseName.toLowerCase());
             if (useCaseIndex >= 0) {
-                // Берем контекст вокруг упоминания Use Case
-                int start = Math.max(0, useCaseIndex - maxLength / 2);
-                int end = Math.min(narrative.length(), start + maxLength);
-                String relevantPart = narrative.substring(start, end);
+                // Берем контекст вокруг упоминания Use Case: половину бюджета до него
+                // (в символах — по средней плотности токенов этого текста)
+                double charsPerToken = (double) narrative.length() / tokens;
+                int start = Math.max(0, useCaseIndex - (int) (maxTokens / 2 * charsPerToken));
+                String relevantPart = TokenCounter.truncate(narrative.substring(start), maxTokens, "...");
                 
                 if (start > 0) {
                     relevantPart = "..." + relevantPart;
                 }
-                if (end < narrative.length()) {
-                    relevantPart = relevantPart + "...";
-                }
                 
-                log.info("Shortened narrative: {} -> {} chars (found Use Case at position {})", 
-                        narrative.length(), relevantPart.length(), useCaseIndex);
+                log.info("Shortened narrative: {} -> {} tokens (found Use Case at position {})", 
+                        tokens, maxTokens, useCaseIndex);
                 
                 return relevantPart;
             }
         }
         
-        // Если Use Case не найден, просто обрезаем до maxLength
-        String shortened = narrative.substring(0, maxLength) + "...";
-        log.info("Shortened narrative: {} -> {} chars (truncated)", 
-                narrative.length(), shortened.length());
+        // Если Use Case не найден, просто обрезаем до бюджета
+        String shortened = TokenCounter.truncate(narrative, maxTokens, "...");
+        log.info("Shortened narrative: {} -> {} tokens (truncated)", tokens, maxTokens);
         
         return shortened;
     }
     
     /**
-     * Обрезает PlantUML модель до максимального размера, сохраняя начало и конец.
+     * Обрезает PlantUML модель до бюджета токенов, сохраняя заголовок и теги @start/@end.
+     * Обрезка идёт по целым инструкциям: объявление с телом не разрывается, открытые
+     * контейнеры закрываются — результат остаётся корректной диаграммой.
      * Используется как fallback, если фильтрация не помогла.
      * 
      * @param model PlantUML модель
-     * @param maxLength Максимальная длина
+     * @param maxTokens Максимальный размер в токенах
      * @return Обрезанная модель
      */
-    public String truncatePlantUml(String model, int maxLength) {
-        if (model == null || model.isBlank() || model.length() <= maxLength) {
+    public String truncatePlantUml(String model, int maxTokens) {
+        if (model == null || model.isBlank() || TokenCounter.fits(model, maxTokens)) {
             return model;
         }
         
-        // Ищем начало и конец
-        int startIndex = model.indexOf("@start");
-        int endIndex = model.lastIndexOf("@end");
-        
-        if (startIndex < 0 || endIndex < 0 || endIndex <= startIndex) {
-            // Если не нашли маркеры, просто обрезаем
-            return model.substring(0, maxLength) + "\n... (truncated) ...\n";
-        }
-        
-        String header = model.substring(0, startIndex);
-        String startTag = model.substring(startIndex, model.indexOf("\n", startIndex) + 1);
-        String body = model.substring(model.indexOf("\n", startIndex) + 1, endIndex);
-        String endTag = model.substring(endIndex);
-        
-        // Если тело слишком большое, обрезаем его
-        if (body.length() > maxLength - header.length() - startTag.length() - endTag.length() - 100) {
-            int bodyMaxLength = maxLength - header.length() - startTag.length() - endTag.length() - 100;
-            body = body.substring(0, bodyMaxLength) + "\n... (truncated) ...\n";
+        String result = parse(model).truncate(maxTokens, TRUNCATED_COMMENT);
+        if (result == null) {
+            // Нет тега @end или бюджет меньше заголовка — просто обрезаем
+            return TokenCounter.truncate(model, maxTokens, TRUNCATED_MARKER);
         }
-        
-        String result = header + startTag + body + endTag;
-        log.info("Truncated PlantUML model: {} -> {} chars", model.length(), result.length());
+        log.info("Truncated PlantUML model: {} -> {} chars (budget {} tokens)", model.length(), result.length(), maxTokens);
         
         return result;
     }
-    
-    private int countChar(String str, char c) {
-        int count = 0;
-        for (char ch : str.toCharArray()) {
-            if (ch == c) count++;
+
+    /**
+     * Разобранная модель из кэша; разбор — вне блокировки (повторный разбор при гонке безвреден).
+     */
+    PlantUmlModel parse(String text) {
+        String key = sha256(text);
+        synchronized (cache) {
+            PlantUmlModel cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
         }
-        return count;
+        PlantUmlModel model = PlantUmlModel.parse(text);
+        synchronized (cache) {
+            cache.put(key, model);
+        }
+        return model;
     }
-}
 
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
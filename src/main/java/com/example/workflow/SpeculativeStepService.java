@@ -0,0 +1,198 @@
+package com.example.workflow;
+
+import com.example.portal.agents.iconix.model.OrchestratorPlan;
+import com.example.portal.agents.iconix.model.PlanStep;
+import com.example.portal.agents.iconix.service.WorkersRegistry;
+import com.example.portal.agents.iconix.worker.Worker;
+import com.example.portal.shared.llm.LlmCallScope;
+import com.example.portal.shared.llm.LlmExecutor;
+import com.example.portal.shared.llm.LlmPriority;
+import com.example.portal.shared.metrics.PipelineMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Спекулятивное выполнение следующих шагов плана, пока workflow ждёт пользовательского ревью.
+ * <p>
+ * На паузе ({@code PAUSED_FOR_REVIEW}) шаги из {@code app.speculation.steps}, идущие сразу после
+ * паузы (по умолчанию usecase и mvc), выполняются в фоне на копии контекста с текущей доменной
+ * моделью. Результат — предварительные артефакты с хэшем входа (narrative и plantuml).
+ * При возобновлении, если пользователь не изменил ни модель, ни narrative (хэш совпал), артефакты
+ * переносятся в контекст и эти шаги пропускаются; иначе результат отбрасывается.
+ * Незавершённый прогон с совпадающим входом дожидается, а не запускается заново.
+ * <p>
+ * Вызовы LLM идут с приоритетом {@link LlmPriority#BATCH} — после чата и активных шагов.
+ * Результаты хранятся в памяти экземпляра не дольше {@code app.speculation.ttl-minutes}.
+ * Метрика {@code iconix.speculation} (outcome: committed, discarded, failed).
+ */
+@Slf4j
+@Service
+public class SpeculativeStepService {
+
+    private final WorkersRegistry registry;
+    private final LlmExecutor executor;
+    private final PipelineMetrics metrics;
+    private final boolean enabled;
+    private final Set<String> speculativeSteps;
+    private final Duration ttl;
+
+    private final Map<String, Speculation> speculations = new ConcurrentHashMap<>();
+
+    public SpeculativeStepService(WorkersRegistry registry, LlmExecutor executor, PipelineMetrics metrics,
+                                  @Value("${app.speculation.enabled:true}") boolean enabled,
+                                  @Value("${app.speculation.steps:usecase,mvc}") Set<String> speculativeSteps,
+                                  @Value("${app.speculation.ttl-minutes:60}") long ttlMinutes) {
+        this.registry = registry;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.speculativeSteps = Set.copyOf(speculativeSteps);
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+    }
+
+    /**
+     * Предварительный результат: изменённые шагами ключи состояния и их журнал.
+     */
+    record Outcome(int steps, Map<String, Object> state, List<String> logs) {
+    }
+
+    private record Speculation(String inputHash, int fromIndex, Instant startedAt,
+                               CompletableFuture<Outcome> outcome) {
+    }
+
+    /**
+     * Запускает спекулятивные шаги после паузы на шаге {@code pausedIndex}. Контекст не меняется.
+     */
+    public void start(Worker.Context ctx, OrchestratorPlan plan, int pausedIndex) {
+        evictExpired();
+        List<PlanStep> steps = speculativeSteps(plan, pausedIndex + 1);
+        if (!enabled || steps.isEmpty()) {
+            return;
+        }
+        Worker.Context copy = copyOf(ctx);
+        String requestId = ctx.requestId;
+        // Без дедлайна: незавершённый прогон отменяется при возобновлении с другим входом или по TTL
+        CompletableFuture<Outcome> outcome = executor.submit(() -> run(copy, steps), null);
+        Speculation previous = speculations.put(requestId,
+                new Speculation(inputHash(ctx), pausedIndex + 1, Instant.now(), outcome));
+        if (previous != null) {
+            previous.outcome().cancel(true);
+        }
+        log.info("Speculative execution started for requestId: {}, steps: {}", requestId,
+                steps.stream().map(PlanStep::tool).toList());
+    }
+
+    /**
+     * Переносит в контекст результат спекулятивных шагов, начинающихся с {@code fromIndex},
+     * если вход не изменился.
+     *
+     * @return число выполненных шагов, которые можно пропустить (0 — выполнять как обычно)
+     */
+    public int commit(Worker.Context ctx, int fromIndex) {
+        Speculation speculation = speculations.remove(ctx.requestId);
+        if (speculation == null) {
+            return 0;
+        }
+        if (speculation.fromIndex() != fromIndex || !speculation.inputHash().equals(inputHash(ctx))) {
+            speculation.outcome().cancel(true);
+            metrics.increment("iconix.speculation", "outcome", "discarded");
+            log.info("Speculative results discarded for requestId: {} (input changed)", ctx.requestId);
+            return 0;
+        }
+        Outcome outcome;
+        try {
+            // Вход тот же: дожидаемся начатого прогона вместо повторного выполнения
+            outcome = LlmExecutor.await(speculation.outcome());
+        } catch (RuntimeException e) {
+            metrics.increment("iconix.speculation", "outcome", "failed");
+            log.warn("Speculative execution failed for requestId: {}, running steps normally: {}",
+                    ctx.requestId, e.getMessage());
+            return 0;
+        }
+        ctx.state.putAll(outcome.state());
+        outcome.logs().forEach(ctx::log);
+        ctx.log("speculation.commit: " + outcome.steps() + " steps");
+        metrics.increment("iconix.speculation", "outcome", "committed");
+        log.info("Speculative results committed for requestId: {}, steps: {}", ctx.requestId, outcome.steps());
+        return outcome.steps();
+    }
+
+    private Outcome run(Worker.Context ctx, List<PlanStep> steps) throws Exception {
+        Map<String, Object> before = new HashMap<>(ctx.state);
+        for (PlanStep step : steps) {
+            try (var llmScope = LlmCallScope.open(ctx.requestId, step.tool(), LlmPriority.BATCH)) {
+                registry.get(step.tool()).execute(ctx, step.args() == null ? Map.of() : step.args());
+            }
+        }
+        Map<String, Object> changed = new HashMap<>();
+        ctx.state.forEach((key, value) -> {
+            if (!Objects.equals(before.get(key), value)) {
+                changed.put(key, value);
+            }
+        });
+        return new Outcome(steps.size(), changed, List.copyOf(ctx.logs));
+    }
+
+    /**
+     * Шаги из {@code app.speculation.steps}, идущие подряд начиная с {@code fromIndex}.
+     */
+    private List<PlanStep> speculativeSteps(OrchestratorPlan plan, int fromIndex) {
+        List<PlanStep> steps = new ArrayList<>();
+        for (int i = fromIndex; i < plan.plan().size(); i++) {
+            PlanStep step = plan.plan().get(i);
+            if (!speculativeSteps.contains(step.tool())) {
+                break;
+            }
+            steps.add(step);
+        }
+        return steps;
+    }
+
+    private void evictExpired() {
+        Instant threshold = Instant.now().minus(ttl);
+        speculations.entrySet().removeIf(entry -> {
+            if (entry.getValue().startedAt().isBefore(threshold)) {
+                entry.getValue().outcome().cancel(true);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private static Worker.Context copyOf(Worker.Context ctx) {
+        Worker.Context copy = new Worker.Context(ctx.requestId, ctx.narrative, ctx.goal, ctx.task);
+        copy.state.putAll(ctx.state);
+        return copy;
+    }
+
+    /**
+     * Хэш входа спекулятивных шагов: narrative и доменная модель.
+     */
+    static String inputHash(Worker.Context ctx) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(ctx.narrativeEffective().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(ctx.state.get("plantuml")).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
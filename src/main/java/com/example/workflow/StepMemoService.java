@@ -0,0 +1,216 @@
+package com.example.workflow;
+
+import com.example.portal.agents.iconix.entity.WorkflowStepMemo;
+import com.example.portal.agents.iconix.model.PlanStep;
+import com.example.portal.agents.iconix.repository.WorkflowStepMemoRepository;
+import com.example.portal.agents.iconix.worker.Worker;
+import com.example.portal.prompt.service.PromptService;
+import com.example.portal.shared.metrics.PipelineMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Мемоизация шагов workflow по хэшу входа.
+ * <p>
+ * Вход шага — имя worker'а, аргументы шага, narrative (с учётом переопределения), goal, task,
+ * читаемые шагом ключи {@code ctx.state} ({@link Worker#inputKeys()}), тексты его промптов
+ * ({@link Worker#promptCodes()}) и модель LLM. Если шаг с тем же хэшем уже выполнялся, изменённые им
+ * ключи состояния и записи журнала берутся из {@code workflow_step_memo}, LLM не вызывается.
+ * Выходы шага входят во вход следующих, поэтому после изменения модели или narrative
+ * пересчитываются только шаги, до которых изменение дошло.
+ * <p>
+ * Записи старше {@code app.step-memo.ttl-days} не используются и удаляются при сохранении новых.
+ * Метрика {@code iconix.step.memo} (outcome: hit, miss).
+ */
+@Slf4j
+@Service
+public class StepMemoService {
+
+    private static final Duration CLEANUP_INTERVAL = Duration.ofHours(1);
+
+    private final WorkflowStepMemoRepository repository;
+    private final PromptService promptService;
+    private final PipelineMetrics metrics;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final String modelFingerprint;
+
+    // Ключи Map и поля объектов сортируются: одинаковое состояние даёт одинаковый хэш
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .build();
+
+    private final AtomicReference<Instant> lastCleanup = new AtomicReference<>(Instant.EPOCH);
+
+    public StepMemoService(WorkflowStepMemoRepository repository, PromptService promptService,
+                           PipelineMetrics metrics,
+                           @Value("${app.step-memo.enabled:true}") boolean enabled,
+                           @Value("${app.step-memo.ttl-days:30}") long ttlDays,
+                           @Value("${app.llm-provider:OPENAI}") String provider,
+                           @Value("${spring.ai.openai.chat.options.model:}") String openAiModel,
+                           @Value("${app.deepseek.model:}") String deepSeekModel) {
+        this.repository = repository;
+        this.promptService = promptService;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.ttl = Duration.ofDays(ttlDays);
+        this.modelFingerprint = provider + "|" + openAiModel + "|" + deepSeekModel;
+    }
+
+    /**
+     * Результат поиска шага: хэш входа и снимок контекста до выполнения для сохранения результата.
+     * {@code inputHash == null} — шаг не мемоизируется.
+     */
+    public record Lookup(String inputHash, boolean hit, Map<String, Object> stateBefore, int logsBefore) {
+
+        static final Lookup SKIPPED = new Lookup(null, false, Map.of(), 0);
+    }
+
+    /**
+     * Ищет результат шага с тем же входом; при совпадении переносит его в контекст.
+     *
+     * @return {@code hit() == true}, если шаг выполнять не нужно
+     */
+    public Lookup lookup(Worker worker, PlanStep step, Worker.Context ctx) {
+        if (!enabled || !worker.memoizable()) {
+            return Lookup.SKIPPED;
+        }
+        String inputHash;
+        try {
+            inputHash = inputHash(worker, step, ctx);
+        } catch (JsonProcessingException e) {
+            log.warn("Step input is not serializable, memo skipped for '{}': {}", step.tool(), e.getMessage());
+            return Lookup.SKIPPED;
+        }
+        Instant threshold = Instant.now().minus(ttl);
+        var memo = repository.findById(inputHash).filter(m -> m.getCreatedAt().isAfter(threshold));
+        if (memo.isPresent()) {
+            try {
+                Map<String, Object> delta = objectMapper.readValue(memo.get().getStateDeltaJson(),
+                        new TypeReference<Map<String, Object>>() {});
+                List<String> logs = objectMapper.readValue(memo.get().getLogsJson(),
+                        new TypeReference<List<String>>() {});
+                ctx.state.putAll(delta);
+                logs.forEach(ctx::log);
+                ctx.log("memo.hit: " + step.tool());
+                metrics.increment("iconix.step.memo", "outcome", "hit", "worker", step.tool());
+                log.info("Step '{}' reused from memo for requestId: {}", step.tool(), ctx.requestId);
+                return new Lookup(inputHash, true, Map.of(), 0);
+            } catch (JsonProcessingException e) {
+                log.warn("Corrupted step memo {}, executing step '{}': {}", inputHash, step.tool(), e.getMessage());
+            }
+        }
+        metrics.increment("iconix.step.memo", "outcome", "miss", "worker", step.tool());
+        return new Lookup(inputHash, false, new HashMap<>(ctx.state), ctx.logs.size());
+    }
+
+    /**
+     * Сохраняет изменения состояния и журнала, сделанные шагом после {@link #lookup}.
+     * Ошибка сохранения не прерывает workflow.
+     */
+    public void store(Lookup lookup, PlanStep step, Worker.Context ctx) {
+        if (lookup.inputHash() == null || lookup.hit()) {
+            return;
+        }
+        Map<String, Object> delta = new HashMap<>();
+        ctx.state.forEach((key, value) -> {
+            if (!Objects.equals(lookup.stateBefore().get(key), value)) {
+                delta.put(key, value);
+            }
+        });
+        List<String> logs = ctx.logs.subList(lookup.logsBefore(), ctx.logs.size());
+        try {
+            repository.save(WorkflowStepMemo.builder()
+                    .inputHash(lookup.inputHash())
+                    .worker(step.tool())
+                    .stateDeltaJson(objectMapper.writeValueAsString(delta))
+                    .logsJson(objectMapper.writeValueAsString(logs))
+                    .createdAt(Instant.now())
+                    .build());
+            cleanupExpired();
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Failed to store memo for step '{}', requestId: {}: {}", step.tool(), ctx.requestId,
+                    e.getMessage());
+        }
+    }
+
+    private void cleanupExpired() {
+        Instant now = Instant.now();
+        Instant previous = lastCleanup.get();
+        if (previous.plus(CLEANUP_INTERVAL).isAfter(now) || !lastCleanup.compareAndSet(previous, now)) {
+            return;
+        }
+        int removed = repository.deleteOlderThan(now.minus(ttl));
+        if (removed > 0) {
+            log.info("Removed {} expired step memo entries", removed);
+        }
+    }
+
+    /**
+     * SHA-256 входа шага (hex).
+     */
+    String inputHash(Worker worker, PlanStep step, Worker.Context ctx) throws JsonProcessingException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, step.tool());
+            update(digest, objectMapper.writeValueAsString(step.args() == null ? Map.of() : step.args()));
+            update(digest, ctx.narrativeEffective());
+            update(digest, ctx.goal);
+            update(digest, ctx.task);
+
+            Set<String> keys = worker.inputKeys();
+            Map<String, Object> input = new TreeMap<>();
+            ctx.state.forEach((key, value) -> {
+                if (keys == null || keys.contains(key)) {
+                    input.put(key, value);
+                }
+            });
+            update(digest, objectMapper.writeValueAsString(input));
+
+            for (String code : new TreeSet<>(worker.promptCodes())) {
+                update(digest, code);
+                update(digest, promptContent(code));
+            }
+            update(digest, modelFingerprint);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private String promptContent(String code) {
+        try {
+            return promptService.getByCode(code);
+        } catch (IllegalArgumentException e) {
+            return ""; // Промпта нет в справочнике — шаг упадёт сам, хэш не важен
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
@@ -4,11 +4,15 @@ import com.example.portal.agents.iconix.entity.UseCaseScenario;
 import com.example.portal.agents.iconix.service.UseCaseScenarioService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Контроллер для декомпозиции Use Case.
@@ -24,7 +28,7 @@ public class UseCaseDecompositionController {
     private final UseCaseScenarioService scenarioService;
     
     /**
-     * Декомпозировать выбранные Use Case.
+     * Декомпозировать выбранные Use Case (параллельно, см. {@link UseCaseDecompositionService#decompose}).
      * 
      * POST /api/usecase/decomposition
      * Body: {
@@ -40,33 +44,17 @@ public class UseCaseDecompositionController {
             log.info("Decomposition request: requestId={}, useCases={}", 
                     request.requestId(), request.useCases().size());
             
-            List<DecompositionResult> results = request.useCases().stream()
-                    .map(uc -> {
-                        try {
-                            String scenario = decompositionService.decomposeUseCase(
-                                    request.requestId(),
-                                    uc.alias(),
-                                    uc.name()
-                            );
-                            return new DecompositionResult(
-                                    uc.alias(),
-                                    uc.name(),
-                                    scenario,
-                                    true,
-                                    null
-                            );
-                        } catch (Exception e) {
-                            log.error("Failed to decompose Use Case: {} ({})", uc.name(), uc.alias(), e);
-                            return new DecompositionResult(
-                                    uc.alias(),
-                                    uc.name(),
-                                    null,
-                                    false,
-                                    e.getMessage()
-                            );
-                        }
-                    })
-                    .toList();
+            List<DecompositionResult> results;
+            try {
+                results = decompositionService.decompose(request.requestId(), useCaseRefs(request), r -> { })
+                        .stream()
+                        .map(DecompositionResult::of)
+                        .toList();
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                // Сессия не найдена или в ней нет моделей — ошибка по каждому Use Case
+                log.error("Failed to decompose Use Cases for requestId: {}", request.requestId(), e);
+                results = failedAll(request, e);
+            }
             
             return ResponseEntity.ok(new DecompositionResponse(results));
             
@@ -77,6 +65,72 @@ public class UseCaseDecompositionController {
         }
     }
     
+    /**
+     * Декомпозировать выбранные Use Case с потоковой выдачей результатов (Server-Sent Events).
+     * 
+     * POST /api/usecase/decomposition/stream
+     * Body: как у {@link #decompose}
+     * 
+     * События: {@code result} — {@link DecompositionResult} каждого Use Case, как только сценарий
+     * сгенерирован и сохранён; {@code summary} — {@link DecompositionSummary} после последнего.
+     * Отключение клиента не прерывает декомпозицию: сценарии сохраняются и доступны через GET.
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter decomposeStream(@RequestBody DecompositionRequest request) {
+        log.info("Streaming decomposition request: requestId={}, useCases={}",
+                request.requestId(), request.useCases().size());
+        SseEmitter emitter = new SseEmitter(0L);
+        AtomicBoolean connected = new AtomicBoolean(true);
+        emitter.onError(e -> connected.set(false));
+        Thread.ofVirtual().name("decomposition-stream-" + request.requestId()).start(() -> {
+            long start = System.nanoTime();
+            List<DecompositionResult> results;
+            try {
+                results = decompositionService.decompose(request.requestId(), useCaseRefs(request),
+                                r -> send(emitter, connected, "result", DecompositionResult.of(r)))
+                        .stream()
+                        .map(DecompositionResult::of)
+                        .toList();
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                log.error("Failed to decompose Use Cases for requestId: {}", request.requestId(), e);
+                results = failedAll(request, e);
+                results.forEach(r -> send(emitter, connected, "result", r));
+            } catch (RuntimeException e) {
+                log.error("Error processing streaming decomposition request", e);
+                emitter.completeWithError(e);
+                return;
+            }
+            send(emitter, connected, "summary", DecompositionSummary.of(request.requestId(), results,
+                    (System.nanoTime() - start) / 1_000_000));
+            emitter.complete();
+        });
+        return emitter;
+    }
+
+    private static void send(SseEmitter emitter, AtomicBoolean connected, String name, Object data) {
+        if (!connected.get()) {
+            return;
+        }
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            connected.set(false);
+            log.info("Decomposition stream client disconnected: {}", e.getMessage());
+        }
+    }
+
+    private static List<UseCaseDecompositionService.UseCaseRef> useCaseRefs(DecompositionRequest request) {
+        return request.useCases().stream()
+                .map(uc -> new UseCaseDecompositionService.UseCaseRef(uc.alias(), uc.name()))
+                .toList();
+    }
+
+    private static List<DecompositionResult> failedAll(DecompositionRequest request, RuntimeException e) {
+        return request.useCases().stream()
+                .map(uc -> new DecompositionResult(uc.alias(), uc.name(), null, false, e.getMessage(), 0, 0, 0))
+                .toList();
+    }
+    
     /**
      * Получить все декомпозированные сценарии для workflow сессии.
      * 
@@ -160,8 +214,34 @@ public class UseCaseDecompositionController {
             String useCaseName,
             String scenario,
             boolean success,
-            String error
-    ) {}
+            String error,
+            long durationMs,
+            long promptTokens,
+            long completionTokens
+    ) {
+        static DecompositionResult of(UseCaseDecompositionService.UseCaseResult r) {
+            return new DecompositionResult(r.useCaseAlias(), r.useCaseName(), r.scenario(), r.success(), r.error(),
+                    r.durationMs(), r.promptTokens(), r.completionTokens());
+        }
+    }
+    
+    public record DecompositionSummary(
+            String requestId,
+            int total,
+            int succeeded,
+            int failed,
+            long durationMs,
+            long promptTokens,
+            long completionTokens
+    ) {
+        static DecompositionSummary of(String requestId, List<DecompositionResult> results, long durationMs) {
+            int succeeded = (int) results.stream().filter(DecompositionResult::success).count();
+            return new DecompositionSummary(requestId, results.size(), succeeded, results.size() - succeeded,
+                    durationMs,
+                    results.stream().mapToLong(DecompositionResult::promptTokens).sum(),
+                    results.stream().mapToLong(DecompositionResult::completionTokens).sum());
+        }
+    }
     
     public record ScenariosResponse(
             List<ScenarioDto> scenarios
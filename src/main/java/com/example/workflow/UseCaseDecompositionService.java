@@ -2,26 +2,91 @@ package com.example.workflow;
 
 import com.example.portal.agents.iconix.service.UseCaseScenarioService;
 import com.example.portal.agents.iconix.service.agentservices.ScenarioWriterService;
+import com.example.portal.shared.llm.LlmCallScope;
+import com.example.portal.shared.llm.LlmExecutor;
+import com.example.portal.shared.llm.LlmPriority;
 import com.example.portal.shared.service.RagService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 /**
  * Сервис для декомпозиции отдельных Use Case.
- * Генерирует сценарий для конкретного Use Case и сохраняет его в БД.
+ * Генерирует сценарии для выбранных Use Case и сохраняет их в БД.
+ * <p>
+ * Артефакты сессии читаются один раз на запрос ({@link DecompositionContext}): доменная модель
+ * усекается и narrative-контекст готовится один раз, разобранные модели Use Case и MVC кэшируются
+ * в {@link PlantUmlFilter}. Сценарии генерируются параллельно, не более {@code parallelism}
+ * одновременно (поверх общего лимита LLM-провайдера); результат по каждому Use Case отдаётся,
+ * как только готов.
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class UseCaseDecompositionService {
     
+    /** Бюджет на каждую из моделей (доменная, Use Case, MVC) в промпте сценария. */
+    private static final int MAX_MODEL_TOKENS = 3000;
+    /** Бюджет на narrative (раньше 2000 символов — около 800 токенов русского текста). */
+    private static final int MAX_NARRATIVE_TOKENS = 800;
+    /** Артефакты сессии, нужные для сценариев: остальное состояние, журнал и план не читаются. */
+    private static final Set<String> CONTEXT_ARTIFACTS = Set.of("narrative", "plantuml", "useCaseModel", "mvcDiagram");
+    
     private final ScenarioWriterService scenarioWriter;
     private final RagService ragService;
     private final UseCaseScenarioService scenarioService;
     private final WorkflowSessionService workflowSessionService;
     private final PlantUmlFilter plantUmlFilter;
+    private final LlmExecutor executor;
+    private final int parallelism;
+
+    public UseCaseDecompositionService(ScenarioWriterService scenarioWriter, RagService ragService,
+                                       UseCaseScenarioService scenarioService,
+                                       WorkflowSessionService workflowSessionService,
+                                       PlantUmlFilter plantUmlFilter, LlmExecutor executor,
+                                       @Value("${app.decomposition.parallelism:4}") int parallelism) {
+        this.scenarioWriter = scenarioWriter;
+        this.ragService = ragService;
+        this.scenarioService = scenarioService;
+        this.workflowSessionService = workflowSessionService;
+        this.plantUmlFilter = plantUmlFilter;
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Use Case для декомпозиции.
+     */
+    public record UseCaseRef(String alias, String name) {
+    }
+
+    /**
+     * Результат декомпозиции Use Case: сценарий или причина ошибки, время и токены LLM
+     * (без ожидания своей очереди в пределах {@code parallelism}).
+     */
+    public record UseCaseResult(String useCaseAlias, String useCaseName, String scenario, String error,
+                                long durationMs, long promptTokens, long completionTokens) {
+
+        public boolean success() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Артефакты сессии, общие для всех Use Case запроса.
+     */
+    record DecompositionContext(String requestId, String narrative, String domainModel,
+                                String useCaseModel, String mvcModel) {
+    }
     
     /**
      * Декомпозировать Use Case - сгенерировать сценарий для конкретного Use Case.
@@ -31,100 +96,174 @@ public class UseCaseDecompositionService {
      * @param useCaseName Название Use Case (например, "Проверить подарок офицером")
      * @return Сгенерированный сценарий
      */
-    @Transactional
     public String decomposeUseCase(String requestId, String useCaseAlias, String useCaseName) {
-        log.info("Starting decomposition for Use Case: {} (alias: {}), requestId: {}", 
-                useCaseName, useCaseAlias, requestId);
-        
-        try {
-            // Получаем данные из workflow сессии
-            var sessionData = workflowSessionService.getSessionData(requestId);
-            if (sessionData == null) {
-                throw new IllegalArgumentException("Workflow session not found: " + requestId);
-            }
-            
-            var artifacts = sessionData.artifacts();
-            if (artifacts == null) {
-                throw new IllegalStateException("No artifacts in workflow session: " + requestId);
-            }
-            
-            // Извлекаем необходимые данные
-            String narrative = artifacts.get("narrative") != null ? String.valueOf(artifacts.get("narrative")) : "";
-            String domainModel = artifacts.get("plantuml") != null ? String.valueOf(artifacts.get("plantuml")) : "";
-            String useCaseModel = artifacts.get("useCaseModel") != null ? String.valueOf(artifacts.get("useCaseModel")) : "";
-            String mvcModel = artifacts.get("mvcDiagram") != null ? String.valueOf(artifacts.get("mvcDiagram")) : "";
-            
-            // Проверяем наличие необходимых данных
-            if (domainModel == null || domainModel.isBlank()) {
-                throw new IllegalStateException("Domain model is required for Use Case decomposition");
-            }
-            if (useCaseModel == null || useCaseModel.isBlank()) {
-                throw new IllegalStateException("Use Case model is required for Use Case decomposition");
-            }
-            if (mvcModel == null || mvcModel.isBlank()) {
-                throw new IllegalStateException("MVC model is required for Use Case decomposition");
-            }
-            
-            // Фильтруем модели, оставляя только релевантные части для конкретного Use Case
-            // Это помогает уменьшить размер контекста и избежать превышения лимита токенов
-            String filteredUseCaseModel = plantUmlFilter.filterUseCaseModel(
-                    useCaseModel, useCaseAlias, useCaseName);
-            String filteredMvcModel = plantUmlFilter.filterMvcModel(mvcModel, useCaseAlias);
-            
-            // Если модели все еще слишком большие, обрезаем их (fallback)
-            // Максимальные размеры для каждой модели (примерно 3000 токенов на модель)
-            int maxModelLength = 8000; // ~3000 токенов
-            if (filteredUseCaseModel.length() > maxModelLength) {
-                filteredUseCaseModel = plantUmlFilter.truncatePlantUml(filteredUseCaseModel, maxModelLength);
-            }
-            if (filteredMvcModel.length() > maxModelLength) {
-                filteredMvcModel = plantUmlFilter.truncatePlantUml(filteredMvcModel, maxModelLength);
-            }
-            if (domainModel.length() > maxModelLength) {
-                domainModel = plantUmlFilter.truncatePlantUml(domainModel, maxModelLength);
+        UseCaseResult result = decompose(requestId, List.of(new UseCaseRef(useCaseAlias, useCaseName)), r -> { })
+                .get(0);
+        if (!result.success()) {
+            throw new RuntimeException("Failed to decompose Use Case: " + result.error());
+        }
+        return result.scenario();
+    }
+
+    /**
+     * Декомпозировать несколько Use Case одной сессии: артефакты загружаются один раз,
+     * сценарии генерируются параллельно.
+     *
+     * @param requestId ID workflow сессии
+     * @param useCases Use Case для декомпозиции
+     * @param onResult получатель результатов по мере готовности (вызовы последовательны,
+     *                 но из разных потоков)
+     * @return Результаты в порядке {@code useCases}
+     * @throws IllegalArgumentException сессия не найдена
+     * @throws IllegalStateException в сессии нет нужных артефактов
+     */
+    public List<UseCaseResult> decompose(String requestId, List<UseCaseRef> useCases,
+                                         Consumer<UseCaseResult> onResult) {
+        log.info("Starting decomposition of {} Use Case(s), requestId: {}, parallelism: {}",
+                useCases.size(), requestId, parallelism);
+        DecompositionContext context = loadContext(requestId);
+
+        Semaphore slots = new Semaphore(parallelism);
+        List<CompletableFuture<UseCaseResult>> futures = new ArrayList<>(useCases.size());
+        for (UseCaseRef useCase : useCases) {
+            // Слот занимается до запуска: дедлайн вызова не тратится на ожидание очереди
+            slots.acquireUninterruptibly();
+            long start = System.nanoTime();
+            LlmCallScope.Usage usage;
+            CompletableFuture<String> scenario;
+            try (var itemScope = LlmCallScope.metered(requestId, "decomposition", LlmPriority.BATCH)) {
+                usage = itemScope.usage();
+                scenario = executor.submit(() -> decomposeOne(context, useCase));
             }
-            
-            // Сокращаем narrative до разумного размера (2000 символов)
-            String shortenedNarrative = plantUmlFilter.shortenNarrative(narrative, useCaseName, 2000);
-            
-            // Получаем RAG контекст (уменьшаем количество фрагментов для экономии токенов)
-            String query = String.format("%s %s", useCaseName, useCaseAlias);
-            var ragContext = ragService.retrieveContext(query, 2); // Уменьшили с 4 до 2
-            log.info("RAG context retrieved: {} fragments", ragContext.fragmentsCount());
-            
-            // Генерируем сценарий для конкретного Use Case
-            // Передаем дополнительный контекст о выбранном Use Case
-            String enhancedNarrative = shortenedNarrative + "\n\nВыбранный Use Case для декомпозиции: " + useCaseName;
-            
-            log.info("Using filtered models - UseCase: {} chars (was {}), MVC: {} chars (was {}), Domain: {} chars, Narrative: {} chars (was {})",
-                    filteredUseCaseModel.length(), useCaseModel.length(),
-                    filteredMvcModel.length(), mvcModel.length(),
-                    domainModel.length(),
-                    shortenedNarrative.length(), narrative.length());
-            
-            String scenario = scenarioWriter.generateScenario(
-                    enhancedNarrative,
-                    domainModel,
-                    filteredUseCaseModel,
-                    filteredMvcModel,
-                    ragContext.text()
-            );
-            
-            log.info("Scenario generated for Use Case {}: {} chars", useCaseAlias, scenario.length());
-            
-            // Сохраняем сценарий в БД с привязкой к Use Case
-            scenarioService.saveScenario(requestId, useCaseAlias, useCaseName, scenario);
-            
-            log.info("Scenario saved for Use Case: {} (alias: {}), requestId: {}", 
-                    useCaseName, useCaseAlias, requestId);
-            
-            return scenario;
-            
-        } catch (Exception e) {
-            log.error("Failed to decompose Use Case: {} (alias: {}), requestId: {}", 
-                    useCaseName, useCaseAlias, requestId, e);
-            throw new RuntimeException("Failed to decompose Use Case: " + e.getMessage(), e);
+            CompletableFuture<UseCaseResult> future = scenario
+                    .handle((text, error) -> toResult(useCase, text, error, start, usage))
+                    .whenComplete((result, error) -> {
+                        slots.release();
+                        try {
+                            synchronized (onResult) {
+                                onResult.accept(result);
+                            }
+                        } catch (RuntimeException e) {
+                            // Получатель (например, отключившийся SSE-клиент) не прерывает декомпозицию
+                            log.warn("Failed to deliver result for Use Case: {}", useCase.alias(), e);
+                        }
+                    });
+            futures.add(future);
         }
+        return futures.stream().map(CompletableFuture::join).toList();
     }
-}
 
+    private UseCaseResult toResult(UseCaseRef useCase, String scenario, Throwable error, long start,
+                                   LlmCallScope.Usage usage) {
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        if (error == null) {
+            return new UseCaseResult(useCase.alias(), useCase.name(), scenario, null, durationMs,
+                    usage.promptTokens(), usage.completionTokens());
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+        String message = cause instanceof TimeoutException
+                ? "Use Case decomposition did not complete before the deadline" : String.valueOf(cause.getMessage());
+        log.error("Failed to decompose Use Case: {} (alias: {})", useCase.name(), useCase.alias(), cause);
+        return new UseCaseResult(useCase.alias(), useCase.name(), null, message, durationMs,
+                usage.promptTokens(), usage.completionTokens());
+    }
+
+    /**
+     * Загружает артефакты сессии и готовит общую для всех Use Case часть контекста.
+     */
+    DecompositionContext loadContext(String requestId) {
+        // Получаем данные из workflow сессии
+        var sessionData = workflowSessionService.getSessionData(requestId, CONTEXT_ARTIFACTS);
+        if (sessionData == null) {
+            throw new IllegalArgumentException("Workflow session not found: " + requestId);
+        }
+        
+        var artifacts = sessionData.artifacts();
+        if (artifacts == null) {
+            throw new IllegalStateException("No artifacts in workflow session: " + requestId);
+        }
+        
+        // Извлекаем необходимые данные
+        String narrative = artifact(artifacts, "narrative");
+        String domainModel = artifact(artifacts, "plantuml");
+        String useCaseModel = artifact(artifacts, "useCaseModel");
+        String mvcModel = artifact(artifacts, "mvcDiagram");
+        
+        // Проверяем наличие необходимых данных
+        if (domainModel.isBlank()) {
+            throw new IllegalStateException("Domain model is required for Use Case decomposition");
+        }
+        if (useCaseModel.isBlank()) {
+            throw new IllegalStateException("Use Case model is required for Use Case decomposition");
+        }
+        if (mvcModel.isBlank()) {
+            throw new IllegalStateException("MVC model is required for Use Case decomposition");
+        }
+        
+        // Доменная модель не зависит от Use Case — усекаем один раз
+        return new DecompositionContext(requestId, narrative,
+                plantUmlFilter.truncatePlantUml(domainModel, MAX_MODEL_TOKENS), useCaseModel, mvcModel);
+    }
+
+    private static String artifact(Map<String, Object> artifacts, String key) {
+        return artifacts.get(key) != null ? String.valueOf(artifacts.get(key)) : "";
+    }
+
+    /**
+     * Генерирует и сохраняет сценарий одного Use Case.
+     */
+    private String decomposeOne(DecompositionContext context, UseCaseRef useCase) {
+        String useCaseAlias = useCase.alias();
+        String useCaseName = useCase.name();
+        log.info("Starting decomposition for Use Case: {} (alias: {}), requestId: {}", 
+                useCaseName, useCaseAlias, context.requestId());
+        
+        // Фильтруем модели, оставляя только релевантные части для конкретного Use Case
+        // Это помогает уменьшить размер контекста и избежать превышения лимита токенов
+        String filteredUseCaseModel = plantUmlFilter.filterUseCaseModel(
+                context.useCaseModel(), useCaseAlias, useCaseName);
+        String filteredMvcModel = plantUmlFilter.filterMvcModel(context.mvcModel(), useCaseAlias);
+        
+        // Если модели все еще слишком большие, обрезаем их по бюджету токенов (fallback)
+        filteredUseCaseModel = plantUmlFilter.truncatePlantUml(filteredUseCaseModel, MAX_MODEL_TOKENS);
+        filteredMvcModel = plantUmlFilter.truncatePlantUml(filteredMvcModel, MAX_MODEL_TOKENS);
+        
+        // Сокращаем narrative до разумного размера
+        String shortenedNarrative = plantUmlFilter.shortenNarrative(
+                context.narrative(), useCaseName, MAX_NARRATIVE_TOKENS);
+        
+        // Получаем RAG контекст (уменьшаем количество фрагментов для экономии токенов)
+        String query = String.format("%s %s", useCaseName, useCaseAlias);
+        var ragContext = ragService.retrieveContext(query, 2); // Уменьшили с 4 до 2
+        log.info("RAG context retrieved: {} fragments", ragContext.fragmentsCount());
+        
+        // Генерируем сценарий для конкретного Use Case
+        // Передаем дополнительный контекст о выбранном Use Case
+        String enhancedNarrative = shortenedNarrative + "\n\nВыбранный Use Case для декомпозиции: " + useCaseName;
+        
+        log.info("Using filtered models - UseCase: {} chars (was {}), MVC: {} chars (was {}), Domain: {} chars, Narrative: {} chars (was {})",
+                filteredUseCaseModel.length(), context.useCaseModel().length(),
+                filteredMvcModel.length(), context.mvcModel().length(),
+                context.domainModel().length(),
+                shortenedNarrative.length(), context.narrative().length());
+        
+        String scenario = scenarioWriter.generateScenario(
+                enhancedNarrative,
+                context.domainModel(),
+                filteredUseCaseModel,
+                filteredMvcModel,
+                ragContext.text()
+        );
+        
+        log.info("Scenario generated for Use Case {}: {} chars", useCaseAlias, scenario.length());
+        
+        // Сохраняем сценарий в БД с привязкой к Use Case
+        scenarioService.saveScenario(context.requestId(), useCaseAlias, useCaseName, scenario);
+        
+        log.info("Scenario saved for Use Case: {} (alias: {}), requestId: {}", 
+                useCaseName, useCaseAlias, context.requestId());
+        
+        return scenario;
+    }
+}
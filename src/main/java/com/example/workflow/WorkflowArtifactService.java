@@ -0,0 +1,262 @@
+package com.example.workflow;
+
+import com.example.portal.agents.iconix.entity.WorkflowArtifact;
+import com.example.portal.agents.iconix.repository.WorkflowArtifactRepository;
+import com.example.portal.shared.metrics.PipelineMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Хранилище артефактов workflow, адресуемых по содержимому.
+ * <p>
+ * Значения размером от {@code app.artifact-store.min-size} байт JSON (доменная модель, модели Use Case и MVC,
+ * сценарии, журнал, narrative в данных ревью) записываются в {@code workflow_artifacts} один раз: ключ — SHA-256
+ * JSON значения, содержимое сжато deflate. Вместо значения сессия хранит ссылку {@code {"$artifact": "<hash>"}},
+ * поэтому одна и та же модель в состоянии, данных ревью и других сессиях занимает место один раз, а снимок
+ * сессии весит сотни байт. Ключи {@code app.artifact-store.inline-keys} (замечания ревью) остаются в JSONB:
+ * они свои у каждой сессии, и вынос в хранилище не даёт экономии, а только лишний запрос при чтении.
+ * <p>
+ * Ссылки сессий — в {@code workflow_session_artifacts}, {@code ref_count} артефакта ведёт триггер БД.
+ * Артефакты без ссылок удаляются через {@code app.artifact-store.retention-hours} после последнего использования.
+ * Метрика {@code iconix.artifact.write} (outcome: stored, deduplicated).
+ */
+@Slf4j
+@Service
+public class WorkflowArtifactService {
+
+    static final String REF = "$artifact";
+
+    private static final Duration CLEANUP_INTERVAL = Duration.ofHours(1);
+
+    private final WorkflowArtifactRepository repository;
+    private final PipelineMetrics metrics;
+    private final boolean enabled;
+    private final int minSize;
+    private final Set<String> inlineKeys;
+    private final Duration retention;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AtomicReference<Instant> lastCleanup = new AtomicReference<>(Instant.EPOCH);
+
+    public WorkflowArtifactService(WorkflowArtifactRepository repository, PipelineMetrics metrics,
+                                   @Value("${app.artifact-store.enabled:true}") boolean enabled,
+                                   @Value("${app.artifact-store.min-size:512}") int minSize,
+                                   @Value("${app.artifact-store.inline-keys:issues,narrativeIssues}") Set<String> inlineKeys,
+                                   @Value("${app.artifact-store.retention-hours:24}") long retentionHours) {
+        this.repository = repository;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.minSize = minSize;
+        this.inlineKeys = Set.copyOf(inlineKeys);
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    /**
+     * Запись артефактов одной сессии: значения заменяются ссылками сразу, содержимое и ссылки сессии
+     * записываются в {@link Batch#flush()} — после того как строка сессии сохранена.
+     */
+    public Batch batch(String requestId) {
+        return new Batch(requestId);
+    }
+
+    public final class Batch {
+
+        private final String requestId;
+        private final Map<String, byte[]> pending = new LinkedHashMap<>();
+        private final Set<String> hashes = new LinkedHashSet<>();
+
+        private Batch(String requestId) {
+            this.requestId = requestId;
+        }
+
+        /**
+         * Копия {@code values}, в которой крупные значения (кроме inline-ключей) заменены ссылками.
+         */
+        public Map<String, Object> externalize(Map<String, Object> values) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            values.forEach((key, value) -> result.put(key, inlineKeys.contains(key) ? value : externalize(value)));
+            return result;
+        }
+
+        /**
+         * Ссылка на артефакт вместо значения или само значение, если оно меньше порога.
+         */
+        public Object externalize(Object value) {
+            if (!enabled || value == null) {
+                return value;
+            }
+            byte[] json;
+            try {
+                json = objectMapper.writeValueAsBytes(value);
+            } catch (JsonProcessingException e) {
+                log.warn("Value is not serializable, stored inline for requestId {}: {}", requestId, e.getMessage());
+                return value;
+            }
+            if (json.length < minSize) {
+                return value;
+            }
+            String hash = sha256(json);
+            if (hashes.add(hash)) {
+                pending.put(hash, json);
+            }
+            return Map.of(REF, hash);
+        }
+
+        /**
+         * Артефакты, на которые ссылаются значения этой записи.
+         */
+        public Set<String> hashes() {
+            return hashes;
+        }
+
+        /**
+         * Записывает новые артефакты (уже известные не передаются повторно) и ссылки сессии на них.
+         */
+        public void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            Instant now = Instant.now();
+            Set<String> written = Set.copyOf(pending.keySet());
+            // Сначала отметка использования: очистка не удалит существующий артефакт до записи ссылки
+            repository.touch(written, now);
+            Set<String> existing = new HashSet<>(repository.findExistingHashes(written));
+            pending.forEach((hash, json) -> {
+                if (existing.contains(hash)) {
+                    metrics.increment("iconix.artifact.write", "outcome", "deduplicated");
+                    return;
+                }
+                byte[] compressed = compress(json);
+                repository.insertIfAbsent(hash, compressed, json.length, compressed.length, now);
+                metrics.increment("iconix.artifact.write", "outcome", "stored");
+            });
+            repository.link(requestId, written);
+            pending.clear();
+        }
+    }
+
+    /**
+     * Оставляет у сессии ссылки только на {@code hashes} — после записи полного снимка.
+     */
+    public void retain(String requestId, Collection<String> hashes) {
+        if (hashes.isEmpty()) {
+            repository.unlinkAll(requestId);
+        } else {
+            repository.unlinkExcept(requestId, hashes);
+        }
+        cleanupUnreferenced();
+    }
+
+    /**
+     * Копия {@code values}, в которой ссылки заменены содержимым артефактов (одним запросом).
+     *
+     * @throws IllegalStateException если артефакт по ссылке не найден
+     */
+    public Map<String, Object> resolve(Map<String, Object> values) {
+        Set<String> refs = new HashSet<>();
+        values.values().forEach(value -> {
+            String hash = refHash(value);
+            if (hash != null) {
+                refs.add(hash);
+            }
+        });
+        if (refs.isEmpty()) {
+            return values;
+        }
+        Map<String, Object> contents = load(refs);
+        Map<String, Object> result = new LinkedHashMap<>();
+        values.forEach((key, value) -> {
+            String hash = refHash(value);
+            result.put(key, hash != null ? contents.get(hash) : value);
+        });
+        return result;
+    }
+
+    /**
+     * Содержимое артефакта, если {@code value} — ссылка, иначе само значение.
+     */
+    public Object resolve(Object value) {
+        String hash = refHash(value);
+        return hash != null ? load(Set.of(hash)).get(hash) : value;
+    }
+
+    private static String refHash(Object value) {
+        return value instanceof Map<?, ?> map && map.size() == 1 && map.get(REF) instanceof String hash ? hash : null;
+    }
+
+    private Map<String, Object> load(Set<String> hashes) {
+        Map<String, Object> contents = new HashMap<>();
+        for (WorkflowArtifact artifact : repository.findAllById(hashes)) {
+            try {
+                contents.put(artifact.getHash(), objectMapper.readValue(decompress(artifact.getContent()), Object.class));
+            } catch (IOException e) {
+                throw new IllegalStateException("Corrupted artifact " + artifact.getHash(), e);
+            }
+        }
+        if (contents.size() < hashes.size()) {
+            Set<String> missing = new HashSet<>(hashes);
+            missing.removeAll(contents.keySet());
+            throw new IllegalStateException("Artifacts not found: " + missing);
+        }
+        return contents;
+    }
+
+    private void cleanupUnreferenced() {
+        Instant now = Instant.now();
+        Instant previous = lastCleanup.get();
+        if (previous.plus(CLEANUP_INTERVAL).isAfter(now) || !lastCleanup.compareAndSet(previous, now)) {
+            return;
+        }
+        int removed = repository.deleteUnreferencedBefore(now.minus(retention));
+        if (removed > 0) {
+            log.info("Removed {} unreferenced workflow artifacts", removed);
+        }
+    }
+
+    private static byte[] compress(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] data) throws IOException {
+        try (InflaterInputStream inflater = new InflaterInputStream(new ByteArrayInputStream(data))) {
+            return inflater.readAllBytes();
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -1,10 +1,16 @@
 package com.example.workflow;
 
+import com.example.portal.agents.iconix.model.TokenLedger;
 import com.example.portal.agents.iconix.model.WorkflowRequest;
 import com.example.portal.agents.iconix.model.WorkflowResponse;
+import com.example.portal.agents.iconix.model.WorkflowStatus;
+import com.example.portal.agents.iconix.service.TokenLedgerService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Set;
+
 //@RestController
 //@RequiredArgsConstructor
 //@RequestMapping("/workflow")
@@ -25,6 +31,7 @@ import org.springframework.web.bind.annotation.*;
 public class WorkflowController {
     private final OrchestratorService orchestrator;
     private final WorkflowSessionService sessionService;
+    private final TokenLedgerService tokenLedger;
 
     @GetMapping("/")
     public String index() {
@@ -44,13 +51,36 @@ public class WorkflowController {
         return orchestrator.resumeWorkflow(req.requestId(), req);
     }
     
+    /**
+     * Список сессий, новые сверху, постранично: следующая страница — с {@code cursor} = {@code nextCursor}.
+     * Фильтр {@code status} можно повторять или перечислять через запятую.
+     */
     @GetMapping("/sessions")
-    public java.util.List<WorkflowSessionSummary> getAllSessions() {
-        return sessionService.getAllSessions();
+    public ResponseEntity<WorkflowSessionPage> getSessions(
+            @RequestParam(name = "status", required = false) Set<WorkflowStatus> statuses,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(sessionService.getSessions(statuses, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
     
+    /**
+     * Данные сессии. С {@code artifacts} (через запятую) — только эти артефакты, без плана и журнала.
+     */
     @GetMapping("/session/{requestId}")
-    public WorkflowResponse getSession(@PathVariable String requestId) {
-        return sessionService.getSessionData(requestId);
+    public WorkflowResponse getSession(@PathVariable String requestId,
+                                       @RequestParam(required = false) Set<String> artifacts) {
+        return sessionService.getSessionData(requestId, artifacts);
+    }
+
+    /**
+     * Расход токенов LLM по сессии: итог, по шагам плана и по кодам промптов.
+     */
+    @GetMapping("/session/{requestId}/usage")
+    public TokenLedger getSessionUsage(@PathVariable String requestId) {
+        return tokenLedger.getLedger(requestId);
     }
 }
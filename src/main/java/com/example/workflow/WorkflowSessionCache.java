@@ -0,0 +1,253 @@
+package com.example.workflow;
+
+import com.example.portal.agents.iconix.model.WorkflowResponse;
+import com.example.portal.shared.metrics.PipelineMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш прочитанных данных сессий workflow (read-through) для UI, контекста чата и декомпозиции Use Case.
+ * <p>
+ * Запись — данные сессии версии {@code updated_at}: полный {@link WorkflowResponse} или артефакты, запрошенные
+ * по имени. Не более {@code app.session-cache.max-entries} записей, вытесняются давно не читавшиеся.
+ * Запись сессии ({@link #invalidate}) удаляет её из кэша сразу и после завершения транзакции, а в транзакции
+ * отправляет {@code pg_notify}: остальные узлы получают уведомление через {@code LISTEN} и удаляют запись у себя.
+ * <p>
+ * Пока подписка активна, запись отдаётся без обращения к БД. Без подписки (ошибка соединения, другая БД,
+ * {@code app.session-cache.listen=false}) и для записей, прочитанных одновременно с инвалидацией, версия
+ * сверяется с {@code updated_at} — запросом одной колонки по ключу.
+ * Метрика {@code iconix.session.cache} (outcome: hit, validated, stale, miss).
+ */
+@Slf4j
+@Service
+public class WorkflowSessionCache {
+
+    static final String CHANNEL = "workflow_session_changed";
+
+    private static final int POLL_MILLIS = 1000;
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(5);
+
+    /**
+     * Данные сессии версии {@code version}: артефакты по имени ({@code loaded} — какие имена читались, в том
+     * числе отсутствующие в сессии) и полный ответ, если сессия читалась целиком.
+     * {@code trusted} — запись положена без параллельной инвалидации, при активной подписке не сверяется.
+     */
+    record Entry(Instant version, boolean trusted, Map<String, Object> artifacts, Set<String> loaded,
+                 WorkflowResponse full) {
+
+        boolean covers(Set<String> names) {
+            return full != null || loaded.containsAll(names);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final PipelineMetrics metrics;
+    private final boolean enabled;
+    private final boolean listen;
+    private final Map<String, Entry> entries;
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile boolean subscribed;
+    private volatile boolean running;
+    private Thread listener;
+
+    public WorkflowSessionCache(JdbcTemplate jdbcTemplate,
+                                DataSourceProperties dataSourceProperties,
+                                PipelineMetrics metrics,
+                                @Value("${app.session-cache.enabled:true}") boolean enabled,
+                                @Value("${app.session-cache.listen:true}") boolean listen,
+                                @Value("${app.session-cache.max-entries:500}") int maxEntries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        // LISTEN/NOTIFY — только PostgreSQL
+        this.listen = listen && dataSourceProperties != null
+                && String.valueOf(dataSourceProperties.determineUrl()).startsWith("jdbc:postgresql:");
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled || !listen) {
+            return;
+        }
+        running = true;
+        listener = Thread.ofPlatform().daemon().name("session-cache-listener").start(this::listenLoop);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    /**
+     * Актуальная запись сессии или null.
+     *
+     * @param currentVersion {@code updated_at} сессии из БД; вызывается, только если запись нужно сверить
+     */
+    Entry lookup(String requestId, Supplier<Optional<Instant>> currentVersion) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = entries.get(requestId);
+        if (entry == null) {
+            metrics.increment("iconix.session.cache", "outcome", "miss");
+            return null;
+        }
+        if (entry.trusted() && subscribed) {
+            metrics.increment("iconix.session.cache", "outcome", "hit");
+            return entry;
+        }
+        long stamp = generation.get();
+        if (currentVersion.get().filter(entry.version()::equals).isEmpty()) {
+            entries.remove(requestId, entry);
+            metrics.increment("iconix.session.cache", "outcome", "stale");
+            return null;
+        }
+        if (!entry.trusted() && stamp == generation.get()) {
+            entries.replace(requestId, entry, new Entry(entry.version(), true, entry.artifacts(), entry.loaded(),
+                    entry.full()));
+        }
+        metrics.increment("iconix.session.cache", "outcome", "validated");
+        return entry;
+    }
+
+    /**
+     * Номер инвалидации; берётся до чтения из БД и передаётся в {@link #putFull}/{@link #putArtifacts}.
+     */
+    long stamp() {
+        return generation.get();
+    }
+
+    /**
+     * Положить полный ответ сессии версии {@code version}.
+     */
+    void putFull(String requestId, long stamp, Instant version, WorkflowResponse response) {
+        if (enabled && version != null) {
+            entries.put(requestId, new Entry(version, stamp == generation.get(), response.artifacts(),
+                    response.artifacts().keySet(), response));
+        }
+    }
+
+    /**
+     * Добавить к записи прочитанные артефакты {@code names} (значения — в {@code artifacts}, отсутствующих
+     * в сессии там нет).
+     */
+    void putArtifacts(String requestId, long stamp, Instant version, Set<String> names,
+                      Map<String, Object> artifacts) {
+        if (!enabled || version == null) {
+            return;
+        }
+        boolean trusted = stamp == generation.get();
+        entries.compute(requestId, (key, existing) -> {
+            if (existing == null || !existing.version().equals(version)) {
+                return new Entry(version, trusted, Map.copyOf(artifacts), Set.copyOf(names), null);
+            }
+            Map<String, Object> merged = new LinkedHashMap<>(existing.artifacts());
+            merged.putAll(artifacts);
+            Set<String> loaded = new HashSet<>(existing.loaded());
+            loaded.addAll(names);
+            return new Entry(version, existing.trusted() && trusted, merged, loaded, existing.full());
+        });
+    }
+
+    /**
+     * Сессия изменяется: запись удаляется сейчас и после завершения транзакции, другим узлам уходит
+     * уведомление (доставляется при коммите).
+     */
+    void invalidate(String requestId) {
+        if (!enabled) {
+            return;
+        }
+        evict(requestId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(requestId);
+                }
+            });
+        }
+        if (listen) {
+            jdbcTemplate.query("select pg_notify(?, ?)", (ResultSetExtractor<Void>) rs -> null, CHANNEL, requestId);
+        }
+    }
+
+    private void evict(String requestId) {
+        generation.incrementAndGet();
+        entries.remove(requestId);
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                // Пока подписки не было, уведомления могли потеряться
+                generation.incrementAndGet();
+                entries.clear();
+                subscribed = true;
+                log.info("Session cache subscribed to '{}'", CHANNEL);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            evict(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Session cache listener disconnected, retrying in {}s: {}",
+                            RECONNECT_DELAY.toSeconds(), e.getMessage());
+                }
+            } finally {
+                subscribed = false;
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.workflow;
+
+import java.util.List;
+
+/**
+ * Страница списка сессий workflow.
+ *
+ * @param items      сессии, новые сверху
+ * @param nextCursor курсор следующей страницы ({@code cursor} в {@code GET /workflow/sessions}); null — страница последняя
+ */
+public record WorkflowSessionPage(
+        List<WorkflowSessionSummary> items,
+        String nextCursor
+) {
+}
@@ -1,67 +1,209 @@
 package com.example.workflow;
 
 import com.example.portal.agents.iconix.entity.WorkflowSession;
+import com.example.portal.agents.iconix.entity.WorkflowSessionCheckpoint;
 import com.example.portal.agents.iconix.model.OrchestratorPlan;
+import com.example.portal.agents.iconix.model.TokenLedger;
 import com.example.portal.agents.iconix.model.WorkflowStatus;
+import com.example.portal.agents.iconix.repository.WorkflowSessionCheckpointRepository;
 import com.example.portal.agents.iconix.repository.WorkflowSessionRepository;
+import com.example.portal.agents.iconix.service.TokenLedgerService;
 import com.example.portal.agents.iconix.worker.Worker;
+import com.example.portal.shared.metrics.PipelineMetrics;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Хранение сессий workflow.
+ * <p>
+ * Состояние сессии — снимок в {@code workflow_sessions} (context_state, logs, plan_json) и чекпоинты
+ * в {@code workflow_session_checkpoints}: перед каждым шагом записываются только изменённые с прошлого
+ * сохранения ключи {@code ctx.state} и новые записи журнала, а статус и номер шага обновляются запросом
+ * без чтения строки. Контекст собирается из снимка и чекпоинтов по порядку.
+ * <p>
+ * Полный снимок пишется для нового контекста (первое сохранение запуска), после
+ * {@code app.session-checkpoint.compact-every} чекпоинтов и при завершении workflow; чекпоинты
+ * сессии при этом удаляются.
+ * <p>
+ * Крупные значения состояния, журнал снимка и крупные поля данных ревью хранятся в {@link WorkflowArtifactService}
+ * (сжаты, по одному экземпляру на содержимое), в сессии и чекпоинтах — ссылки на них; при чтении ссылки
+ * заменяются содержимым.
+ * <p>
+ * Прочитанные данные сессий кэшируются в {@link WorkflowSessionCache}; запись сессии удаляет их из кэша
+ * на всех узлах.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class WorkflowSessionService {
+
+    static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * Артефакты ответа, которые берутся из ключей состояния (scenarios — из ключа scenario).
+     */
+    private static final List<String> STATE_ARTIFACTS = List.of(
+            "plantuml", "issues", "narrativeIssues", "useCaseModel", "mvcDiagram", "scenarios");
+
+    /**
+     * Все артефакты в порядке ответа.
+     */
+    private static final List<String> ARTIFACT_ORDER = Stream.of(
+            Stream.of("narrative"), STATE_ARTIFACTS.stream(), Stream.of("_status", "_reviewData"))
+            .flatMap(names -> names).toList();
     
     private final WorkflowSessionRepository repository;
+    private final WorkflowSessionCheckpointRepository checkpointRepository;
+    private final WorkflowArtifactService artifactStore;
+    private final WorkflowSessionCache cache;
+    private final PipelineMetrics metrics;
+    private final TokenLedgerService tokenLedger;
+    private final int compactEvery;
     private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Что из контекста уже сохранено: состояние, число записей журнала и номер последнего чекпоинта.
+     * Привязано к объекту контекста: новый запуск (новый контекст) начинается со снимка.
+     */
+    private record Persisted(Map<String, Object> state, int logs, int seq) {
+    }
+
+    private final Map<Worker.Context, Persisted> persisted = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public WorkflowSessionService(WorkflowSessionRepository repository,
+                                  WorkflowSessionCheckpointRepository checkpointRepository,
+                                  WorkflowArtifactService artifactStore,
+                                  WorkflowSessionCache cache,
+                                  PipelineMetrics metrics,
+                                  TokenLedgerService tokenLedger,
+                                  @Value("${app.session-checkpoint.compact-every:8}") int compactEvery) {
+        this.repository = repository;
+        this.checkpointRepository = checkpointRepository;
+        this.artifactStore = artifactStore;
+        this.cache = cache;
+        this.metrics = metrics;
+        this.tokenLedger = tokenLedger;
+        this.compactEvery = compactEvery;
+    }
     
     @Transactional
-    public WorkflowSession saveSession(Worker.Context ctx, com.example.portal.agents.iconix.model.OrchestratorPlan plan, 
-                                      int currentStepIndex, com.example.portal.agents.iconix.model.WorkflowStatus status, 
-                                      String userReviewData, Integer maxIterations) {
+    public void saveSession(Worker.Context ctx, com.example.portal.agents.iconix.model.OrchestratorPlan plan, 
+                            int currentStepIndex, com.example.portal.agents.iconix.model.WorkflowStatus status, 
+                            String userReviewData, Integer maxIterations) {
+        long started = System.nanoTime();
+        String outcome = PipelineMetrics.ERROR;
+        String mode = "checkpoint";
         try {
-            WorkflowSession session = repository.findByRequestId(ctx.requestId)
-                    .map(existing -> {
-                        existing.setNarrative(ctx.narrativeEffective());
-                        existing.setGoal(ctx.goal);
-                        existing.setTask(ctx.task);
-                        existing.setContextStateJson(serializeState(ctx.state));
-                        existing.setLogsJson(serializeLogs(ctx.logs));
-                        existing.setPlanJson(serializePlan(plan));
-                        existing.setCurrentStepIndex(currentStepIndex);
-                        existing.setStatus(status);
-                        existing.setUserReviewData(userReviewData);
-                        // existing.setMaxIterations(maxIterations);  // Закомментировано - рудимент
-                        return existing;
-                    })
-                    .orElse(WorkflowSession.builder()
-                            .requestId(ctx.requestId)
-                            .narrative(ctx.narrativeEffective())
-                            .goal(ctx.goal)
-                            .task(ctx.task)
-                            .contextStateJson(serializeState(ctx.state))
-                            .logsJson(serializeLogs(ctx.logs))
-                            .planJson(serializePlan(plan))
-                            .currentStepIndex(currentStepIndex)
-                            .status(status)
-                            .userReviewData(userReviewData)
-                            // .maxIterations(maxIterations)  // Закомментировано - рудимент
-                            .build());
-            
-            return repository.save(session);
+            cache.invalidate(ctx.requestId);
+            Persisted previous = persisted.get(ctx);
+            if (previous == null || previous.seq() >= compactEvery || previous.logs() > ctx.logs.size()
+                    || status == com.example.portal.agents.iconix.model.WorkflowStatus.COMPLETED) {
+                mode = "snapshot";
+                saveSnapshot(ctx, plan, currentStepIndex, status, userReviewData);
+            } else {
+                saveCheckpoint(ctx, previous, currentStepIndex, status, userReviewData);
+            }
+            outcome = PipelineMetrics.SUCCESS;
         } catch (Exception e) {
             log.error("Failed to save workflow session: {}", ctx.requestId, e);
             throw new RuntimeException("Failed to save workflow session", e);
+        } finally {
+            metrics.record("iconix.session.save", System.nanoTime() - started, outcome,
+                    "status", status.name(), "mode", mode);
+        }
+    }
+
+    /**
+     * Полная запись сессии: состояние, журнал и план; чекпоинты сессии и ссылки на артефакты,
+     * которых в снимке нет, удаляются.
+     */
+    private void saveSnapshot(Worker.Context ctx, com.example.portal.agents.iconix.model.OrchestratorPlan plan,
+                              int currentStepIndex, com.example.portal.agents.iconix.model.WorkflowStatus status,
+                              String userReviewData) {
+        WorkflowArtifactService.Batch batch = artifactStore.batch(ctx.requestId);
+        String stateJson = serializeState(batch.externalize(ctx.state));
+        String logsJson = serializeValue(batch.externalize(ctx.logs));
+        String reviewDataJson = externalizeReviewData(batch, userReviewData);
+        WorkflowSession session = repository.findByRequestId(ctx.requestId)
+                .map(existing -> {
+                    existing.setNarrative(ctx.narrativeEffective());
+                    existing.setGoal(ctx.goal);
+                    existing.setTask(ctx.task);
+                    existing.setContextStateJson(stateJson);
+                    existing.setLogsJson(logsJson);
+                    existing.setPlanJson(serializePlan(plan));
+                    existing.setCurrentStepIndex(currentStepIndex);
+                    existing.setStatus(status);
+                    existing.setUserReviewData(reviewDataJson);
+                    // existing.setMaxIterations(maxIterations);  // Закомментировано - рудимент
+                    return existing;
+                })
+                .orElse(WorkflowSession.builder()
+                        .requestId(ctx.requestId)
+                        .narrative(ctx.narrativeEffective())
+                        .goal(ctx.goal)
+                        .task(ctx.task)
+                        .contextStateJson(stateJson)
+                        .logsJson(logsJson)
+                        .planJson(serializePlan(plan))
+                        .currentStepIndex(currentStepIndex)
+                        .status(status)
+                        .userReviewData(reviewDataJson)
+                        // .maxIterations(maxIterations)  // Закомментировано - рудимент
+                        .build());
+
+        repository.save(session);
+        batch.flush();
+        checkpointRepository.deleteByRequestId(ctx.requestId);
+        artifactStore.retain(ctx.requestId, batch.hashes());
+        persisted.put(ctx, new Persisted(new HashMap<>(ctx.state), ctx.logs.size(), 0));
+    }
+
+    /**
+     * Запись изменений с прошлого сохранения и обновление хода выполнения.
+     */
+    private void saveCheckpoint(Worker.Context ctx, Persisted previous, int currentStepIndex,
+                                com.example.portal.agents.iconix.model.WorkflowStatus status, String userReviewData) {
+        Map<String, Object> delta = new HashMap<>();
+        ctx.state.forEach((key, value) -> {
+            if (!previous.state().containsKey(key) || !Objects.equals(previous.state().get(key), value)) {
+                delta.put(key, value);
+            }
+        });
+        previous.state().keySet().forEach(key -> {
+            if (!ctx.state.containsKey(key)) {
+                delta.put(key, null);
+            }
+        });
+        List<String> newLogs = ctx.logs.subList(previous.logs(), ctx.logs.size());
+
+        WorkflowArtifactService.Batch batch = artifactStore.batch(ctx.requestId);
+        int seq = previous.seq();
+        if (!delta.isEmpty() || !newLogs.isEmpty()) {
+            seq++;
+            checkpointRepository.save(WorkflowSessionCheckpoint.builder()
+                    .requestId(ctx.requestId)
+                    .seq(seq)
+                    .stateDeltaJson(serializeState(batch.externalize(delta)))
+                    .logsJson(serializeLogs(newLogs))
+                    .build());
+        }
+        int updated = repository.updateProgress(ctx.requestId, ctx.narrativeEffective(), currentStepIndex, status,
+                externalizeReviewData(batch, userReviewData), Instant.now());
+        if (updated == 0) {
+            throw new IllegalStateException("Session not found: " + ctx.requestId);
         }
+        batch.flush();
+        persisted.put(ctx, new Persisted(new HashMap<>(ctx.state), ctx.logs.size(), seq));
     }
     
     @Transactional(readOnly = true)
@@ -69,16 +211,64 @@ public class WorkflowSessionService {
         return repository.findByRequestId(requestId);
     }
     
+    /**
+     * Страница списка сессий, новые сверху: выбираются только колонки сводки, постранично по курсору
+     * (created_at и request_id последней строки), без OFFSET.
+     *
+     * @param statuses фильтр по статусам; пусто — все
+     * @param cursor   {@link WorkflowSessionPage#nextCursor()} предыдущей страницы; null — первая страница
+     * @param limit    размер страницы, от 1 до {@value #MAX_PAGE_SIZE}
+     * @throws IllegalArgumentException если курсор повреждён
+     */
     @Transactional(readOnly = true)
-    public List<WorkflowSessionSummary> getAllSessions() {
-        return repository.findAll().stream()
-                .sorted((a, b) -> {
-                    Instant aTime = a.getCreatedAt() != null ? a.getCreatedAt() : Instant.EPOCH;
-                    Instant bTime = b.getCreatedAt() != null ? b.getCreatedAt() : Instant.EPOCH;
-                    return bTime.compareTo(aTime); // Сортировка по убыванию (новые сверху)
-                })
-                .map(WorkflowSessionSummary::from)
-                .collect(java.util.stream.Collectors.toList());
+    public WorkflowSessionPage getSessions(Set<WorkflowStatus> statuses, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<String> statusNames = (statuses == null || statuses.isEmpty()
+                ? EnumSet.allOf(WorkflowStatus.class) : statuses).stream().map(Enum::name).toList();
+
+        // На одну строку больше: по ней видно, есть ли следующая страница
+        List<WorkflowSessionRepository.SessionSummaryView> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = repository.findSummaries(statusNames, pageSize + 1);
+        } else {
+            SessionCursor after = SessionCursor.decode(cursor);
+            rows = repository.findSummariesBefore(statusNames, after.createdAt(), after.requestId(), pageSize + 1);
+        }
+        boolean hasNext = rows.size() > pageSize;
+        List<WorkflowSessionRepository.SessionSummaryView> page = hasNext ? rows.subList(0, pageSize) : rows;
+
+        Map<String, TokenLedger.Totals> usage = tokenLedger.getTotals(
+                page.stream().map(WorkflowSessionRepository.SessionSummaryView::getRequestId).toList());
+        List<WorkflowSessionSummary> items = page.stream()
+                .map(session -> WorkflowSessionSummary.from(session, usage.get(session.getRequestId())))
+                .toList();
+        String nextCursor = null;
+        if (hasNext) {
+            var last = page.get(page.size() - 1);
+            nextCursor = new SessionCursor(last.getCreatedAt(), last.getRequestId()).encode();
+        }
+        return new WorkflowSessionPage(items, nextCursor);
+    }
+
+    /**
+     * Позиция в списке сессий: created_at и request_id последней показанной строки.
+     */
+    private record SessionCursor(Instant createdAt, String requestId) {
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((createdAt + "|" + requestId).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static SessionCursor decode(String cursor) {
+            try {
+                String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = value.indexOf('|');
+                return new SessionCursor(Instant.parse(value.substring(0, separator)), value.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid sessions cursor: " + cursor, e);
+            }
+        }
     }
     
     /**
@@ -86,9 +276,20 @@ public class WorkflowSessionService {
      */
     @Transactional(readOnly = true)
     public com.example.portal.agents.iconix.model.WorkflowResponse getSessionData(String requestId) {
+        WorkflowSessionCache.Entry cached = cache.lookup(requestId, () -> repository.findVersion(requestId));
+        if (cached != null && cached.full() != null) {
+            return cached.full();
+        }
+        long stamp = cache.stamp();
         WorkflowSession session = loadSession(requestId)
                 .orElseThrow(() -> new IllegalArgumentException("Session not found: " + requestId));
-        
+        var response = buildSessionData(session);
+        cache.putFull(requestId, stamp, session.getUpdatedAt(), response);
+        return response;
+    }
+    
+    private com.example.portal.agents.iconix.model.WorkflowResponse buildSessionData(WorkflowSession session) {
+        String requestId = session.getRequestId();
         // Восстанавливаем контекст и план
         Worker.Context ctx = restoreContext(session);
         com.example.portal.agents.iconix.model.OrchestratorPlan plan = restorePlan(session);
@@ -124,10 +325,10 @@ public class WorkflowSessionService {
         // Если есть данные для ревью, добавляем их
         if (session.getUserReviewData() != null && !session.getUserReviewData().isBlank()) {
             try {
-                Map<String, Object> reviewData = objectMapper.readValue(
+                Map<String, Object> reviewData = artifactStore.resolve(objectMapper.readValue(
                         session.getUserReviewData(), 
                         new TypeReference<Map<String, Object>>() {}
-                );
+                ));
                 artifacts.put("_reviewData", reviewData);
             } catch (Exception e) {
                 log.warn("Failed to parse user review data for session: {}", requestId, e);
@@ -142,6 +343,84 @@ public class WorkflowSessionService {
         );
     }
     
+    /**
+     * Часть артефактов сессии: значения ключей состояния извлекаются в БД ({@code context_state -> 'plantuml'}
+     * с учётом чекпоинтов), журнал, план и остальное состояние не читаются и не разбираются.
+     * План в ответе не заполняется, журнал пуст; {@code _status} добавляется всегда.
+     *
+     * @param artifacts имена артефактов как в {@link #getSessionData(String)}: narrative, plantuml, issues,
+     *                  narrativeIssues, useCaseModel, mvcDiagram, scenarios, _reviewData; пусто — все артефакты
+     */
+    @Transactional(readOnly = true)
+    public com.example.portal.agents.iconix.model.WorkflowResponse getSessionData(String requestId,
+                                                                                 Set<String> artifacts) {
+        if (artifacts == null || artifacts.isEmpty()) {
+            return getSessionData(requestId);
+        }
+        WorkflowSessionCache.Entry cached = cache.lookup(requestId, () -> repository.findVersion(requestId));
+        if (cached != null && cached.covers(artifacts)) {
+            return new com.example.portal.agents.iconix.model.WorkflowResponse(requestId, null,
+                    selectArtifacts(cached.artifacts(), artifacts), List.of());
+        }
+        long stamp = cache.stamp();
+        WorkflowSessionRepository.SessionHeaderView header = repository.findHeader(requestId)
+                .orElseThrow(() -> new IllegalArgumentException("Session not found: " + requestId));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        List<String> stateKeys = STATE_ARTIFACTS.stream()
+                .filter(artifacts::contains)
+                .map(name -> name.equals("scenarios") ? "scenario" : name)
+                .toList();
+        Map<String, Object> values = new HashMap<>();
+        if (!stateKeys.isEmpty()) {
+            for (var entry : repository.findStateEntries(requestId, stateKeys)) {
+                Object value = deserializeValue(entry.getValue());
+                if (value != null) {
+                    values.put(entry.getKey(), value);
+                }
+            }
+            values = artifactStore.resolve(values);
+        }
+        if (artifacts.contains("narrative")) {
+            result.put("narrative", header.getNarrative() != null ? header.getNarrative() : "");
+        }
+        for (String name : STATE_ARTIFACTS) {
+            if (!artifacts.contains(name)) {
+                continue;
+            }
+            if (name.equals("scenarios")) {
+                if (values.get("scenario") instanceof String scenario) {
+                    result.put("scenarios", List.of(scenario));
+                }
+            } else if (values.containsKey(name)) {
+                result.put(name, values.get(name));
+            }
+        }
+        result.put("_status", header.getStatus().toString());
+        if (artifacts.contains("_reviewData")) {
+            repository.findUserReviewData(requestId)
+                    .filter(json -> !json.isBlank())
+                    .map(this::deserializeState)
+                    .map(artifactStore::resolve)
+                    .ifPresent(reviewData -> result.put("_reviewData", reviewData));
+        }
+        cache.putArtifacts(requestId, stamp, header.getUpdatedAt(), artifacts, result);
+        return new com.example.portal.agents.iconix.model.WorkflowResponse(requestId, null, result, List.of());
+    }
+    
+    /**
+     * Запрошенные артефакты и {@code _status} из данных в кэше, в порядке ответа {@link #getSessionData(String, Set)}.
+     */
+    private static Map<String, Object> selectArtifacts(Map<String, Object> source, Set<String> names) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String name : ARTIFACT_ORDER) {
+            if ((names.contains(name) || name.equals("_status")) && source.containsKey(name)) {
+                result.put(name, source.get(name));
+            }
+        }
+        return result;
+    }
+    
     public Worker.Context restoreContext(WorkflowSession session) {
         try {
             var ctx = new Worker.Context(
@@ -157,12 +436,30 @@ public class WorkflowSessionService {
                 ctx.state.putAll(state);
             }
             
-            // Восстанавливаем logs
+            // Восстанавливаем logs (в снимке — массив или ссылка на артефакт)
             if (session.getLogsJson() != null) {
                 List<String> logs = deserializeLogs(session.getLogsJson());
                 ctx.logs.addAll(logs);
             }
             
+            // Поверх снимка — чекпоинты шагов по порядку
+            int seq = 0;
+            for (WorkflowSessionCheckpoint checkpoint
+                    : checkpointRepository.findByRequestIdOrderBySeqAsc(session.getRequestId())) {
+                deserializeState(checkpoint.getStateDeltaJson()).forEach((key, value) -> {
+                    if (value == null) {
+                        ctx.state.remove(key);
+                    } else {
+                        ctx.state.put(key, value);
+                    }
+                });
+                ctx.logs.addAll(deserializeLogs(checkpoint.getLogsJson()));
+                seq = checkpoint.getSeq();
+            }
+            Map<String, Object> resolved = artifactStore.resolve(ctx.state);
+            ctx.state.putAll(resolved);
+            persisted.put(ctx, new Persisted(new HashMap<>(ctx.state), ctx.logs.size(), seq));
+            
             return ctx;
         } catch (Exception e) {
             log.error("Failed to restore context for session: {}", session.getRequestId(), e);
@@ -190,6 +487,9 @@ public class WorkflowSessionService {
         }
         
         WorkflowSession session = sessionOpt.get();
+        cache.invalidate(requestId);
+        // Новая версия сессии, даже если меняется только модель в чекпоинте
+        session.setUpdatedAt(Instant.now());
         
         // Обновляем narrative если передан
         // Данные приходят из JSON, Spring автоматически их парсит, оставляем как есть
@@ -197,15 +497,16 @@ public class WorkflowSessionService {
             session.setNarrative(narrative);
         }
         
-        // Обновляем domain model в state
+        // Обновляем domain model в state: отдельным чекпоинтом, снимок не переписывается
         if (domainModel != null && !domainModel.isBlank()) {
-            try {
-                Map<String, Object> state = deserializeState(session.getContextStateJson());
-                state.put("plantuml", domainModel);
-                session.setContextStateJson(serializeState(state));
-            } catch (Exception e) {
-                log.error("Failed to update domain model in session: {}", requestId, e);
-            }
+            WorkflowArtifactService.Batch batch = artifactStore.batch(requestId);
+            checkpointRepository.save(WorkflowSessionCheckpoint.builder()
+                    .requestId(requestId)
+                    .seq(checkpointRepository.findLastSeq(requestId) + 1)
+                    .stateDeltaJson(serializeState(batch.externalize(Map.of("plantuml", domainModel))))
+                    .logsJson("[]")
+                    .build());
+            batch.flush();
         }
         
         repository.save(session);
@@ -220,6 +521,16 @@ public class WorkflowSessionService {
         }
     }
     
+    /**
+     * Данные ревью со ссылками на артефакты вместо крупных полей (доменная модель, narrative).
+     */
+    private String externalizeReviewData(WorkflowArtifactService.Batch batch, String userReviewData) {
+        if (userReviewData == null || userReviewData.isBlank()) {
+            return userReviewData;
+        }
+        return serializeState(batch.externalize(deserializeState(userReviewData)));
+    }
+    
     private Map<String, Object> deserializeState(String json) {
         try {
             return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
@@ -229,6 +540,15 @@ public class WorkflowSessionService {
         }
     }
     
+    private Object deserializeValue(String json) {
+        try {
+            return objectMapper.readValue(json, Object.class);
+        } catch (Exception e) {
+            log.error("Failed to deserialize state value", e);
+            return null;
+        }
+    }
+    
     private String serializeLogs(List<String> logs) {
         try {
             return objectMapper.writeValueAsString(logs);
@@ -238,9 +558,20 @@ public class WorkflowSessionService {
         }
     }
     
+    private String serializeValue(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            log.error("Failed to serialize value", e);
+            return "null";
+        }
+    }
+    
     private List<String> deserializeLogs(String json) {
         try {
-            return objectMapper.readValue(json, new TypeReference<List<String>>() {});
+            Object logs = artifactStore.resolve(objectMapper.readValue(json, Object.class));
+            List<String> result = objectMapper.convertValue(logs, new TypeReference<List<String>>() {});
+            return result != null ? result : new ArrayList<>();
         } catch (Exception e) {
             log.error("Failed to deserialize logs", e);
             return new ArrayList<>();
@@ -1,7 +1,8 @@
 package com.example.workflow;
 
-import com.example.portal.agents.iconix.entity.WorkflowSession;
+import com.example.portal.agents.iconix.model.TokenLedger;
 import com.example.portal.agents.iconix.model.WorkflowStatus;
+import com.example.portal.agents.iconix.repository.WorkflowSessionRepository.SessionSummaryView;
 
 import java.time.Instant;
 
@@ -10,16 +11,17 @@ public record WorkflowSessionSummary(
         WorkflowStatus status,
         String author,
         Instant createdAt,
-        Instant updatedAt
+        Instant updatedAt,
+        TokenLedger.Totals llmUsage
 ) {
-    public static WorkflowSessionSummary from(WorkflowSession session) {
+    public static WorkflowSessionSummary from(SessionSummaryView session, TokenLedger.Totals llmUsage) {
         return new WorkflowSessionSummary(
                 session.getRequestId(),
                 session.getStatus(),
                 "System", // TODO: добавить поле author в WorkflowSession
                 session.getCreatedAt(),
-                session.getUpdatedAt()
+                session.getUpdatedAt(),
+                llmUsage != null ? llmUsage : TokenLedger.Totals.EMPTY
         );
     }
 }
-
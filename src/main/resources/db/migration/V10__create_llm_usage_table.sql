@@ -0,0 +1,29 @@
+-- Журнал вызовов LLM: токены, задержка и модель для каждого вызова в рамках сессии workflow
+CREATE TABLE IF NOT EXISTS llm_usage (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    request_id VARCHAR(36) NOT NULL,
+    worker VARCHAR(100),
+    agent VARCHAR(100) NOT NULL,
+    prompt_code VARCHAR(100),
+    model VARCHAR(255),
+    prompt_tokens INTEGER NOT NULL DEFAULT 0,
+    completion_tokens INTEGER NOT NULL DEFAULT 0,
+    latency_ms BIGINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Индекс для выборки журнала сессии
+CREATE INDEX IF NOT EXISTS idx_llm_usage_request_id ON llm_usage(request_id);
+
+-- Комментарии к таблице и колонкам
+COMMENT ON TABLE llm_usage IS 'Журнал расхода токенов LLM по сессиям workflow';
+COMMENT ON COLUMN llm_usage.id IS 'Уникальный идентификатор записи (UUID)';
+COMMENT ON COLUMN llm_usage.request_id IS 'Идентификатор сессии workflow';
+COMMENT ON COLUMN llm_usage.worker IS 'Шаг плана (worker), в котором выполнен вызов: narrative, model, review, ...';
+COMMENT ON COLUMN llm_usage.agent IS 'Агентный сервис, выполнивший вызов: domain_modeller, evaluator, ...';
+COMMENT ON COLUMN llm_usage.prompt_code IS 'Код промпта из справочника prompts';
+COMMENT ON COLUMN llm_usage.model IS 'Модель, вернувшая ответ';
+COMMENT ON COLUMN llm_usage.prompt_tokens IS 'Токены запроса';
+COMMENT ON COLUMN llm_usage.completion_tokens IS 'Токены ответа';
+COMMENT ON COLUMN llm_usage.latency_ms IS 'Длительность вызова в миллисекундах';
+COMMENT ON COLUMN llm_usage.created_at IS 'Дата и время вызова';
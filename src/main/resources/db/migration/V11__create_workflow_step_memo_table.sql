@@ -0,0 +1,19 @@
+-- Мемо шагов workflow: результат шага по хэшу его входа (состояние, narrative, аргументы, промпты, модель)
+CREATE TABLE IF NOT EXISTS workflow_step_memo (
+    input_hash VARCHAR(64) PRIMARY KEY,
+    worker VARCHAR(100) NOT NULL,
+    state_delta TEXT NOT NULL,
+    logs TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Индекс для очистки устаревших записей
+CREATE INDEX IF NOT EXISTS idx_workflow_step_memo_created_at ON workflow_step_memo(created_at);
+
+-- Комментарии к таблице и колонкам
+COMMENT ON TABLE workflow_step_memo IS 'Результаты шагов workflow для повторного использования при том же входе';
+COMMENT ON COLUMN workflow_step_memo.input_hash IS 'SHA-256 входа шага (hex)';
+COMMENT ON COLUMN workflow_step_memo.worker IS 'Шаг плана (worker): narrative, model, review, ...';
+COMMENT ON COLUMN workflow_step_memo.state_delta IS 'JSON ключей ctx.state, изменённых шагом';
+COMMENT ON COLUMN workflow_step_memo.logs IS 'JSON записей журнала, добавленных шагом';
+COMMENT ON COLUMN workflow_step_memo.created_at IS 'Дата и время выполнения шага';
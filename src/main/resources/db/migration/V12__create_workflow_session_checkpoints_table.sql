@@ -0,0 +1,20 @@
+-- Чекпоинты сессии workflow: изменения состояния и новые записи журнала после снимка в workflow_sessions.
+-- Контекст = снимок (context_state, logs) + чекпоинты по возрастанию seq; при уплотнении чекпоинты удаляются.
+CREATE TABLE IF NOT EXISTS workflow_session_checkpoints (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    request_id VARCHAR(36) NOT NULL REFERENCES workflow_sessions(request_id) ON DELETE CASCADE,
+    seq INTEGER NOT NULL,
+    state_delta TEXT NOT NULL,
+    logs TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uq_workflow_session_checkpoints_seq UNIQUE (request_id, seq)
+);
+
+-- Комментарии к таблице и колонкам
+COMMENT ON TABLE workflow_session_checkpoints IS 'Чекпоинты сессий workflow поверх снимка в workflow_sessions';
+COMMENT ON COLUMN workflow_session_checkpoints.id IS 'Уникальный идентификатор записи (UUID)';
+COMMENT ON COLUMN workflow_session_checkpoints.request_id IS 'Идентификатор сессии workflow';
+COMMENT ON COLUMN workflow_session_checkpoints.seq IS 'Порядковый номер чекпоинта после снимка (с 1)';
+COMMENT ON COLUMN workflow_session_checkpoints.state_delta IS 'JSON изменённых ключей ctx.state; null — ключ удалён';
+COMMENT ON COLUMN workflow_session_checkpoints.logs IS 'JSON записей журнала, добавленных после предыдущего чекпоинта';
+COMMENT ON COLUMN workflow_session_checkpoints.created_at IS 'Дата и время чекпоинта';
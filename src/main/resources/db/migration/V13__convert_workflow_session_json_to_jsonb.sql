@@ -0,0 +1,23 @@
+-- Состояние, журнал, план и данные ревью сессий workflow — JSONB вместо TEXT:
+-- отдельные артефакты (context_state -> 'plantuml') извлекаются на стороне БД без разбора всего состояния.
+ALTER TABLE workflow_sessions
+    ALTER COLUMN context_state TYPE JSONB USING NULLIF(btrim(context_state), '')::jsonb,
+    ALTER COLUMN logs TYPE JSONB USING NULLIF(btrim(logs), '')::jsonb,
+    ALTER COLUMN plan_json TYPE JSONB USING NULLIF(btrim(plan_json), '')::jsonb,
+    ALTER COLUMN user_review_data TYPE JSONB USING NULLIF(btrim(user_review_data), '')::jsonb;
+
+ALTER TABLE workflow_session_checkpoints
+    ALTER COLUMN state_delta TYPE JSONB USING state_delta::jsonb,
+    ALTER COLUMN logs TYPE JSONB USING logs::jsonb;
+
+-- Поиск сессий по замечаниям ревью: context_state -> 'issues' @> '[{"severity": "HIGH"}]'
+-- (статус сессии — колонка status с индексом idx_workflow_sessions_status)
+CREATE INDEX IF NOT EXISTS idx_workflow_sessions_issues
+    ON workflow_sessions USING GIN ((context_state -> 'issues') jsonb_path_ops);
+CREATE INDEX IF NOT EXISTS idx_workflow_sessions_narrative_issues
+    ON workflow_sessions USING GIN ((context_state -> 'narrativeIssues') jsonb_path_ops);
+
+COMMENT ON COLUMN workflow_sessions.context_state IS 'Снимок состояния контекста (state), JSONB';
+COMMENT ON COLUMN workflow_sessions.logs IS 'Снимок логов выполнения, JSONB';
+COMMENT ON COLUMN workflow_sessions.plan_json IS 'План выполнения (OrchestratorPlan), JSONB';
+COMMENT ON COLUMN workflow_sessions.user_review_data IS 'Данные для пользовательского ревью, JSONB';
@@ -0,0 +1,51 @@
+-- Хранилище артефактов workflow по содержимому: крупные значения состояния, журнал и данные ревью
+-- хранятся один раз (ключ — SHA-256 JSON значения, содержимое сжато deflate), сессии хранят ссылки
+-- вида {"$artifact": "<hash>"}.
+CREATE TABLE IF NOT EXISTS workflow_artifacts (
+    hash VARCHAR(64) PRIMARY KEY,
+    content BYTEA NOT NULL,
+    original_size INTEGER NOT NULL,
+    compressed_size INTEGER NOT NULL,
+    ref_count INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_used_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Ссылки сессий на артефакты; ref_count артефакта — число ссылающихся сессий
+CREATE TABLE IF NOT EXISTS workflow_session_artifacts (
+    request_id VARCHAR(36) NOT NULL REFERENCES workflow_sessions(request_id) ON DELETE CASCADE,
+    hash VARCHAR(64) NOT NULL REFERENCES workflow_artifacts(hash),
+    PRIMARY KEY (request_id, hash)
+);
+
+CREATE INDEX IF NOT EXISTS idx_workflow_session_artifacts_hash ON workflow_session_artifacts(hash);
+
+-- Кандидаты на удаление: артефакты без ссылок
+CREATE INDEX IF NOT EXISTS idx_workflow_artifacts_unreferenced
+    ON workflow_artifacts(last_used_at) WHERE ref_count = 0;
+
+-- Счётчик ссылок ведёт БД: в том числе при каскадном удалении ссылок вместе с сессией
+CREATE OR REPLACE FUNCTION workflow_artifacts_ref_count() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE workflow_artifacts SET ref_count = ref_count + 1 WHERE hash = NEW.hash;
+        RETURN NEW;
+    END IF;
+    UPDATE workflow_artifacts SET ref_count = ref_count - 1 WHERE hash = OLD.hash;
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_workflow_session_artifacts_ref_count
+    AFTER INSERT OR DELETE ON workflow_session_artifacts
+    FOR EACH ROW EXECUTE FUNCTION workflow_artifacts_ref_count();
+
+-- Комментарии к таблицам и колонкам
+COMMENT ON TABLE workflow_artifacts IS 'Артефакты workflow, адресуемые по содержимому';
+COMMENT ON COLUMN workflow_artifacts.hash IS 'SHA-256 JSON значения (hex)';
+COMMENT ON COLUMN workflow_artifacts.content IS 'JSON значения в UTF-8, сжатый deflate';
+COMMENT ON COLUMN workflow_artifacts.original_size IS 'Размер JSON до сжатия, байт';
+COMMENT ON COLUMN workflow_artifacts.compressed_size IS 'Размер после сжатия, байт';
+COMMENT ON COLUMN workflow_artifacts.ref_count IS 'Число сессий, ссылающихся на артефакт';
+COMMENT ON COLUMN workflow_artifacts.last_used_at IS 'Последняя запись ссылки на артефакт';
+COMMENT ON TABLE workflow_session_artifacts IS 'Ссылки сессий workflow на артефакты';
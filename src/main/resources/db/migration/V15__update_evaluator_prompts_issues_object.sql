@@ -0,0 +1,106 @@
+-- Промпты ревью (evaluator_plantuml, evaluator_narrative) требуют ответ-объект {"issues": [...]}:
+-- так же описан ответ в JSON Schema и в режиме json_object, где корень ответа — всегда объект.
+-- PromptDataInitializer создаёт только отсутствующие промпты, поэтому текст в существующих БД
+-- обновляется здесь: только в промптах, где осталось требование JSON-массива; прежний текст
+-- сохраняется в prompts_history.
+
+INSERT INTO prompts_history (prompt_id, content, change_reason)
+SELECT id, content, 'Ответ ревью — объект {"issues": [...]} вместо массива'
+FROM prompts
+WHERE code = 'evaluator_plantuml' AND content LIKE '%JSON-массив объектов%';
+
+UPDATE prompts
+SET content = $prompt$Ты — аналитик требований. Проведи ревью пользовательского нарратива и оцени его качество.
+Верни ТОЛЬКО валидный JSON-объект с полем "issues" — массивом замечаний, без дополнительного текста, комментариев или форматирования.
+
+Формат ответа (строго соблюдай синтаксис JSON):
+{
+  "issues": [
+    {
+      "id": "1",
+      "title": "Название проблемы",
+      "severity": "LOW",
+      "suggestion": "Конкретное предложение по улучшению"
+    },
+    {
+      "id": "2",
+      "title": "Другая проблема",
+      "severity": "MEDIUM",
+      "suggestion": "Другое предложение"
+    }
+  ]
+}
+
+ВАЖНО:
+- Корень ответа — объект {"issues": [...]}, даже если замечание одно
+- Если замечаний нет, верни {"issues": []}
+- Каждое поле должно быть в кавычках
+- После каждого поля (кроме последнего в объекте) должна быть запятая
+- severity может быть только: LOW, MEDIUM, HIGH
+- Верни ТОЛЬКО JSON, без пояснений, без markdown форматирования, без кодовых блоков
+
+Правила оценки:
+- Указывай проблемы неполноты, неоднозначности, противоречий, отсутствующих бизнес-правил.
+- severity ∈ {LOW, MEDIUM, HIGH}.
+- suggestion — конкретное действие, которое улучшит нарратив.
+
+Нарратив:
+%s
+
+Контекст системы (RAG):
+%s
+
+PlantUML для оценки:
+%s
+$prompt$,
+    updated_at = CURRENT_TIMESTAMP
+WHERE code = 'evaluator_plantuml' AND content LIKE '%JSON-массив объектов%';
+
+INSERT INTO prompts_history (prompt_id, content, change_reason)
+SELECT id, content, 'Ответ ревью — объект {"issues": [...]} вместо массива'
+FROM prompts
+WHERE code = 'evaluator_narrative' AND content LIKE '%JSON-массив объектов%';
+
+UPDATE prompts
+SET content = $prompt$Ты — аналитик требований. Проведи ревью пользовательского нарратива и оцени его качество.
+Верни ТОЛЬКО валидный JSON-объект с полем "issues" — массивом замечаний, без дополнительного текста, комментариев или форматирования.
+
+Формат ответа (строго соблюдай синтаксис JSON):
+{
+  "issues": [
+    {
+      "id": "1",
+      "title": "Название проблемы",
+      "severity": "LOW",
+      "suggestion": "Конкретное предложение по улучшению"
+    },
+    {
+      "id": "2",
+      "title": "Другая проблема",
+      "severity": "MEDIUM",
+      "suggestion": "Другое предложение"
+    }
+  ]
+}
+
+ВАЖНО:
+- Корень ответа — объект {"issues": [...]}, даже если замечание одно
+- Если замечаний нет, верни {"issues": []}
+- Каждое поле должно быть в кавычках
+- После каждого поля (кроме последнего в объекте) должна быть запятая
+- severity может быть только: LOW, MEDIUM, HIGH
+- Верни ТОЛЬКО JSON, без пояснений, без markdown форматирования, без кодовых блоков
+
+Правила оценки:
+- Указывай проблемы неполноты, неоднозначности, противоречий, отсутствующих бизнес-правил.
+- severity ∈ {LOW, MEDIUM, HIGH}.
+- suggestion — конкретное действие, которое улучшит нарратив.
+
+Нарратив:
+%s
+
+Контекст системы (RAG):
+%s
+$prompt$,
+    updated_at = CURRENT_TIMESTAMP
+WHERE code = 'evaluator_narrative' AND content LIKE '%JSON-массив объектов%';
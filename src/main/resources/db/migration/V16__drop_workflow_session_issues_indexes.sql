@@ -0,0 +1,5 @@
+-- GIN-индексы по context_state -> 'issues' / 'narrativeIssues' (V13) не используются ни одним запросом.
+-- Кроме того, замечания сессий в процессе выполнения или на паузе лежат в state_delta чекпоинтов, а не в снимке,
+-- поэтому поиск только по снимку их не находит. Индексы удаляются, чтобы не замедлять запись снимков.
+DROP INDEX IF EXISTS idx_workflow_sessions_issues;
+DROP INDEX IF EXISTS idx_workflow_sessions_narrative_issues;
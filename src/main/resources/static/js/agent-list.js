@@ -1,8 +1,14 @@
 const API_BASE = '/workflow';
+const SESSIONS_PAGE_SIZE = 50;
+
+// Курсор следующей страницы списка сессий (null — страниц больше нет)
+let nextSessionsCursor = null;
+let loadedSessionsCount = 0;
 
 document.addEventListener('DOMContentLoaded', function() {
     loadAgents();
     initNewRequestForm();
+    document.getElementById('loadMoreButton')?.addEventListener('click', () => loadAgents(nextSessionsCursor));
 });
 
 function initNewRequestForm() {
@@ -73,25 +79,38 @@ async function createNewRequest() {
     }
 }
 
-async function loadAgents() {
+async function loadAgents(cursor = null) {
     const tbody = document.getElementById('agentsTableBody');
+    const loadMoreButton = document.getElementById('loadMoreButton');
     
     try {
-        const response = await fetch(`${API_BASE}/sessions`);
+        const params = new URLSearchParams({ limit: SESSIONS_PAGE_SIZE });
+        if (cursor) {
+            params.set('cursor', cursor);
+        }
+        const response = await fetch(`${API_BASE}/sessions?${params}`);
         
         if (!response.ok) {
             throw new Error(`HTTP error! status: ${response.status}`);
         }
         
-        const sessions = await response.json();
+        const page = await response.json();
+        const sessions = page.items;
+        nextSessionsCursor = page.nextCursor;
+        if (loadMoreButton) {
+            loadMoreButton.style.display = nextSessionsCursor ? 'block' : 'none';
+        }
         
-        if (sessions.length === 0) {
-            tbody.innerHTML = '<tr><td colspan="6" class="empty">Нет запущенных агентов</td></tr>';
-            return;
+        if (!cursor) {
+            loadedSessionsCount = 0;
+            if (sessions.length === 0) {
+                tbody.innerHTML = '<tr><td colspan="6" class="empty">Нет запущенных агентов</td></tr>';
+                return;
+            }
         }
         
-        tbody.innerHTML = sessions.map((session, index) => {
-            const rowNumber = index + 1;
+        const rows = sessions.map((session, index) => {
+            const rowNumber = loadedSessionsCount + index + 1;
             const statusBadge = getStatusBadge(session.status);
             const createdAt = formatDate(session.createdAt);
             const updatedAt = formatDate(session.updatedAt);
@@ -107,6 +126,13 @@ async function loadAgents() {
                 </tr>
             `;
         }).join('');
+        loadedSessionsCount += sessions.length;
+        
+        if (cursor) {
+            tbody.insertAdjacentHTML('beforeend', rows);
+        } else {
+            tbody.innerHTML = rows;
+        }
         
     } catch (error) {
         console.error('Error loading agents:', error);
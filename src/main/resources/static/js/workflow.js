@@ -763,11 +763,12 @@ async function handleDecomposition() {
             throw new Error('Request ID не найден. Убедитесь, что вы находитесь на странице деталей workflow сессии.');
         }
         
-        // Вызываем API для декомпозиции
-        const response = await fetch('/api/usecase/decomposition', {
+        // Вызываем потоковый API декомпозиции: результат по каждому Use Case приходит по готовности
+        const response = await fetch('/api/usecase/decomposition/stream', {
             method: 'POST',
             headers: {
-                'Content-Type': 'application/json'
+                'Content-Type': 'application/json',
+                'Accept': 'text/event-stream'
             },
             body: JSON.stringify({
                 requestId: requestId,
@@ -780,10 +781,19 @@ async function handleDecomposition() {
             throw new Error(errorData.error || `HTTP error! status: ${response.status}`);
         }
         
-        const data = await response.json();
-        
-        // Обновляем отображение сценариев
-        await loadDecomposedScenarios(requestId);
+        const data = { results: [] };
+        await readSseEvents(response, async (event, payload) => {
+            if (event === 'result') {
+                data.results.push(payload);
+                // Обновляем отображение сценариев по мере готовности
+                if (payload.success) {
+                    await loadDecomposedScenarios(requestId);
+                }
+                showStatus(`Декомпозиция: готово ${data.results.length} из ${selectedUseCases.length}`, 'info');
+            } else if (event === 'summary') {
+                data.summary = payload;
+            }
+        });
         
         // Показываем результаты
         const successCount = data.results.filter(r => r.success).length;
@@ -813,6 +823,40 @@ async function handleDecomposition() {
     }
 }
 
+/**
+ * Читает поток Server-Sent Events из ответа fetch и передаёт события (имя и JSON-данные) обработчику
+ */
+async function readSseEvents(response, onEvent) {
+    const reader = response.body.getReader();
+    const decoder = new TextDecoder();
+    let buffer = '';
+    
+    while (true) {
+        const { done, value } = await reader.read();
+        if (done) break;
+        buffer += decoder.decode(value, { stream: true }).replace(/\r\n/g, '\n');
+        
+        let boundary;
+        while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+            const block = buffer.substring(0, boundary);
+            buffer = buffer.substring(boundary + 2);
+            
+            let event = 'message';
+            const dataLines = [];
+            block.split('\n').forEach(line => {
+                if (line.startsWith('event:')) {
+                    event = line.substring(6).trim();
+                } else if (line.startsWith('data:')) {
+                    dataLines.push(line.substring(5));
+                }
+            });
+            if (dataLines.length > 0) {
+                await onEvent(event, JSON.parse(dataLines.join('\n')));
+            }
+        }
+    }
+}
+
 /**
  * Загружает декомпозированные сценарии для текущей workflow сессии
  */
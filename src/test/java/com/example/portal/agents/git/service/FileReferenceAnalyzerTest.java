@@ -0,0 +1,203 @@
+package com.example.portal.agents.git.service;
+
+import com.example.portal.agents.git.model.GitAnalysisResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+
+/**
+ * Юнит-тесты для FileReferenceAnalyzer.
+ *
+ * Тесты покрывают:
+ * 1. Поиск недостижимых файлов, включая циклы «мёртвых» файлов
+ * 2. Разрешение Java-импортов, wildcard-импортов и классов того же пакета, класса в нескольких корнях
+ * 3. Разрешение JS/TS относительных путей и index-файлов
+ * 4. Разрешение Python-модулей (абсолютных и относительных, списков import a, b as c)
+ * 5. Битые ссылки: только на внутренние модули, внешние библиотеки не считаются
+ *
+ * Содержимое файлов отдаёт мок GitRepositoryService — файловая система не нужна.
+ */
+@ExtendWith(MockitoExtension.class)
+class FileReferenceAnalyzerTest {
+
+    @Mock
+    private GitRepositoryService gitService;
+
+    @TempDir
+    Path repoPath;
+
+    private final FileReferenceAnalyzer analyzer = new FileReferenceAnalyzer(List.of());
+    private final Map<String, String> files = new HashMap<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        lenient().when(gitService.readFile(any(), anyString()))
+                .thenAnswer(inv -> files.get(inv.<String>getArgument(1)));
+    }
+
+    private GitAnalysisResponse.AnalysisResult analyze(List<String> entryPoints) throws Exception {
+        return analyzer.analyzeRepository(repoPath, List.copyOf(files.keySet()), gitService, entryPoints);
+    }
+
+    private static List<String> unusedPaths(GitAnalysisResponse.AnalysisResult result) {
+        return result.unusedFiles().stream().map(GitAnalysisResponse.UnusedFile::filePath).toList();
+    }
+
+    @Test
+    @DisplayName("Цикл файлов, недостижимый из точек входа, считается неиспользуемым")
+    void deadCycle_isReportedAsUnused() throws Exception {
+        files.put("src/main.js", "import { a } from './used';");
+        files.put("src/used.js", "export const a = 1;");
+        files.put("src/deadA.js", "import { b } from './deadB';");
+        files.put("src/deadB.js", "import { a } from './deadA';");
+
+        var result = analyze(List.of());
+
+        assertThat(unusedPaths(result)).containsExactlyInAnyOrder("src/deadA.js", "src/deadB.js");
+        assertThat(result.unusedFiles())
+                .allMatch(f -> f.reason().equals("Referenced only from unreachable files"));
+    }
+
+    @Test
+    @DisplayName("Java: импорты, wildcard и классы того же пакета без импорта")
+    void java_resolvesImportsWildcardsAndSamePackage() throws Exception {
+        files.put("src/main/java/com/acme/App.java", """
+                package com.acme;
+                import com.acme.util.*;
+                import static com.acme.model.Order.create;
+                public class App { public static void main(String[] a) { new Helper(); } }
+                """);
+        files.put("src/main/java/com/acme/Helper.java", "package com.acme;\nclass Helper {}");
+        files.put("src/main/java/com/acme/util/Strings.java", "package com.acme.util;\npublic class Strings {}");
+        files.put("src/main/java/com/acme/model/Order.java", "package com.acme.model;\npublic class Order {}");
+        files.put("src/main/java/com/acme/legacy/Old.java", "package com.acme.legacy;\npublic class Old {}");
+
+        var result = analyze(List.of());
+
+        assertThat(unusedPaths(result)).containsExactly("src/main/java/com/acme/legacy/Old.java");
+        assertThat(result.brokenReferences()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Java: класс с одним полным именем в двух корнях исходников — достижимы оба файла")
+    void java_duplicateFqn_allCandidatesReachable() throws Exception {
+        files.put("app/src/main/java/com/acme/App.java", """
+                package com.acme;
+                import com.acme.model.Order;
+                public class App { public static void main(String[] a) {} }
+                """);
+        files.put("app/src/main/java/com/acme/model/Order.java", "package com.acme.model;\npublic class Order {}");
+        files.put("legacy/src/main/java/com/acme/model/Order.java", "package com.acme.model;\npublic class Order {}");
+
+        var result = analyze(List.of());
+
+        assertThat(unusedPaths(result)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Java: битая ссылка только на класс из пространства имён проекта")
+    void java_brokenOnlyForInternalNamespace() throws Exception {
+        files.put("src/com/acme/App.java", """
+                package com.acme;
+                import java.util.List;
+                import org.springframework.stereotype.Service;
+                import com.acme.missing.Gone;
+                public class App { public static void main(String[] a) {} }
+                """);
+
+        var result = analyze(List.of());
+
+        assertThat(result.brokenReferences()).hasSize(1);
+        var broken = result.brokenReferences().get(0);
+        assertThat(broken.referencedPath()).isEqualTo("com.acme.missing.Gone");
+        assertThat(broken.lineNumber()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("JS/TS: подбор расширения и index-файла, пакеты node_modules внешние")
+    void script_resolvesExtensionsAndIndex() throws Exception {
+        files.put("web/index.ts", """
+                import React from 'react';
+                import { Button } from './components';
+                export * from './lib/format';
+                const lazy = import('./pages/Home');
+                """);
+        files.put("web/components/index.tsx", "export const Button = 1;");
+        files.put("web/lib/format.ts", "export const f = 1;");
+        files.put("web/pages/Home.jsx", "export default 1;");
+        files.put("web/pages/Orphan.jsx", "import x from './Missing';");
+
+        var result = analyze(List.of());
+
+        assertThat(unusedPaths(result)).containsExactly("web/pages/Orphan.jsx");
+        assertThat(result.brokenReferences())
+                .extracting(GitAnalysisResponse.BrokenReference::referencedPath)
+                .containsExactly("./Missing");
+    }
+
+    @Test
+    @DisplayName("Python: абсолютные и относительные импорты, __init__.py родительских пакетов")
+    void python_resolvesModulesAndPackages() throws Exception {
+        files.put("app/run.py", """
+                import os
+                from shop.orders import service
+                if __name__ == "__main__":
+                    service.run()
+                """);
+        files.put("app/shop/__init__.py", "");
+        files.put("app/shop/orders/__init__.py", "from . import service");
+        files.put("app/shop/orders/service.py", "from ..catalog import items");
+        files.put("app/shop/catalog.py", "items = []");
+        files.put("app/shop/unused.py", "import shop.catalog");
+
+        var result = analyze(List.of());
+
+        assertThat(unusedPaths(result)).containsExactly("app/shop/unused.py");
+        assertThat(result.brokenReferences()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Python: import a, b as c — ссылки на все модули списка")
+    void python_importList_resolvesEveryModule() throws Exception {
+        files.put("app/run.py", """
+                import shop.catalog, shop.orders as orders,shop.prices
+                if __name__ == "__main__":
+                    orders.run()
+                """);
+        files.put("app/shop/__init__.py", "");
+        files.put("app/shop/catalog.py", "items = []");
+        files.put("app/shop/orders.py", "def run(): pass");
+        files.put("app/shop/prices.py", "table = {}");
+        files.put("app/shop/unused.py", "x = 1");
+
+        var result = analyze(List.of());
+
+        assertThat(unusedPaths(result)).containsExactly("app/shop/unused.py");
+        assertThat(result.brokenReferences()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Дополнительные точки входа из запроса делают файл достижимым")
+    void extraEntryPoints_markFilesReachable() throws Exception {
+        files.put("scripts/tool.js", "const util = require('./util');");
+        files.put("scripts/util.js", "module.exports = {};");
+
+        assertThat(unusedPaths(analyze(List.of())))
+                .containsExactlyInAnyOrder("scripts/tool.js", "scripts/util.js");
+        assertThat(unusedPaths(analyze(List.of("scripts/*.js")))).isEmpty();
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.portal.agents.iconix.service;
+
+import com.example.portal.agents.iconix.entity.LlmUsageRecord;
+import com.example.portal.agents.iconix.model.TokenLedger;
+import com.example.portal.agents.iconix.repository.LlmUsageRecordRepository;
+import com.example.portal.shared.llm.LlmCallScope;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Юнит-тесты для TokenLedgerService.
+ *
+ * Тесты покрывают:
+ * 1. Вызов LLM внутри LlmCallScope записывается с шагом, агентом, кодом промпта, моделью и токенами
+ * 2. Вызов вне сессии (чат) не записывается
+ * 3. Журнал сессии агрегируется по шагам плана и по кодам промптов
+ */
+@ExtendWith(MockitoExtension.class)
+class TokenLedgerServiceTest {
+
+    @Mock
+    private LlmUsageRecordRepository repository;
+
+    @InjectMocks
+    private TokenLedgerService ledger;
+
+    private final ChatModel model = prompt -> new ChatResponse(
+            List.of(new Generation(new AssistantMessage("@startuml\n@enduml"))),
+            ChatResponseMetadata.builder().model("gpt-test").usage(new DefaultUsage(900, 300)).build());
+
+    private String call(ChatClient chat) {
+        return chat.prompt()
+                .advisors(a -> a.param(TokenLedgerService.PROMPT_CODE, "domain_modeller_generate"))
+                .user("Построй доменную модель")
+                .call()
+                .content();
+    }
+
+    @Test
+    @DisplayName("Вызов LLM в рамках сессии записывается в журнал")
+    void callInsideScope_isRecorded() {
+        ChatClient chat = ChatClient.builder(model).defaultAdvisors(ledger.advisor("domain_modeller")).build();
+
+        try (var scope = LlmCallScope.open("req-1", "model")) {
+            call(chat);
+        }
+
+        ArgumentCaptor<LlmUsageRecord> captor = ArgumentCaptor.forClass(LlmUsageRecord.class);
+        verify(repository).save(captor.capture());
+        LlmUsageRecord saved = captor.getValue();
+        assertThat(saved.getRequestId()).isEqualTo("req-1");
+        assertThat(saved.getWorker()).isEqualTo("model");
+        assertThat(saved.getAgent()).isEqualTo("domain_modeller");
+        assertThat(saved.getPromptCode()).isEqualTo("domain_modeller_generate");
+        assertThat(saved.getModel()).isEqualTo("gpt-test");
+        assertThat(saved.getPromptTokens()).isEqualTo(900);
+        assertThat(saved.getCompletionTokens()).isEqualTo(300);
+        assertThat(LlmCallScope.current()).isNull();
+    }
+
+    @Test
+    @DisplayName("Вызов вне сессии в журнал не попадает")
+    void callOutsideScope_isNotRecorded() {
+        ChatClient chat = ChatClient.builder(model).defaultAdvisors(ledger.advisor("chat")).build();
+
+        call(chat);
+
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Журнал сессии агрегируется по шагам и кодам промптов")
+    void getLedger_aggregatesByWorkerAndPromptCode() {
+        when(repository.findByRequestIdOrderByCreatedAtAsc("req-1")).thenReturn(List.of(
+                usage("model", "domain_modeller_generate", 1000, 400, 2000),
+                usage("review", "evaluator_plantuml", 1500, 200, 1500),
+                usage("model", "domain_modeller_refine", 1800, 500, 2500)));
+
+        TokenLedger result = ledger.getLedger("req-1");
+
+        assertThat(result.total()).isEqualTo(new TokenLedger.Totals(3, 4300, 1100, 6000));
+        assertThat(result.byWorker()).containsOnlyKeys("model", "review");
+        assertThat(result.byWorker().get("model")).isEqualTo(new TokenLedger.Totals(2, 2800, 900, 4500));
+        assertThat(result.byPromptCode().get("evaluator_plantuml").totalTokens()).isEqualTo(1700);
+        assertThat(result.calls()).hasSize(3);
+    }
+
+    private static LlmUsageRecord usage(String worker, String promptCode, int prompt, int completion, long latencyMs) {
+        return LlmUsageRecord.builder()
+                .requestId("req-1")
+                .worker(worker)
+                .agent("agent")
+                .promptCode(promptCode)
+                .model("gpt-test")
+                .promptTokens(prompt)
+                .completionTokens(completion)
+                .latencyMs(latencyMs)
+                .build();
+    }
+}
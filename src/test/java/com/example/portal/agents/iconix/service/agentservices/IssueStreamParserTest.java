@@ -0,0 +1,130 @@
+package com.example.portal.agents.iconix.service.agentservices;
+
+import com.example.portal.agents.iconix.model.Issue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.openai.api.ResponseFormat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Юнит-тесты для IssueStreamParser и выбора формата ответа EvaluatorService.
+ *
+ * Тесты покрывают:
+ * 1. Ответ structured output ({"issues": [...]}) с экранированием в строках
+ * 2. Фрагменты произвольной длины: замечание отдаётся, как только закрыт его объект
+ * 3. Markdown, текст до массива и пропущенные запятые
+ * 4. Оборванный ответ: возвращаются закрытые до обрыва замечания
+ * 5. Режим json_object: одиночный объект замечания и пустой список {"issues": []}
+ * 6. Формат ответа по провайдеру
+ */
+class IssueStreamParserTest {
+
+    private static final String STRUCTURED = """
+            {"issues": [
+              {"id": "1", "title": "Нет связи \\"Пользователь\\" — Вопрос", "severity": "HIGH",
+               "suggestion": "добавить связь\\nПользователь 1 - 0..* Вопрос"},
+              {"id": "2", "title": "Статус строкой", "severity": "LOW", "suggestion": "ввести \\u0065num"}
+            ]}
+            """;
+
+    @Test
+    @DisplayName("Ответ structured output разбирается с учётом экранирования")
+    void parse_structuredOutput() {
+        List<Issue> issues = IssueStreamParser.parse(STRUCTURED);
+
+        assertThat(issues).containsExactly(
+                new Issue("1", "Нет связи \"Пользователь\" — Вопрос", "HIGH",
+                        "добавить связь\nПользователь 1 - 0..* Вопрос"),
+                new Issue("2", "Статус строкой", "LOW", "ввести enum"));
+    }
+
+    @Test
+    @DisplayName("Замечание отдаётся получателю сразу после закрытия его объекта")
+    void feed_emitsIssuesAsTheyArrive() {
+        List<Issue> received = new ArrayList<>();
+        IssueStreamParser parser = new IssueStreamParser(received::add);
+
+        int firstClosed = STRUCTURED.indexOf('}') + 1;
+        for (int i = 0; i < firstClosed; i += 3) {
+            parser.feed(STRUCTURED.substring(i, Math.min(i + 3, firstClosed)));
+        }
+        assertThat(received).extracting(Issue::id).containsExactly("1");
+        assertThat(parser.complete()).isFalse();
+
+        parser.feed(STRUCTURED.substring(firstClosed));
+        assertThat(received).extracting(Issue::id).containsExactly("1", "2");
+        assertThat(parser.complete()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Markdown, текст до массива и пропущенные запятые не мешают разбору")
+    void parse_toleratesMarkdownAndMissingCommas() {
+        String response = """
+                [Ревью] Вот результат:
+                ```json
+                [
+                  {"id": 1 "title": "Первое" "severity": "MEDIUM", "suggestion": null, "refs": ["a", {"b": 1}]}
+                  {"id": "2", "title": "Второе", "severity": "LOW", "suggestion": "s"}
+                ]
+                ```
+                """;
+
+        assertThat(IssueStreamParser.parse(response)).containsExactly(
+                new Issue("1", "Первое", "MEDIUM", null),
+                new Issue("2", "Второе", "LOW", "s"));
+    }
+
+    @Test
+    @DisplayName("Оборванный ответ: возвращаются замечания, закрытые до обрыва")
+    void parse_truncatedResponse() {
+        String truncated = STRUCTURED.substring(0, STRUCTURED.indexOf("Статус"));
+        IssueStreamParser parser = new IssueStreamParser(issue -> { });
+
+        parser.feed(truncated);
+
+        assertThat(IssueStreamParser.parse(truncated)).extracting(Issue::id).containsExactly("1");
+        assertThat(parser.complete()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Одиночный объект замечания без обёртки разбирается как одно замечание")
+    void parse_bareIssueObject() {
+        IssueStreamParser parser = new IssueStreamParser(issue -> { });
+
+        parser.feed("""
+                {"id": "1", "title": "Нет актёра", "severity": "HIGH", "suggestion": "добавить роль"}
+                """);
+
+        assertThat(parser.issues()).isEqualTo(1);
+        assertThat(parser.complete()).isTrue();
+        assertThat(IssueStreamParser.parse("{Ревью} {\"id\": \"2\", \"title\": \"t\"}"))
+                .containsExactly(new Issue("2", "t", null, null));
+    }
+
+    @Test
+    @DisplayName("Пустой список {\"issues\": []} — ноль замечаний, ответ разобран полностью")
+    void parse_emptyIssuesObject() {
+        IssueStreamParser parser = new IssueStreamParser(issue -> { });
+
+        parser.feed("{\"issues\": []}");
+
+        assertThat(parser.issues()).isZero();
+        assertThat(parser.complete()).isTrue();
+        assertThat(IssueStreamParser.parse("{\"result\": {\"summary\": \"ok\", \"issues\": [{\"id\": \"3\"}]}}"))
+                .extracting(Issue::id).containsExactly("3");
+    }
+
+    @Test
+    @DisplayName("JSON Schema для OpenAI, json_object для DeepSeek и failover, явная настройка важнее")
+    void responseFormat_byProvider() {
+        assertThat(EvaluatorService.responseFormat("", "openai").getType()).isEqualTo(ResponseFormat.Type.JSON_SCHEMA);
+        assertThat(EvaluatorService.responseFormat("", "openai").getJsonSchema().getName()).isEqualTo("issues");
+        assertThat(EvaluatorService.responseFormat(null, "deepseek").getType()).isEqualTo(ResponseFormat.Type.JSON_OBJECT);
+        assertThat(EvaluatorService.responseFormat("", "failover").getType()).isEqualTo(ResponseFormat.Type.JSON_OBJECT);
+        assertThat(EvaluatorService.responseFormat("text", "openai")).isNull();
+    }
+}
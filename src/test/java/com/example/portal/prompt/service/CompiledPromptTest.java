@@ -0,0 +1,65 @@
+package com.example.portal.prompt.service;
+
+import com.example.portal.shared.utils.TokenCounter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Юнит-тесты для CompiledPrompt.
+ *
+ * Тесты покрывают:
+ * 1. Подстановку %s по порядку и %N$s по номеру
+ * 2. %% и одиночный % в шаблоне
+ * 3. Значения с %, фигурными скобками и PlantUML подставляются как есть
+ * 4. Ошибку при нехватке значений
+ * 5. Токены шаблона без учёта слотов
+ */
+class CompiledPromptTest {
+
+    @Test
+    @DisplayName("%s подставляются по порядку, %N$s — по номеру")
+    void render_sequentialAndIndexedSlots() {
+        CompiledPrompt prompt = CompiledPrompt.compile("test", "Нарратив: %s\nМодель: %s\nСнова нарратив: %1$s");
+
+        assertThat(prompt.slotCount()).isEqualTo(2);
+        assertThat(prompt.render("заказ", "@startuml\n@enduml"))
+                .isEqualTo("Нарратив: заказ\nМодель: @startuml\n@enduml\nСнова нарратив: заказ");
+    }
+
+    @Test
+    @DisplayName("%% даёт символ %, одиночный % остаётся как есть")
+    void render_percentLiterals() {
+        CompiledPrompt prompt = CompiledPrompt.compile("test", "Покрытие 100%% и 50% — %s");
+
+        assertThat(prompt.render("ок")).isEqualTo("Покрытие 100% и 50% — ок");
+    }
+
+    @Test
+    @DisplayName("Значения с %, {} и null подставляются без экранирования")
+    void render_valuesNotEscaped() {
+        CompiledPrompt prompt = CompiledPrompt.compile("test", "[%s] [%s]");
+
+        assertThat(prompt.render("class A { +rate: 5%s }", null)).isEqualTo("[class A { +rate: 5%s }] []");
+    }
+
+    @Test
+    @DisplayName("Нехватка значений — IllegalArgumentException с кодом промпта")
+    void render_tooFewValues_throws() {
+        CompiledPrompt prompt = CompiledPrompt.compile("mvc_modeller", "%s %s %s");
+
+        assertThatThrownBy(() -> prompt.render("a", "b"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("mvc_modeller");
+    }
+
+    @Test
+    @DisplayName("Токены шаблона считаются по литеральной части")
+    void tokens_countLiteralsOnly() {
+        CompiledPrompt prompt = CompiledPrompt.compile("test", "Построй модель по нарративу: %s");
+
+        assertThat(prompt.tokens()).isEqualTo(TokenCounter.count("Построй модель по нарративу: "));
+    }
+}
@@ -4,6 +4,8 @@ import com.example.portal.prompt.entity.Prompt;
 import com.example.portal.prompt.entity.PromptHistory;
 import com.example.portal.prompt.repository.PromptHistoryRepository;
 import com.example.portal.prompt.repository.PromptRepository;
+import com.example.portal.shared.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -11,6 +13,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.Instant;
@@ -32,6 +35,7 @@ import static org.mockito.Mockito.*;
  * 3. Обновление промпта с сохранением истории
  * 4. Инвалидацию кэша при обновлении
  * 5. Обработку ошибок (промпт не найден)
+ * 6. Кэш разобранных шаблонов (getTemplate) и его сброс при обновлении
  *
  * Используется Mockito для мокирования репозиториев,
  * чтобы тесты не зависели от базы данных.
@@ -46,6 +50,9 @@ class PromptServiceTest {
     @Mock
     private PromptHistoryRepository promptHistoryRepository;
 
+    @Spy
+    private PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry(), "OPENAI");
+
     // Тестируемый сервис — Mockito автоматически подставит моки
     @InjectMocks
     private PromptService promptService;
@@ -235,6 +242,33 @@ class PromptServiceTest {
                 .hasMessageContaining("non_existent");
     }
 
+    @Test
+    @DisplayName("getTemplate — шаблон разбирается один раз и сбрасывается при обновлении промпта")
+    void getTemplate_compiledOnceAndInvalidatedOnUpdate() {
+        // GIVEN: шаблон с двумя слотами
+        testPrompt.setContent("Нарратив: %s; RAG: %s");
+        when(promptRepository.findByCode(TEST_CODE)).thenReturn(Optional.of(testPrompt));
+        when(promptRepository.save(any(Prompt.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(promptHistoryRepository.save(any(PromptHistory.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        // WHEN: запрашиваем шаблон дважды
+        CompiledPrompt first = promptService.getTemplate(TEST_CODE);
+        CompiledPrompt second = promptService.getTemplate(TEST_CODE);
+
+        // THEN: тот же экземпляр, значения подставлены
+        assertThat(second).isSameAs(first);
+        assertThat(first.render("заказ", "нет")).isEqualTo("Нарратив: заказ; RAG: нет");
+
+        // WHEN: промпт обновлён
+        promptService.updatePrompt(TEST_CODE, "Только %s", testUserId, null);
+        testPrompt.setContent("Только %s");
+
+        // THEN: следующий getTemplate разбирает новый текст
+        CompiledPrompt updated = promptService.getTemplate(TEST_CODE);
+        assertThat(updated).isNotSameAs(first);
+        assertThat(updated.render("заказ")).isEqualTo("Только заказ");
+    }
+
     // ====================================================================
     // Тест для clearCache
     // ====================================================================
@@ -0,0 +1,214 @@
+package com.example.portal.shared.llm;
+
+import com.example.portal.shared.metrics.PipelineMetrics;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.OpenAiApi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Юнит-тесты для HedgedChatModel на двух локальных OpenAI-совместимых заглушках.
+ *
+ * Тесты покрывают:
+ * 1. Быстрый основной провайдер: второй не вызывается
+ * 2. Медленный основной провайдер: hedged-запрос второму, берётся первый ответ
+ * 3. Ошибка основного провайдера: запрос сразу передаётся второму
+ * 4. Разомкнутая цепь: основной провайдер пропускается
+ * 5. Ответ 429 основного провайдера снижает лимит его ограничителя, второй занимает слот у своего
+ */
+class HedgedChatModelTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PipelineMetrics metrics = new PipelineMetrics(registry, "FAILOVER");
+
+    private final Stub primary = new Stub("openai");
+    private final Stub secondary = new Stub("deepseek");
+
+    @AfterEach
+    void tearDown() {
+        primary.stop();
+        secondary.stop();
+    }
+
+    /**
+     * OpenAI-совместимый endpoint {@code /v1/chat/completions} с настраиваемой задержкой и статусом.
+     */
+    private static final class Stub {
+
+        private final String name;
+        private final HttpServer server;
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile long delayMs;
+        private volatile int status = 200;
+
+        Stub(String name) {
+            this.name = name;
+            try {
+                server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.createContext("/v1/chat/completions", exchange -> {
+                requests.incrementAndGet();
+                exchange.getRequestBody().readAllBytes();
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = (status == 200
+                        ? """
+                          {"id":"chatcmpl-1","object":"chat.completion","created":1,"model":"%s",
+                           "choices":[{"index":0,"message":{"role":"assistant","content":"ответ %s"},"finish_reason":"stop"}],
+                           "usage":{"prompt_tokens":10,"completion_tokens":2,"total_tokens":12}}
+                          """.formatted(name, name)
+                        : """
+                          {"error":{"message":"stub failure","type":"invalid_request_error"}}
+                          """).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                try (OutputStream out = exchange.getResponseBody()) {
+                    exchange.sendResponseHeaders(status, body.length);
+                    out.write(body);
+                } catch (IOException e) {
+                    // Клиент отменил запрос
+                }
+            });
+            server.start();
+        }
+
+        OpenAiChatModel model() {
+            String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+            return OpenAiChatModel.builder()
+                    .openAiApi(OpenAiApi.builder().baseUrl(baseUrl).apiKey("test-key").build())
+                    .defaultOptions(OpenAiChatOptions.builder().model("stub").build())
+                    .build();
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Модель с порогом hedged-запроса не больше {@code maxHedgeDelay}: в тестах без hedging
+     * порог с запасом, чтобы первый вызов (прогрев HTTP-клиента) его не превысил.
+     */
+    private HedgedChatModel hedged(int failureThreshold, Duration maxHedgeDelay) {
+        return new HedgedChatModel(List.of(
+                new HedgedChatModel.Backend("openai", primary.model(),
+                        new CircuitBreaker(failureThreshold, Duration.ofMinutes(1)), limiter("openai")),
+                new HedgedChatModel.Backend("deepseek", secondary.model(),
+                        new CircuitBreaker(failureThreshold, Duration.ofMinutes(1)), limiter("deepseek"))),
+                new HedgedChatModel.Settings(0.95, Duration.ofMillis(50), maxHedgeDelay), metrics);
+    }
+
+    private LlmLimiter limiter(String provider) {
+        return new LlmLimiter(metrics, provider,
+                new LlmLimiter.Settings(true, 1000, 1_000_000, 100, 8, 1, 32, 2.0, Duration.ofSeconds(5)));
+    }
+
+    private long slots(String provider) {
+        var timer = registry.find("iconix.llm.queue").tag("provider", provider).tag("outcome", "success").timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private static String call(HedgedChatModel model) {
+        return model.call(new Prompt("Построй модель")).getResult().getOutput().getText();
+    }
+
+    private double counter(String name, String backend) {
+        var counter = registry.find(name).tag("backend", backend).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    @Test
+    @DisplayName("Быстрый основной провайдер отвечает сам, второй не вызывается")
+    void fastPrimary_noHedge() {
+        HedgedChatModel model = hedged(5, Duration.ofSeconds(5));
+
+        assertThat(call(model)).isEqualTo("ответ openai");
+        assertThat(secondary.requests.get()).isZero();
+        assertThat(counter("iconix.llm.hedge.winner", "openai")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Медленный основной провайдер: hedged-запрос второму, ответ от первого ответившего")
+    void slowPrimary_hedgedToSecondary() {
+        primary.delayMs = 3000;
+        HedgedChatModel model = hedged(5, Duration.ofMillis(200));
+
+        long start = System.nanoTime();
+        String answer = call(model);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(answer).isEqualTo("ответ deepseek");
+        assertThat(elapsedMs).isLessThan(2000);
+        assertThat(counter("iconix.llm.hedge.sent", "deepseek")).isEqualTo(1);
+        // Hedged-запрос занимает слот у ограничителя своего провайдера
+        assertThat(slots("openai")).isEqualTo(1);
+        assertThat(slots("deepseek")).isEqualTo(1);
+        // Отменённый проигравший не размыкает цепь
+        assertThat(model.backends().get(0).breaker().state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    @DisplayName("Ошибка основного провайдера: запрос сразу уходит второму")
+    void primaryFails_failover() {
+        primary.status = 400;
+        HedgedChatModel model = hedged(5, Duration.ofSeconds(5));
+
+        assertThat(call(model)).isEqualTo("ответ deepseek");
+        assertThat(primary.requests.get()).isEqualTo(1);
+        assertThat(counter("iconix.llm.failover", "openai")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("После порога ошибок цепь размыкается, основной провайдер пропускается")
+    void circuitOpen_primarySkipped() {
+        primary.status = 400;
+        HedgedChatModel model = hedged(2, Duration.ofSeconds(5));
+
+        call(model);
+        call(model);
+        assertThat(model.backends().get(0).breaker().state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        assertThat(call(model)).isEqualTo("ответ deepseek");
+        assertThat(primary.requests.get()).isEqualTo(2);
+        assertThat(secondary.requests.get()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Ответ 429 основного провайдера снижает лимит его ограничителя до передачи запроса второму")
+    void primaryRateLimited_backsOffOwnLimiter() {
+        primary.status = 429;
+        HedgedChatModel model = hedged(5, Duration.ofSeconds(5));
+
+        assertThat(call(model)).isEqualTo("ответ deepseek");
+
+        LlmLimiter openAi = model.backends().get(0).limiter();
+        LlmLimiter deepSeek = model.backends().get(1).limiter();
+        assertThat(openAi.limit()).isEqualTo(4);
+        assertThat(openAi.inFlight()).isZero();
+        assertThat(deepSeek.limit()).isGreaterThanOrEqualTo(8);
+        assertThat(slots("deepseek")).isEqualTo(1);
+        assertThat(registry.find("iconix.llm.rate_limited").tag("provider", "openai").counter().count())
+                .isEqualTo(1);
+    }
+}
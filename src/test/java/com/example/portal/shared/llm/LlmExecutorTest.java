@@ -0,0 +1,98 @@
+package com.example.portal.shared.llm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Юнит-тесты для LlmExecutor.
+ *
+ * Тесты покрывают:
+ * 1. Перенос LlmCallScope вызывающего потока в задачу
+ * 2. Отмена future прерывает поток задачи
+ * 3. Истёкший дедлайн — LlmDeadlineExceededException и прерывание задачи
+ * 4. Ошибка задачи пробрасывается из await без обёрток
+ */
+class LlmExecutorTest {
+
+    private final LlmExecutor executor = new LlmExecutor(0);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Задача, которая ждёт прерывания и отмечает его.
+     */
+    private static String blockUntilInterrupted(CountDownLatch started, CountDownLatch interrupted) {
+        started.countDown();
+        try {
+            Thread.sleep(Duration.ofMinutes(1));
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+        }
+        return "late";
+    }
+
+    @Test
+    @DisplayName("Область вызова (сессия, шаг, приоритет) переносится в асинхронную задачу")
+    void submit_propagatesCallScope() {
+        CompletableFuture<String> future;
+        try (var scope = LlmCallScope.open("req-1", "decomposition", LlmPriority.BATCH)) {
+            future = executor.submit(() -> {
+                LlmCallScope current = LlmCallScope.current();
+                return current.requestId() + "/" + current.worker() + "/" + current.priority();
+            });
+        }
+
+        assertThat(LlmExecutor.await(future)).isEqualTo("req-1/decomposition/BATCH");
+    }
+
+    @Test
+    @DisplayName("Отмена future прерывает поток задачи")
+    void cancel_interruptsTask() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<String> future = executor.submit(() -> blockUntilInterrupted(started, interrupted));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        future.cancel(true);
+
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThatThrownBy(() -> LlmExecutor.await(future)).isInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    @DisplayName("По дедлайну await бросает LlmDeadlineExceededException, задача прерывается")
+    void deadline_failsAndInterruptsTask() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<String> future = executor.submit(() -> blockUntilInterrupted(started, interrupted),
+                Duration.ofMillis(100));
+
+        assertThatThrownBy(() -> LlmExecutor.await(future)).isInstanceOf(LlmDeadlineExceededException.class);
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Ошибка задачи пробрасывается из await как есть")
+    void await_rethrowsTaskError() {
+        CompletableFuture<String> future = executor.submit(() -> {
+            throw new LlmThrottledException("openai: no slot");
+        });
+
+        assertThatThrownBy(() -> LlmExecutor.await(future))
+                .isInstanceOf(LlmThrottledException.class)
+                .hasMessage("openai: no slot");
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.portal.shared.llm;
+
+import com.example.portal.shared.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Юнит-тесты для LlmLimiter.
+ *
+ * Тесты покрывают:
+ * 1. Очередь по приоритету: чат проходит раньше ранее пришедшей декомпозиции
+ * 2. Ответ 429 вдвое снижает лимит параллельности и считается в метрике
+ * 3. Исчерпанный лимит запросов в минуту — LlmThrottledException по таймауту очереди
+ * 4. Лимит параллельности растёт при стабильной задержке и загрузке
+ * 5. Ограничители провайдеров независимы, настройки провайдера перекрывают общие
+ */
+class LlmLimiterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PipelineMetrics metrics = new PipelineMetrics(registry, "OPENAI");
+
+    private static LlmLimiter.Settings settings(long rpm, int initial, int max, Duration queueTimeout) {
+        return new LlmLimiter.Settings(true, rpm, 1_000_000, 100, initial, 1, max, 2.0, queueTimeout);
+    }
+
+    private static ChatClient client(ChatModel model, LlmLimiter limiter) {
+        return ChatClient.builder(model).defaultAdvisors(limiter.advisor()).build();
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Чат проходит раньше декомпозиции, пришедшей в очередь первой")
+    void queue_interactiveBeforeBatch() throws Exception {
+        LlmLimiter limiter = new LlmLimiter(metrics, "openai", settings(1000, 1, 1, Duration.ofSeconds(5)));
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        ChatClient chat = client(prompt -> {
+            order.add(prompt.getContents());
+            if (prompt.getContents().equals("first")) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return response("ok");
+        }, limiter);
+
+        Thread first = new Thread(() -> chat.prompt().user("first").call().content());
+        first.start();
+        await(() -> limiter.inFlight() == 1);
+
+        Thread batch = new Thread(() -> {
+            try (var scope = LlmCallScope.open("req-1", "decomposition", LlmPriority.BATCH)) {
+                chat.prompt().user("batch").call().content();
+            }
+        });
+        batch.start();
+        await(() -> limiter.queued() == 1);
+
+        Thread interactive = new Thread(() -> chat.prompt().user("chat").call().content());
+        interactive.start();
+        await(() -> limiter.queued() == 2);
+
+        release.countDown();
+        first.join(5000);
+        batch.join(5000);
+        interactive.join(5000);
+
+        assertThat(order).containsExactly("first", "chat", "batch");
+        assertThat(registry.find("iconix.llm.queue").tag("priority", "batch").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Ответ 429 вдвое снижает лимит параллельности")
+    void rateLimited_halvesLimit() {
+        LlmLimiter limiter = new LlmLimiter(metrics, "openai", settings(1000, 8, 32, Duration.ofSeconds(5)));
+        ChatClient chat = client(prompt -> {
+            throw new NonTransientAiException("429 - {\"error\": {\"message\": \"Rate limit reached\"}}");
+        }, limiter);
+
+        assertThatThrownBy(() -> chat.prompt().user("q").call().content())
+                .isInstanceOf(NonTransientAiException.class);
+
+        assertThat(limiter.limit()).isEqualTo(4);
+        assertThat(limiter.inFlight()).isZero();
+        assertThat(registry.find("iconix.llm.rate_limited").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Лимит запросов в минуту исчерпан — LlmThrottledException по таймауту очереди")
+    void requestsPerMinuteExhausted_throwsAfterTimeout() {
+        LlmLimiter limiter = new LlmLimiter(metrics, "openai", settings(2, 8, 32, Duration.ofMillis(200)));
+        ChatClient chat = client(prompt -> response("ok"), limiter);
+
+        chat.prompt().user("1").call().content();
+        chat.prompt().user("2").call().content();
+
+        assertThatThrownBy(() -> chat.prompt().user("3").call().content())
+                .isInstanceOf(LlmThrottledException.class)
+                .hasMessageContaining("openai");
+        assertThat(limiter.queued()).isZero();
+        assertThat(registry.find("iconix.llm.queue").tag("outcome", "timeout").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("При стабильной задержке и загруженном лимите параллельность растёт")
+    void stableLatency_increasesLimit() {
+        LlmLimiter limiter = new LlmLimiter(metrics, "openai", settings(1000, 2, 4, Duration.ofSeconds(5)));
+        ChatClient chat = client(prompt -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return response("ok");
+        }, limiter);
+
+        for (int i = 0; i < 3; i++) {
+            chat.prompt().user("q" + i).call().content();
+        }
+
+        assertThat(limiter.limit()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("У каждого провайдера свой ограничитель, настройки провайдера перекрывают общие")
+    void limiters_perProvider() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("app.llm-limiter.concurrency.initial", "8")
+                .withProperty("app.llm-limiter.providers.deepseek.concurrency.initial", "3");
+        LlmLimiters limiters = new LlmLimiters(metrics, environment);
+        ChatClient chat = client(prompt -> {
+            throw new NonTransientAiException("429 - rate limit");
+        }, limiters.forProvider("openai"));
+
+        assertThatThrownBy(() -> chat.prompt().user("q").call().content())
+                .isInstanceOf(NonTransientAiException.class);
+
+        assertThat(limiters.forProvider("OPENAI")).isSameAs(limiters.forProvider("openai"));
+        assertThat(limiters.forProvider("openai").limit()).isEqualTo(4);
+        assertThat(limiters.forProvider("deepseek").limit()).isEqualTo(3);
+        assertThat(registry.find("iconix.llm.rate_limited").tag("provider", "openai").counter().count())
+                .isEqualTo(1);
+        assertThat(registry.find("iconix.llm.rate_limited").tag("provider", "deepseek").counter()).isNull();
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.portal.shared.llm;
+
+import com.example.portal.shared.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Юнит-тесты для LlmSingleFlight.
+ *
+ * Тесты покрывают:
+ * 1. Одновременные одинаковые запросы уходят к модели один раз, оба получают ответ, счётчик растёт
+ * 2. Ошибка ведущего передаётся присоединившемуся
+ * 3. Отмена ведущего не передаётся: присоединившийся повторяет запрос сам
+ * 4. Последовательные и разные запросы не объединяются
+ */
+class LlmSingleFlightTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PipelineMetrics metrics = new PipelineMetrics(registry, "OPENAI");
+    private final LlmSingleFlight singleFlight = new LlmSingleFlight(metrics, true);
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch leaderEntered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * Первый вызов модели ждёт {@link #release}, остальные отвечают сразу.
+     */
+    private final ChatModel model = prompt -> {
+        int n = calls.incrementAndGet();
+        if (n == 1) {
+            leaderEntered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted", e);
+            }
+            if (prompt.getContents().contains("fail")) {
+                throw new IllegalStateException("provider error");
+            }
+        }
+        return new ChatResponse(List.of(new Generation(new AssistantMessage("ответ " + n))));
+    };
+
+    private final ChatClient chat = ChatClient.builder(model)
+            .defaultAdvisors(metrics.llmAdvisor("test"), singleFlight.advisor("test"))
+            .build();
+
+    private String call(String text) {
+        return chat.prompt().user(text).call().content();
+    }
+
+    private Thread start(String text, AtomicReference<Object> result) {
+        Thread thread = new Thread(() -> {
+            try {
+                result.set(call(text));
+            } catch (RuntimeException e) {
+                result.set(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Ждёт, пока присоединившийся поток встанет на ожидание ответа ведущего.
+     */
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(thread.getState()).isEqualTo(Thread.State.WAITING);
+    }
+
+    private double coalesced() {
+        var counter = registry.find("iconix.llm.coalesced").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    @Test
+    @DisplayName("Одновременные одинаковые запросы — один вызов модели, общий ответ")
+    void concurrentIdentical_calledOnce() throws Exception {
+        AtomicReference<Object> leader = new AtomicReference<>();
+        AtomicReference<Object> joiner = new AtomicReference<>();
+
+        Thread a = start("Построй модель", leader);
+        assertThat(leaderEntered.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread b = start("Построй модель", joiner);
+        awaitWaiting(b);
+        release.countDown();
+        a.join(5000);
+        b.join(5000);
+
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(leader.get()).isEqualTo("ответ 1");
+        assertThat(joiner.get()).isEqualTo("ответ 1");
+        assertThat(coalesced()).isEqualTo(1);
+        assertThat(singleFlight.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Ошибка ведущего получают все присоединившиеся")
+    void leaderFailure_propagatesToJoiner() throws Exception {
+        AtomicReference<Object> leader = new AtomicReference<>();
+        AtomicReference<Object> joiner = new AtomicReference<>();
+
+        Thread a = start("fail", leader);
+        assertThat(leaderEntered.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread b = start("fail", joiner);
+        awaitWaiting(b);
+        release.countDown();
+        a.join(5000);
+        b.join(5000);
+
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(leader.get()).isInstanceOf(IllegalStateException.class);
+        assertThat(joiner.get()).isInstanceOf(IllegalStateException.class)
+                .extracting(e -> ((Throwable) e).getMessage()).isEqualTo("provider error");
+    }
+
+    @Test
+    @DisplayName("Отмена ведущего не передаётся: присоединившийся повторяет запрос")
+    void leaderCancelled_joinerRetries() throws Exception {
+        AtomicReference<Object> leader = new AtomicReference<>();
+        AtomicReference<Object> joiner = new AtomicReference<>();
+
+        Thread a = start("Построй модель", leader);
+        assertThat(leaderEntered.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread b = start("Построй модель", joiner);
+        awaitWaiting(b);
+        a.interrupt();
+        a.join(5000);
+        b.join(5000);
+
+        assertThat(leader.get()).isInstanceOf(IllegalStateException.class);
+        assertThat(joiner.get()).isEqualTo("ответ 2");
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(coalesced()).isZero();
+    }
+
+    @Test
+    @DisplayName("Последовательные и разные запросы не объединяются")
+    void sequentialAndDifferent_notCoalesced() {
+        release.countDown();
+
+        assertThatThrownBy(() -> call("fail")).isInstanceOf(IllegalStateException.class);
+        assertThat(call("fail")).isEqualTo("ответ 2");
+        assertThat(call("Другой промпт")).isEqualTo("ответ 3");
+        assertThat(coalesced()).isZero();
+    }
+}
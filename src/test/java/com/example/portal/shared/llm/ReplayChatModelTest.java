@@ -0,0 +1,102 @@
+package com.example.portal.shared.llm;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Юнит-тесты для ReplayChatModel.
+ *
+ * Тесты покрывают:
+ * 1. Запись ответа делегата и воспроизведение его из файла без делегата
+ * 2. Воспроизведение usage и модели из записи
+ * 3. Несколько записанных вариантов ответа выдаются по кругу
+ * 4. Отсутствие записи для промпта — исключение с хэшем
+ * 5. Синтетическая задержка (FIXED, масштаб)
+ */
+class ReplayChatModelTest {
+
+    @TempDir
+    Path dir;
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final ChatModel delegate = prompt -> new ChatResponse(
+            List.of(new Generation(new AssistantMessage("ответ " + calls.incrementAndGet()))),
+            ChatResponseMetadata.builder().model("gpt-test").usage(new DefaultUsage(120, 40)).build());
+
+    private ReplayChatModel recorder() {
+        return new ReplayChatModel(ReplayChatModel.Mode.RECORD, new LlmRecordingStore(dir), delegate, null);
+    }
+
+    private ReplayChatModel replayer(SyntheticLatency latency) {
+        return new ReplayChatModel(ReplayChatModel.Mode.REPLAY, new LlmRecordingStore(dir), null, latency);
+    }
+
+    @Test
+    @DisplayName("Записанный ответ воспроизводится без обращения к делегату")
+    void recordedResponse_isReplayed() {
+        String recorded = recorder().call(new Prompt("Построй доменную модель")).getResult().getOutput().getText();
+
+        ChatResponse replayed = replayer(SyntheticLatency.NONE).call(new Prompt("Построй доменную модель"));
+
+        assertThat(replayed.getResult().getOutput().getText()).isEqualTo(recorded).isEqualTo("ответ 1");
+        assertThat(replayed.getMetadata().getModel()).isEqualTo("gpt-test");
+        assertThat(replayed.getMetadata().getUsage().getPromptTokens()).isEqualTo(120);
+        assertThat(replayed.getMetadata().getUsage().getCompletionTokens()).isEqualTo(40);
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Несколько вариантов ответа на один промпт выдаются по кругу")
+    void multipleVariants_areReplayedRoundRobin() {
+        ReplayChatModel recorder = recorder();
+        recorder.call(new Prompt("Ревью модели"));
+        recorder.call(new Prompt("Ревью модели"));
+
+        ReplayChatModel replayer = replayer(SyntheticLatency.NONE);
+
+        assertThat(List.of(
+                replayer.call(new Prompt("Ревью модели")).getResult().getOutput().getText(),
+                replayer.call(new Prompt("Ревью модели")).getResult().getOutput().getText(),
+                replayer.call(new Prompt("Ревью модели")).getResult().getOutput().getText()))
+                .containsExactly("ответ 1", "ответ 2", "ответ 1");
+    }
+
+    @Test
+    @DisplayName("Нет записи для промпта — исключение с хэшем промпта")
+    void missingRecording_throws() {
+        Prompt prompt = new Prompt("Неизвестный промпт");
+
+        assertThatThrownBy(() -> replayer(SyntheticLatency.NONE).call(prompt))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(LlmRecordingStore.hash(prompt));
+    }
+
+    @Test
+    @DisplayName("Задержка FIXED масштабируется, RECORDED берёт измеренную при записи")
+    void syntheticLatency_appliesScale() {
+        SyntheticLatency fixed = SyntheticLatency.parse("fixed", 200, 0, 0, 0, 0, 0.5);
+        SyntheticLatency recorded = SyntheticLatency.parse("RECORDED", 0, 0, 0, 0, 0, 2.0);
+        SyntheticLatency uniform = SyntheticLatency.parse("UNIFORM", 0, 10, 20, 0, 0, 1.0);
+
+        assertThat(fixed.nextDelayMs(5000)).isEqualTo(100);
+        assertThat(recorded.nextDelayMs(300)).isEqualTo(600);
+        assertThat(uniform.nextDelayMs(0)).isBetween(10L, 20L);
+        assertThat(SyntheticLatency.parse("", 0, 0, 0, 0, 0, 1.0).nextDelayMs(1000)).isZero();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.portal.shared.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Юнит-тесты для PipelineMetrics.
+ *
+ * Тесты покрывают:
+ * 1. Advisor LLM: таймер с тегами agent/provider/model и счётчики токенов
+ * 2. Ошибка вызова LLM — outcome=error
+ * 3. time(): outcome по исключению, исключение пробрасывается
+ * 4. Счётчик обращений к кэшу (hit / miss)
+ */
+class PipelineMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PipelineMetrics metrics = new PipelineMetrics(registry, "OPENAI");
+
+    @Test
+    @DisplayName("Вызов LLM через advisor пишет таймер и токены с тегами агента и модели")
+    void llmAdvisor_recordsTimerAndTokens() {
+        ChatModel model = prompt -> new ChatResponse(
+                List.of(new Generation(new AssistantMessage("ok"))),
+                ChatResponseMetadata.builder().model("gpt-test").usage(new DefaultUsage(120, 40)).build());
+        ChatClient chat = ChatClient.builder(model).defaultAdvisors(metrics.llmAdvisor("evaluator")).build();
+
+        chat.prompt().user("Оцени модель").call().content();
+
+        assertThat(registry.get("iconix.llm.request")
+                .tags("agent", "evaluator", "provider", "openai", "model", "gpt-test", "outcome", "success")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.get("iconix.llm.tokens").tags("type", "prompt").counter().count()).isEqualTo(120);
+        assertThat(registry.get("iconix.llm.tokens").tags("type", "completion").counter().count()).isEqualTo(40);
+    }
+
+    @Test
+    @DisplayName("Исключение модели — таймер с outcome=error")
+    void llmAdvisor_recordsError() {
+        ChatModel model = prompt -> {
+            throw new IllegalStateException("rate limit");
+        };
+        ChatClient chat = ChatClient.builder(model).defaultAdvisors(metrics.llmAdvisor("chat")).build();
+
+        assertThatThrownBy(() -> chat.prompt().user("Привет").call().content())
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(registry.get("iconix.llm.request")
+                .tags("agent", "chat", "model", "unknown", "outcome", "error")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("time() пробрасывает исключение действия и помечает его outcome=error")
+    void time_tagsOutcome() throws IOException {
+        String svg = metrics.time("iconix.render", () -> "<svg/>", "format", "plantuml-svg");
+
+        assertThatThrownBy(() -> metrics.time("iconix.render", () -> {
+            throw new IOException("broken");
+        }, "format", "plantuml-svg")).isInstanceOf(IOException.class);
+
+        assertThat(svg).isEqualTo("<svg/>");
+        assertThat(registry.get("iconix.render").tags("outcome", "success").timer().count()).isEqualTo(1);
+        assertThat(registry.get("iconix.render").tags("outcome", "error").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Обращения к кэшу считаются раздельно для hit и miss")
+    void cacheAccess_countsHitAndMiss() {
+        metrics.cacheAccess("prompt", true);
+        metrics.cacheAccess("prompt", true);
+        metrics.cacheAccess("prompt", false);
+
+        assertThat(registry.get("iconix.cache.access").tags("cache", "prompt", "result", "hit").counter().count())
+                .isEqualTo(2);
+        assertThat(registry.get("iconix.cache.access").tags("cache", "prompt", "result", "miss").counter().count())
+                .isEqualTo(1);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.portal.shared.plantuml;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Юнит-тесты для PlantUmlModel и PlantUmlPatch.
+ *
+ * Тесты покрывают:
+ * 1. Разбор элементов (алиасы, стереотипы, тела) и связей; вывод без изменений совпадает с исходным
+ * 2. Удаление элемента удаляет его связи
+ * 3. Изменение, добавление элемента и связи; неизменённые строки остаются как были
+ * 4. Некорректная правка отклоняется, исходная модель не меняется
+ * 5. Разбор JSON правки из ответа LLM
+ */
+class PlantUmlPatchTest {
+
+    private static final String MODEL = """
+            @startuml
+            ' Доменная модель
+            class "Пользователь" as user {
+                + {field} id: UUID
+            }
+            class "Вопрос" as question {
+                + {field} текст: String
+            }
+            entity "Файл" as file << (E, #aaaaaa) >>
+            user "1" --> "0..*" question : автор
+            question ..> file : вложение
+            @enduml""";
+
+    private static PlantUmlPatch patch(List<String> remove, List<String> add, List<String> change,
+                                       List<String> removeRelations, List<String> addRelations) {
+        return new PlantUmlPatch(remove, add, change, removeRelations, addRelations);
+    }
+
+    @Test
+    @DisplayName("Элементы и связи разбираются, вывод неизменённой модели совпадает с исходной")
+    void parse_roundTrip() {
+        PlantUmlModel model = PlantUmlModel.parse(MODEL);
+
+        assertThat(model.elements()).extracting(PlantUmlModel.Element::id).containsExactly("user", "question", "file");
+        assertThat(model.element("Файл").orElseThrow().stereotype()).isEqualTo("<< (E, #aaaaaa) >>");
+        assertThat(model.relations()).extracting(PlantUmlModel.Relation::from, PlantUmlModel.Relation::to,
+                PlantUmlModel.Relation::label)
+                .containsExactly(tuple("user", "question", "автор"),
+                        tuple("question", "file", "вложение"));
+        assertThat(model.render()).isEqualTo(MODEL);
+    }
+
+    @Test
+    @DisplayName("Удаление элемента удаляет и его связи")
+    void removeElement_removesItsRelations() {
+        PlantUmlModel result = patch(List.of("file"), List.of(), List.of(), List.of(), List.of())
+                .applyTo(PlantUmlModel.parse(MODEL));
+
+        assertThat(result.element("file")).isEmpty();
+        assertThat(result.relations()).extracting(PlantUmlModel.Relation::label).containsExactly("автор");
+        assertThat(result.render()).doesNotContain("Файл", "вложение");
+    }
+
+    @Test
+    @DisplayName("Изменение и добавление элементов и связей, остальные строки не меняются")
+    void changeAndAdd() {
+        PlantUmlPatch patch = patch(List.of(),
+                List.of("class \"Ответ\" as answer {\n    + {field} текст: String\n}"),
+                List.of("class \"Вопрос\" as question {\n    + {field} текст: String\n    + {field} статус: Статус\n}"),
+                List.of("user --> question"),
+                List.of("question \"1\" *-- \"0..*\" answer : ответы"));
+
+        String result = patch.applyTo(PlantUmlModel.parse(MODEL)).render();
+
+        assertThat(result).contains("+ {field} статус: Статус", "class \"Ответ\" as answer",
+                "question \"1\" *-- \"0..*\" answer : ответы");
+        assertThat(result).doesNotContain(": автор");
+        assertThat(result).contains("' Доменная модель", "entity \"Файл\" as file << (E, #aaaaaa) >>",
+                "question ..> file : вложение");
+        assertThat(result.indexOf("as answer")).isLessThan(result.indexOf("question ..> file"));
+        assertThat(result).endsWith("@enduml");
+    }
+
+    @Test
+    @DisplayName("Правка со ссылкой на несуществующий элемент отклоняется, модель не меняется")
+    void invalidPatch_rejected() {
+        PlantUmlModel model = PlantUmlModel.parse(MODEL);
+
+        assertThatThrownBy(() -> patch(List.of("user"), List.of(), List.of(), List.of(),
+                List.of("user --> file")).applyTo(model))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unknown element: user");
+        assertThatThrownBy(() -> patch(List.of(), List.of("class \"Вопрос\" as question"), List.of(), List.of(),
+                List.of()).applyTo(model))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("already exists");
+        assertThat(model.render()).isEqualTo(MODEL);
+    }
+
+    @Test
+    @DisplayName("JSON правки разбирается из ответа в markdown, некорректный JSON отклоняется")
+    void parseJson() {
+        PlantUmlPatch patch = PlantUmlPatch.parse("""
+                ```json
+                {"removeElements": ["file"], "addElements": [], "changeElements": [],
+                 "removeRelations": [], "addRelations": ["user --> question"]}
+                ```""");
+
+        assertThat(patch.removeElements()).containsExactly("file");
+        assertThat(patch.size()).isEqualTo(2);
+        assertThatThrownBy(() -> PlantUmlPatch.parse("@startuml\nclass A\n@enduml"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.portal.shared.service;
+
+import com.example.portal.shared.service.PromptContextPacker.Section;
+import com.example.portal.shared.utils.TokenCounter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Юнит-тесты для PromptContextPacker.
+ *
+ * Тесты покрывают:
+ * 1. Секции в пределах бюджета не меняются
+ * 2. Бюджет заполняется по приоритету: важные секции целиком, менее важные сокращаются
+ * 3. PlantUML сокращается построчно с сохранением @startuml/@enduml
+ * 4. RAG сокращается целыми фрагментами
+ * 5. Бюджет делится между секциями одного приоритета
+ */
+class PromptContextPackerTest {
+
+    private final PromptContextPacker packer = new PromptContextPacker(12000);
+
+    private static String plantUml(int classes) {
+        StringBuilder sb = new StringBuilder("@startuml\n");
+        for (int i = 0; i < classes; i++) {
+            sb.append("class Entity").append(i).append(" {\n  +id: UUID\n  +name: String\n}\n");
+        }
+        return sb.append("@enduml").toString();
+    }
+
+    @Test
+    @DisplayName("Контекст в пределах бюджета возвращается без изменений")
+    void withinBudget_unchanged() {
+        PromptContextPacker.Packed packed = packer.pack(1000,
+                Section.text("narrative", "Пользователь отправляет вопрос редактору.", 0),
+                Section.fragments("rag", null, 1));
+
+        assertThat(packed.get("narrative")).isEqualTo("Пользователь отправляет вопрос редактору.");
+        assertThat(packed.get("rag")).isEmpty();
+        assertThat(packed.trimmed()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Важная секция сохраняется целиком, менее важная сокращается")
+    void fillsByPriority() {
+        String model = plantUml(20);
+        String narrative = "Редактор отвечает на вопрос пользователя. ".repeat(200);
+        int budget = TokenCounter.count(model) + 100;
+
+        PromptContextPacker.Packed packed = packer.pack(budget,
+                Section.plantUml("model", model, 0),
+                Section.text("narrative", narrative, 1));
+
+        assertThat(packed.get("model")).isEqualTo(model);
+        assertThat(packed.get("narrative")).endsWith("...").hasSizeLessThan(narrative.length());
+        assertThat(packed.trimmed()).containsExactly("narrative");
+        assertThat(packed.tokens()).isLessThanOrEqualTo(budget);
+    }
+
+    @Test
+    @DisplayName("PlantUML сокращается построчно, теги @startuml/@enduml сохраняются")
+    void plantUml_keepsTags() {
+        String model = plantUml(200);
+
+        String trimmed = packer.pack(300, Section.plantUml("model", model, 0)).get("model");
+
+        assertThat(trimmed).startsWith("@startuml\nclass Entity0 {").endsWith("@enduml");
+        assertThat(trimmed).contains("' ... (сокращено) ...");
+        assertThat(TokenCounter.count(trimmed)).isLessThanOrEqualTo(300);
+    }
+
+    @Test
+    @DisplayName("RAG сокращается целыми фрагментами")
+    void rag_keepsWholeFragments() {
+        String fragment = "Фрагмент базы знаний о порядке обработки обращений. ".repeat(10);
+        String rag = String.join(PromptContextPacker.FRAGMENT_SEPARATOR, fragment + "1", fragment + "2", fragment + "3");
+        int budget = TokenCounter.count(fragment + "1") + 20;
+
+        String packed = packer.pack(budget, Section.fragments("rag", rag, 0)).get("rag");
+
+        assertThat(packed).isEqualTo(fragment + "1");
+    }
+
+    @Test
+    @DisplayName("Бюджет делится между секциями одного приоритета, короткая сохраняется")
+    void samePriority_sharesBudget() {
+        String shortModel = plantUml(2);
+        String useCase = plantUml(100);
+        String mvc = plantUml(100);
+        int budget = 1000;
+
+        PromptContextPacker.Packed packed = packer.pack(budget,
+                Section.plantUml("domain", shortModel, 0),
+                Section.plantUml("useCase", useCase, 0),
+                Section.plantUml("mvc", mvc, 0));
+
+        assertThat(packed.get("domain")).isEqualTo(shortModel);
+        assertThat(packed.trimmed()).containsExactly("useCase", "mvc");
+        int useCaseTokens = TokenCounter.count(packed.get("useCase"));
+        int mvcTokens = TokenCounter.count(packed.get("mvc"));
+        assertThat(Math.abs(useCaseTokens - mvcTokens)).isLessThan(50);
+        assertThat(packed.tokens()).isLessThanOrEqualTo(budget);
+    }
+}
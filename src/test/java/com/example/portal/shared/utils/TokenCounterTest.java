@@ -0,0 +1,59 @@
+package com.example.portal.shared.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Юнит-тесты для TokenCounter.
+ *
+ * Тесты покрывают:
+ * 1. Подсчёт токенов cl100k для латиницы и кириллицы
+ * 2. Обрезка по бюджету: результат укладывается в бюджет вместе с маркером
+ * 3. Текст в пределах бюджета возвращается без изменений
+ * 4. Специальные токены во входном тексте считаются обычным текстом
+ */
+class TokenCounterTest {
+
+    @Test
+    @DisplayName("Подсчёт токенов: кириллица плотнее латиницы")
+    void count_latinAndCyrillic() {
+        assertThat(TokenCounter.count("hello world")).isEqualTo(2);
+        assertThat(TokenCounter.count("")).isZero();
+        assertThat(TokenCounter.count(null)).isZero();
+
+        String russian = "Пользователь открывает статью и нажимает кнопку обратной связи";
+        assertThat(TokenCounter.count(russian)).isGreaterThan(russian.length() / 4);
+    }
+
+    @Test
+    @DisplayName("Обрезка укладывает текст с маркером в бюджет и не рвёт символы")
+    void truncate_respectsBudget() {
+        String text = "Редактор получает уведомление и отвечает на вопрос пользователя. ".repeat(50);
+        String marker = "\n[... обрезано ...]";
+
+        String truncated = TokenCounter.truncate(text, 100, marker);
+
+        assertThat(truncated).endsWith(marker);
+        assertThat(TokenCounter.count(truncated)).isLessThanOrEqualTo(100);
+        assertThat(text).startsWith(truncated.substring(0, truncated.length() - marker.length()));
+        assertThat(TokenCounter.fits(text, 100)).isFalse();
+        assertThat(TokenCounter.fits(truncated, 100)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Текст в пределах бюджета не меняется")
+    void truncate_keepsShortText() {
+        String plantUml = "@startuml\nclass Order {\n  +id: UUID\n}\n@enduml";
+
+        assertThat(TokenCounter.truncate(plantUml, 1000, "...")).isSameAs(plantUml);
+        assertThat(TokenCounter.truncate(plantUml, TokenCounter.count(plantUml), "...")).isEqualTo(plantUml);
+    }
+
+    @Test
+    @DisplayName("Специальный токен во входном тексте не вызывает исключения")
+    void count_specialTokenAsText() {
+        assertThat(TokenCounter.count("ответ <|endoftext|> конец")).isGreaterThan(3);
+    }
+}
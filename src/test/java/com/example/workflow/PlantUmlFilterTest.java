@@ -0,0 +1,126 @@
+package com.example.workflow;
+
+import com.example.portal.shared.utils.TokenCounter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Юнит-тесты для PlantUmlFilter.
+ *
+ * Тесты покрывают:
+ * 1. Use Case модель: прецедент, связанные акторы и прецеденты, контейнер и общие строки
+ * 2. Use Case модель: неизвестный алиас — полная модель
+ * 3. MVC модель: пакет Use Case и элементы, связанные с ним
+ * 4. Усечение по целым инструкциям с закрытием контейнеров
+ * 5. Повторный разбор одной модели берётся из кэша
+ */
+class PlantUmlFilterTest {
+
+    private static final String USE_CASE_MODEL = """
+            @startuml
+            left to right direction
+            actor "Читатель" as reader
+            actor "Редактор" as editor
+            actor :Администратор: as admin
+            rectangle "AlfaBook" as box {
+                usecase "Отправить вопрос" as ask
+                usecase "Прикрепить файл" as attach
+                usecase "Ответить на вопрос" as answer
+                (Заблокировать пользователя) as block
+            }
+            reader --> ask
+            ask ..> attach : << include >>
+            editor --> answer
+            admin --> block
+            note right of ask : основной сценарий
+            note right of answer
+              сценарий редактора
+            end note
+            @enduml""";
+
+    private static final String MVC_MODEL = """
+            @startuml
+            skinparam linetype ortho
+
+            package "ask" {
+                boundary "Форма вопроса" as askForm
+                control "Отправить вопрос" as askSubmit
+            }
+            package "answer" {
+                boundary "Форма ответа" as answerForm
+                control "Сохранить ответ" as answerSave
+            }
+            entity "Вопрос" as question
+            entity "Ответ" as reply
+            askForm --> askSubmit
+            askSubmit --> question
+            answerForm --> answerSave
+            answerSave --> reply
+            @enduml""";
+
+    private final PlantUmlFilter filter = new PlantUmlFilter();
+
+    @Test
+    @DisplayName("Use Case модель: прецедент с соседями, его контейнер и общие строки")
+    void filterUseCaseModel_keepsNeighbourhood() {
+        String result = filter.filterUseCaseModel(USE_CASE_MODEL, "ask", "Отправить вопрос");
+
+        assertThat(result).startsWith("@startuml\nleft to right direction").endsWith("@enduml")
+                .contains("actor \"Читатель\" as reader", "rectangle \"AlfaBook\" as box {",
+                        "usecase \"Отправить вопрос\" as ask", "usecase \"Прикрепить файл\" as attach",
+                        "reader --> ask", "ask ..> attach : << include >>", "note right of ask : основной сценарий")
+                .doesNotContain("editor", "admin", "answer", "block", "сценарий редактора");
+        assertThat(result.chars().filter(c -> c == '{').count())
+                .isEqualTo(result.chars().filter(c -> c == '}').count());
+    }
+
+    @Test
+    @DisplayName("Use Case модель: прецедент по имени, по краткой записи; неизвестный — полная модель")
+    void filterUseCaseModel_lookup() {
+        assertThat(filter.filterUseCaseModel(USE_CASE_MODEL, "missing", "Нет такого")).isEqualTo(USE_CASE_MODEL);
+        assertThat(filter.filterUseCaseModel(USE_CASE_MODEL, "block", null))
+                .contains("actor :Администратор: as admin", "(Заблокировать пользователя) as block", "admin --> block")
+                .doesNotContain("reader", "ask");
+        assertThat(filter.filterUseCaseModel(USE_CASE_MODEL, "—", "Ответить на вопрос"))
+                .contains("editor --> answer", "сценарий редактора")
+                .doesNotContain("reader");
+    }
+
+    @Test
+    @DisplayName("MVC модель: пакет Use Case и связанные с его элементами сущности")
+    void filterMvcModel_keepsUseCasePackage() {
+        String result = filter.filterMvcModel(MVC_MODEL, "ask");
+
+        assertThat(result).contains("skinparam linetype ortho", "package \"ask\" {", "askForm --> askSubmit",
+                        "entity \"Вопрос\" as question", "askSubmit --> question")
+                .doesNotContain("package \"answer\"", "answerForm", "reply");
+        assertThat(filter.filterMvcModel(MVC_MODEL, "unknown")).isEqualTo(MVC_MODEL);
+    }
+
+    @Test
+    @DisplayName("Усечение по целым инструкциям: тела классов не рвутся, контейнеры закрываются")
+    void truncatePlantUml_statementAligned() {
+        StringBuilder model = new StringBuilder("@startuml\npackage \"Домен\" {\n");
+        for (int i = 0; i < 200; i++) {
+            model.append("    entity \"Сущность ").append(i).append("\" as e").append(i).append(" {\n")
+                    .append("        + id: UUID\n        + название: String\n    }\n");
+        }
+        model.append("}\n@enduml");
+
+        String result = filter.truncatePlantUml(model.toString(), 300);
+
+        assertThat(TokenCounter.count(result)).isLessThanOrEqualTo(300);
+        assertThat(result).startsWith("@startuml\npackage \"Домен\" {").endsWith("}\n' ... (truncated) ...\n@enduml");
+        assertThat(result.chars().filter(c -> c == '{').count())
+                .isEqualTo(result.chars().filter(c -> c == '}').count());
+    }
+
+    @Test
+    @DisplayName("Разобранная модель кэшируется по содержимому")
+    void parse_cached() {
+        assertThat(filter.parse(MVC_MODEL)).isSameAs(filter.parse(new String(MVC_MODEL.toCharArray())));
+        assertThat(filter.parse(MVC_MODEL)).isNotSameAs(filter.parse(USE_CASE_MODEL));
+    }
+}
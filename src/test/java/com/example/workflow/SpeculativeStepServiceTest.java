@@ -0,0 +1,160 @@
+package com.example.workflow;
+
+import com.example.portal.agents.iconix.model.OrchestratorPlan;
+import com.example.portal.agents.iconix.model.PlanStep;
+import com.example.portal.agents.iconix.service.WorkersRegistry;
+import com.example.portal.agents.iconix.worker.Worker;
+import com.example.portal.shared.llm.LlmCallScope;
+import com.example.portal.shared.llm.LlmExecutor;
+import com.example.portal.shared.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Юнит-тесты для SpeculativeStepService.
+ *
+ * Тесты покрывают:
+ * 1. Вход не изменился — артефакты шагов переносятся в контекст, шаги пропускаются
+ * 2. Доменная модель изменена — результат отбрасывается
+ * 3. Ошибка спекулятивного шага — шаги выполняются как обычно
+ * 4. Нет подходящих шагов после паузы — ничего не запускается
+ */
+class SpeculativeStepServiceTest {
+
+    private static final OrchestratorPlan PLAN = new OrchestratorPlan("план", List.of(
+            new PlanStep("userReview", Map.of()),
+            new PlanStep("usecase", Map.of()),
+            new PlanStep("mvc", Map.of()),
+            new PlanStep("scenario", Map.of())));
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LlmExecutor executor = new LlmExecutor(0);
+    private final List<String> executed = new CopyOnWriteArrayList<>();
+    private final WorkersRegistry registry = Mockito.mock(WorkersRegistry.class);
+    private SpeculativeStepService service;
+
+    /**
+     * Шаг, записывающий в состояние ключ {@code key} и запоминающий приоритет вызова.
+     */
+    private final class StubWorker implements Worker {
+
+        private final String name;
+        private final String key;
+        private volatile boolean failing;
+
+        StubWorker(String name, String key) {
+            this.name = name;
+            this.key = key;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public void execute(Context ctx, Map<String, Object> args) {
+            executed.add(name + ":" + LlmCallScope.current().priority());
+            if (failing) {
+                throw new IllegalStateException("LLM недоступна");
+            }
+            ctx.state.put(key, name + " для " + ctx.state.get("plantuml"));
+            ctx.log(name + ".generate");
+        }
+    }
+
+    private final StubWorker useCase = new StubWorker("usecase", "useCaseModel");
+    private final StubWorker mvc = new StubWorker("mvc", "mvcDiagram");
+
+    @BeforeEach
+    void setUp() {
+        when(registry.get("usecase")).thenReturn(useCase);
+        when(registry.get("mvc")).thenReturn(mvc);
+        service = new SpeculativeStepService(registry, executor, new PipelineMetrics(meterRegistry, "OPENAI"),
+                true, Set.of("usecase", "mvc"), 60);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    private static Worker.Context context(String domainModel) {
+        Worker.Context ctx = new Worker.Context("req-1", "Читатель отправляет вопрос", "", "");
+        ctx.state.put("plantuml", domainModel);
+        return ctx;
+    }
+
+    private double outcome(String outcome) {
+        var counter = meterRegistry.find("iconix.speculation").tag("outcome", outcome).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    @Test
+    @DisplayName("Вход не изменился: артефакты usecase и mvc переносятся, шаги пропускаются")
+    void commit_unchangedInput() {
+        Worker.Context paused = context("@startuml\nentity Вопрос\n@enduml");
+        service.start(paused, PLAN, 0);
+        assertThat(paused.state).doesNotContainKeys("useCaseModel", "mvcDiagram");
+
+        Worker.Context resumed = context("@startuml\nentity Вопрос\n@enduml");
+        int skipped = service.commit(resumed, 1);
+
+        assertThat(skipped).isEqualTo(2);
+        assertThat(resumed.state).containsEntry("useCaseModel", "usecase для @startuml\nentity Вопрос\n@enduml")
+                .containsKey("mvcDiagram");
+        assertThat(resumed.logs).contains("usecase.generate", "mvc.generate");
+        assertThat(executed).containsExactly("usecase:BATCH", "mvc:BATCH");
+        assertThat(outcome("committed")).isEqualTo(1);
+        // Результат принимается один раз
+        assertThat(service.commit(context("@startuml\nentity Вопрос\n@enduml"), 1)).isZero();
+    }
+
+    @Test
+    @DisplayName("Пользователь изменил доменную модель: результат отбрасывается")
+    void commit_changedModel() {
+        service.start(context("@startuml\nentity Вопрос\n@enduml"), PLAN, 0);
+
+        Worker.Context resumed = context("@startuml\nentity Вопрос\nentity Ответ\n@enduml");
+
+        assertThat(service.commit(resumed, 1)).isZero();
+        assertThat(resumed.state).doesNotContainKeys("useCaseModel", "mvcDiagram");
+        assertThat(outcome("discarded")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Ошибка спекулятивного шага: шаги выполняются как обычно")
+    void commit_failedSpeculation() {
+        mvc.failing = true;
+        service.start(context("@startuml\nentity Вопрос\n@enduml"), PLAN, 0);
+
+        Worker.Context resumed = context("@startuml\nentity Вопрос\n@enduml");
+
+        assertThat(service.commit(resumed, 1)).isZero();
+        assertThat(resumed.state).doesNotContainKeys("useCaseModel", "mvcDiagram");
+        assertThat(outcome("failed")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("После паузы нет спекулятивных шагов — ничего не запускается")
+    void start_noSpeculativeSteps() {
+        OrchestratorPlan plan = new OrchestratorPlan("план", List.of(
+                new PlanStep("userReview", Map.of()), new PlanStep("scenario", Map.of())));
+        service.start(context("@startuml\n@enduml"), plan, 0);
+
+        assertThat(service.commit(context("@startuml\n@enduml"), 1)).isZero();
+        assertThat(executed).isEmpty();
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.workflow;
+
+import com.example.portal.agents.iconix.entity.WorkflowStepMemo;
+import com.example.portal.agents.iconix.model.PlanStep;
+import com.example.portal.agents.iconix.repository.WorkflowStepMemoRepository;
+import com.example.portal.agents.iconix.worker.Worker;
+import com.example.portal.prompt.service.PromptService;
+import com.example.portal.shared.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Юнит-тесты для StepMemoService.
+ *
+ * Тесты покрывают:
+ * 1. Повтор шага с тем же входом — изменения состояния и журнал берутся из мемо
+ * 2. Изменение читаемого ключа состояния или промпта меняет хэш, нечитаемого — нет
+ * 3. Шаг паузы не мемоизируется
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StepMemoServiceTest {
+
+    private static final PlanStep STEP = new PlanStep("usecase", Map.of());
+
+    @Mock
+    private WorkflowStepMemoRepository repository;
+    @Mock
+    private PromptService promptService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, WorkflowStepMemo> stored = new HashMap<>();
+    private StepMemoService service;
+
+    /**
+     * Шаг, читающий доменную модель и записывающий модель Use Case.
+     */
+    private static final Worker USE_CASE = new Worker() {
+        @Override
+        public String name() {
+            return "usecase";
+        }
+
+        @Override
+        public Set<String> inputKeys() {
+            return Set.of("plantuml");
+        }
+
+        @Override
+        public Set<String> promptCodes() {
+            return Set.of("usecase_modeller");
+        }
+
+        @Override
+        public void execute(Context ctx, Map<String, Object> args) {
+            ctx.state.put("useCaseModel", "use cases для " + ctx.state.get("plantuml"));
+            ctx.log("usecase.generate");
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        when(promptService.getByCode("usecase_modeller")).thenReturn("Построй модель Use Case: %s");
+        when(repository.findById(anyString())).thenAnswer(inv -> Optional.ofNullable(stored.get(inv.<String>getArgument(0))));
+        when(repository.save(any())).thenAnswer(inv -> {
+            WorkflowStepMemo memo = inv.getArgument(0);
+            stored.put(memo.getInputHash(), memo);
+            return memo;
+        });
+        service = new StepMemoService(repository, promptService, new PipelineMetrics(meterRegistry, "OPENAI"),
+                true, 30, "OPENAI", "gpt-4o", "deepseek-chat");
+    }
+
+    private static Worker.Context context(String domainModel) {
+        Worker.Context ctx = new Worker.Context("req-1", "Читатель отправляет вопрос", "", "");
+        ctx.state.put("plantuml", domainModel);
+        return ctx;
+    }
+
+    private void run(Worker.Context ctx) throws Exception {
+        var lookup = service.lookup(USE_CASE, STEP, ctx);
+        if (!lookup.hit()) {
+            USE_CASE.execute(ctx, Map.of());
+            service.store(lookup, STEP, ctx);
+        }
+    }
+
+    private double outcome(String outcome) {
+        var counter = meterRegistry.find("iconix.step.memo").tag("outcome", outcome).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    @Test
+    @DisplayName("Тот же вход: результат шага и его журнал берутся из мемо")
+    void lookup_sameInputReusesResult() throws Exception {
+        Worker.Context first = context("@startuml\nentity Вопрос\n@enduml");
+        first.log("plan: 8 steps");
+        run(first);
+
+        Worker.Context second = context("@startuml\nentity Вопрос\n@enduml");
+        var lookup = service.lookup(USE_CASE, STEP, second);
+
+        assertThat(lookup.hit()).isTrue();
+        assertThat(second.state).containsEntry("useCaseModel", "use cases для @startuml\nentity Вопрос\n@enduml");
+        assertThat(second.logs).containsExactly("usecase.generate", "memo.hit: usecase");
+        assertThat(stored.values()).singleElement()
+                .satisfies(memo -> assertThat(memo.getStateDeltaJson()).doesNotContain("plantuml"));
+        assertThat(outcome("miss")).isEqualTo(1);
+        assertThat(outcome("hit")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Хэш меняется от читаемых ключей и текста промпта, но не от остального состояния")
+    void inputHash_dependsOnInputsOnly() throws Exception {
+        String base = service.inputHash(USE_CASE, STEP, context("@startuml\nentity Вопрос\n@enduml"));
+
+        Worker.Context unrelated = context("@startuml\nentity Вопрос\n@enduml");
+        unrelated.state.put("scenario", "старый сценарий");
+        assertThat(service.inputHash(USE_CASE, STEP, unrelated)).isEqualTo(base);
+
+        assertThat(service.inputHash(USE_CASE, STEP, context("@startuml\nentity Ответ\n@enduml"))).isNotEqualTo(base);
+
+        when(promptService.getByCode("usecase_modeller")).thenReturn("Построй модель Use Case (v2): %s");
+        assertThat(service.inputHash(USE_CASE, STEP, context("@startuml\nentity Вопрос\n@enduml"))).isNotEqualTo(base);
+    }
+
+    @Test
+    @DisplayName("Шаг паузы для ревью не мемоизируется")
+    void lookup_skipsNonMemoizableStep() {
+        Worker pause = new Worker() {
+            @Override
+            public String name() {
+                return "userReview";
+            }
+
+            @Override
+            public boolean memoizable() {
+                return false;
+            }
+
+            @Override
+            public void execute(Context ctx, Map<String, Object> args) {
+            }
+        };
+        Worker.Context ctx = context("@startuml\n@enduml");
+
+        var lookup = service.lookup(pause, new PlanStep("userReview", Map.of()), ctx);
+        service.store(lookup, new PlanStep("userReview", Map.of()), ctx);
+
+        assertThat(lookup.hit()).isFalse();
+        verify(repository, never()).findById(anyString());
+        verify(repository, never()).save(any());
+        assertThat(List.copyOf(stored.values())).isEmpty();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.workflow;
+
+import com.example.portal.agents.iconix.service.UseCaseScenarioService;
+import com.example.workflow.UseCaseDecompositionService.UseCaseRef;
+import com.example.workflow.UseCaseDecompositionService.UseCaseResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Юнит-тесты для UseCaseDecompositionController.
+ *
+ * Тесты покрывают:
+ * 1. POST /api/usecase/decomposition/stream — событие result на каждый Use Case и итоговое summary
+ * 2. Сессия не найдена — события с ошибкой по каждому Use Case и summary
+ */
+@ExtendWith(MockitoExtension.class)
+class UseCaseDecompositionControllerTest {
+
+    private static final String BODY = """
+            {"requestId": "req-1", "useCases": [
+              {"alias": "ask", "name": "Отправить вопрос"},
+              {"alias": "answer", "name": "Ответить на вопрос"}]}
+            """;
+
+    @Mock
+    private UseCaseDecompositionService decompositionService;
+    @Mock
+    private UseCaseScenarioService scenarioService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new UseCaseDecompositionController(decompositionService, scenarioService))
+                .build();
+    }
+
+    private String stream() throws Exception {
+        MvcResult started = mockMvc.perform(post("/api/usecase/decomposition/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(BODY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        started.getAsyncResult(5000);
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("Результаты Use Case приходят событиями result, в конце — summary с итогами")
+    @SuppressWarnings("unchecked")
+    void decomposeStream_emitsResultsAndSummary() throws Exception {
+        UseCaseResult answer = new UseCaseResult("answer", "Ответить на вопрос", null, "LLM недоступна", 40, 0, 0);
+        UseCaseResult ask = new UseCaseResult("ask", "Отправить вопрос", "сценарий", null, 120, 900, 300);
+        when(decompositionService.decompose(eq("req-1"), anyList(), any())).thenAnswer(invocation -> {
+            Consumer<UseCaseResult> onResult = invocation.getArgument(2);
+            onResult.accept(answer);
+            onResult.accept(ask);
+            return List.of(ask, answer);
+        });
+
+        String body = stream();
+
+        assertThat(body).containsSubsequence(
+                "event:result", "\"useCaseAlias\":\"answer\"", "\"success\":false", "\"error\":\"LLM недоступна\"",
+                "event:result", "\"useCaseAlias\":\"ask\"", "\"durationMs\":120", "\"promptTokens\":900",
+                "\"completionTokens\":300",
+                "event:summary", "\"total\":2", "\"succeeded\":1", "\"failed\":1", "\"promptTokens\":900");
+    }
+
+    @Test
+    @DisplayName("Сессия не найдена: ошибка по каждому Use Case и summary")
+    void decomposeStream_sessionNotFound() throws Exception {
+        when(decompositionService.decompose(eq("req-1"), anyList(), any()))
+                .thenThrow(new IllegalArgumentException("Session not found: req-1"));
+
+        String body = stream();
+
+        assertThat(body).containsSubsequence(
+                "event:result", "\"useCaseAlias\":\"ask\"", "Session not found",
+                "event:result", "\"useCaseAlias\":\"answer\"", "Session not found",
+                "event:summary", "\"failed\":2");
+    }
+}
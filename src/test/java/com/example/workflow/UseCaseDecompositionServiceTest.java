@@ -0,0 +1,166 @@
+package com.example.workflow;
+
+import com.example.portal.agents.iconix.model.WorkflowResponse;
+import com.example.portal.agents.iconix.service.UseCaseScenarioService;
+import com.example.portal.agents.iconix.service.agentservices.ScenarioWriterService;
+import com.example.portal.shared.llm.LlmCallScope;
+import com.example.portal.shared.llm.LlmExecutor;
+import com.example.portal.shared.service.RagService;
+import com.example.workflow.UseCaseDecompositionService.UseCaseRef;
+import com.example.workflow.UseCaseDecompositionService.UseCaseResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Юнит-тесты для UseCaseDecompositionService.
+ *
+ * Тесты покрывают:
+ * 1. Сессия читается один раз на запрос, сценарии генерируются не более parallelism одновременно,
+ *    токены считаются по каждому Use Case
+ * 2. Ошибка одного Use Case не влияет на остальные, результаты — в порядке запроса
+ * 3. Отсутствие моделей в сессии — ошибка до генерации
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UseCaseDecompositionServiceTest {
+
+    private static final String USE_CASE_MODEL = """
+            @startuml
+            actor "Читатель" as reader
+            usecase "Отправить вопрос" as ask
+            usecase "Ответить на вопрос" as answer
+            reader --> ask
+            @enduml""";
+
+    private static final String MVC_MODEL = """
+            @startuml
+            package "ask" {
+                boundary "Форма вопроса" as askForm
+            }
+            package "answer" {
+                boundary "Форма ответа" as answerForm
+            }
+            @enduml""";
+
+    @Mock
+    private ScenarioWriterService scenarioWriter;
+    @Mock
+    private RagService ragService;
+    @Mock
+    private UseCaseScenarioService scenarioService;
+    @Mock
+    private WorkflowSessionService workflowSessionService;
+
+    private final LlmExecutor executor = new LlmExecutor(0);
+    private UseCaseDecompositionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new UseCaseDecompositionService(scenarioWriter, ragService, scenarioService,
+                workflowSessionService, new PlantUmlFilter(), executor, 2);
+        when(ragService.retrieveContext(anyString(), anyInt()))
+                .thenReturn(new RagService.ContextResult("", 0, false));
+        when(workflowSessionService.getSessionData(eq("req-1"), anySet())).thenReturn(new WorkflowResponse("req-1", null,
+                Map.of("narrative", "Читатель отправляет вопрос", "plantuml", "@startuml\nentity Вопрос\n@enduml",
+                        "useCaseModel", USE_CASE_MODEL, "mvcDiagram", MVC_MODEL), List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    private static List<UseCaseRef> useCases(int count) {
+        List<UseCaseRef> useCases = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            useCases.add(new UseCaseRef(i % 2 == 0 ? "ask" : "answer", "Use Case " + i));
+        }
+        return useCases;
+    }
+
+    @Test
+    @DisplayName("Сессия читается один раз, параллельность ограничена, scope запроса переносится в задачи")
+    void decompose_loadsOnceAndBoundsConcurrency() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> requestIds = Collections.synchronizedList(new ArrayList<>());
+        when(scenarioWriter.generateScenario(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    requestIds.add(LlmCallScope.current().requestId());
+                    // Так токены вызова учитывает TokenLedgerService
+                    LlmCallScope.current().usage().add(100, 20);
+                    Thread.sleep(50);
+                    running.decrementAndGet();
+                    return "сценарий";
+                });
+        List<UseCaseResult> delivered = Collections.synchronizedList(new ArrayList<>());
+
+        List<UseCaseResult> results = service.decompose("req-1", useCases(6), delivered::add);
+
+        assertThat(results).hasSize(6).allMatch(UseCaseResult::success)
+                .allMatch(r -> r.promptTokens() == 100 && r.completionTokens() == 20);
+        assertThat(delivered).hasSize(6);
+        assertThat(maxRunning.get()).isEqualTo(2);
+        assertThat(requestIds).hasSize(6).containsOnly("req-1");
+        verify(workflowSessionService, times(1)).getSessionData(eq("req-1"), anySet());
+        verify(scenarioService, times(6)).saveScenario(anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Ошибка одного Use Case не прерывает остальные, порядок результатов — как в запросе")
+    void decompose_isolatesFailures() {
+        when(scenarioWriter.generateScenario(contains("Use Case 1"), anyString(), anyString(), anyString(),
+                anyString())).thenThrow(new IllegalStateException("LLM недоступна"));
+        when(scenarioWriter.generateScenario(contains("Use Case 0"), anyString(), anyString(), anyString(),
+                anyString())).thenReturn("сценарий 0");
+        when(scenarioWriter.generateScenario(contains("Use Case 2"), anyString(), anyString(), anyString(),
+                anyString())).thenReturn("сценарий 2");
+
+        List<UseCaseResult> results = service.decompose("req-1", useCases(3), r -> { });
+
+        assertThat(results).extracting(UseCaseResult::useCaseName)
+                .containsExactly("Use Case 0", "Use Case 1", "Use Case 2");
+        assertThat(results).extracting(UseCaseResult::scenario).containsExactly("сценарий 0", null, "сценарий 2");
+        assertThat(results.get(1).error()).isEqualTo("LLM недоступна");
+        assertThatThrownBy(() -> service.decomposeUseCase("req-1", "answer", "Use Case 1"))
+                .hasMessageContaining("LLM недоступна");
+    }
+
+    @Test
+    @DisplayName("Нет моделей в сессии — ошибка до генерации сценариев")
+    void decompose_missingModels() {
+        when(workflowSessionService.getSessionData(eq("req-2"), anySet()))
+                .thenReturn(new WorkflowResponse("req-2", null, Map.of("narrative", "текст"), List.of()));
+
+        assertThatThrownBy(() -> service.decompose("req-2", useCases(2), r -> { }))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Domain model");
+        verify(scenarioWriter, times(0)).generateScenario(anyString(), anyString(), anyString(), anyString(),
+                anyString());
+    }
+}
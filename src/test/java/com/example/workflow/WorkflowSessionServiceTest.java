@@ -0,0 +1,320 @@
+package com.example.workflow;
+
+import com.example.portal.agents.iconix.entity.WorkflowArtifact;
+import com.example.portal.agents.iconix.entity.WorkflowSession;
+import com.example.portal.agents.iconix.entity.WorkflowSessionCheckpoint;
+import com.example.portal.agents.iconix.model.OrchestratorPlan;
+import com.example.portal.agents.iconix.model.PlanStep;
+import com.example.portal.agents.iconix.model.WorkflowStatus;
+import com.example.portal.agents.iconix.repository.LlmUsageRecordRepository;
+import com.example.portal.agents.iconix.repository.WorkflowArtifactRepository;
+import com.example.portal.agents.iconix.repository.WorkflowSessionCheckpointRepository;
+import com.example.portal.agents.iconix.repository.WorkflowSessionRepository;
+import com.example.portal.agents.iconix.repository.WorkflowSessionRepository.SessionHeaderView;
+import com.example.portal.agents.iconix.repository.WorkflowSessionRepository.SessionSummaryView;
+import com.example.portal.agents.iconix.repository.WorkflowSessionRepository.StateEntryView;
+import com.example.portal.agents.iconix.service.TokenLedgerService;
+import com.example.portal.agents.iconix.worker.Worker;
+import com.example.portal.shared.metrics.PipelineMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.InstanceOfAssertFactories.MAP;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Юнит-тесты для WorkflowSessionService.
+ *
+ * Тесты покрывают:
+ * 1. Первое сохранение — снимок, следующие — чекпоинты только с изменёнными ключами и новыми записями журнала
+ * 2. Контекст собирается из снимка и чекпоинтов, модель пользователя записывается чекпоинтом
+ * 3. Уплотнение после compact-every чекпоинтов и при завершении workflow
+ * 4. Список сессий по курсору с фильтром по статусам
+ * 5. Часть артефактов — из ключей состояния, извлечённых в БД, без чтения всей сессии
+ * 6. Крупные артефакты — один сжатый экземпляр на содержимое, в сессии и данных ревью ссылки
+ * 7. Повторное чтение — из кэша до изменения версии или записи сессии
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class WorkflowSessionServiceTest {
+
+    private static final OrchestratorPlan PLAN = new OrchestratorPlan("план", List.of(
+            new PlanStep("model", Map.of("mode", "generate")),
+            new PlanStep("usecase", Map.of()),
+            new PlanStep("mvc", Map.of())));
+
+    @Mock
+    private WorkflowSessionRepository repository;
+    @Mock
+    private WorkflowSessionCheckpointRepository checkpointRepository;
+    @Mock
+    private LlmUsageRecordRepository usageRepository;
+    @Mock
+    private WorkflowArtifactRepository artifactRepository;
+
+    private final List<WorkflowSessionCheckpoint> checkpoints = new ArrayList<>();
+    private final Map<String, WorkflowArtifact> artifacts = new HashMap<>();
+    private WorkflowSession stored;
+    private WorkflowSessionService service;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.findByRequestId("req-1")).thenAnswer(inv -> Optional.ofNullable(stored));
+        when(repository.save(any())).thenAnswer(inv -> stored = inv.getArgument(0));
+        when(repository.updateProgress(eq("req-1"), anyString(), anyInt(), any(), any(), any())).thenAnswer(inv -> {
+            stored.setCurrentStepIndex(inv.getArgument(2));
+            stored.setStatus(inv.getArgument(3));
+            return 1;
+        });
+        when(checkpointRepository.save(any())).thenAnswer(inv -> {
+            checkpoints.add(inv.getArgument(0));
+            return inv.getArgument(0);
+        });
+        when(checkpointRepository.findByRequestIdOrderBySeqAsc("req-1")).thenAnswer(inv -> List.copyOf(checkpoints));
+        when(checkpointRepository.findLastSeq("req-1"))
+                .thenAnswer(inv -> checkpoints.isEmpty() ? 0 : checkpoints.get(checkpoints.size() - 1).getSeq());
+        when(checkpointRepository.deleteByRequestId("req-1")).thenAnswer(inv -> {
+            int removed = checkpoints.size();
+            checkpoints.clear();
+            return removed;
+        });
+        when(artifactRepository.findExistingHashes(any()))
+                .thenAnswer(inv -> inv.<Collection<String>>getArgument(0).stream().filter(artifacts::containsKey).toList());
+        when(artifactRepository.insertIfAbsent(anyString(), any(), anyInt(), anyInt(), any())).thenAnswer(inv -> {
+            artifacts.putIfAbsent(inv.getArgument(0), WorkflowArtifact.builder()
+                    .hash(inv.getArgument(0))
+                    .content(inv.getArgument(1))
+                    .originalSize(inv.getArgument(2))
+                    .compressedSize(inv.getArgument(3))
+                    .build());
+            return 1;
+        });
+        when(artifactRepository.findAllById(any()))
+                .thenAnswer(inv -> inv.<Collection<String>>getArgument(0).stream().map(artifacts::get).toList());
+        PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry(), "OPENAI");
+        service = new WorkflowSessionService(repository, checkpointRepository,
+                new WorkflowArtifactService(artifactRepository, metrics, true, 512, Set.of("issues", "narrativeIssues"), 24),
+                new WorkflowSessionCache(null, null, metrics, true, false, 100),
+                metrics, new TokenLedgerService(usageRepository), 3);
+    }
+
+    private static Worker.Context context() {
+        Worker.Context ctx = new Worker.Context("req-1", "Читатель отправляет вопрос", "", "");
+        ctx.state.put("plantuml", "@startuml\nentity Вопрос\n@enduml");
+        ctx.log("plan: 3 steps");
+        return ctx;
+    }
+
+    @Test
+    @DisplayName("Первое сохранение — снимок, следующие — чекпоинты только с изменениями")
+    void saveSession_writesDeltas() {
+        Worker.Context ctx = context();
+        service.saveSession(ctx, PLAN, 0, WorkflowStatus.RUNNING, null, null);
+
+        ctx.state.put("useCaseModel", "@startuml\nusecase Спросить\n@enduml");
+        ctx.log("usecase.generate");
+        service.saveSession(ctx, PLAN, 1, WorkflowStatus.RUNNING, null, null);
+        // Шаг ничего не изменил — меняется только номер шага
+        service.saveSession(ctx, PLAN, 2, WorkflowStatus.RUNNING, null, null);
+
+        verify(repository, times(1)).save(any());
+        assertThat(stored.getContextStateJson()).doesNotContain("useCaseModel");
+        assertThat(stored.getCurrentStepIndex()).isEqualTo(2);
+        assertThat(checkpoints).singleElement().satisfies(checkpoint -> {
+            assertThat(checkpoint.getSeq()).isEqualTo(1);
+            assertThat(checkpoint.getStateDeltaJson()).contains("useCaseModel").doesNotContain("plantuml");
+            assertThat(checkpoint.getLogsJson()).isEqualTo("[\"usecase.generate\"]");
+        });
+    }
+
+    @Test
+    @DisplayName("Контекст = снимок + чекпоинты; модель пользователя записывается чекпоинтом поверх")
+    void restoreContext_foldsCheckpoints() {
+        Worker.Context ctx = context();
+        ctx.state.put("issues", List.of());
+        service.saveSession(ctx, PLAN, 0, WorkflowStatus.RUNNING, null, null);
+        ctx.state.put("plantuml", "@startuml\nentity Вопрос\nentity Ответ\n@enduml");
+        ctx.state.remove("issues");
+        ctx.log("model.refine");
+        service.saveSession(ctx, PLAN, 1, WorkflowStatus.PAUSED_FOR_REVIEW, "{}", null);
+
+        service.updateContextFromUserInput("req-1", null, "@startuml\nentity Ответ\n@enduml");
+        Worker.Context restored = service.restoreContext(stored);
+
+        assertThat(restored.state).containsEntry("plantuml", "@startuml\nentity Ответ\n@enduml")
+                .doesNotContainKey("issues");
+        assertThat(restored.logs).containsExactly("plan: 3 steps", "model.refine");
+        assertThat(checkpoints).extracting(WorkflowSessionCheckpoint::getSeq).containsExactly(1, 2);
+
+        // Следующее сохранение восстановленного контекста продолжает нумерацию
+        restored.state.put("useCaseModel", "@startuml\n@enduml");
+        service.saveSession(restored, PLAN, 2, WorkflowStatus.RUNNING, null, null);
+        assertThat(checkpoints).extracting(WorkflowSessionCheckpoint::getSeq).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    @DisplayName("После compact-every чекпоинтов и при завершении пишется снимок, чекпоинты удаляются")
+    void saveSession_compacts() {
+        Worker.Context ctx = context();
+        service.saveSession(ctx, PLAN, 0, WorkflowStatus.RUNNING, null, null);
+        for (int i = 1; i <= 3; i++) {
+            ctx.state.put("scenario", "сценарий " + i);
+            service.saveSession(ctx, PLAN, i, WorkflowStatus.RUNNING, null, null);
+        }
+        assertThat(checkpoints).hasSize(3);
+
+        ctx.state.put("scenario", "сценарий 4");
+        service.saveSession(ctx, PLAN, 4, WorkflowStatus.RUNNING, null, null);
+        assertThat(checkpoints).isEmpty();
+        assertThat(stored.getContextStateJson()).contains("сценарий 4");
+
+        ctx.state.put("scenario", "сценарий 5");
+        service.saveSession(ctx, PLAN, 2, WorkflowStatus.RUNNING, null, null);
+        service.saveSession(ctx, PLAN, 2, WorkflowStatus.COMPLETED, null, null);
+        assertThat(checkpoints).isEmpty();
+        assertThat(stored.getStatus()).isEqualTo(WorkflowStatus.COMPLETED);
+        assertThat(service.restoreContext(stored).state).containsEntry("scenario", "сценарий 5");
+    }
+
+    private record SummaryRow(String getRequestId, WorkflowStatus getStatus, Instant getCreatedAt,
+                              Instant getUpdatedAt) implements SessionSummaryView {
+    }
+
+    @Test
+    @DisplayName("Список сессий: страница по курсору, фильтр по статусам, повреждённый курсор — ошибка")
+    void getSessions_keysetPagination() {
+        Instant now = Instant.parse("2026-10-19T10:00:00.123456Z");
+        SummaryRow newest = new SummaryRow("req-3", WorkflowStatus.COMPLETED, now, now);
+        SummaryRow middle = new SummaryRow("req-2", WorkflowStatus.COMPLETED, now.minusSeconds(60), now);
+        SummaryRow oldest = new SummaryRow("req-1", WorkflowStatus.COMPLETED, now.minusSeconds(120), now);
+        when(repository.findSummaries(List.of("COMPLETED"), 3)).thenReturn(List.of(newest, middle, oldest));
+        when(repository.findSummariesBefore(List.of("COMPLETED"), middle.getCreatedAt(), "req-2", 3))
+                .thenReturn(List.of(oldest));
+
+        WorkflowSessionPage first = service.getSessions(Set.of(WorkflowStatus.COMPLETED), null, 2);
+        WorkflowSessionPage second = service.getSessions(Set.of(WorkflowStatus.COMPLETED), first.nextCursor(), 2);
+
+        assertThat(first.items()).extracting(WorkflowSessionSummary::requestId).containsExactly("req-3", "req-2");
+        assertThat(first.nextCursor()).isNotNull();
+        assertThat(second.items()).extracting(WorkflowSessionSummary::requestId).containsExactly("req-1");
+        assertThat(second.nextCursor()).isNull();
+        assertThatThrownBy(() -> service.getSessions(Set.of(), "не-курсор", 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private record StateEntry(String getKey, String getValue) implements StateEntryView {
+    }
+
+    private record Header(String getRequestId, String getNarrative, WorkflowStatus getStatus, Instant getUpdatedAt)
+            implements SessionHeaderView {
+    }
+
+    @Test
+    @DisplayName("Часть артефактов: значения ключей из БД, удалённый ключ пропускается, сессия целиком не читается")
+    void getSessionData_partialArtifacts() {
+        when(repository.findHeader("req-1"))
+                .thenReturn(Optional.of(new Header("req-1", "Читатель отправляет вопрос", WorkflowStatus.COMPLETED,
+                        Instant.parse("2026-10-19T10:00:00Z"))));
+        when(repository.findStateEntries(eq("req-1"), any())).thenReturn(List.of(
+                new StateEntry("plantuml", "\"@startuml\\nentity Вопрос\\n@enduml\""),
+                new StateEntry("issues", "null"),
+                new StateEntry("scenario", "\"сценарий\"")));
+
+        var response = service.getSessionData("req-1", Set.of("narrative", "plantuml", "issues", "scenarios"));
+
+        assertThat(response.artifacts())
+                .containsEntry("narrative", "Читатель отправляет вопрос")
+                .containsEntry("plantuml", "@startuml\nentity Вопрос\n@enduml")
+                .containsEntry("scenarios", List.of("сценарий"))
+                .containsEntry("_status", "COMPLETED")
+                .doesNotContainKeys("issues", "useCaseModel", "_reviewData");
+        assertThat(response.logs()).isEmpty();
+        verify(repository).findStateEntries("req-1", List.of("plantuml", "issues", "scenario"));
+        verify(repository, times(0)).findByRequestId(anyString());
+    }
+
+    @Test
+    @DisplayName("Крупная модель хранится один раз сжатой: в состоянии, данных ревью и другой сессии — ссылки")
+    void saveSession_storesLargeValuesAsArtifacts() throws Exception {
+        StringBuilder model = new StringBuilder("@startuml\n");
+        for (int i = 0; i < 40; i++) {
+            model.append("entity Сущность").append(i).append(" {\n  +название: String\n}\n");
+        }
+        model.append("@enduml");
+        Worker.Context ctx = context();
+        ctx.state.put("plantuml", model.toString());
+        String reviewData = new ObjectMapper().writeValueAsString(
+                Map.of("domainModel", model.toString(), "issues", List.of()));
+
+        service.saveSession(ctx, PLAN, 1, WorkflowStatus.PAUSED_FOR_REVIEW, reviewData, null);
+
+        assertThat(artifacts.values()).singleElement().satisfies(artifact ->
+                assertThat(artifact.getCompressedSize()).isLessThan(artifact.getOriginalSize() / 4));
+        assertThat(stored.getContextStateJson()).contains(WorkflowArtifactService.REF).doesNotContain("Сущность");
+        assertThat(stored.getUserReviewData()).contains("\"issues\":[]").doesNotContain("Сущность");
+        assertThat(service.restoreContext(stored).state).containsEntry("plantuml", model.toString());
+        assertThat(service.getSessionData("req-1").artifacts())
+                .containsEntry("plantuml", model.toString())
+                .extractingByKey("_reviewData").asInstanceOf(MAP)
+                .containsEntry("domainModel", model.toString());
+
+        Worker.Context other = new Worker.Context("req-2", "Другой narrative", "", "");
+        other.state.put("plantuml", model.toString());
+        service.saveSession(other, PLAN, 0, WorkflowStatus.RUNNING, null, null);
+
+        assertThat(artifacts).hasSize(1);
+        verify(artifactRepository).link(eq("req-2"), eq(Set.of(artifacts.keySet().iterator().next())));
+    }
+
+    @Test
+    @DisplayName("Повторное чтение сессии — из кэша; новая версия в БД или запись сессии сбрасывают кэш")
+    void getSessionData_cachedUntilChanged() {
+        Worker.Context ctx = context();
+        service.saveSession(ctx, PLAN, 0, WorkflowStatus.RUNNING, null, null);
+        stored.setUpdatedAt(Instant.parse("2026-10-19T10:00:00Z"));
+        when(repository.findVersion("req-1")).thenAnswer(inv -> Optional.of(stored.getUpdatedAt()));
+        clearInvocations(repository);
+
+        var first = service.getSessionData("req-1");
+        assertThat(service.getSessionData("req-1")).isSameAs(first);
+        assertThat(service.getSessionData("req-1", Set.of("plantuml")).artifacts())
+                .containsOnlyKeys("plantuml", "_status");
+        verify(repository, times(1)).findByRequestId("req-1");
+
+        // Сессию изменил другой узел: без подписки версия сверяется с updated_at
+        stored.setUpdatedAt(Instant.parse("2026-10-19T10:00:01Z"));
+        assertThat(service.getSessionData("req-1")).isNotSameAs(first);
+        verify(repository, times(2)).findByRequestId("req-1");
+
+        ctx.state.put("useCaseModel", "@startuml\nusecase Спросить\n@enduml");
+        service.saveSession(ctx, PLAN, 1, WorkflowStatus.RUNNING, null, null);
+
+        assertThat(service.getSessionData("req-1").artifacts()).containsKey("useCaseModel");
+    }
+}